@@ -23,6 +23,12 @@ public class Browser implements Comparable<Browser> {
   private String deviceType;
   private String deviceOrientation;
 
+  /** Key of copied browsers, computed on first use. */
+  private String computedKey;
+
+  /** Case folded name used for sorting, computed on first use. */
+  private String collationKey;
+
   private static final Map<String, String> oses;
 
   static {
@@ -98,12 +104,11 @@ public class Browser implements Comparable<Browser> {
   public String getKey() {
     if (key == null) {
       /* New behavior, see BrowserFactory for the weird versions */
-      String browserKey =
-          os + "_" + device + "_" + deviceOrientation + "_" + name + "_" + longVersion;
-      // replace any spaces with _s
-      browserKey = browserKey.replaceAll(" ", "_");
-      // replace any . with _
-      browserKey = browserKey.replaceAll("\\.", "_");
+      String browserKey = computedKey;
+      if (browserKey == null) {
+        browserKey = BrowserKeyBuilder.joinedKey(os, device, deviceOrientation, name, longVersion);
+        computedKey = browserKey;
+      }
       return browserKey;
     }
     return key;
@@ -171,8 +176,27 @@ public class Browser implements Comparable<Browser> {
     return result;
   }
 
+  /**
+   * Orders browsers by name ignoring case. This is the same order as {@link
+   * String#CASE_INSENSITIVE_ORDER}, but the folded name is computed once per browser instead of on
+   * every comparison.
+   */
   public int compareTo(Browser browser) {
-    return String.CASE_INSENSITIVE_ORDER.compare(name, browser.name);
+    return getCollationKey().compareTo(browser.getCollationKey());
+  }
+
+  String getCollationKey() {
+    String result = collationKey;
+    if (result == null) {
+      char[] chars = name.toCharArray();
+      for (int i = 0; i < chars.length; i++) {
+        // same folding as String.CASE_INSENSITIVE_ORDER
+        chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+      }
+      result = new String(chars);
+      collationKey = result;
+    }
+    return result;
   }
 
   public String toString() {
@@ -207,6 +231,7 @@ public class Browser implements Comparable<Browser> {
 
   public void setDevice(String device) {
     this.device = device;
+    this.computedKey = null;
   }
 
   public String getDevice() {
@@ -223,6 +248,7 @@ public class Browser implements Comparable<Browser> {
 
   public void setDeviceOrientation(String deviceOrientation) {
     this.deviceOrientation = deviceOrientation;
+    this.computedKey = null;
   }
 
   public String getDeviceOrientation() {
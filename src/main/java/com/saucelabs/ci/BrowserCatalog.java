@@ -0,0 +1,245 @@
+package com.saucelabs.ci;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of the browsers returned by a single Sauce REST platform lookup. Besides the
+ * lookup by key, the snapshot keeps inverted indexes over the fields callers filter on (os, browser
+ * name, device, device type, orientation and major version), so a {@link BrowserQuery} is answered
+ * by intersecting precomputed bit sets instead of scanning every browser. The browsers are sorted
+ * once, when the snapshot is built, so {@link #getBrowsers()} can hand out the same list to every
+ * caller.
+ *
+ * @author Sauce Labs
+ */
+public final class BrowserCatalog {
+
+  static final BrowserCatalog EMPTY = new BrowserCatalog(Collections.emptyList());
+
+  private final Browser[] browsers;
+  private final List<Browser> sortedBrowsers;
+  private final Map<String, Browser> lookup;
+
+  private final Map<String, BitSet> osIndex = new HashMap<>();
+  private final Map<String, BitSet> browserNameIndex = new HashMap<>();
+  private final Map<String, BitSet> deviceIndex = new HashMap<>();
+  private final Map<String, BitSet> deviceTypeIndex = new HashMap<>();
+  private final Map<String, BitSet> deviceOrientationIndex = new HashMap<>();
+  private final NavigableMap<Integer, BitSet> majorVersionIndex = new TreeMap<>();
+
+  /**
+   * Builds the snapshot and its indexes. Browsers sharing a key replace the earlier entry, the same
+   * way repeated {@link Map#put} calls would.
+   *
+   * @param browsers browsers to index
+   */
+  public BrowserCatalog(Collection<Browser> browsers) {
+    this(new Builder().addAll(browsers).browsers);
+  }
+
+  private BrowserCatalog(Map<String, Browser> unique) {
+    this.lookup = Collections.unmodifiableMap(unique);
+    this.browsers = unique.values().toArray(new Browser[0]);
+    Arrays.sort(this.browsers);
+    this.sortedBrowsers = Collections.unmodifiableList(Arrays.asList(this.browsers));
+
+    for (int i = 0; i < this.browsers.length; i++) {
+      Browser browser = this.browsers[i];
+      index(osIndex, browser.getOs(), i);
+      index(browserNameIndex, browser.getBrowserName(), i);
+      index(deviceIndex, browser.getDevice(), i);
+      index(deviceTypeIndex, browser.getDeviceType(), i);
+      index(deviceOrientationIndex, browser.getDeviceOrientation(), i);
+      int majorVersion = majorVersion(browser.getVersion());
+      if (majorVersion >= 0) {
+        majorVersionIndex.computeIfAbsent(majorVersion, k -> new BitSet()).set(i);
+      }
+    }
+  }
+
+  private static void index(Map<String, BitSet> index, String value, int position) {
+    if (value != null) {
+      index.computeIfAbsent(BrowserQuery.normalize(value), k -> new BitSet()).set(position);
+    }
+  }
+
+  /**
+   * Parses the leading digits of a version string, so "118", "118.0" and "4.4." map to 118, 118 and
+   * 4.
+   *
+   * @param version short version of the browser
+   * @return the major version, or -1 if the version does not start with a number (eg "latest")
+   */
+  static int majorVersion(String version) {
+    if (version == null) {
+      return -1;
+    }
+    int result = 0;
+    int digits = 0;
+    for (int i = 0; i < version.length(); i++) {
+      char c = version.charAt(i);
+      if (c < '0' || c > '9') {
+        break;
+      }
+      if (digits++ == 9) {
+        // too large to be a browser version
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return digits == 0 ? -1 : result;
+  }
+
+  /**
+   * @param key the key
+   * @return the browser which matches the key, null if there is none
+   */
+  public Browser get(String key) {
+    return lookup.get(key);
+  }
+
+  /**
+   * @return number of distinct browsers in the snapshot
+   */
+  public int size() {
+    return browsers.length;
+  }
+
+  /**
+   * @return unmodifiable list of the browsers, sorted by name
+   */
+  public List<Browser> getBrowsers() {
+    return sortedBrowsers;
+  }
+
+  /**
+   * @return unmodifiable view of the browsers, keyed by {@link Browser#getKey()}
+   */
+  public Map<String, Browser> asMap() {
+    return lookup;
+  }
+
+  /**
+   * Returns the browsers matching all the criteria of the query.
+   *
+   * @param query criteria to match
+   * @return matching browsers, sorted by name
+   */
+  public List<Browser> query(BrowserQuery query) {
+    BitSet result = new BitSet(browsers.length);
+    result.set(0, browsers.length);
+
+    if (!intersect(result, osIndex, query.getOs())
+        || !intersect(result, browserNameIndex, query.getBrowserName())
+        || !intersect(result, deviceIndex, query.getDevice())
+        || !intersect(result, deviceTypeIndex, query.getDeviceType())
+        || !intersect(result, deviceOrientationIndex, query.getDeviceOrientation())) {
+      return Collections.emptyList();
+    }
+
+    if (query.hasVersionConstraint()) {
+      Integer min = query.getMinMajorVersion();
+      Integer max = query.getMaxMajorVersion();
+      if (min != null && max != null && min > max) {
+        return Collections.emptyList();
+      }
+      NavigableMap<Integer, BitSet> range = majorVersionIndex;
+      if (min != null) {
+        range = range.tailMap(min, true);
+      }
+      if (max != null) {
+        range = range.headMap(max, true);
+      }
+      BitSet versions = new BitSet(browsers.length);
+      for (BitSet positions : range.values()) {
+        versions.or(positions);
+      }
+      result.and(versions);
+    }
+
+    List<Browser> matches = new ArrayList<>(result.cardinality());
+    for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+      matches.add(browsers[i]);
+    }
+    return Collections.unmodifiableList(matches);
+  }
+
+  /**
+   * Collects browsers one at a time, eg while a platform listing is being parsed, without keeping
+   * an intermediate list. Browsers sharing a key replace the earlier entry.
+   */
+  public static final class Builder {
+    private final Map<String, Browser> browsers = new LinkedHashMap<>();
+    private boolean built;
+
+    /**
+     * @param browser browser to add
+     * @return this builder
+     */
+    public Builder add(Browser browser) {
+      if (built) {
+        throw new IllegalStateException("Catalog has already been built");
+      }
+      browsers.put(browser.getKey(), browser);
+      return this;
+    }
+
+    /**
+     * @param browsers browsers to add
+     * @return this builder
+     */
+    public Builder addAll(Collection<Browser> browsers) {
+      for (Browser browser : browsers) {
+        add(browser);
+      }
+      return this;
+    }
+
+    /**
+     * @return number of distinct browsers added so far
+     */
+    public int size() {
+      return browsers.size();
+    }
+
+    /**
+     * @return new list with the browsers added so far, in insertion order
+     */
+    public List<Browser> toList() {
+      return new ArrayList<>(browsers.values());
+    }
+
+    /**
+     * @return the snapshot, the builder must not be used afterwards
+     */
+    public BrowserCatalog build() {
+      built = true;
+      return new BrowserCatalog(browsers);
+    }
+  }
+
+  /**
+   * @return false if the criterion is set but no browser has that value
+   */
+  private static boolean intersect(BitSet result, Map<String, BitSet> index, String value) {
+    if (value == null) {
+      return true;
+    }
+    BitSet positions = index.get(value);
+    if (positions == null) {
+      return false;
+    }
+    result.and(positions);
+    return !result.isEmpty();
+  }
+}
@@ -4,13 +4,14 @@ import com.saucelabs.saucerest.DataCenter;
 import com.saucelabs.saucerest.SauceREST;
 import com.saucelabs.saucerest.api.PlatformEndpoint;
 import com.saucelabs.saucerest.model.platform.Platform;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -29,8 +30,8 @@ public class BrowserFactory {
   private SauceREST sauceREST;
 
   private Map<String, Browser> seleniumLookup = new HashMap<>();
-  private Map<String, Browser> appiumLookup = new HashMap<>();
-  private Map<String, Browser> webDriverLookup = new HashMap<>();
+  private volatile BrowserCatalog appiumCatalog = BrowserCatalog.EMPTY;
+  private volatile BrowserCatalog webDriverCatalog = BrowserCatalog.EMPTY;
   protected Timestamp lastLookup = null;
   private static final String IEHTA = "iehta";
   private static final String CHROME = "chrome";
@@ -54,28 +55,83 @@ public class BrowserFactory {
     }
   }
 
+  /**
+   * Returns the appium browsers sorted by name. The list is shared between callers until the next
+   * refresh, so it can't be modified.
+   *
+   * @return unmodifiable sorted list of appium browsers
+   * @throws JSONException Invalid JSON
+   * @throws IOException error retrieving the browsers
+   */
   public List<Browser> getAppiumBrowsers() throws JSONException, IOException {
-    List<Browser> browsers;
+    return getAppiumCatalog().getBrowsers();
+  }
+
+  /**
+   * Returns the web driver browsers sorted by name. The list is shared between callers until the
+   * next refresh, so it can't be modified.
+   *
+   * @return unmodifiable sorted list of web driver browsers
+   * @throws JSONException Invalid JSON
+   * @throws IOException error retrieving the browsers
+   */
+  public List<Browser> getWebDriverBrowsers() throws JSONException, IOException {
+    return getWebDriverCatalog().getBrowsers();
+  }
+
+  /**
+   * Returns the current snapshot of the appium browsers, refreshing it if the cached copy has
+   * expired.
+   *
+   * @return the appium browser catalog
+   * @throws JSONException Invalid JSON
+   * @throws IOException error retrieving the browsers
+   */
+  public BrowserCatalog getAppiumCatalog() throws JSONException, IOException {
     if (shouldRetrieveBrowsers()) {
-      browsers = initializeAppiumBrowsers();
-    } else {
-      browsers = new ArrayList<>(appiumLookup.values());
+      initializeAppiumBrowsers();
     }
-    Collections.sort(browsers);
-
-    return browsers;
+    return appiumCatalog;
   }
 
-  public List<Browser> getWebDriverBrowsers() throws JSONException, IOException {
-    List<Browser> browsers;
+  /**
+   * Returns the current snapshot of the web driver browsers, refreshing it if the cached copy has
+   * expired.
+   *
+   * @return the web driver browser catalog
+   * @throws JSONException Invalid JSON
+   * @throws IOException error retrieving the browsers
+   */
+  public BrowserCatalog getWebDriverCatalog() throws JSONException, IOException {
     if (shouldRetrieveBrowsers()) {
-      browsers = initializeWebDriverBrowsers();
-    } else {
-      browsers = new ArrayList<>(webDriverLookup.values());
+      initializeWebDriverBrowsers();
     }
-    Collections.sort(browsers);
+    return webDriverCatalog;
+  }
 
-    return browsers;
+  /**
+   * Return the appium browsers which match all the criteria of the query.
+   *
+   * @param query the criteria to match
+   * @return the matching appium browsers
+   * @throws JSONException Invalid JSON
+   * @throws IOException error retrieving the browsers
+   */
+  public List<Browser> queryAppiumBrowsers(BrowserQuery query) throws JSONException, IOException {
+    return getAppiumCatalog().query(query);
+  }
+
+  /**
+   * Return the web driver browsers which match all the criteria of the query.
+   *
+   * @param query the criteria to match
+   * @return the matching web driver browsers
+   * @throws JSONException Invalid JSON
+   * @throws IOException error retrieving the browsers
+   */
+  public List<Browser> queryWebDriverBrowsers(BrowserQuery query)
+      throws JSONException, IOException {
+    return getWebDriverCatalog().query(query);
   }
 
   public boolean shouldRetrieveBrowsers() {
@@ -85,20 +141,14 @@ public class BrowserFactory {
 
   private List<Browser> initializeAppiumBrowsers() throws JSONException, IOException {
     List<Browser> browsers = getAppiumBrowsersFromSauceLabs();
-    appiumLookup = new HashMap<>();
-    for (Browser browser : browsers) {
-      appiumLookup.put(browser.getKey(), browser);
-    }
+    appiumCatalog = new BrowserCatalog(browsers);
     lastLookup = new Timestamp(new Date().getTime());
     return browsers;
   }
 
   private List<Browser> initializeWebDriverBrowsers() throws JSONException, IOException {
     List<Browser> browsers = getWebDriverBrowsersFromSauceLabs();
-    webDriverLookup = new HashMap<>();
-    for (Browser browser : browsers) {
-      webDriverLookup.put(browser.getKey(), browser);
-    }
+    webDriverCatalog = new BrowserCatalog(browsers);
     lastLookup = new Timestamp(new Date().getTime());
     return browsers;
   }
@@ -117,28 +167,31 @@ public class BrowserFactory {
 
   public List<Browser> getBrowserListFromPlatforms(List<Platform> platforms) {
     List<Browser> browsers = new ArrayList<Browser>();
+    // share the strings repeated across platforms between all the browsers
+    StringPool pool = new StringPool();
 
     for (Platform platform : platforms) {
-      String seleniumName = platform.apiName;
+      String seleniumName = pool.get(platform.apiName);
 
       if (IEHTA.equals(seleniumName)) {
         // exclude these browsers from the list, as they replicate iexplore and firefox
         continue;
       }
 
-      String longName = platform.longName;
-      String longVersion = platform.longVersion;
-      String shortVersion = platform.shortVersion;
-      String osName = platform.os;
+      String longName = pool.get(platform.longName);
+      String longVersion = pool.get(platform.longVersion);
+      String shortVersion = pool.get(platform.shortVersion);
+      String osName = pool.get(platform.os);
 
       if (platform.device != null && !platform.device.isEmpty()) {
         // Appium
         String device = longName;
         String deviceType = null;
-        osName = platform.apiName; // use api_name instead of os, as os was returning Linux/Mac OS
+        osName = seleniumName; // use api_name instead of os, as os was returning Linux/Mac OS
 
         browsers.add(
             createDeviceBrowser(
+                pool,
                 seleniumName,
                 longName,
                 longVersion,
@@ -149,6 +202,7 @@ public class BrowserFactory {
                 "portrait"));
         browsers.add(
             createDeviceBrowser(
+                pool,
                 seleniumName,
                 longName,
                 longVersion,
@@ -161,8 +215,10 @@ public class BrowserFactory {
       }
 
       // Webdriver
-      browsers.add(createBrowserBrowser(seleniumName, longName, "latest", osName, "latest"));
-      browsers.add(createBrowserBrowser(seleniumName, longName, longVersion, osName, shortVersion));
+      browsers.add(
+          createBrowserBrowser(pool, seleniumName, longName, "latest", osName, "latest"));
+      browsers.add(
+          createBrowserBrowser(pool, seleniumName, longName, longVersion, osName, shortVersion));
     }
 
     return browsers;
@@ -176,91 +232,150 @@ public class BrowserFactory {
    * @throws JSONException Invalid JSON
    */
   public List<Browser> getBrowserListFromJson(String browserListJson) throws JSONException {
-    HashMap<String, Browser> browsers = new HashMap<>();
+    BrowserCatalog.Builder browsers = new BrowserCatalog.Builder();
+    readBrowserListJson(new JSONTokener(browserListJson), browsers);
+    return browsers.toList();
+  }
 
-    JSONArray browserArray = new JSONArray(browserListJson);
-    for (int i = 0; i < browserArray.length(); i++) {
-      JSONObject browserObject = browserArray.getJSONObject(i);
-      // Empty object, not normal use case
-      if (browserObject.length() == 0) {
-        continue;
+  /**
+   * Parses the JSON response as it is read and constructs a {@link BrowserCatalog}. Only one
+   * platform entry of the response is held in memory at a time, so this should be preferred over
+   * {@link #getBrowserListFromJson(String)} for large responses.
+   *
+   * @param browserListJson JSON response with all browsers
+   * @return catalog of the browsers
+   * @throws JSONException Invalid JSON, or an error reading the response
+   */
+  public BrowserCatalog getBrowserCatalogFromJson(Reader browserListJson) throws JSONException {
+    BrowserCatalog.Builder browsers = new BrowserCatalog.Builder();
+    readBrowserListJson(new JSONTokener(browserListJson), browsers);
+    return browsers.build();
+  }
+
+  /**
+   * Reads the platform array one entry at a time, instead of materializing the whole array.
+   *
+   * @param tokener JSON source positioned before the array
+   * @param browsers receives the browsers created for each entry
+   * @throws JSONException Invalid JSON
+   */
+  private void readBrowserListJson(JSONTokener tokener, BrowserCatalog.Builder browsers)
+      throws JSONException {
+    // share the strings repeated across platforms between all the browsers
+    StringPool pool = new StringPool();
+
+    if (tokener.nextClean() != '[') {
+      throw tokener.syntaxError("A JSONArray text must start with '['");
+    }
+    if (tokener.nextClean() == ']') {
+      return;
+    }
+    tokener.back();
+    for (int i = 0; ; i++) {
+      Object value = tokener.nextValue();
+      if (!(value instanceof JSONObject)) {
+        throw new JSONException("JSONArray[" + i + "] is not a JSONObject.");
       }
+      addBrowsersFromJson((JSONObject) value, pool, browsers);
 
-      String seleniumName = browserObject.getString("api_name");
-      if (seleniumName.equals(IEHTA)) {
-        // exclude these browsers from the list, as they replicate iexplore and firefox
-        continue;
+      char next = tokener.nextClean();
+      if (next == ']') {
+        return;
       }
-      if (browserObject.has("device")) {
-        // appium browser
-        String longName = browserObject.getString("long_name");
-        String longVersion = browserObject.getString("long_version");
-        String osName =
-            browserObject.getString(
-                "api_name"); // use api_name instead of os, as os was returning Linux/Mac OS
-        String shortVersion = browserObject.getString("short_version");
-        // set value used for device to be the long name (ie. if device value is 'Nexus7HD', then
-        // actually use 'Google Nexus 7 HD Emulator' ​
-        String device = longName;
+      if (next != ',') {
+        throw tokener.syntaxError("Expected a ',' or ']'");
+      }
+      // trailing comma, accepted by JSONArray as well
+      if (tokener.nextClean() == ']') {
+        return;
+      }
+      tokener.back();
+    }
+  }
 
-        String deviceType = null;
+  private void addBrowsersFromJson(
+      JSONObject browserObject, StringPool pool, BrowserCatalog.Builder browsers)
+      throws JSONException {
+    // Empty object, not normal use case
+    if (browserObject.length() == 0) {
+      return;
+    }
 
-        if (browserObject.has("device-type")) {
-          deviceType = browserObject.getString("device-type");
-        }
-        // iOS devices should include 'Simulator' in the device name (not currently included in the
-        // Sauce REST API response.  The platform should also be set to iOS (as per instructions at
-        // https://docs.saucelabs.com/reference/platforms-configurator
-        if (device.equalsIgnoreCase("ipad") || device.equalsIgnoreCase("iphone")) {
-          device = device + " Simulator";
-          osName = "iOS";
-          // JENKINS-29047 set the browserName to 'Safari'
-          seleniumName = "Safari";
-        }
-        Browser browser;
-        browser =
-            createDeviceBrowser(
-                seleniumName,
-                longName,
-                longVersion,
-                osName,
-                device,
-                deviceType,
-                shortVersion,
-                "portrait");
-        browsers.put(browser.getKey(), browser);
-        browser =
-            createDeviceBrowser(
-                seleniumName,
-                longName,
-                longVersion,
-                osName,
-                device,
-                deviceType,
-                shortVersion,
-                "landscape");
-        browsers.put(browser.getKey(), browser);
-
-      } else {
-        // webdriver/selenium browser
-        String longName = browserObject.getString("long_name");
-        String longVersion = browserObject.getString("long_version");
-        String osName = browserObject.getString("os");
-        String shortVersion = browserObject.getString("short_version");
-
-        Browser browser;
-
-        browser = createBrowserBrowser(seleniumName, longName, "latest", osName, "latest");
-        browsers.put(browser.getKey(), browser);
-        browser = createBrowserBrowser(seleniumName, longName, longVersion, osName, shortVersion);
-        browsers.put(browser.getKey(), browser);
-      }
+    String seleniumName = pool.get(browserObject.getString("api_name"));
+    if (seleniumName.equals(IEHTA)) {
+      // exclude these browsers from the list, as they replicate iexplore and firefox
+      return;
     }
+    if (browserObject.has("device")) {
+      // appium browser
+      String longName = pool.get(browserObject.getString("long_name"));
+      String longVersion = pool.get(browserObject.getString("long_version"));
+      // use api_name instead of os, as os was returning Linux/Mac OS
+      String osName = seleniumName;
+      String shortVersion = pool.get(browserObject.getString("short_version"));
+      // set value used for device to be the long name (ie. if device value is 'Nexus7HD', then
+      // actually use 'Google Nexus 7 HD Emulator' ​
+      String device = longName;
+
+      String deviceType = null;
+
+      if (browserObject.has("device-type")) {
+        deviceType = pool.get(browserObject.getString("device-type"));
+      }
+      // iOS devices should include 'Simulator' in the device name (not currently included in the
+      // Sauce REST API response.  The platform should also be set to iOS (as per instructions at
+      // https://docs.saucelabs.com/reference/platforms-configurator
+      if (device.equalsIgnoreCase("ipad") || device.equalsIgnoreCase("iphone")) {
+        device = pool.get(device + " Simulator");
+        osName = "iOS";
+        // JENKINS-29047 set the browserName to 'Safari'
+        seleniumName = "Safari";
+      }
+      Browser browser;
+      browser =
+          createDeviceBrowser(
+              pool,
+              seleniumName,
+              longName,
+              longVersion,
+              osName,
+              device,
+              deviceType,
+              shortVersion,
+              "portrait");
+      browsers.add(browser);
+      browser =
+          createDeviceBrowser(
+              pool,
+              seleniumName,
+              longName,
+              longVersion,
+              osName,
+              device,
+              deviceType,
+              shortVersion,
+              "landscape");
+      browsers.add(browser);
 
-    return new ArrayList<>(browsers.values());
+    } else {
+      // webdriver/selenium browser
+      String longName = pool.get(browserObject.getString("long_name"));
+      String longVersion = pool.get(browserObject.getString("long_version"));
+      String osName = pool.get(browserObject.getString("os"));
+      String shortVersion = pool.get(browserObject.getString("short_version"));
+
+      Browser browser;
+
+      browser = createBrowserBrowser(pool, seleniumName, longName, "latest", osName, "latest");
+      browsers.add(browser);
+      browser =
+          createBrowserBrowser(pool, seleniumName, longName, longVersion, osName, shortVersion);
+      browsers.add(browser);
+    }
   }
 
   private Browser createDeviceBrowser(
+      StringPool pool,
       String seleniumName,
       String longName,
       String longVersion,
@@ -269,11 +384,8 @@ public class BrowserFactory {
       String deviceType,
       String shortVersion,
       String orientation) {
-    String browserKey = device + orientation + seleniumName + longVersion;
-    // replace any spaces with _s
-    browserKey = browserKey.replaceAll(" ", "_");
-    // replace any . with _
-    browserKey = browserKey.replaceAll("\\.", "_");
+    String browserKey =
+        pool.get(BrowserKeyBuilder.key(device, orientation, seleniumName, longVersion));
     StringBuilder label = new StringBuilder();
     label.append(longName).append(' ');
     if (deviceType != null) {
@@ -290,7 +402,7 @@ public class BrowserFactory {
             longName,
             shortVersion,
             longVersion,
-            label.toString());
+            pool.get(label.toString()));
     browser.setDevice(device);
     browser.setDeviceType(deviceType);
     browser.setDeviceOrientation(orientation);
@@ -298,22 +410,22 @@ public class BrowserFactory {
   }
 
   private Browser createBrowserBrowser(
+      StringPool pool,
       String seleniumName,
       String longName,
       String longVersion,
       String osName,
       String shortVersion) {
-    String browserKey = osName + seleniumName + shortVersion;
-    // replace any spaces with _s
-    browserKey = browserKey.replaceAll(" ", "_");
-    // replace any . with _
-    browserKey = browserKey.replaceAll("\\.", "_");
+    // the "latest" browser is repeated for every version of the platform, so its key and label are
+    // shared by all the entries
+    String browserKey = pool.get(BrowserKeyBuilder.key(osName, seleniumName, shortVersion));
     String label =
-        OperatingSystemDescription.getOperatingSystemName(osName)
-            + " "
-            + longName
-            + " "
-            + shortVersion;
+        pool.get(
+            OperatingSystemDescription.getOperatingSystemName(osName)
+                + " "
+                + longName
+                + " "
+                + shortVersion);
     return new Browser(
         browserKey, osName, seleniumName, longName, shortVersion, longVersion, label);
   }
@@ -361,7 +473,7 @@ public class BrowserFactory {
    * @return the web driver browser which matches the key.
    */
   public Browser webDriverBrowserForKey(String key) {
-    return webDriverLookup.get(key);
+    return webDriverCatalog.get(key);
   }
 
   public Browser webDriverBrowserForKey(String key, boolean useLatestVersion) {
@@ -375,7 +487,7 @@ public class BrowserFactory {
 
   private Browser getLatestWebDriverBrowserVersion(Browser originalBrowser) {
     Browser candidateBrowser = originalBrowser;
-    for (Browser browser : webDriverLookup.values()) {
+    for (Browser browser : webDriverCatalog.asMap().values()) {
 
       try {
         if (browser.getBrowserName().equals(originalBrowser.getBrowserName())
@@ -398,7 +510,7 @@ public class BrowserFactory {
    * @return the appium browser which matches the key.
    */
   public Browser appiumBrowserForKey(String key) {
-    return appiumLookup.get(key);
+    return appiumCatalog.get(key);
   }
 
   /**
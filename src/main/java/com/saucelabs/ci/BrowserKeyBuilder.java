@@ -0,0 +1,71 @@
+package com.saucelabs.ci;
+
+/**
+ * Builds {@link Browser} keys. A key is the concatenation of its parts with spaces and dots
+ * replaced by underscores, eg "Windows 2003", "internet explorer" and "7" become
+ * "Windows_2003internet_explorer7". The replacement is done while the parts are appended, using a
+ * builder which is reused by each thread, so no intermediate strings or regular expressions are
+ * created.
+ *
+ * @author Sauce Labs
+ */
+final class BrowserKeyBuilder {
+
+  private static final ThreadLocal<StringBuilder> BUILDER =
+      ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+  /** Class can't be constructed. */
+  private BrowserKeyBuilder() {}
+
+  static String key(String first, String second, String third) {
+    StringBuilder builder = start();
+    append(builder, first);
+    append(builder, second);
+    append(builder, third);
+    return builder.toString();
+  }
+
+  static String key(String first, String second, String third, String fourth) {
+    StringBuilder builder = start();
+    append(builder, first);
+    append(builder, second);
+    append(builder, third);
+    append(builder, fourth);
+    return builder.toString();
+  }
+
+  /**
+   * Builds a key from parts separated by underscores.
+   *
+   * @param parts key parts, null parts are written as "null"
+   * @return the key
+   */
+  static String joinedKey(String... parts) {
+    StringBuilder builder = start();
+    for (int i = 0; i < parts.length; i++) {
+      if (i > 0) {
+        builder.append('_');
+      }
+      append(builder, parts[i]);
+    }
+    return builder.toString();
+  }
+
+  private static StringBuilder start() {
+    StringBuilder builder = BUILDER.get();
+    builder.setLength(0);
+    return builder;
+  }
+
+  private static void append(StringBuilder builder, String part) {
+    if (part == null) {
+      // same as string concatenation
+      builder.append("null");
+      return;
+    }
+    for (int i = 0; i < part.length(); i++) {
+      char c = part.charAt(i);
+      builder.append(c == ' ' || c == '.' ? '_' : c);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.saucelabs.ci;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+/**
+ * Criteria used to select browsers from a {@link BrowserCatalog}. All the criteria which are set
+ * must match (they are combined with AND), string criteria are compared ignoring case and unset
+ * criteria match every browser.
+ *
+ * <pre>
+ *   new BrowserQuery().os("Windows 11").browserName("chrome").minMajorVersion(118)
+ * </pre>
+ *
+ * @author Sauce Labs
+ */
+public class BrowserQuery {
+
+  private String os;
+  private String browserName;
+  private String device;
+  private String deviceType;
+  private String deviceOrientation;
+  private Integer minMajorVersion;
+  private Integer maxMajorVersion;
+
+  /**
+   * @param os Operating System (eg Windows 11)
+   * @return this query
+   */
+  public BrowserQuery os(@Nullable String os) {
+    this.os = normalize(os);
+    return this;
+  }
+
+  /**
+   * @param browserName Browser Name (eg chrome)
+   * @return this query
+   */
+  public BrowserQuery browserName(@Nullable String browserName) {
+    this.browserName = normalize(browserName);
+    return this;
+  }
+
+  /**
+   * @param device Device name (eg iPhone Simulator)
+   * @return this query
+   */
+  public BrowserQuery device(@Nullable String device) {
+    this.device = normalize(device);
+    return this;
+  }
+
+  /**
+   * @param deviceType Device type (eg tablet)
+   * @return this query
+   */
+  public BrowserQuery deviceType(@Nullable String deviceType) {
+    this.deviceType = normalize(deviceType);
+    return this;
+  }
+
+  /**
+   * @param deviceOrientation Device orientation (portrait or landscape)
+   * @return this query
+   */
+  public BrowserQuery deviceOrientation(@Nullable String deviceOrientation) {
+    this.deviceOrientation = normalize(deviceOrientation);
+    return this;
+  }
+
+  /**
+   * Only match browsers whose major version is at least the given value. Browsers without a
+   * numeric version (eg "latest") never match a version constraint.
+   *
+   * @param minMajorVersion inclusive lower bound, null to remove the bound
+   * @return this query
+   */
+  public BrowserQuery minMajorVersion(@Nullable Integer minMajorVersion) {
+    this.minMajorVersion = minMajorVersion;
+    return this;
+  }
+
+  /**
+   * Only match browsers whose major version is at most the given value. Browsers without a
+   * numeric version (eg "latest") never match a version constraint.
+   *
+   * @param maxMajorVersion inclusive upper bound, null to remove the bound
+   * @return this query
+   */
+  public BrowserQuery maxMajorVersion(@Nullable Integer maxMajorVersion) {
+    this.maxMajorVersion = maxMajorVersion;
+    return this;
+  }
+
+  @Nullable
+  String getOs() {
+    return os;
+  }
+
+  @Nullable
+  String getBrowserName() {
+    return browserName;
+  }
+
+  @Nullable
+  String getDevice() {
+    return device;
+  }
+
+  @Nullable
+  String getDeviceType() {
+    return deviceType;
+  }
+
+  @Nullable
+  String getDeviceOrientation() {
+    return deviceOrientation;
+  }
+
+  @Nullable
+  Integer getMinMajorVersion() {
+    return minMajorVersion;
+  }
+
+  @Nullable
+  Integer getMaxMajorVersion() {
+    return maxMajorVersion;
+  }
+
+  boolean hasVersionConstraint() {
+    return minMajorVersion != null || maxMajorVersion != null;
+  }
+
+  static String normalize(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+  @Override
+  public String toString() {
+    return "BrowserQuery{os="
+        + os
+        + ", browserName="
+        + browserName
+        + ", device="
+        + device
+        + ", deviceType="
+        + deviceType
+        + ", deviceOrientation="
+        + deviceOrientation
+        + ", minMajorVersion="
+        + minMajorVersion
+        + ", maxMajorVersion="
+        + maxMajorVersion
+        + '}';
+  }
+}
@@ -7,6 +7,7 @@ import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import com.saucelabs.saucerest.model.builds.Build;
 
@@ -17,6 +18,37 @@ import com.saucelabs.saucerest.model.builds.Build;
  */
 public class BuildInformation implements Serializable {
 
+  /** Computed from the fields of earlier versions, so their records can still be read. */
+  private static final long serialVersionUID = 959288751692174080L;
+
+  /** Fields whose changes are tracked, see {@link #getChanges()}. */
+  public enum Field {
+    STATUS("status"),
+    NAME("name"),
+    START_TIME("startTime"),
+    END_TIME("endTime"),
+    JOBS_FINISHED("jobsFinished"),
+    JOBS_PASSED("jobsPassed"),
+    JOBS_FAILED("jobsFailed"),
+    JOBS_ERRORED("jobsErrored");
+
+    private final String key;
+
+    Field(String key) {
+      this.key = key;
+    }
+
+    /**
+     * @return name of the field in {@link #getChanges()}
+     */
+    public String getKey() {
+      return key;
+    }
+  }
+
+  /** The tracked fields, a bit per {@link Field} in the change mask. */
+  static final EnumMask<Field> FIELDS = new EnumMask<>(Field.class, Field::getKey);
+
   private String buildId;
 
   private String status;
@@ -30,7 +62,14 @@ public class BuildInformation implements Serializable {
   private int jobsFailed;
   private int jobsErrored;
 
-  private final HashMap<String, Object> changes = new HashMap<>();
+  /** Bit per {@link Field} ordinal, set when the field has been changed. */
+  private transient int changeMask;
+
+  /**
+   * The changes in the serialized form of earlier versions, a value per {@link Field#getKey()}.
+   * Only set in the copy written by {@code writeReplace} and until {@code readResolve}.
+   */
+  private HashMap<String, Object> changes;
 
   /**
    * @param buildId BuildID of the build/test in question
@@ -77,7 +116,7 @@ public class BuildInformation implements Serializable {
    */
   public void setStatus(@Nullable String status) {
     this.status = status;
-    changes.put("status", status);
+    markChanged(Field.STATUS);
   }
 
   /**
@@ -96,7 +135,7 @@ public class BuildInformation implements Serializable {
    */
   public void setStartTime(long startTime) {
     this.startTime = startTime;
-    changes.put("startTime", startTime);
+    markChanged(Field.START_TIME);
   }
 
   /**
@@ -115,7 +154,7 @@ public class BuildInformation implements Serializable {
    */
   public void setEndTime(long endTime) {
     this.endTime = endTime;
-    changes.put("endTime", endTime);
+    markChanged(Field.END_TIME);
   }
 
   /**
@@ -144,7 +183,7 @@ public class BuildInformation implements Serializable {
    */
   public void setName(@Nullable String name) {
     this.name = name;
-    changes.put("name", name);
+    markChanged(Field.NAME);
   }
 
   /**
@@ -163,7 +202,7 @@ public class BuildInformation implements Serializable {
    */
   public void setJobsFinished(int jobsFinished) {
     this.jobsFinished = jobsFinished;
-    changes.put("jobsFinished", jobsFinished);
+    markChanged(Field.JOBS_FINISHED);
   }
 
   /**
@@ -182,7 +221,7 @@ public class BuildInformation implements Serializable {
    */
   public void setJobsPassed(int jobsPassed) {
     this.jobsPassed = jobsPassed;
-    changes.put("jobsPassed", jobsPassed);
+    markChanged(Field.JOBS_PASSED);
   }
 
   /**
@@ -201,7 +240,7 @@ public class BuildInformation implements Serializable {
    */
   public void setJobsFailed(int jobsFailed) {
     this.jobsFailed = jobsFailed;
-    changes.put("jobsFailed", jobsFailed);
+    markChanged(Field.JOBS_FAILED);
   }
 
   /**
@@ -220,7 +259,7 @@ public class BuildInformation implements Serializable {
    */
   public void setJobsErrored(int jobsErrored) {
     this.jobsErrored = jobsErrored;
-    changes.put("jobsErrored", jobsErrored);
+    markChanged(Field.JOBS_ERRORED);
   }
 
   @Override
@@ -241,7 +280,7 @@ public class BuildInformation implements Serializable {
     if (name != null ? !name.equals(that.name) : that.name != null) return false;
     if (startTime != that.startTime) return false;
 
-    return changes != null ? changes.equals(that.changes) : that.changes == null;
+    return changeMask == that.changeMask;
   }
 
   @Override
@@ -249,6 +288,34 @@ public class BuildInformation implements Serializable {
     return buildId != null ? buildId.hashCode() : 0;
   }
 
+  /**
+   * @return a copy to serialize, with the changes as a map like earlier versions
+   */
+  private Object writeReplace() {
+    BuildInformation persisted = new BuildInformation(buildId);
+    persisted.status = status;
+    persisted.name = name;
+    persisted.startTime = startTime;
+    persisted.endTime = endTime;
+    persisted.jobsPassed = jobsPassed;
+    persisted.jobsFinished = jobsFinished;
+    persisted.jobsFailed = jobsFailed;
+    persisted.jobsErrored = jobsErrored;
+    persisted.changes = new HashMap<>(getChanges());
+    return persisted;
+  }
+
+  /**
+   * @return this, with the changes read from the map of the serialized form
+   */
+  private Object readResolve() {
+    if (changes != null) {
+      changeMask |= FIELDS.fromKeys(changes.keySet());
+      changes = null;
+    }
+    return this;
+  }
+
   /**
    * Takes in a JSONObject, and populates the current object with all values Also resets the list of
    * changes
@@ -278,17 +345,49 @@ public class BuildInformation implements Serializable {
     clearChanges();
   }
 
+  private void markChanged(Field field) {
+    changeMask |= EnumMask.bit(field);
+  }
+
   public boolean hasChange(String field) {
-    return changes.containsKey(field);
+    Field changed = FIELDS.forKey(field);
+    return changed != null && hasChange(changed);
+  }
+
+  public boolean hasChange(Field field) {
+    return EnumMask.contains(changeMask, field);
   }
 
   public boolean hasChanges() {
-    return !changes.isEmpty();
+    return changeMask != 0;
+  }
+
+  /**
+   * @return the changed fields, as a bit per {@link Field} ordinal
+   */
+  int getChangeMask() {
+    return changeMask;
+  }
+
+  /**
+   * @param changes the changed fields, as a bit per {@link Field} ordinal
+   */
+  void setChangeMask(int changes) {
+    changeMask = changes;
   }
 
   /** Resets the internal dirty data state */
   public void clearChanges() {
-    changes.clear();
+    changeMask = 0;
+  }
+
+  /**
+   * Get the fields which have been changed
+   *
+   * @return set of the changed fields
+   */
+  public Set<Field> getChangedFields() {
+    return FIELDS.toSet(changeMask);
   }
 
   /**
@@ -297,6 +396,29 @@ public class BuildInformation implements Serializable {
    * @return map of all the changes
    */
   public Map<String, Object> getChanges() {
-    return new HashMap<>(changes);
+    return FIELDS.toMap(changeMask, this::getChangedValue);
+  }
+
+  private Object getChangedValue(Field field) {
+    switch (field) {
+      case STATUS:
+        return status;
+      case NAME:
+        return name;
+      case START_TIME:
+        return startTime;
+      case END_TIME:
+        return endTime;
+      case JOBS_FINISHED:
+        return jobsFinished;
+      case JOBS_PASSED:
+        return jobsPassed;
+      case JOBS_FAILED:
+        return jobsFailed;
+      case JOBS_ERRORED:
+        return jobsErrored;
+      default:
+        throw new IllegalArgumentException("Unknown field " + field);
+    }
   }
 }
@@ -4,9 +4,13 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Stores details about a sauce labs job in builds context These jobs are returned by builds-api v2
@@ -15,6 +19,33 @@ import java.util.Map;
  */
 public class BuildJobInformation implements Serializable {
 
+  /** Computed from the fields of earlier versions, so their records can still be read. */
+  private static final long serialVersionUID = 2692023586995751233L;
+
+  /** Fields whose changes are tracked, see {@link #getChanges()}. */
+  public enum Field {
+    CREATION_TIME("creationTime"),
+    MODIFICATION_TIME("modificationTime"),
+    DELETION_TIME("deletionTime"),
+    STATUS("status");
+
+    private final String key;
+
+    Field(String key) {
+      this.key = key;
+    }
+
+    /**
+     * @return name of the field in {@link #getChanges()}
+     */
+    public String getKey() {
+      return key;
+    }
+  }
+
+  /** The tracked fields, a bit per {@link Field} in the change mask. */
+  static final EnumMask<Field> FIELDS = new EnumMask<>(Field.class, Field::getKey);
+
   public enum JobStatusFlag {
     COMPLETED,
     ERRORED,
@@ -24,18 +55,53 @@ public class BuildJobInformation implements Serializable {
     PASSED,
     PUBLIC,
     QUEUED,
-    RUNNING
+    RUNNING;
+
+    /**
+     * @return bit of the flag in {@link BuildJobInformation#getStatusMask()}
+     */
+    public int mask() {
+      return 1 << ordinal();
+    }
   };
 
+  private static final AtomicIntegerFieldUpdater<BuildJobInformation> STATUS_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(BuildJobInformation.class, "statusMask");
+
+  private static final AtomicIntegerFieldUpdater<BuildJobInformation> CHANGES_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(BuildJobInformation.class, "changeMask");
+
+  private static final JobStatusFlag[] FLAGS = JobStatusFlag.values();
+
   private String jobId;
 
   private long creationTime;
   private long deletionTime;
   private long modificationTime;
 
-  private final EnumSet<JobStatusFlag> status = EnumSet.noneOf(JobStatusFlag.class);
+  /**
+   * Status flags as a bit per {@link JobStatusFlag#mask()}. The value is replaced as a whole on
+   * update, so readers always see a consistent set of flags without locking or copying.
+   */
+  private transient volatile int statusMask;
 
-  private final HashMap<String, Object> changes = new HashMap<>();
+  /**
+   * The status flags in the serialized form of earlier versions. Only set in the copy written by
+   * {@code writeReplace} and until {@code readResolve}.
+   */
+  private EnumSet<JobStatusFlag> status;
+
+  /**
+   * Bit per {@link Field} ordinal, set when the field has been changed. Updated like the status
+   * flags, so concurrent changes are not lost.
+   */
+  private transient volatile int changeMask;
+
+  /**
+   * The changes in the serialized form of earlier versions, a value per {@link Field#getKey()}.
+   * Only set in the copy written by {@code writeReplace} and until {@code readResolve}.
+   */
+  private HashMap<String, Object> changes;
 
   /**
    * @param jobId Id of job in question
@@ -65,7 +131,7 @@ public class BuildJobInformation implements Serializable {
    */
   public void setCreationTime(long creationTime) {
     this.creationTime = creationTime;
-    changes.put("creationTime", creationTime);
+    markChanged(Field.CREATION_TIME);
   }
 
   /**
@@ -84,7 +150,7 @@ public class BuildJobInformation implements Serializable {
    */
   public void setModificationTime(long modificationTime) {
     this.modificationTime = modificationTime;
-    changes.put("modificationTime", modificationTime);
+    markChanged(Field.MODIFICATION_TIME);
   }
 
   /**
@@ -103,7 +169,7 @@ public class BuildJobInformation implements Serializable {
    */
   public void setDeletionTime(long deletionTime) {
     this.deletionTime = deletionTime;
-    changes.put("deletionTime", deletionTime);
+    markChanged(Field.DELETION_TIME);
   }
 
   /**
@@ -121,13 +187,92 @@ public class BuildJobInformation implements Serializable {
    * @return status set of job status flags
    */
   public EnumSet<JobStatusFlag> getStatus() {
-    return this.status.clone();
+    return toFlags(statusMask);
+  }
+
+  /**
+   * Gets the status flags without allocating, eg to test many jobs with {@link #mask}.
+   *
+   * @return the status flags, a bit per {@link JobStatusFlag#mask()}
+   */
+  public int getStatusMask() {
+    return statusMask;
+  }
+
+  /**
+   * @param flag flag to test
+   * @return true if the flag is set
+   */
+  public boolean hasStatusFlag(JobStatusFlag flag) {
+    return (statusMask & flag.mask()) != 0;
+  }
+
+  /**
+   * Replaces all the status flags at once.
+   *
+   * @param flags flags to set, the other flags are cleared
+   */
+  public void setStatus(Set<JobStatusFlag> flags) {
+    int mask = 0;
+    for (JobStatusFlag flag : flags) {
+      mask |= flag.mask();
+    }
+    statusMask = mask;
+    markChanged(Field.STATUS);
   }
 
   private void setStatusFlag(boolean enabled, JobStatusFlag flag) {
-    if (enabled) this.status.add(flag);
-    else this.status.remove(flag);
-    changes.put("status", this.status);
+    int previous;
+    int next;
+    do {
+      previous = statusMask;
+      next = enabled ? previous | flag.mask() : previous & ~flag.mask();
+    } while (!STATUS_UPDATER.compareAndSet(this, previous, next));
+    markChanged(Field.STATUS);
+  }
+
+  /**
+   * @param flags flags to combine
+   * @return mask matching any of the flags, eg to find all the RUNNING or QUEUED jobs
+   */
+  public static int mask(JobStatusFlag... flags) {
+    int mask = 0;
+    for (JobStatusFlag flag : flags) {
+      mask |= flag.mask();
+    }
+    return mask;
+  }
+
+  /**
+   * @param mask status bits, as returned by {@link #getStatusMask()}
+   * @return the flags of the mask
+   */
+  public static EnumSet<JobStatusFlag> toFlags(int mask) {
+    EnumSet<JobStatusFlag> flags = EnumSet.noneOf(JobStatusFlag.class);
+    for (JobStatusFlag flag : FLAGS) {
+      if ((mask & flag.mask()) != 0) {
+        flags.add(flag);
+      }
+    }
+    return flags;
+  }
+
+  /**
+   * Selects the jobs with any of the flags of the mask set.
+   *
+   * @param jobs jobs to select from
+   * @param mask flags to look for, see {@link #mask(JobStatusFlag...)}
+   * @return the matching jobs, in the order of the input
+   */
+  public static List<BuildJobInformation> withAnyStatus(
+      List<BuildJobInformation> jobs, int mask) {
+    List<BuildJobInformation> result = new ArrayList<>();
+    for (BuildJobInformation job : jobs) {
+      if ((job.statusMask & mask) != 0) {
+        result.add(job);
+      }
+    }
+    return result;
   }
 
   /**
@@ -239,9 +384,9 @@ public class BuildJobInformation implements Serializable {
     if (this.creationTime != that.creationTime) return false;
     if (this.modificationTime != that.modificationTime) return false;
     if (this.deletionTime != that.deletionTime) return false;
-    if (this.status != that.status) return false;
+    if (this.statusMask != that.statusMask) return false;
 
-    return changes != null ? changes.equals(that.changes) : that.changes == null;
+    return changeMask == that.changeMask;
   }
 
   @Override
@@ -249,6 +394,37 @@ public class BuildJobInformation implements Serializable {
     return jobId != null ? jobId.hashCode() : 0;
   }
 
+  /**
+   * @return a copy to serialize, with the status flags as a set and the changes as a map like
+   *     earlier versions
+   */
+  private Object writeReplace() {
+    BuildJobInformation persisted = new BuildJobInformation(jobId);
+    persisted.creationTime = creationTime;
+    persisted.deletionTime = deletionTime;
+    persisted.modificationTime = modificationTime;
+    persisted.status = toFlags(statusMask);
+    persisted.changes = new HashMap<>(getChanges());
+    return persisted;
+  }
+
+  /**
+   * @return this, with the status flags and the changes read from the serialized form
+   */
+  private Object readResolve() {
+    if (status != null) {
+      for (JobStatusFlag flag : status) {
+        statusMask |= flag.mask();
+      }
+      status = null;
+    }
+    if (changes != null) {
+      changeMask |= FIELDS.fromKeys(changes.keySet());
+      changes = null;
+    }
+    return this;
+  }
+
   /**
    * Takes in a JSONObject, and populates the current object with all values Also resets the list of
    * changes
@@ -278,17 +454,49 @@ public class BuildJobInformation implements Serializable {
     clearChanges();
   }
 
+  private void markChanged(Field field) {
+    CHANGES_UPDATER.accumulateAndGet(this, EnumMask.bit(field), (changes, bit) -> changes | bit);
+  }
+
   public boolean hasChange(String field) {
-    return changes.containsKey(field);
+    Field changed = FIELDS.forKey(field);
+    return changed != null && hasChange(changed);
+  }
+
+  public boolean hasChange(Field field) {
+    return EnumMask.contains(changeMask, field);
   }
 
   public boolean hasChanges() {
-    return !changes.isEmpty();
+    return changeMask != 0;
+  }
+
+  /**
+   * @return the changed fields, as a bit per {@link Field} ordinal
+   */
+  int getChangeMask() {
+    return changeMask;
+  }
+
+  /**
+   * @param changes the changed fields, as a bit per {@link Field} ordinal
+   */
+  void setChangeMask(int changes) {
+    changeMask = changes;
   }
 
   /** Resets the internal dirty data state */
   public void clearChanges() {
-    changes.clear();
+    changeMask = 0;
+  }
+
+  /**
+   * Get the fields which have been changed
+   *
+   * @return set of the changed fields
+   */
+  public Set<Field> getChangedFields() {
+    return FIELDS.toSet(changeMask);
   }
 
   /**
@@ -297,6 +505,21 @@ public class BuildJobInformation implements Serializable {
    * @return map of all the changes
    */
   public Map<String, Object> getChanges() {
-    return new HashMap<>(changes);
+    return FIELDS.toMap(changeMask, this::getChangedValue);
+  }
+
+  private Object getChangedValue(Field field) {
+    switch (field) {
+      case CREATION_TIME:
+        return creationTime;
+      case MODIFICATION_TIME:
+        return modificationTime;
+      case DELETION_TIME:
+        return deletionTime;
+      case STATUS:
+        return toFlags(statusMask);
+      default:
+        throw new IllegalArgumentException("Unknown field " + field);
+    }
   }
 }
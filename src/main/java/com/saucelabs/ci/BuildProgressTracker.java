@@ -0,0 +1,195 @@
+package com.saucelabs.ci;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Follows the progress of a build across polls. The jobs of the build are kept between polls and
+ * only the jobs modified since the last poll are requested, using the highest modification time
+ * seen so far as a watermark. Modified jobs are applied as deltas to the jobs already known, the
+ * job counters of the {@link BuildInformation} are adjusted incrementally, and listeners are told
+ * about the jobs whose status flags changed.
+ *
+ * @author Sauce Labs
+ */
+public class BuildProgressTracker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BuildProgressTracker.class);
+
+  /** Fetches the jobs of a build, eg from the builds-api v2 jobs listing. */
+  @FunctionalInterface
+  public interface JobFetcher {
+    /**
+     * @param buildId id of the build
+     * @param modifiedSince only jobs with a modification time at or after this value are needed,
+     *     {@link Long#MIN_VALUE} on the first poll
+     * @return the jobs, returning jobs which were not modified is allowed
+     * @throws IOException thrown if the jobs can't be fetched
+     */
+    List<BuildJobInformation> fetchJobs(String buildId, long modifiedSince) throws IOException;
+  }
+
+  /** Notified when the status flags of a job change. */
+  @FunctionalInterface
+  public interface Listener {
+    /**
+     * @param job the job, with its new status
+     * @param previousStatus status flags before the change, empty for a job seen for the first time
+     */
+    void jobStatusChanged(
+        BuildJobInformation job, Set<BuildJobInformation.JobStatusFlag> previousStatus);
+  }
+
+  private final BuildInformation build;
+  private final JobFetcher fetcher;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  private final Map<String, BuildJobInformation> jobs = new LinkedHashMap<>();
+  private long watermark = Long.MIN_VALUE;
+
+  private int jobsPassed;
+  private int jobsFinished;
+  private int jobsFailed;
+  private int jobsErrored;
+
+  /**
+   * @param build the build to follow, its job counters are maintained by the tracker from the first
+   *     poll on
+   * @param fetcher fetches the jobs of the build
+   */
+  public BuildProgressTracker(BuildInformation build, JobFetcher fetcher) {
+    this.build = build;
+    this.fetcher = fetcher;
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @return the build, with the job counters as of the last poll
+   */
+  public BuildInformation getBuild() {
+    return build;
+  }
+
+  /**
+   * @return the jobs known so far, by job id
+   */
+  public synchronized Map<String, BuildJobInformation> getJobs() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(jobs));
+  }
+
+  /**
+   * @return highest modification time seen so far, {@link Long#MIN_VALUE} before the first poll
+   */
+  public synchronized long getWatermark() {
+    return watermark;
+  }
+
+  /**
+   * Fetches the jobs modified since the last poll and applies them.
+   *
+   * @return the jobs whose status flags changed, in the order they were fetched
+   * @throws IOException thrown if the jobs can't be fetched, the snapshot is left unchanged
+   */
+  public synchronized List<BuildJobInformation> poll() throws IOException {
+    List<BuildJobInformation> fetched = fetcher.fetchJobs(build.getBuildId(), watermark);
+    List<BuildJobInformation> changed = new ArrayList<>();
+    List<Set<BuildJobInformation.JobStatusFlag>> previous = new ArrayList<>();
+
+    for (BuildJobInformation update : fetched) {
+      watermark = Math.max(watermark, update.getModificationTime());
+      BuildJobInformation job = jobs.get(update.getJobId());
+      int before;
+      if (job == null) {
+        job = update;
+        jobs.put(job.getJobId(), job);
+        before = 0;
+      } else {
+        before = job.getStatusMask();
+        apply(job, update);
+      }
+
+      int after = job.getStatusMask();
+      if (before != after) {
+        count(before, -1);
+        count(after, 1);
+        changed.add(job);
+        previous.add(Collections.unmodifiableSet(BuildJobInformation.toFlags(before)));
+      }
+    }
+
+    updateCounters();
+    LOGGER.debug(
+        "Build {}: {} jobs fetched, {} changed status",
+        build.getBuildId(),
+        fetched.size(),
+        changed.size());
+    for (int i = 0; i < changed.size(); i++) {
+      for (Listener listener : listeners) {
+        listener.jobStatusChanged(changed.get(i), previous.get(i));
+      }
+    }
+    return changed;
+  }
+
+  /** Copies the fields of the update which differ, so the job only records real changes. */
+  private static void apply(BuildJobInformation job, BuildJobInformation update) {
+    if (job.getCreationTime() != update.getCreationTime()) {
+      job.setCreationTime(update.getCreationTime());
+    }
+    if (job.getModificationTime() != update.getModificationTime()) {
+      job.setModificationTime(update.getModificationTime());
+    }
+    if (job.getDeletionTime() != update.getDeletionTime()) {
+      job.setDeletionTime(update.getDeletionTime());
+    }
+    if (job.getStatusMask() != update.getStatusMask()) {
+      job.setStatus(update.getStatus());
+    }
+  }
+
+  private void count(int status, int delta) {
+    if ((status & BuildJobInformation.JobStatusFlag.PASSED.mask()) != 0) {
+      jobsPassed += delta;
+    }
+    if ((status & BuildJobInformation.JobStatusFlag.FINISHED.mask()) != 0) {
+      jobsFinished += delta;
+    }
+    if ((status & BuildJobInformation.JobStatusFlag.FAILED.mask()) != 0) {
+      jobsFailed += delta;
+    }
+    if ((status & BuildJobInformation.JobStatusFlag.ERRORED.mask()) != 0) {
+      jobsErrored += delta;
+    }
+  }
+
+  private void updateCounters() {
+    if (build.getJobsPassed() != jobsPassed) {
+      build.setJobsPassed(jobsPassed);
+    }
+    if (build.getJobsFinished() != jobsFinished) {
+      build.setJobsFinished(jobsFinished);
+    }
+    if (build.getJobsFailed() != jobsFailed) {
+      build.setJobsFailed(jobsFailed);
+    }
+    if (build.getJobsErrored() != jobsErrored) {
+      build.setJobsErrored(jobsErrored);
+    }
+  }
+}
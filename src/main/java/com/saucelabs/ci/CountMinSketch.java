@@ -0,0 +1,104 @@
+package com.saucelabs.ci;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Count-min sketch: estimates how often strings occur in a stream using a fixed number of
+ * counters. Estimates never undercount and overcount by at most a small fraction of the total
+ * count with high probability. Sketches of the same dimensions combine by adding their counters.
+ *
+ * <p>The rows are indexed by double hashing with the two halves of a 64 bit hash of the UTF-8
+ * bytes of the value, so strings sharing a {@link String#hashCode()} only collide in a row by
+ * chance.
+ *
+ * <p>Instances are not thread safe.
+ *
+ * @author Sauce Labs
+ */
+final class CountMinSketch {
+
+  private final int depth;
+  private final int width;
+  private final long[] counters;
+  private long total;
+
+  /**
+   * @param depth number of hash functions, more reduces the chance of a large error
+   * @param width counters per hash function, more reduces the size of the error
+   */
+  CountMinSketch(int depth, int width) {
+    if (depth < 1 || width < 1) {
+      throw new IllegalArgumentException("Depth and width must be at least 1");
+    }
+    this.depth = depth;
+    this.width = width;
+    this.counters = new long[depth * width];
+  }
+
+  void add(String value) {
+    long hash = hash(value);
+    for (int row = 0; row < depth; row++) {
+      counters[row * width + bucket(hash, row)]++;
+    }
+    total++;
+  }
+
+  /**
+   * @return estimated number of times the value was added, never less than the real count
+   */
+  long estimate(String value) {
+    long hash = hash(value);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters[row * width + bucket(hash, row)]);
+    }
+    return estimate;
+  }
+
+  /**
+   * @return number of values added
+   */
+  long size() {
+    return total;
+  }
+
+  /**
+   * @param other sketch to add to this one, it must have the same dimensions
+   */
+  void merge(CountMinSketch other) {
+    if (other.depth != depth || other.width != width) {
+      throw new IllegalArgumentException("Sketches have different dimensions");
+    }
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] += other.counters[i];
+    }
+    total += other.total;
+  }
+
+  /** Bucket of the row, the low half of the hash is the start and the odd high half the step. */
+  private int bucket(long hash, int row) {
+    long start = hash & 0xffffffffL;
+    long step = (hash >>> 32) | 1;
+    return (int) Long.remainderUnsigned(start + row * step, width);
+  }
+
+  /** 64 bit FNV-1a hash of the UTF-8 bytes of the value, mixed so both halves are uniform. */
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return mix(hash);
+  }
+
+  /** Finalizer of the 64 bit MurmurHash3. */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
@@ -0,0 +1,103 @@
+package com.saucelabs.ci;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Set of the constants of an enum as an {@code int} with a bit per ordinal, used to track the
+ * changed fields of the model classes. Each constant has a key, under which its value is listed in
+ * the changes of the model.
+ *
+ * @param <F> the enum, with at most 32 constants
+ */
+final class EnumMask<F extends Enum<F>> {
+
+  private final Class<F> type;
+  private final F[] constants;
+  private final Function<F, String> key;
+  private final Map<String, F> byKey = new HashMap<>();
+
+  /**
+   * @param type the enum
+   * @param key the key of a constant
+   */
+  EnumMask(Class<F> type, Function<F, String> key) {
+    this.type = type;
+    this.constants = type.getEnumConstants();
+    this.key = key;
+    if (constants.length > Integer.SIZE) {
+      throw new IllegalArgumentException(type + " has more than " + Integer.SIZE + " constants");
+    }
+    for (F constant : constants) {
+      byKey.put(key.apply(constant), constant);
+    }
+  }
+
+  /**
+   * @param key key of a constant
+   * @return the constant, null if no constant has the key
+   */
+  F forKey(String key) {
+    return byKey.get(key);
+  }
+
+  /**
+   * @return the bit of the constant
+   */
+  static int bit(Enum<?> constant) {
+    return 1 << constant.ordinal();
+  }
+
+  /**
+   * @return whether the constant is in the mask
+   */
+  static boolean contains(int mask, Enum<?> constant) {
+    return (mask & bit(constant)) != 0;
+  }
+
+  /**
+   * @param keys keys of constants, unknown keys are ignored
+   * @return the mask of the constants
+   */
+  int fromKeys(Collection<String> keys) {
+    int mask = 0;
+    for (String key : keys) {
+      F constant = forKey(key);
+      if (constant != null) {
+        mask |= bit(constant);
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * @return the constants in the mask
+   */
+  Set<F> toSet(int mask) {
+    EnumSet<F> set = EnumSet.noneOf(type);
+    for (F constant : constants) {
+      if (contains(mask, constant)) {
+        set.add(constant);
+      }
+    }
+    return set;
+  }
+
+  /**
+   * @param value the value of a constant
+   * @return the value of each constant in the mask, by its key
+   */
+  Map<String, Object> toMap(int mask, Function<F, Object> value) {
+    Map<String, Object> map = new HashMap<>();
+    for (F constant : constants) {
+      if (contains(mask, constant)) {
+        map.put(key.apply(constant), value.apply(constant));
+      }
+    }
+    return map;
+  }
+}
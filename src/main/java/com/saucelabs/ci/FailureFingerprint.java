@@ -0,0 +1,108 @@
+package com.saucelabs.ci;
+
+/**
+ * Computes fingerprints of failure messages, so failures which only differ by volatile values
+ * (timestamps, durations, session ids, ports, ...) share a fingerprint. Messages are normalized in
+ * a single pass:
+ *
+ * <ul>
+ *   <li>numbers, and words made of hex digits which contain a digit (such as ids and the parts of
+ *       a uuid), become {@code #}
+ *   <li>in the remaining words, each run of digits becomes {@code #}
+ *   <li>runs of whitespace become a single space, and leading and trailing whitespace is removed
+ * </ul>
+ *
+ * The fingerprint is a 64 bit FNV-1a hash of the normalized message, as 16 hex digits.
+ *
+ * @author Sauce Labs
+ */
+public final class FailureFingerprint {
+
+  /** Class can't be constructed. */
+  private FailureFingerprint() {}
+
+  /**
+   * @param message failure message
+   * @return the message with its volatile values replaced
+   */
+  public static String normalize(String message) {
+    StringBuilder builder = new StringBuilder(message.length());
+    int length = message.length();
+    int i = 0;
+    boolean pendingSpace = false;
+    while (i < length) {
+      char c = message.charAt(i);
+      if (Character.isWhitespace(c)) {
+        pendingSpace = builder.length() > 0;
+        i++;
+        continue;
+      }
+      if (pendingSpace) {
+        builder.append(' ');
+        pendingSpace = false;
+      }
+      if (!Character.isLetterOrDigit(c)) {
+        builder.append(c);
+        i++;
+        continue;
+      }
+
+      int end = i;
+      boolean hasDigit = false;
+      boolean allHex = true;
+      while (end < length && Character.isLetterOrDigit(message.charAt(end))) {
+        char w = message.charAt(end);
+        hasDigit |= w >= '0' && w <= '9';
+        allHex &= Character.digit(w, 16) >= 0;
+        end++;
+      }
+      if (hasDigit && allHex) {
+        builder.append('#');
+      } else if (hasDigit) {
+        appendWithoutDigits(builder, message, i, end);
+      } else {
+        builder.append(message, i, end);
+      }
+      i = end;
+    }
+    return builder.toString();
+  }
+
+  private static void appendWithoutDigits(
+      StringBuilder builder, String message, int start, int end) {
+    boolean inDigits = false;
+    for (int i = start; i < end; i++) {
+      char c = message.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (!inDigits) {
+          builder.append('#');
+          inDigits = true;
+        }
+      } else {
+        builder.append(c);
+        inDigits = false;
+      }
+    }
+  }
+
+  /**
+   * @param message failure message
+   * @return fingerprint of the normalized message
+   */
+  public static String of(String message) {
+    return hash(normalize(message));
+  }
+
+  static String hash(String normalized) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < normalized.length(); i++) {
+      char c = normalized.charAt(i);
+      hash ^= c & 0xff;
+      hash *= 0x100000001b3L;
+      hash ^= c >>> 8;
+      hash *= 0x100000001b3L;
+    }
+    String hex = Long.toHexString(hash);
+    return "0000000000000000".substring(hex.length()) + hex;
+  }
+}
@@ -0,0 +1,141 @@
+package com.saucelabs.ci;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups failed jobs by the {@link FailureFingerprint} of their failure message, so a build where
+ * hundreds of jobs fail with the same stack trace reports a handful of distinct failures. Each
+ * group keeps one sample message and the ids of its jobs; the message of every other job is not
+ * kept.
+ *
+ * <p>Instances are not thread safe.
+ *
+ * @author Sauce Labs
+ */
+public class FailureIndex {
+
+  /** Jobs sharing a failure fingerprint. */
+  public static final class Group {
+    private final String fingerprint;
+    private final String normalizedMessage;
+    private final String sampleMessage;
+    private final List<String> jobIds = new ArrayList<>();
+
+    Group(String fingerprint, String normalizedMessage, String sampleMessage) {
+      this.fingerprint = fingerprint;
+      this.normalizedMessage = normalizedMessage;
+      this.sampleMessage = sampleMessage;
+    }
+
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * @return the message with its volatile values replaced, see {@link
+     *     FailureFingerprint#normalize(String)}
+     */
+    public String getNormalizedMessage() {
+      return normalizedMessage;
+    }
+
+    /**
+     * @return message of the first job added to the group
+     */
+    public String getSampleMessage() {
+      return sampleMessage;
+    }
+
+    /**
+     * @return unmodifiable list of the job ids, in the order they were added
+     */
+    public List<String> getJobIds() {
+      return Collections.unmodifiableList(jobIds);
+    }
+
+    public int size() {
+      return jobIds.size();
+    }
+  }
+
+  private final Map<String, Group> groups = new LinkedHashMap<>();
+  private final Map<String, Group> groupByJobId = new HashMap<>();
+
+  /**
+   * Adds the job if it has a failure message. A job added again is only counted once.
+   *
+   * @param job job to add
+   * @return fingerprint of the failure message, null if the job has none
+   */
+  public String add(JobInformation job) {
+    if (!job.hasFailureMessage()) {
+      return null;
+    }
+    return add(job.getJobId(), job.getFailureMessage());
+  }
+
+  /**
+   * @param jobId id of the job
+   * @param failureMessage failure message of the job
+   * @return fingerprint of the failure message
+   */
+  public String add(String jobId, String failureMessage) {
+    Group existing = groupByJobId.get(jobId);
+    if (existing != null) {
+      return existing.fingerprint;
+    }
+    String normalized = FailureFingerprint.normalize(failureMessage);
+    String fingerprint = FailureFingerprint.hash(normalized);
+    Group group =
+        groups.computeIfAbsent(fingerprint, k -> new Group(k, normalized, failureMessage));
+    group.jobIds.add(jobId);
+    groupByJobId.put(jobId, group);
+    return fingerprint;
+  }
+
+  /**
+   * @param jobs jobs to add
+   */
+  public void addAll(Iterable<JobInformation> jobs) {
+    for (JobInformation job : jobs) {
+      add(job);
+    }
+  }
+
+  /**
+   * @return number of distinct failures
+   */
+  public int size() {
+    return groups.size();
+  }
+
+  /**
+   * @param fingerprint fingerprint of a failure
+   * @return the group, null if no job failed with that fingerprint
+   */
+  public Group getGroup(String fingerprint) {
+    return groups.get(fingerprint);
+  }
+
+  /**
+   * @param jobId id of a job
+   * @return the group of the job, null if the job has not been added
+   */
+  public Group getGroupOfJob(String jobId) {
+    return groupByJobId.get(jobId);
+  }
+
+  /**
+   * @return the groups, largest first, groups of the same size in the order they were created
+   */
+  public List<Group> getGroups() {
+    List<Group> result = new ArrayList<>(groups.values());
+    result.sort((a, b) -> Integer.compare(b.size(), a.size()));
+    return result;
+  }
+}
@@ -0,0 +1,549 @@
+package com.saucelabs.ci;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only local archive of job results, used to answer trend queries across many builds
+ * without fetching the jobs from Sauce Labs again.
+ *
+ * <p>The archive is a directory with three files. {@code jobs.dat} holds a header and one
+ * fixed-width record per job; it is memory mapped, so queries read the records straight from the
+ * page cache. {@code strings.dat} holds the distinct repeated strings (build names, os, browser and
+ * version) which records reference by code; it is small and loaded when the archive is opened.
+ * {@code ids.dat} holds the job ids, which are all distinct, and records reference them by
+ * position; they are only read when a visitor asks for them. An index of the records ordered by
+ * start time is built when the archive is opened and kept up to date on append, so time range
+ * scans only visit matching records.
+ *
+ * <p>The files are locked while the archive is open, so only one archive instance, in this or
+ * another process, appends to them. They are forced to disk every {@value #FORCE_INTERVAL} appends,
+ * by {@link #flush()} and on close, rather than on every append. Records which reference strings
+ * or ids missing after a crash are dropped when the archive is opened.
+ *
+ * @author Sauce Labs
+ */
+public class JobHistoryArchive implements Closeable {
+
+  /** Receives the records of a scan. */
+  @FunctionalInterface
+  public interface Visitor {
+    /**
+     * @param record view of the current record, only valid during the call
+     */
+    void visit(Entry record);
+  }
+
+  private static final int MAGIC = 0x53434a48;
+  private static final int VERSION = 2;
+
+  private static final int HEADER_SIZE = 16;
+  private static final int COUNT_OFFSET = 8;
+
+  // record layout
+  private static final int ID_POSITION = 0;
+  private static final int ID_LENGTH = 8;
+  private static final int BUILD = 12;
+  private static final int OS = 16;
+  private static final int BROWSER = 20;
+  private static final int BROWSER_VERSION = 24;
+  private static final int STATUS = 28;
+  private static final int START_TIME = 32;
+  private static final int END_TIME = 40;
+  static final int RECORD_SIZE = 48;
+
+  /** Number of appends after which the files are forced to disk. */
+  static final int FORCE_INTERVAL = 4096;
+
+  private static final byte STATUS_UNKNOWN = 0;
+  private static final byte STATUS_PASSED = 1;
+  private static final byte STATUS_FAILED = 2;
+
+  private static final int NONE = -1;
+  private static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+  private final FileChannel records;
+  private final FileChannel strings;
+  private final FileChannel ids;
+  private MappedByteBuffer buffer;
+  private int count;
+  private int capacity;
+  private int unforced;
+
+  private final Map<String, Integer> codes = new HashMap<>();
+  private final List<String> dictionary = new ArrayList<>();
+
+  /** Rows ordered by start time, with their start times alongside for binary searches. */
+  private int[] index;
+  private long[] indexTimes;
+
+  private final Entry entry = new Entry();
+
+  /**
+   * Opens the archive in the directory, creating it if needed.
+   *
+   * @param directory directory of the archive
+   * @throws IOException thrown if the archive can't be opened or is not a job archive
+   */
+  public JobHistoryArchive(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    strings =
+        FileChannel.open(
+            directory.resolve("strings.dat"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    ids =
+        FileChannel.open(
+            directory.resolve("ids.dat"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    records =
+        FileChannel.open(
+            directory.resolve("jobs.dat"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      lock(strings);
+      lock(ids);
+      lock(records);
+      loadStrings();
+      ids.position(ids.size());
+      if (records.size() == 0) {
+        map(1024);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(COUNT_OFFSET, 0);
+      } else if (records.size() < HEADER_SIZE) {
+        throw new StreamCorruptedException("Not a job archive");
+      } else {
+        map((int) Math.min((records.size() - HEADER_SIZE) / RECORD_SIZE, MAX_RECORDS));
+        if (buffer.getInt(0) != MAGIC) {
+          throw new StreamCorruptedException("Not a job archive");
+        }
+        if (buffer.getInt(4) != VERSION) {
+          throw new StreamCorruptedException("Unsupported archive version " + buffer.getInt(4));
+        }
+        long stored = buffer.getLong(COUNT_OFFSET);
+        if (stored < 0 || stored > capacity) {
+          throw new StreamCorruptedException("Invalid record count " + stored);
+        }
+        count = validRecords((int) stored);
+        if (count < stored) {
+          buffer.putLong(COUNT_OFFSET, count);
+        }
+      }
+      buildIndex();
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /** Locks a file of the archive for the lifetime of its channel. */
+  private static void lock(FileChannel channel) throws IOException {
+    FileLock lock;
+    try {
+      lock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      throw new IOException("Job archive is already open");
+    }
+  }
+
+  private void loadStrings() throws IOException {
+    ByteBuffer data = ByteBuffer.allocate((int) strings.size());
+    while (data.hasRemaining() && strings.read(data, data.position()) > 0) {
+      // read the whole dictionary
+    }
+    data.flip();
+    int valid = 0;
+    while (data.remaining() >= 4) {
+      int length = data.getInt();
+      if (length < 0 || length > data.remaining()) {
+        break;
+      }
+      byte[] bytes = new byte[length];
+      data.get(bytes);
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      codes.put(value, dictionary.size());
+      dictionary.add(value);
+      valid = data.position();
+    }
+    // drop an entry which was only partially written
+    strings.truncate(valid);
+    strings.position(valid);
+  }
+
+  /**
+   * @return the number of leading records whose strings and ids were written, records appended
+   *     after a crash may reference some which were not
+   */
+  private int validRecords(int stored) throws IOException {
+    long idsSize = ids.size();
+    for (int row = 0; row < stored; row++) {
+      int offset = offset(row);
+      int idLength = buffer.getInt(offset + ID_LENGTH);
+      if (idLength >= 0 && buffer.getLong(offset + ID_POSITION) + idLength > idsSize) {
+        return row;
+      }
+      for (int field = BUILD; field <= BROWSER_VERSION; field += 4) {
+        if (buffer.getInt(offset + field) >= dictionary.size()) {
+          return row;
+        }
+      }
+    }
+    return stored;
+  }
+
+  private void map(int records) throws IOException {
+    capacity = records;
+    buffer =
+        this.records.map(
+            FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+  }
+
+  private void buildIndex() {
+    Integer[] rows = new Integer[count];
+    for (int row = 0; row < count; row++) {
+      rows[row] = row;
+    }
+    Arrays.sort(rows, (a, b) -> Long.compare(startTime(a), startTime(b)));
+    index = new int[Math.max(count, 16)];
+    indexTimes = new long[index.length];
+    for (int i = 0; i < count; i++) {
+      index[i] = rows[i];
+      indexTimes[i] = startTime(rows[i]);
+    }
+  }
+
+  /**
+   * Appends the job to the archive.
+   *
+   * @param job job to archive
+   * @throws IOException thrown if the archive can't be written
+   */
+  public synchronized void append(JobInformation job) throws IOException {
+    ensureOpen();
+    if (count == capacity) {
+      if (capacity == MAX_RECORDS) {
+        throw new IOException("Job archive is full");
+      }
+      map((int) Math.min(Math.max(capacity * 2L, 1024), MAX_RECORDS));
+    }
+    byte status = STATUS_UNKNOWN;
+    if ("Passed".equals(job.getStatus())) {
+      status = STATUS_PASSED;
+    } else if ("Failed".equals(job.getStatus())) {
+      status = STATUS_FAILED;
+    }
+
+    int offset = offset(count);
+    String id = job.getJobId();
+    if (id == null) {
+      buffer.putLong(offset + ID_POSITION, 0);
+      buffer.putInt(offset + ID_LENGTH, NONE);
+    } else {
+      ByteBuffer bytes = ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+      buffer.putLong(offset + ID_POSITION, ids.position());
+      buffer.putInt(offset + ID_LENGTH, bytes.remaining());
+      while (bytes.hasRemaining()) {
+        ids.write(bytes);
+      }
+    }
+    buffer.putInt(offset + BUILD, code(job.getBuild()));
+    buffer.putInt(offset + OS, code(job.getOs()));
+    buffer.putInt(offset + BROWSER, code(job.getBrowser()));
+    buffer.putInt(offset + BROWSER_VERSION, code(job.getVersion()));
+    buffer.put(offset + STATUS, status);
+    buffer.putLong(offset + START_TIME, job.getStartTime());
+    buffer.putLong(offset + END_TIME, job.getEndTime());
+    // the record only becomes visible once the count includes it
+    buffer.putLong(COUNT_OFFSET, count + 1L);
+    addToIndex(count, job.getStartTime());
+    count++;
+    if (++unforced == FORCE_INTERVAL) {
+      force();
+    }
+  }
+
+  private void addToIndex(int row, long startTime) {
+    if (count == index.length) {
+      index = Arrays.copyOf(index, count * 2);
+      indexTimes = Arrays.copyOf(indexTimes, count * 2);
+    }
+    // jobs are usually archived in start order, so this is normally the last position
+    int position = count;
+    while (position > 0 && indexTimes[position - 1] > startTime) {
+      position--;
+    }
+    System.arraycopy(index, position, index, position + 1, count - position);
+    System.arraycopy(indexTimes, position, indexTimes, position + 1, count - position);
+    index[position] = row;
+    indexTimes[position] = startTime;
+  }
+
+  private int code(String value) throws IOException {
+    if (value == null) {
+      return NONE;
+    }
+    Integer code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+    entry.putInt(bytes.length).put(bytes).flip();
+    while (entry.hasRemaining()) {
+      strings.write(entry);
+    }
+    code = dictionary.size();
+    codes.put(value, code);
+    dictionary.add(value);
+    return code;
+  }
+
+  /**
+   * @return number of archived jobs
+   */
+  public synchronized int size() {
+    return count;
+  }
+
+  /**
+   * Visits the jobs which started in the range, in start time order.
+   *
+   * @param from start of the range, inclusive
+   * @param to end of the range, exclusive
+   * @param visitor receives the jobs
+   */
+  public synchronized void scan(long from, long to, Visitor visitor) {
+    ensureOpen();
+    for (int i = lowerBound(from); i < count && indexTimes[i] < to; i++) {
+      entry.row = index[i];
+      visitor.visit(entry);
+    }
+  }
+
+  /**
+   * Computes the average duration of the matching jobs of the most recent builds, eg how long
+   * Chrome on Windows took over the last 500 builds.
+   *
+   * @param os os of the jobs, null for any
+   * @param browser browser of the jobs, null for any
+   * @param builds maximum number of builds
+   * @return average duration in seconds of the finished matching jobs by build, oldest build first
+   */
+  public synchronized Map<String, Double> getDurationTrend(String os, String browser, int builds) {
+    ensureOpen();
+    int osCode = os != null ? codes.getOrDefault(os, NONE) : NONE;
+    int browserCode = browser != null ? codes.getOrDefault(browser, NONE) : NONE;
+    if ((os != null && osCode == NONE) || (browser != null && browserCode == NONE)) {
+      return Collections.emptyMap();
+    }
+
+    // selects the most recent builds by their code first, then sums all their jobs, as the jobs
+    // of a build may start after those of the next build
+    // build code to {total duration, jobs}, newest build first
+    Map<Integer, long[]> totals = new LinkedHashMap<>();
+    for (int i = count - 1; i >= 0 && totals.size() < builds; i--) {
+      int offset = offset(index[i]);
+      if (isFinishedMatch(offset, os != null, osCode, browser != null, browserCode)) {
+        totals.putIfAbsent(buffer.getInt(offset + BUILD), new long[2]);
+      }
+    }
+    for (int row = 0; row < count; row++) {
+      int offset = offset(row);
+      if (!isFinishedMatch(offset, os != null, osCode, browser != null, browserCode)) {
+        continue;
+      }
+      long[] total = totals.get(buffer.getInt(offset + BUILD));
+      if (total != null) {
+        total[0] += buffer.getLong(offset + END_TIME) - buffer.getLong(offset + START_TIME);
+        total[1]++;
+      }
+    }
+
+    List<Map.Entry<Integer, long[]>> newestFirst = new ArrayList<>(totals.entrySet());
+    Map<String, Double> trend = new LinkedHashMap<>();
+    for (int i = newestFirst.size() - 1; i >= 0; i--) {
+      long[] total = newestFirst.get(i).getValue();
+      trend.put(dictionary.get(newestFirst.get(i).getKey()), (double) total[0] / total[1]);
+    }
+    return trend;
+  }
+
+  /** Whether the record at the offset is a finished job of a build, on the os and browser. */
+  private boolean isFinishedMatch(
+      int offset, boolean byOs, int osCode, boolean byBrowser, int browserCode) {
+    if ((byOs && buffer.getInt(offset + OS) != osCode)
+        || (byBrowser && buffer.getInt(offset + BROWSER) != browserCode)) {
+      return false;
+    }
+    long start = buffer.getLong(offset + START_TIME);
+    long end = buffer.getLong(offset + END_TIME);
+    return buffer.getInt(offset + BUILD) != NONE && end != 0 && end >= start;
+  }
+
+  /**
+   * Writes the archived jobs to disk.
+   *
+   * @throws IOException thrown if the strings or ids can't be written
+   */
+  public synchronized void flush() throws IOException {
+    ensureOpen();
+    force();
+  }
+
+  /** Forces the strings and ids first, so the records on disk reference written ones. */
+  private void force() throws IOException {
+    strings.force(false);
+    ids.force(false);
+    buffer.force();
+    unforced = 0;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (buffer != null) {
+        force();
+        buffer = null;
+      }
+    } finally {
+      try {
+        strings.close();
+      } finally {
+        try {
+          ids.close();
+        } finally {
+          records.close();
+        }
+      }
+    }
+  }
+
+  private void ensureOpen() {
+    if (buffer == null) {
+      throw new IllegalStateException("Archive is closed");
+    }
+  }
+
+  private int lowerBound(long time) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (indexTimes[middle] < time) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static int offset(int row) {
+    return HEADER_SIZE + row * RECORD_SIZE;
+  }
+
+  private long startTime(int row) {
+    return buffer.getLong(offset(row) + START_TIME);
+  }
+
+  /** View of an archived job, reading its fields from the mapped file. */
+  public final class Entry {
+    private int row;
+
+    private Entry() {}
+
+    private String string(int field) {
+      int code = buffer.getInt(offset(row) + field);
+      return code == NONE ? null : dictionary.get(code);
+    }
+
+    /**
+     * @throws UncheckedIOException thrown if the id can't be read
+     */
+    public String getJobId() {
+      int offset = offset(row);
+      int length = buffer.getInt(offset + ID_LENGTH);
+      if (length == NONE) {
+        return null;
+      }
+      long position = buffer.getLong(offset + ID_POSITION);
+      ByteBuffer bytes = ByteBuffer.allocate(length);
+      try {
+        while (bytes.hasRemaining()) {
+          if (ids.read(bytes, position + bytes.position()) < 0) {
+            throw new EOFException("Missing id of job " + row);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    public String getBuild() {
+      return string(BUILD);
+    }
+
+    public String getOs() {
+      return string(OS);
+    }
+
+    public String getBrowser() {
+      return string(BROWSER);
+    }
+
+    public String getVersion() {
+      return string(BROWSER_VERSION);
+    }
+
+    /**
+     * @return "Passed", "Failed" or null, as {@link JobInformation#getStatus()}
+     */
+    public String getStatus() {
+      switch (buffer.get(offset(row) + STATUS)) {
+        case STATUS_PASSED:
+          return "Passed";
+        case STATUS_FAILED:
+          return "Failed";
+        default:
+          return null;
+      }
+    }
+
+    public long getStartTime() {
+      return buffer.getLong(offset(row) + START_TIME);
+    }
+
+    public long getEndTime() {
+      return buffer.getLong(offset(row) + END_TIME);
+    }
+  }
+}
@@ -9,6 +9,7 @@ import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Stores details about a sauce labs job/test
@@ -17,6 +18,40 @@ import java.util.Map;
  */
 public class JobInformation implements Serializable {
 
+  /** Computed from the fields of earlier versions, so their records can still be read. */
+  private static final long serialVersionUID = -5340445210726530817L;
+
+  /** Fields whose changes are tracked, see {@link #getChanges()}. */
+  public enum Field {
+    STATUS("status"),
+    NAME("name"),
+    BUILD("build"),
+    BROWSER("browser"),
+    OS("os"),
+    VERSION("version"),
+    START_TIME("startTime"),
+    END_TIME("endTime"),
+    VIDEO_URL("videoUrl"),
+    LOG_URL("logUrl"),
+    FAILURE_MESSAGE("failureMessage");
+
+    private final String key;
+
+    Field(String key) {
+      this.key = key;
+    }
+
+    /**
+     * @return name of the field in {@link #getChanges()}
+     */
+    public String getKey() {
+      return key;
+    }
+  }
+
+  /** The tracked fields, a bit per {@link Field} in the change mask. */
+  static final EnumMask<Field> FIELDS = new EnumMask<>(Field.class, Field::getKey);
+
   private String jobId;
 
   private String hmac;
@@ -36,7 +71,14 @@ public class JobInformation implements Serializable {
 
   private String failureMessage;
 
-  private final HashMap<String, Object> changes = new HashMap<>();
+  /** Bit per {@link Field} ordinal, set when the field has been changed. */
+  private transient int changeMask;
+
+  /**
+   * The changes in the serialized form of earlier versions, a value per {@link Field#getKey()}.
+   * Only set in the copy written by {@code writeReplace} and until {@code readResolve}.
+   */
+  private HashMap<String, Object> changes;
 
   /**
    * @param jobId JobID of the job/test in question
@@ -100,7 +142,7 @@ public class JobInformation implements Serializable {
    */
   public void setStatus(@Nullable String status) {
     this.status = status;
-    changes.put("status", status);
+    markChanged(Field.STATUS);
   }
 
   /**
@@ -129,7 +171,7 @@ public class JobInformation implements Serializable {
    */
   public void setName(@Nullable String name) {
     this.name = name;
-    changes.put("name", name);
+    markChanged(Field.NAME);
   }
 
   /**
@@ -158,7 +200,7 @@ public class JobInformation implements Serializable {
    */
   public void setBuild(@Nullable String build) {
     this.build = build;
-    changes.put("build", build);
+    markChanged(Field.BUILD);
   }
 
   /**
@@ -177,7 +219,7 @@ public class JobInformation implements Serializable {
    */
   public void setBrowser(String browser) {
     this.browser = browser;
-    changes.put("browser", browser);
+    markChanged(Field.BROWSER);
   }
 
   /**
@@ -189,6 +231,13 @@ public class JobInformation implements Serializable {
     return OperatingSystemDescription.getOperatingSystemName(os);
   }
 
+  /**
+   * @return os as it was set, before normalization
+   */
+  String getRawOs() {
+    return os;
+  }
+
   /**
    * set os
    *
@@ -196,7 +245,7 @@ public class JobInformation implements Serializable {
    */
   public void setOs(String os) {
     this.os = os;
-    changes.put("os", os);
+    markChanged(Field.OS);
   }
 
   /**
@@ -215,7 +264,7 @@ public class JobInformation implements Serializable {
    */
   public void setVersion(String version) {
     this.version = version;
-    changes.put("version", version);
+    markChanged(Field.VERSION);
   }
 
   /**
@@ -225,7 +274,7 @@ public class JobInformation implements Serializable {
    */
   public void setStartTime(long startTime) {
     this.startTime = startTime;
-    changes.put("startTime", startTime);
+    markChanged(Field.START_TIME);
   }
 
   /**
@@ -244,7 +293,7 @@ public class JobInformation implements Serializable {
    */
   public void setEndTime(long endTime) {
     this.endTime = endTime;
-    changes.put("endTime", endTime);
+    markChanged(Field.END_TIME);
   }
 
   /**
@@ -287,7 +336,7 @@ public class JobInformation implements Serializable {
         : that.failureMessage != null) return false;
     if (startTime != that.startTime) return false;
     if (endTime != that.endTime) return false;
-    return changes != null ? changes.equals(that.changes) : that.changes == null;
+    return changeMask == that.changeMask;
   }
 
   @Override
@@ -295,9 +344,40 @@ public class JobInformation implements Serializable {
     return jobId != null ? jobId.hashCode() : 0;
   }
 
+  /**
+   * @return a copy to serialize, with the changes as a map like earlier versions
+   */
+  private Object writeReplace() {
+    JobInformation persisted = new JobInformation(jobId, hmac);
+    persisted.status = status;
+    persisted.name = name;
+    persisted.os = os;
+    persisted.browser = browser;
+    persisted.version = version;
+    persisted.videoUrl = videoUrl;
+    persisted.logUrl = logUrl;
+    persisted.build = build;
+    persisted.startTime = startTime;
+    persisted.endTime = endTime;
+    persisted.failureMessage = failureMessage;
+    persisted.changes = new HashMap<>(getChanges());
+    return persisted;
+  }
+
+  /**
+   * @return this, with the changes read from the map of the serialized form
+   */
+  private Object readResolve() {
+    if (changes != null) {
+      changeMask |= FIELDS.fromKeys(changes.keySet());
+      changes = null;
+    }
+    return this;
+  }
+
   public void setVideoUrl(String videoUrl) {
     this.videoUrl = videoUrl;
-    changes.put("videoUrl", videoUrl);
+    markChanged(Field.VIDEO_URL);
   }
 
   public String getVideoUrl() {
@@ -306,7 +386,7 @@ public class JobInformation implements Serializable {
 
   public void setLogUrl(String logUrl) {
     this.logUrl = logUrl;
-    changes.put("logUrl", logUrl);
+    markChanged(Field.LOG_URL);
   }
 
   public String getLogUrl() {
@@ -315,7 +395,7 @@ public class JobInformation implements Serializable {
 
   public void setFailureMessage(String failureMessage) {
     this.failureMessage = failureMessage;
-    changes.put("failureMessage", failureMessage);
+    markChanged(Field.FAILURE_MESSAGE);
   }
 
   @Nullable
@@ -324,6 +404,14 @@ public class JobInformation implements Serializable {
   }
 
   public boolean hasFailureMessage() {
+    return isFailureMessage(failureMessage);
+  }
+
+  /**
+   * @param failureMessage failure message of a job
+   * @return false if the job has no failure message, which is stored as "" or "null"
+   */
+  static boolean isFailureMessage(String failureMessage) {
     return failureMessage != null && !failureMessage.equals("") && !failureMessage.equals("null");
   }
 
@@ -412,17 +500,49 @@ public class JobInformation implements Serializable {
     clearChanges();
   }
 
+  private void markChanged(Field field) {
+    changeMask |= EnumMask.bit(field);
+  }
+
   public boolean hasChange(String field) {
-    return changes.containsKey(field);
+    Field changed = FIELDS.forKey(field);
+    return changed != null && hasChange(changed);
+  }
+
+  public boolean hasChange(Field field) {
+    return EnumMask.contains(changeMask, field);
   }
 
   public boolean hasChanges() {
-    return !changes.isEmpty();
+    return changeMask != 0;
+  }
+
+  /**
+   * @return the changed fields, as a bit per {@link Field} ordinal
+   */
+  int getChangeMask() {
+    return changeMask;
+  }
+
+  /**
+   * @param changes the changed fields, as a bit per {@link Field} ordinal
+   */
+  void setChangeMask(int changes) {
+    changeMask = changes;
   }
 
   /** Resets the internal dirty data state */
   public void clearChanges() {
-    changes.clear();
+    changeMask = 0;
+  }
+
+  /**
+   * Get the fields which have been changed
+   *
+   * @return set of the changed fields
+   */
+  public Set<Field> getChangedFields() {
+    return FIELDS.toSet(changeMask);
   }
 
   /**
@@ -431,6 +551,35 @@ public class JobInformation implements Serializable {
    * @return map of all the changes
    */
   public Map<String, Object> getChanges() {
-    return new HashMap<>(changes);
+    return FIELDS.toMap(changeMask, this::getChangedValue);
+  }
+
+  private Object getChangedValue(Field field) {
+    switch (field) {
+      case STATUS:
+        return status;
+      case NAME:
+        return name;
+      case BUILD:
+        return build;
+      case BROWSER:
+        return browser;
+      case OS:
+        return os;
+      case VERSION:
+        return version;
+      case START_TIME:
+        return startTime;
+      case END_TIME:
+        return endTime;
+      case VIDEO_URL:
+        return videoUrl;
+      case LOG_URL:
+        return logUrl;
+      case FAILURE_MESSAGE:
+        return failureMessage;
+      default:
+        throw new IllegalArgumentException("Unknown field " + field);
+    }
   }
 }
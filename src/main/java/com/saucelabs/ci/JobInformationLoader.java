@@ -0,0 +1,109 @@
+package com.saucelabs.ci;
+
+import com.saucelabs.saucerest.model.jobs.Job;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds {@link JobInformation} instances for many jobs at once, eg all the jobs of a build. The
+ * jobs are populated in parallel on a fork-join pool and come back without any recorded changes,
+ * keyed by job id.
+ *
+ * @author Sauce Labs
+ */
+public class JobInformationLoader {
+
+  private final ForkJoinPool pool;
+
+  /** Populates the jobs on the common fork-join pool. */
+  public JobInformationLoader() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param pool pool the jobs are populated on
+   */
+  public JobInformationLoader(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * @param jobs SauceREST jobs
+   * @param hmac provides the temporary authentication token of a job id
+   * @return the populated jobs by job id, in the order of the input. A later job replaces an earlier
+   *     job with the same id.
+   */
+  public Map<String, JobInformation> load(Collection<Job> jobs, Function<String, String> hmac) {
+    return load(jobs.stream(), hmac);
+  }
+
+  /**
+   * @param jobs SauceREST jobs
+   * @param hmac provides the temporary authentication token of a job id
+   * @return the populated jobs by job id, in the order of the input. A later job replaces an earlier
+   *     job with the same id.
+   */
+  public Map<String, JobInformation> load(Stream<Job> jobs, Function<String, String> hmac) {
+    return load(jobs, job -> job.id, JobInformation::populate, hmac);
+  }
+
+  /**
+   * @param jobs JSON data of the jobs, as returned by the jobs API
+   * @param hmac provides the temporary authentication token of a job id
+   * @return the populated jobs by job id, in the order of the input. A later job replaces an earlier
+   *     job with the same id.
+   * @throws JSONException thrown if a job can't be read
+   */
+  public Map<String, JobInformation> loadFromJson(
+      Collection<JSONObject> jobs, Function<String, String> hmac) throws JSONException {
+    return loadFromJson(jobs.stream(), hmac);
+  }
+
+  /**
+   * @param jobs JSON data of the jobs, as returned by the jobs API
+   * @param hmac provides the temporary authentication token of a job id
+   * @return the populated jobs by job id, in the order of the input. A later job replaces an earlier
+   *     job with the same id.
+   * @throws JSONException thrown if a job can't be read
+   */
+  public Map<String, JobInformation> loadFromJson(
+      Stream<JSONObject> jobs, Function<String, String> hmac) throws JSONException {
+    return load(jobs, json -> json.getString("id"), JobInformation::populateFromJson, hmac);
+  }
+
+  private <T> Map<String, JobInformation> load(
+      Stream<T> jobs,
+      Function<T, String> id,
+      BiConsumer<JobInformation, T> populate,
+      Function<String, String> hmac) {
+    // a parallel stream started from inside the pool runs its tasks on that pool
+    return pool.invoke(
+        ForkJoinTask.adapt(
+            () ->
+                jobs.parallel()
+                    .map(
+                        job -> {
+                          String jobId = id.apply(job);
+                          JobInformation information =
+                              new JobInformation(jobId, hmac.apply(jobId));
+                          populate.accept(information, job);
+                          return information;
+                        })
+                    .collect(
+                        Collectors.toMap(
+                            JobInformation::getJobId,
+                            Function.identity(),
+                            (first, second) -> second,
+                            LinkedHashMap::new))));
+  }
+}
@@ -0,0 +1,421 @@
+package com.saucelabs.ci;
+
+import com.saucelabs.saucerest.model.jobs.Job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented store of job results for reporting over large builds. Each field is kept in a
+ * primitive array indexed by row, and repeated strings (os, browser, version and failure messages)
+ * are stored once in a dictionary and referenced by code, so a row costs a few dozen bytes and the
+ * aggregations are loops over arrays.
+ *
+ * <p>Instances are not thread safe.
+ *
+ * @author Sauce Labs
+ */
+public class JobResultStore {
+
+  /** Columns the results can be grouped by. */
+  public enum Dimension {
+    OS,
+    BROWSER,
+    VERSION
+  }
+
+  /** Job counts of a group of results. */
+  public static final class Counts {
+    private final int passed;
+    private final int failed;
+    private final int unknown;
+
+    Counts(int passed, int failed, int unknown) {
+      this.passed = passed;
+      this.failed = failed;
+      this.unknown = unknown;
+    }
+
+    public int getPassed() {
+      return passed;
+    }
+
+    public int getFailed() {
+      return failed;
+    }
+
+    /**
+     * @return number of jobs without a passed/failed status
+     */
+    public int getUnknown() {
+      return unknown;
+    }
+
+    public int getTotal() {
+      return passed + failed + unknown;
+    }
+
+    /**
+     * @return passed jobs divided by the jobs with a status, 0 if no job has a status
+     */
+    public double getPassRate() {
+      int withStatus = passed + failed;
+      return withStatus == 0 ? 0 : (double) passed / withStatus;
+    }
+
+    @Override
+    public String toString() {
+      return "passed=" + passed + ", failed=" + failed + ", unknown=" + unknown;
+    }
+  }
+
+  private static final byte STATUS_UNKNOWN = 0;
+  private static final byte STATUS_PASSED = 1;
+  private static final byte STATUS_FAILED = 2;
+
+  /** Code of absent strings. */
+  private static final int NONE = -1;
+
+  private final Dictionary osDictionary = new Dictionary();
+  private final Dictionary browserDictionary = new Dictionary();
+  private final Dictionary versionDictionary = new Dictionary();
+  private final Dictionary failureDictionary = new Dictionary();
+
+  private int size;
+  private String[] ids;
+  private byte[] status;
+  private int[] os;
+  private int[] browser;
+  private int[] version;
+  private int[] failure;
+  private long[] startTime;
+  private long[] endTime;
+
+  public JobResultStore() {
+    this(16);
+  }
+
+  /**
+   * @param expectedSize number of jobs the store is sized for, it grows as needed
+   */
+  public JobResultStore(int expectedSize) {
+    int capacity = Math.max(expectedSize, 1);
+    ids = new String[capacity];
+    status = new byte[capacity];
+    os = new int[capacity];
+    browser = new int[capacity];
+    version = new int[capacity];
+    failure = new int[capacity];
+    startTime = new long[capacity];
+    endTime = new long[capacity];
+  }
+
+  /**
+   * @param job job to add
+   */
+  public void add(JobInformation job) {
+    byte jobStatus = STATUS_UNKNOWN;
+    if ("Passed".equals(job.getStatus())) {
+      jobStatus = STATUS_PASSED;
+    } else if ("Failed".equals(job.getStatus())) {
+      jobStatus = STATUS_FAILED;
+    }
+    add(
+        job.getJobId(),
+        jobStatus,
+        job.getOs(),
+        job.getBrowser(),
+        job.getVersion(),
+        job.hasFailureMessage() ? job.getFailureMessage() : null,
+        job.getStartTime(),
+        job.getEndTime());
+  }
+
+  /**
+   * @param job SauceREST job to add
+   */
+  public void add(Job job) {
+    byte jobStatus = STATUS_UNKNOWN;
+    if (job.passed != null) {
+      jobStatus = job.passed ? STATUS_PASSED : STATUS_FAILED;
+    }
+    String failureMessage = job.customData != null ? job.customData.get("FAILURE_MESSAGE") : null;
+    if (!JobInformation.isFailureMessage(failureMessage)) {
+      // filtered like JobInformation#hasFailureMessage
+      failureMessage = null;
+    }
+    add(
+        job.id,
+        jobStatus,
+        // normalized like JobInformation#getOs, so both kinds of jobs are grouped together
+        OperatingSystemDescription.getOperatingSystemName(job.os),
+        job.browser,
+        job.browserShortVersion,
+        failureMessage,
+        job.startTime != null ? job.startTime : 0,
+        job.endTime != null ? job.endTime : 0);
+  }
+
+  /**
+   * @param jobs jobs to add
+   */
+  public void addAll(Iterable<JobInformation> jobs) {
+    for (JobInformation job : jobs) {
+      add(job);
+    }
+  }
+
+  private void add(
+      String id,
+      byte jobStatus,
+      String jobOs,
+      String jobBrowser,
+      String jobVersion,
+      String failureMessage,
+      long start,
+      long end) {
+    if (size == ids.length) {
+      grow();
+    }
+    ids[size] = id;
+    status[size] = jobStatus;
+    os[size] = osDictionary.code(jobOs);
+    browser[size] = browserDictionary.code(jobBrowser);
+    version[size] = versionDictionary.code(jobVersion);
+    failure[size] = failureDictionary.code(failureMessage);
+    startTime[size] = start;
+    endTime[size] = end;
+    size++;
+  }
+
+  private void grow() {
+    int capacity = ids.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    status = Arrays.copyOf(status, capacity);
+    os = Arrays.copyOf(os, capacity);
+    browser = Arrays.copyOf(browser, capacity);
+    version = Arrays.copyOf(version, capacity);
+    failure = Arrays.copyOf(failure, capacity);
+    startTime = Arrays.copyOf(startTime, capacity);
+    endTime = Arrays.copyOf(endTime, capacity);
+  }
+
+  /**
+   * @return number of jobs in the store
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param row row of the job, between 0 and {@link #size()}
+   * @return id of the job
+   */
+  public String getJobId(int row) {
+    checkRow(row);
+    return ids[row];
+  }
+
+  /**
+   * @param row row of the job, between 0 and {@link #size()}
+   * @return duration of the job in seconds, -1 if it has not finished
+   */
+  public long getDuration(int row) {
+    checkRow(row);
+    return duration(row);
+  }
+
+  private long duration(int row) {
+    long end = endTime[row];
+    long start = startTime[row];
+    return end == 0 || end < start ? -1 : end - start;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+    }
+  }
+
+  /**
+   * @return counts of all the jobs
+   */
+  public Counts getCounts() {
+    int passed = 0;
+    int failed = 0;
+    for (int row = 0; row < size; row++) {
+      byte value = status[row];
+      if (value == STATUS_PASSED) {
+        passed++;
+      } else if (value == STATUS_FAILED) {
+        failed++;
+      }
+    }
+    return new Counts(passed, failed, size - passed - failed);
+  }
+
+  /**
+   * Counts the jobs per value of a column, eg the pass rate per browser. Jobs without a value are
+   * left out.
+   *
+   * @param dimension column to group by
+   * @return counts by column value, in the order the values were first added
+   */
+  public Map<String, Counts> getCountsBy(Dimension dimension) {
+    Dictionary dictionary = dictionary(dimension);
+    int[] codes = column(dimension);
+    int groups = dictionary.size();
+    // one slot per group and status, so the loop needs no lookups
+    int[] counts = new int[groups * 3];
+    for (int row = 0; row < size; row++) {
+      int code = codes[row];
+      if (code != NONE) {
+        counts[code * 3 + status[row]]++;
+      }
+    }
+
+    Map<String, Counts> result = new LinkedHashMap<>();
+    for (int code = 0; code < groups; code++) {
+      result.put(
+          dictionary.value(code),
+          new Counts(
+              counts[code * 3 + STATUS_PASSED],
+              counts[code * 3 + STATUS_FAILED],
+              counts[code * 3 + STATUS_UNKNOWN]));
+    }
+    return result;
+  }
+
+  /**
+   * Computes a percentile of the duration of the finished jobs, using the nearest rank method.
+   *
+   * @param percentile percentile between 0 and 100, eg 50 for the median
+   * @return the duration in seconds, -1 if no job has finished
+   */
+  public long getDurationPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    long[] durations = new long[size];
+    int count = 0;
+    for (int row = 0; row < size; row++) {
+      long duration = duration(row);
+      if (duration >= 0) {
+        durations[count++] = duration;
+      }
+    }
+    if (count == 0) {
+      return -1;
+    }
+    Arrays.sort(durations, 0, count);
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return durations[Math.max(rank, 1) - 1];
+  }
+
+  /**
+   * @return the failure messages with the number of jobs reporting them, most frequent first
+   */
+  public Map<String, Integer> getFailureCounts() {
+    int[] counts = new int[failureDictionary.size()];
+    for (int row = 0; row < size; row++) {
+      int code = failure[row];
+      if (code != NONE) {
+        counts[code]++;
+      }
+    }
+
+    List<Integer> codes = new ArrayList<>(counts.length);
+    for (int code = 0; code < counts.length; code++) {
+      codes.add(code);
+    }
+    codes.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+    Map<String, Integer> result = new LinkedHashMap<>();
+    for (int code : codes) {
+      result.put(failureDictionary.value(code), counts[code]);
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * @param dimension column
+   * @param value value to look for
+   * @return ids of the failed jobs with the value, eg the failed jobs of a browser
+   */
+  public List<String> getFailedJobIds(Dimension dimension, String value) {
+    int wanted = dictionary(dimension).find(value);
+    List<String> result = new ArrayList<>();
+    if (wanted == NONE) {
+      return result;
+    }
+    int[] codes = column(dimension);
+    for (int row = 0; row < size; row++) {
+      if (codes[row] == wanted && status[row] == STATUS_FAILED) {
+        result.add(ids[row]);
+      }
+    }
+    return result;
+  }
+
+  private Dictionary dictionary(Dimension dimension) {
+    switch (dimension) {
+      case OS:
+        return osDictionary;
+      case BROWSER:
+        return browserDictionary;
+      case VERSION:
+        return versionDictionary;
+      default:
+        throw new IllegalArgumentException("Unknown dimension " + dimension);
+    }
+  }
+
+  private int[] column(Dimension dimension) {
+    switch (dimension) {
+      case OS:
+        return os;
+      case BROWSER:
+        return browser;
+      case VERSION:
+        return version;
+      default:
+        throw new IllegalArgumentException("Unknown dimension " + dimension);
+    }
+  }
+
+  /** Maps the distinct strings of a column to consecutive codes. */
+  private static final class Dictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    int code(String value) {
+      if (value == null) {
+        return NONE;
+      }
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = values.size();
+        codes.put(value, code);
+        values.add(value);
+      }
+      return code;
+    }
+
+    int find(String value) {
+      Integer code = value != null ? codes.get(value) : null;
+      return code != null ? code : NONE;
+    }
+
+    String value(int code) {
+      return values.get(code);
+    }
+
+    int size() {
+      return values.size();
+    }
+  }
+}
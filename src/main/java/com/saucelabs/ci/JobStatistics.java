@@ -0,0 +1,236 @@
+package com.saucelabs.ci;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+
+/**
+ * Single pass statistics over the jobs of one or more builds: status counts, duration quantiles
+ * and the most frequent failure messages. Durations are summarized by a t-digest and failure
+ * messages by a count-min sketch plus a bounded list of candidates, so memory stays the same
+ * however many jobs are added. Statistics built separately, eg by parallel workers or for different
+ * builds, are combined with {@link #merge(JobStatistics)}; quantiles and failure counts of merged
+ * statistics are estimates, just like those of a single instance.
+ *
+ * <p>Instances are not thread safe, use one per worker and merge them.
+ *
+ * @author Sauce Labs
+ */
+public class JobStatistics {
+
+  private static final double COMPRESSION = 100;
+  private static final int SKETCH_DEPTH = 5;
+  private static final int SKETCH_WIDTH = 2048;
+
+  private final int maxFailureMessages;
+
+  private long jobs;
+  private long passed;
+  private long failed;
+  private long errored;
+
+  private final TDigest durations = new TDigest(COMPRESSION);
+  private final CountMinSketch failures = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+  private final Map<String, Long> topFailures = new HashMap<>();
+
+  /** Tracks the 10 most frequent failure messages. */
+  public JobStatistics() {
+    this(10);
+  }
+
+  /**
+   * @param maxFailureMessages number of most frequent failure messages to track
+   */
+  public JobStatistics(int maxFailureMessages) {
+    if (maxFailureMessages < 1) {
+      throw new IllegalArgumentException("maxFailureMessages must be at least 1");
+    }
+    this.maxFailureMessages = maxFailureMessages;
+  }
+
+  /**
+   * @return collector building the statistics of a stream of jobs, which may be parallel
+   */
+  public static Collector<JobInformation, ?, JobStatistics> collector() {
+    return Collector.of(JobStatistics::new, JobStatistics::add, JobStatistics::merge);
+  }
+
+  /**
+   * @param job job to add
+   */
+  public void add(JobInformation job) {
+    jobs++;
+    if ("Passed".equals(job.getStatus())) {
+      passed++;
+    } else if ("Failed".equals(job.getStatus())) {
+      failed++;
+    }
+    if (job.getEndTime() != 0 && job.getEndTime() >= job.getStartTime()) {
+      durations.add(job.getDuration());
+    }
+    if (job.hasFailureMessage()) {
+      addFailure(job.getFailureMessage());
+    }
+  }
+
+  /**
+   * Adds a job of the builds API. Its duration is the time between its creation and its last
+   * modification, and is only counted once the job has finished.
+   *
+   * @param job job to add
+   */
+  public void add(BuildJobInformation job) {
+    jobs++;
+    if (job.hasStatusFlag(BuildJobInformation.JobStatusFlag.PASSED)) {
+      passed++;
+    }
+    if (job.hasStatusFlag(BuildJobInformation.JobStatusFlag.FAILED)) {
+      failed++;
+    }
+    if (job.hasStatusFlag(BuildJobInformation.JobStatusFlag.ERRORED)) {
+      errored++;
+    }
+    if (job.hasStatusFlag(BuildJobInformation.JobStatusFlag.FINISHED)
+        && job.getModificationTime() >= job.getCreationTime()) {
+      durations.add(job.getModificationTime() - job.getCreationTime());
+    }
+  }
+
+  private void addFailure(String message) {
+    failures.add(message);
+    offerFailure(message, failures.estimate(message));
+  }
+
+  /** Keeps the message if it is among the most frequent ones seen so far. */
+  private void offerFailure(String message, long estimate) {
+    if (topFailures.containsKey(message) || topFailures.size() < maxFailureMessages) {
+      topFailures.put(message, estimate);
+      return;
+    }
+    String least = null;
+    long leastCount = Long.MAX_VALUE;
+    for (Map.Entry<String, Long> candidate : topFailures.entrySet()) {
+      if (candidate.getValue() < leastCount) {
+        least = candidate.getKey();
+        leastCount = candidate.getValue();
+      }
+    }
+    if (estimate > leastCount) {
+      topFailures.remove(least);
+      topFailures.put(message, estimate);
+    }
+  }
+
+  /**
+   * Adds the jobs of the other statistics to these.
+   *
+   * @param other statistics to add, they are not modified
+   * @return these statistics
+   */
+  public JobStatistics merge(JobStatistics other) {
+    jobs += other.jobs;
+    passed += other.passed;
+    failed += other.failed;
+    errored += other.errored;
+    durations.merge(other.durations);
+    failures.merge(other.failures);
+
+    List<String> candidates = new ArrayList<>(topFailures.keySet());
+    candidates.addAll(other.topFailures.keySet());
+    topFailures.clear();
+    for (String message : candidates) {
+      offerFailure(message, failures.estimate(message));
+    }
+    return this;
+  }
+
+  public long getJobCount() {
+    return jobs;
+  }
+
+  public long getPassedCount() {
+    return passed;
+  }
+
+  public long getFailedCount() {
+    return failed;
+  }
+
+  /**
+   * @return number of errored jobs, only reported by the builds API
+   */
+  public long getErroredCount() {
+    return errored;
+  }
+
+  /**
+   * @return passed jobs divided by the passed and failed jobs, 0 if there are none
+   */
+  public double getPassRate() {
+    long withStatus = passed + failed;
+    return withStatus == 0 ? 0 : (double) passed / withStatus;
+  }
+
+  /**
+   * @return number of jobs with a duration
+   */
+  public long getDurationCount() {
+    return durations.size();
+  }
+
+  /**
+   * @param percentile percentile between 0 and 100, eg 95
+   * @return estimated duration in seconds at the percentile, NaN if no job has a duration
+   */
+  public double getDurationPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    return durations.quantile(percentile / 100);
+  }
+
+  /**
+   * @return estimated median duration in seconds, NaN if no job has a duration
+   */
+  public double getMedianDuration() {
+    return durations.quantile(0.5);
+  }
+
+  /**
+   * @return shortest duration in seconds, NaN if no job has a duration
+   */
+  public double getMinDuration() {
+    return durations.getMin();
+  }
+
+  /**
+   * @return longest duration in seconds, NaN if no job has a duration
+   */
+  public double getMaxDuration() {
+    return durations.getMax();
+  }
+
+  /**
+   * @param message failure message
+   * @return estimated number of jobs which failed with the message, never less than the real count
+   */
+  public long getFailureCount(String message) {
+    return failures.estimate(message);
+  }
+
+  /**
+   * @return the most frequent failure messages with their estimated counts, most frequent first
+   */
+  public Map<String, Long> getTopFailures() {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(topFailures.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Long> entry : entries) {
+      result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,263 @@
+package com.saucelabs.ci;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the changes recorded by {@link JobInformation} instances back to Sauce Labs in batches.
+ * Jobs are collected with {@link #add(JobInformation)}; repeated changes to the same job are merged
+ * so each job is updated once per {@link #flush()}, and the updates are sent in parallel with a
+ * bounded number of concurrent requests, retrying failed requests with an exponential backoff.
+ * Changes which could not be sent, because all the attempts failed or the flush was interrupted,
+ * are queued again for the next flush, under the changes queued since.
+ *
+ * @author Sauce Labs
+ */
+public class JobUpdatePipeline {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobUpdatePipeline.class);
+
+  /** Sends the changes of a single job, eg through the Sauce REST jobs endpoint. */
+  @FunctionalInterface
+  public interface Updater {
+    /**
+     * @param jobId id of the job to update
+     * @param changes changed fields, as returned by {@link JobInformation#getChanges()}
+     * @throws IOException thrown if the update failed and may be retried
+     */
+    void updateJob(String jobId, Map<String, Object> changes) throws IOException;
+  }
+
+  /** Outcome of the update of a single job. */
+  public static class Result {
+    private final String jobId;
+    private final Map<String, Object> changes;
+    private final int attempts;
+    private final Exception failure;
+
+    Result(String jobId, Map<String, Object> changes, int attempts, Exception failure) {
+      this.jobId = jobId;
+      this.changes = changes;
+      this.attempts = attempts;
+      this.failure = failure;
+    }
+
+    public String getJobId() {
+      return jobId;
+    }
+
+    /**
+     * @return the changes which were sent, failed ones are queued again by the pipeline
+     */
+    public Map<String, Object> getChanges() {
+      return changes;
+    }
+
+    /**
+     * @return number of requests made for the job
+     */
+    public int getAttempts() {
+      return attempts;
+    }
+
+    public boolean isSuccessful() {
+      return failure == null;
+    }
+
+    /**
+     * @return the last error if the update failed, null otherwise
+     */
+    public Exception getFailure() {
+      return failure;
+    }
+  }
+
+  private final Updater updater;
+  private final int maxConcurrency;
+  private final int maxAttempts;
+  private final Duration retryDelay;
+
+  private final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+
+  /**
+   * @param updater sends the update of a single job
+   * @param maxConcurrency maximum number of updates in flight at once
+   * @param maxAttempts maximum number of requests per job, including the first one
+   * @param retryDelay delay before the first retry, doubled for every following retry
+   */
+  public JobUpdatePipeline(
+      Updater updater, int maxConcurrency, int maxAttempts, Duration retryDelay) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be at least 1");
+    }
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1");
+    }
+    this.updater = updater;
+    this.maxConcurrency = maxConcurrency;
+    this.maxAttempts = maxAttempts;
+    this.retryDelay = retryDelay;
+  }
+
+  /**
+   * Queues the changes of the job, merging them with changes already queued for the same job id.
+   * The changes of the job are cleared, as the pipeline is now responsible for sending them. Jobs
+   * without changes are ignored.
+   *
+   * @param job the job to update
+   * @return true if the job had changes to queue
+   */
+  public boolean add(JobInformation job) {
+    if (!job.hasChanges()) {
+      return false;
+    }
+    Map<String, Object> changes = job.getChanges();
+    job.clearChanges();
+    synchronized (pending) {
+      pending.computeIfAbsent(job.getJobId(), k -> new HashMap<>()).putAll(changes);
+    }
+    return true;
+  }
+
+  /**
+   * @param jobs the jobs to update
+   * @return number of jobs which had changes to queue
+   */
+  public int addAll(Iterable<JobInformation> jobs) {
+    int added = 0;
+    for (JobInformation job : jobs) {
+      if (add(job)) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * @return number of jobs waiting to be sent
+   */
+  public int getPendingCount() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * Sends all the queued updates and waits for them to complete.
+   *
+   * @return outcome of every job, in the order the jobs were first queued
+   * @throws InterruptedException thrown if interrupted while waiting, remaining updates are
+   *     cancelled
+   */
+  public List<Result> flush() throws InterruptedException {
+    // updates which succeeded, the others are queued again if the flush is interrupted
+    Set<String> sent = ConcurrentHashMap.newKeySet();
+    Map<String, Map<String, Object>> batch;
+    synchronized (pending) {
+      if (pending.isEmpty()) {
+        return Collections.emptyList();
+      }
+      batch = new LinkedHashMap<>(pending);
+      pending.clear();
+    }
+
+    List<Callable<Result>> tasks = new ArrayList<>(batch.size());
+    for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+      tasks.add(
+          () -> {
+            Result result = send(entry.getKey(), entry.getValue());
+            if (result.isSuccessful()) {
+              sent.add(result.getJobId());
+            }
+            return result;
+          });
+    }
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(maxConcurrency, tasks.size()));
+    List<Future<Result>> futures;
+    try {
+      futures = executor.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+        if (!sent.contains(entry.getKey())) {
+          requeue(entry.getKey(), entry.getValue());
+        }
+      }
+      throw e;
+    } finally {
+      executor.shutdownNow();
+    }
+    List<Result> results = new ArrayList<>(tasks.size());
+    for (Future<Result> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (ExecutionException e) {
+        // send() reports failures in its result, so this is an Error
+        throw new IllegalStateException("Unexpected error updating jobs", e.getCause());
+      }
+    }
+    for (Result result : results) {
+      if (!result.isSuccessful()) {
+        requeue(result.getJobId(), result.getChanges());
+      }
+    }
+    return results;
+  }
+
+  /** Queues changes which were not sent again, keeping the changes queued since. */
+  private void requeue(String jobId, Map<String, Object> changes) {
+    synchronized (pending) {
+      Map<String, Object> merged = new HashMap<>(changes);
+      Map<String, Object> newer = pending.remove(jobId);
+      if (newer != null) {
+        merged.putAll(newer);
+      }
+      pending.put(jobId, merged);
+    }
+  }
+
+  private Result send(String jobId, Map<String, Object> changes) {
+    Map<String, Object> readOnlyChanges = Collections.unmodifiableMap(changes);
+    long delay = retryDelay.toMillis();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        updater.updateJob(jobId, readOnlyChanges);
+        return new Result(jobId, readOnlyChanges, attempt, null);
+      } catch (IOException e) {
+        if (attempt >= maxAttempts) {
+          LOGGER.warn("Unable to update job {} after {} attempts", jobId, attempt, e);
+          return new Result(jobId, readOnlyChanges, attempt, e);
+        }
+        LOGGER.debug("Update of job {} failed, retrying in {}ms", jobId, delay, e);
+        try {
+          TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return new Result(jobId, readOnlyChanges, attempt, e);
+        }
+        delay *= 2;
+      } catch (RuntimeException e) {
+        LOGGER.warn("Unable to update job {}", jobId, e);
+        return new Result(jobId, readOnlyChanges, attempt, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,391 @@
+package com.saucelabs.ci;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for {@link JobInformation}, {@link BuildInformation} and {@link
+ * BuildJobInformation}, as an alternative to Java serialization when the models are persisted or
+ * sent to another JVM.
+ *
+ * <p>A stream starts with a header (magic byte, format version, model type and record count)
+ * followed by the records. Each record is a list of tagged fields ended by a zero tag; a tag holds
+ * the field number and whether the value is a number or a string. Numbers are zigzag encoded
+ * varints, so timestamps and counters usually take a few bytes, and fields holding their default
+ * value are omitted. Strings are dictionary encoded: the first occurrence is written in full and
+ * later occurrences as a reference, so repeated values such as os, browser or status cost a byte
+ * or two. The status flags of a {@link BuildJobInformation} are written as a single bit mask.
+ *
+ * <p>Readers skip fields they don't know, and fields missing from the stream keep their default
+ * value, so streams written by older versions can always be read.
+ *
+ * @author Sauce Labs
+ */
+public final class ModelCodec {
+
+  private static final int MAGIC = 0xC5;
+
+  /** Format version written by this class, streams from later versions are rejected. */
+  static final int VERSION = 1;
+
+  private static final int TYPE_JOB = 1;
+  private static final int TYPE_BUILD = 2;
+  private static final int TYPE_BUILD_JOB = 3;
+
+  private static final int WIRE_NUMBER = 0;
+  private static final int WIRE_STRING = 1;
+  private static final int END = 0;
+
+  /** Field numbers at or above this are skipped by this version. */
+  private static final int MAX_FIELDS = 32;
+
+  // JobInformation fields, numbers must never be reused
+  private static final int JOB_ID = 1;
+  private static final int JOB_HMAC = 2;
+  private static final int JOB_STATUS = 3;
+  private static final int JOB_NAME = 4;
+  private static final int JOB_OS = 5;
+  private static final int JOB_BROWSER = 6;
+  private static final int JOB_VERSION = 7;
+  private static final int JOB_VIDEO_URL = 8;
+  private static final int JOB_LOG_URL = 9;
+  private static final int JOB_BUILD = 10;
+  private static final int JOB_START_TIME = 11;
+  private static final int JOB_END_TIME = 12;
+  private static final int JOB_FAILURE_MESSAGE = 13;
+  private static final int JOB_CHANGES = 14;
+
+  // BuildInformation fields
+  private static final int BUILD_ID = 1;
+  private static final int BUILD_STATUS = 2;
+  private static final int BUILD_NAME = 3;
+  private static final int BUILD_START_TIME = 4;
+  private static final int BUILD_END_TIME = 5;
+  private static final int BUILD_JOBS_PASSED = 6;
+  private static final int BUILD_JOBS_FINISHED = 7;
+  private static final int BUILD_JOBS_FAILED = 8;
+  private static final int BUILD_JOBS_ERRORED = 9;
+  private static final int BUILD_CHANGES = 10;
+
+  // BuildJobInformation fields
+  private static final int BUILD_JOB_ID = 1;
+  private static final int BUILD_JOB_CREATION_TIME = 2;
+  private static final int BUILD_JOB_MODIFICATION_TIME = 3;
+  private static final int BUILD_JOB_DELETION_TIME = 4;
+  private static final int BUILD_JOB_STATUS = 5;
+  private static final int BUILD_JOB_CHANGES = 6;
+
+  /** Class can't be constructed. */
+  private ModelCodec() {}
+
+  /**
+   * @param out stream to write to, it is neither buffered nor closed by this method
+   * @param jobs jobs to write
+   * @throws IOException thrown if the stream can't be written
+   */
+  public static void writeJobs(OutputStream out, Collection<JobInformation> jobs)
+      throws IOException {
+    Encoder encoder = new Encoder(out, TYPE_JOB, jobs.size());
+    for (JobInformation job : jobs) {
+      encoder.string(JOB_ID, job.getJobId());
+      encoder.string(JOB_HMAC, job.getHmac());
+      encoder.string(JOB_STATUS, job.getStatus());
+      encoder.string(JOB_NAME, job.getName());
+      encoder.string(JOB_OS, job.getRawOs());
+      encoder.string(JOB_BROWSER, job.getBrowser());
+      encoder.string(JOB_VERSION, job.getVersion());
+      encoder.string(JOB_VIDEO_URL, job.getVideoUrl());
+      encoder.string(JOB_LOG_URL, job.getLogUrl());
+      encoder.string(JOB_BUILD, job.getBuild());
+      encoder.number(JOB_START_TIME, job.getStartTime());
+      encoder.number(JOB_END_TIME, job.getEndTime());
+      encoder.string(JOB_FAILURE_MESSAGE, job.getFailureMessage());
+      encoder.number(JOB_CHANGES, job.getChangeMask());
+      encoder.endRecord();
+    }
+  }
+
+  /**
+   * @param in stream to read from
+   * @return the jobs, in the order they were written
+   * @throws IOException thrown if the stream can't be read or is not a list of jobs
+   */
+  public static List<JobInformation> readJobs(InputStream in) throws IOException {
+    Decoder decoder = new Decoder(in, TYPE_JOB);
+    List<JobInformation> jobs = new ArrayList<>(decoder.capacity());
+    Record record = new Record();
+    for (int i = 0; i < decoder.count; i++) {
+      decoder.readRecord(record);
+      JobInformation job = new JobInformation(record.strings[JOB_ID], record.strings[JOB_HMAC]);
+      job.setStatus(record.strings[JOB_STATUS]);
+      job.setName(record.strings[JOB_NAME]);
+      job.setOs(record.strings[JOB_OS]);
+      job.setBrowser(record.strings[JOB_BROWSER]);
+      job.setVersion(record.strings[JOB_VERSION]);
+      job.setVideoUrl(record.strings[JOB_VIDEO_URL]);
+      job.setLogUrl(record.strings[JOB_LOG_URL]);
+      job.setBuild(record.strings[JOB_BUILD]);
+      job.setStartTime(record.numbers[JOB_START_TIME]);
+      job.setEndTime(record.numbers[JOB_END_TIME]);
+      job.setFailureMessage(record.strings[JOB_FAILURE_MESSAGE]);
+      job.setChangeMask((int) record.numbers[JOB_CHANGES]);
+      jobs.add(job);
+    }
+    return jobs;
+  }
+
+  /**
+   * @param out stream to write to, it is neither buffered nor closed by this method
+   * @param builds builds to write
+   * @throws IOException thrown if the stream can't be written
+   */
+  public static void writeBuilds(OutputStream out, Collection<BuildInformation> builds)
+      throws IOException {
+    Encoder encoder = new Encoder(out, TYPE_BUILD, builds.size());
+    for (BuildInformation build : builds) {
+      encoder.string(BUILD_ID, build.getBuildId());
+      encoder.string(BUILD_STATUS, build.getStatus());
+      encoder.string(BUILD_NAME, build.getName());
+      encoder.number(BUILD_START_TIME, build.getStartTime());
+      encoder.number(BUILD_END_TIME, build.getEndTime());
+      encoder.number(BUILD_JOBS_PASSED, build.getJobsPassed());
+      encoder.number(BUILD_JOBS_FINISHED, build.getJobsFinished());
+      encoder.number(BUILD_JOBS_FAILED, build.getJobsFailed());
+      encoder.number(BUILD_JOBS_ERRORED, build.getJobsErrored());
+      encoder.number(BUILD_CHANGES, build.getChangeMask());
+      encoder.endRecord();
+    }
+  }
+
+  /**
+   * @param in stream to read from
+   * @return the builds, in the order they were written
+   * @throws IOException thrown if the stream can't be read or is not a list of builds
+   */
+  public static List<BuildInformation> readBuilds(InputStream in) throws IOException {
+    Decoder decoder = new Decoder(in, TYPE_BUILD);
+    List<BuildInformation> builds = new ArrayList<>(decoder.capacity());
+    Record record = new Record();
+    for (int i = 0; i < decoder.count; i++) {
+      decoder.readRecord(record);
+      BuildInformation build = new BuildInformation(record.strings[BUILD_ID]);
+      build.setStatus(record.strings[BUILD_STATUS]);
+      build.setName(record.strings[BUILD_NAME]);
+      build.setStartTime(record.numbers[BUILD_START_TIME]);
+      build.setEndTime(record.numbers[BUILD_END_TIME]);
+      build.setJobsPassed((int) record.numbers[BUILD_JOBS_PASSED]);
+      build.setJobsFinished((int) record.numbers[BUILD_JOBS_FINISHED]);
+      build.setJobsFailed((int) record.numbers[BUILD_JOBS_FAILED]);
+      build.setJobsErrored((int) record.numbers[BUILD_JOBS_ERRORED]);
+      build.setChangeMask((int) record.numbers[BUILD_CHANGES]);
+      builds.add(build);
+    }
+    return builds;
+  }
+
+  /**
+   * @param out stream to write to, it is neither buffered nor closed by this method
+   * @param jobs jobs to write
+   * @throws IOException thrown if the stream can't be written
+   */
+  public static void writeBuildJobs(OutputStream out, Collection<BuildJobInformation> jobs)
+      throws IOException {
+    Encoder encoder = new Encoder(out, TYPE_BUILD_JOB, jobs.size());
+    for (BuildJobInformation job : jobs) {
+      encoder.string(BUILD_JOB_ID, job.getJobId());
+      encoder.number(BUILD_JOB_CREATION_TIME, job.getCreationTime());
+      encoder.number(BUILD_JOB_MODIFICATION_TIME, job.getModificationTime());
+      encoder.number(BUILD_JOB_DELETION_TIME, job.getDeletionTime());
+      encoder.number(BUILD_JOB_STATUS, job.getStatusMask());
+      encoder.number(BUILD_JOB_CHANGES, job.getChangeMask());
+      encoder.endRecord();
+    }
+  }
+
+  /**
+   * @param in stream to read from
+   * @return the jobs, in the order they were written
+   * @throws IOException thrown if the stream can't be read or is not a list of build jobs
+   */
+  public static List<BuildJobInformation> readBuildJobs(InputStream in) throws IOException {
+    Decoder decoder = new Decoder(in, TYPE_BUILD_JOB);
+    List<BuildJobInformation> jobs = new ArrayList<>(decoder.capacity());
+    Record record = new Record();
+    for (int i = 0; i < decoder.count; i++) {
+      decoder.readRecord(record);
+      BuildJobInformation job = new BuildJobInformation(record.strings[BUILD_JOB_ID]);
+      job.setCreationTime(record.numbers[BUILD_JOB_CREATION_TIME]);
+      job.setModificationTime(record.numbers[BUILD_JOB_MODIFICATION_TIME]);
+      job.setDeletionTime(record.numbers[BUILD_JOB_DELETION_TIME]);
+      job.setStatus(BuildJobInformation.toFlags((int) record.numbers[BUILD_JOB_STATUS]));
+      job.setChangeMask((int) record.numbers[BUILD_JOB_CHANGES]);
+      jobs.add(job);
+    }
+    return jobs;
+  }
+
+  /** Values of the fields of one record, indexed by field number. */
+  private static final class Record {
+    final String[] strings = new String[MAX_FIELDS];
+    final long[] numbers = new long[MAX_FIELDS];
+
+    void clear() {
+      Arrays.fill(strings, null);
+      Arrays.fill(numbers, 0);
+    }
+  }
+
+  private static final class Encoder {
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    Encoder(OutputStream out, int type, int count) throws IOException {
+      this.out = out;
+      out.write(MAGIC);
+      out.write(VERSION);
+      out.write(type);
+      writeVarint(count);
+    }
+
+    void string(int field, String value) throws IOException {
+      if (value == null) {
+        return;
+      }
+      writeVarint(field << 1 | WIRE_STRING);
+      Integer index = dictionary.get(value);
+      if (index != null) {
+        writeVarint(index + 1L);
+        return;
+      }
+      dictionary.put(value, dictionary.size());
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarint(0);
+      writeVarint(bytes.length);
+      out.write(bytes);
+    }
+
+    void number(int field, long value) throws IOException {
+      if (value == 0) {
+        return;
+      }
+      writeVarint(field << 1 | WIRE_NUMBER);
+      // zigzag, so small negative values stay small
+      writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void endRecord() throws IOException {
+      writeVarint(END);
+    }
+
+    private void writeVarint(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+  }
+
+  private static final class Decoder {
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    final int count;
+
+    Decoder(InputStream in, int type) throws IOException {
+      this.in = in;
+      if (readByte() != MAGIC) {
+        throw new StreamCorruptedException("Not a model stream");
+      }
+      int version = readByte();
+      if (version < 1 || version > VERSION) {
+        throw new StreamCorruptedException("Unsupported format version " + version);
+      }
+      int actualType = readByte();
+      if (actualType != type) {
+        throw new StreamCorruptedException(
+            "Expected model type " + type + " but found " + actualType);
+      }
+      long records = readVarint();
+      if (records > Integer.MAX_VALUE) {
+        throw new StreamCorruptedException("Invalid record count " + records);
+      }
+      this.count = (int) records;
+    }
+
+    /**
+     * @return initial list capacity, bounded so a corrupt count can't allocate a huge list
+     */
+    int capacity() {
+      return Math.min(count, 1024);
+    }
+
+    void readRecord(Record record) throws IOException {
+      record.clear();
+      for (long tag = readVarint(); tag != END; tag = readVarint()) {
+        long field = tag >>> 1;
+        if ((tag & 1) == WIRE_STRING) {
+          String value = readString();
+          if (field < MAX_FIELDS) {
+            record.strings[(int) field] = value;
+          }
+        } else {
+          long raw = readVarint();
+          if (field < MAX_FIELDS) {
+            record.numbers[(int) field] = (raw >>> 1) ^ -(raw & 1);
+          }
+        }
+      }
+    }
+
+    private String readString() throws IOException {
+      long reference = readVarint();
+      if (reference > 0) {
+        if (reference > dictionary.size()) {
+          throw new StreamCorruptedException("Invalid string reference " + reference);
+        }
+        return dictionary.get((int) reference - 1);
+      }
+      long length = readVarint();
+      if (length > Integer.MAX_VALUE) {
+        throw new StreamCorruptedException("Invalid string length " + length);
+      }
+      byte[] bytes = in.readNBytes((int) length);
+      if (bytes.length != length) {
+        throw new EOFException();
+      }
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      dictionary.add(value);
+      return value;
+    }
+
+    private int readByte() throws IOException {
+      int value = in.read();
+      if (value < 0) {
+        throw new EOFException();
+      }
+      return value;
+    }
+
+    private long readVarint() throws IOException {
+      long result = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+      throw new StreamCorruptedException("Malformed varint");
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.saucelabs.ci;
+
+import com.saucelabs.saucerest.api.JobsEndpoint;
+import com.saucelabs.saucerest.model.jobs.UpdateJobParameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends the changes of a {@link JobInformation} through the Sauce REST jobs endpoint, for a {@link
+ * JobUpdatePipeline}.
+ *
+ * <p>The changes are keyed by {@link JobInformation.Field#getKey()} and hold the model values,
+ * which are mapped to the fields of the REST API: the status becomes {@code passed}, the failure
+ * message is stored in the {@code custom-data} of the job. The other fields, such as the browser or
+ * the start time, are set by Sauce Labs and are not sent.
+ *
+ * @author Sauce Labs
+ */
+public class SauceRestJobUpdater implements JobUpdatePipeline.Updater {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SauceRestJobUpdater.class);
+
+  /** Key of the failure message in the custom data of a job. */
+  static final String FAILURE_MESSAGE = "FAILURE_MESSAGE";
+
+  private final JobsEndpoint jobs;
+
+  /**
+   * @param jobs the jobs endpoint of the Sauce REST client
+   */
+  public SauceRestJobUpdater(JobsEndpoint jobs) {
+    this.jobs = jobs;
+  }
+
+  @Override
+  public void updateJob(String jobId, Map<String, Object> changes) throws IOException {
+    Map<String, Object> fields = toRestFields(changes);
+    if (fields.isEmpty()) {
+      LOGGER.debug("No changes of job {} can be sent: {}", jobId, changes.keySet());
+      return;
+    }
+    UpdateJobParameter.Builder parameter = new UpdateJobParameter.Builder();
+    if (fields.containsKey("name")) {
+      parameter.setName((String) fields.get("name"));
+    }
+    if (fields.containsKey("build")) {
+      parameter.setBuild((String) fields.get("build"));
+    }
+    if (fields.containsKey("passed")) {
+      parameter.setPassed((Boolean) fields.get("passed"));
+    }
+    if (fields.containsKey("custom-data")) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> customData = (Map<String, Object>) fields.get("custom-data");
+      parameter.setCustomData(customData);
+    }
+    jobs.updateJob(jobId, parameter.build());
+  }
+
+  /**
+   * @param changes changed fields, as returned by {@link JobInformation#getChanges()}
+   * @return the fields of the REST API to update, by their JSON name
+   */
+  static Map<String, Object> toRestFields(Map<String, Object> changes) {
+    Map<String, Object> fields = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      JobInformation.Field field = JobInformation.FIELDS.forKey(change.getKey());
+      if (field == null) {
+        continue;
+      }
+      Object value = change.getValue();
+      switch (field) {
+        case NAME:
+          fields.put("name", value);
+          break;
+        case BUILD:
+          fields.put("build", value);
+          break;
+        case STATUS:
+          Boolean passed = toPassed((String) value);
+          if (passed != null) {
+            fields.put("passed", passed);
+          }
+          break;
+        case FAILURE_MESSAGE:
+          fields.put("custom-data", Collections.singletonMap(FAILURE_MESSAGE, value));
+          break;
+        default:
+          // set by Sauce Labs
+          break;
+      }
+    }
+    return fields;
+  }
+
+  /**
+   * @param status status of a {@link JobInformation}, eg "Passed" or "false"
+   * @return whether the job passed, null if the status is not known
+   */
+  private static Boolean toPassed(String status) {
+    if ("passed".equalsIgnoreCase(status) || "true".equalsIgnoreCase(status)) {
+      return Boolean.TRUE;
+    }
+    if ("failed".equalsIgnoreCase(status) || "false".equalsIgnoreCase(status)) {
+      return Boolean.FALSE;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,37 @@
+package com.saucelabs.ci;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizes equal strings to a single instance. A platform listing repeats the same os, browser
+ * name, version and label strings on thousands of entries, each deserialized into its own {@link
+ * String}; passing them through a pool while the catalog is built means every {@link Browser}
+ * references the same instance. Unlike {@link String#intern()}, the pool is discarded once the
+ * catalog has been built.
+ *
+ * @author Sauce Labs
+ */
+final class StringPool {
+
+  private final Map<String, String> strings = new HashMap<>();
+
+  /**
+   * @param value string to canonicalize, can be null
+   * @return the pooled instance equal to value
+   */
+  String get(String value) {
+    if (value == null) {
+      return null;
+    }
+    String pooled = strings.putIfAbsent(value, value);
+    return pooled == null ? value : pooled;
+  }
+
+  /**
+   * @return number of distinct strings in the pool
+   */
+  int size() {
+    return strings.size();
+  }
+}
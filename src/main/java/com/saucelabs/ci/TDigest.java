@@ -0,0 +1,200 @@
+package com.saucelabs.ci;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest: a fixed size summary of a stream of values which answers quantile queries with
+ * a small relative error, most accurate near the tails. Values are buffered and periodically
+ * merged into centroids whose maximum weight shrinks towards the extreme quantiles. Two digests
+ * combine by merging their centroids, so digests built by separate workers can be merged.
+ *
+ * <p>Instances are not thread safe.
+ *
+ * @author Sauce Labs
+ */
+final class TDigest {
+
+  private final double compression;
+
+  private double[] means;
+  private double[] weights;
+  private int centroids;
+
+  private final double[] buffer;
+  private int buffered;
+
+  private double totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * @param compression accuracy parameter, the digest keeps about twice that many centroids
+   */
+  TDigest(double compression) {
+    if (compression < 10) {
+      throw new IllegalArgumentException("Compression must be at least 10: " + compression);
+    }
+    this.compression = compression;
+    int size = (int) Math.ceil(compression * 2) + 10;
+    this.means = new double[size];
+    this.weights = new double[size];
+    this.buffer = new double[size * 4];
+  }
+
+  void add(double value) {
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("Cannot add NaN");
+    }
+    if (buffered == buffer.length) {
+      flushBuffer();
+    }
+    buffer[buffered++] = value;
+    totalWeight++;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * @param other digest to add to this one, it is not modified
+   */
+  void merge(TDigest other) {
+    if (other.totalWeight == 0) {
+      return;
+    }
+    int size = centroids + buffered + other.centroids + other.buffered;
+    double[] allMeans = new double[size];
+    double[] allWeights = new double[size];
+    int n = 0;
+    for (int i = 0; i < centroids; i++, n++) {
+      allMeans[n] = means[i];
+      allWeights[n] = weights[i];
+    }
+    for (int i = 0; i < buffered; i++, n++) {
+      allMeans[n] = buffer[i];
+      allWeights[n] = 1;
+    }
+    for (int i = 0; i < other.centroids; i++, n++) {
+      allMeans[n] = other.means[i];
+      allWeights[n] = other.weights[i];
+    }
+    for (int i = 0; i < other.buffered; i++, n++) {
+      allMeans[n] = other.buffer[i];
+      allWeights[n] = 1;
+    }
+    buffered = 0;
+    totalWeight += other.totalWeight;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    compress(allMeans, allWeights, n);
+  }
+
+  long size() {
+    return (long) totalWeight;
+  }
+
+  double getMin() {
+    return totalWeight == 0 ? Double.NaN : min;
+  }
+
+  double getMax() {
+    return totalWeight == 0 ? Double.NaN : max;
+  }
+
+  /**
+   * @param q quantile between 0 and 1
+   * @return estimated value at the quantile, NaN if no value has been added
+   */
+  double quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+    }
+    flushBuffer();
+    if (centroids == 0) {
+      return Double.NaN;
+    }
+    if (centroids == 1) {
+      return means[0];
+    }
+    double index = q * totalWeight;
+    double firstHalf = weights[0] / 2;
+    if (index < firstHalf) {
+      return min + (means[0] - min) * index / firstHalf;
+    }
+    double cumulative = firstHalf;
+    for (int i = 0; i < centroids - 1; i++) {
+      double gap = (weights[i] + weights[i + 1]) / 2;
+      if (cumulative + gap > index) {
+        double fraction = (index - cumulative) / gap;
+        return means[i] + fraction * (means[i + 1] - means[i]);
+      }
+      cumulative += gap;
+    }
+    double lastHalf = weights[centroids - 1] / 2;
+    double fraction = Math.min(1, (index - cumulative) / lastHalf);
+    return means[centroids - 1] + fraction * (max - means[centroids - 1]);
+  }
+
+  private void flushBuffer() {
+    if (buffered == 0) {
+      return;
+    }
+    int size = centroids + buffered;
+    double[] allMeans = Arrays.copyOf(means, size);
+    double[] allWeights = Arrays.copyOf(weights, size);
+    System.arraycopy(buffer, 0, allMeans, centroids, buffered);
+    Arrays.fill(allWeights, centroids, size, 1);
+    buffered = 0;
+    compress(allMeans, allWeights, size);
+  }
+
+  /** Sorts the centroids and merges neighbours while they stay under the size limit. */
+  private void compress(double[] allMeans, double[] allWeights, int n) {
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+    double total = 0;
+    for (int i = 0; i < n; i++) {
+      total += allWeights[i];
+    }
+
+    double[] newMeans = new double[Math.max(n, means.length)];
+    double[] newWeights = new double[newMeans.length];
+    int count = 0;
+    double currentMean = allMeans[order[0]];
+    double currentWeight = allWeights[order[0]];
+    double weightSoFar = 0;
+    for (int i = 1; i < n; i++) {
+      double mean = allMeans[order[i]];
+      double weight = allWeights[order[i]];
+      double proposed = currentWeight + weight;
+      double q0 = weightSoFar / total;
+      double q2 = (weightSoFar + proposed) / total;
+      if (proposed <= total * Math.min(maxSize(q0), maxSize(q2))) {
+        currentMean += (mean - currentMean) * weight / proposed;
+        currentWeight = proposed;
+      } else {
+        newMeans[count] = currentMean;
+        newWeights[count] = currentWeight;
+        count++;
+        weightSoFar += currentWeight;
+        currentMean = mean;
+        currentWeight = weight;
+      }
+    }
+    newMeans[count] = currentMean;
+    newWeights[count] = currentWeight;
+    count++;
+
+    means = newMeans;
+    weights = newWeights;
+    centroids = count;
+  }
+
+  /** Maximum weight of a centroid at quantile q, as a fraction of the total weight. */
+  private double maxSize(double q) {
+    return 4 * q * (1 - q) / compression;
+  }
+}
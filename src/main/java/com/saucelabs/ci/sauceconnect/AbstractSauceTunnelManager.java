@@ -4,10 +4,10 @@ import com.saucelabs.saucerest.DataCenter;
 import com.saucelabs.saucerest.SauceException;
 import com.saucelabs.saucerest.SauceREST;
 import com.saucelabs.saucerest.api.SauceConnectEndpoint;
-import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 
 import java.io.File;
 import java.io.IOException;
@@ -16,9 +16,16 @@ import java.io.PrintStream;
 import java.net.ServerSocket;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -42,13 +49,39 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
   /** Contains all the Sauce Connect {@link Process} instances that have been launched. */
   private Map<String, List<Process>> openedProcesses = new HashMap<>();
 
-  private SauceREST sauceRest;
   private SauceConnectEndpoint scEndpoint;
+  private SauceRestClientCache restClients = new SauceRestClientCache(16);
   private SCMonitorFactory scMonitorFactory = new DefaultSCMonitor.Factory();
   private ProcessOutputPrinter processOutputPrinter = new DefaultProcessOutputPrinter();
+  private Level printStreamLogLevel = Level.TRACE;
+  private int printStreamLogCapacity;
+  private SauceConnectProcessReaper processReaper;
+  /** Users and data centers whose first connection reconciled the orphaned processes. */
+  private final Set<String> reconciledUsers = ConcurrentHashMap.newKeySet();
+  private final TunnelSupervisor supervisor = new TunnelSupervisor();
+  private TunnelTelemetry telemetry;
+  private TunnelShardingPolicy shardingPolicy;
+  private DataCenterSelector dataCenterSelector;
 
   private AtomicInteger launchAttempts = new AtomicInteger(0);
 
+  /**
+   * Applies the events of the supervisor to the tunnels in order, on its own thread, so the thread
+   * completing the exit of a process never waits for the lock of a tunnel being launched.
+   */
+  private final ThreadPoolExecutor tunnelEvents =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          30,
+          TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "sauce-connect-tunnel-events");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   /**
    * Constructs a new instance.
    *
@@ -56,6 +89,8 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    */
   public AbstractSauceTunnelManager(boolean quietMode) {
     this.quietMode = quietMode;
+    tunnelEvents.allowCoreThreadTimeOut(true);
+    supervisor.addListener(event -> tunnelEvents.execute(() -> tunnelEvent(event)));
   }
 
   /**
@@ -65,25 +100,7 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    * @return String representing the tunnel name
    */
   public static String getTunnelName(String options, String defaultValue) {
-    if (options == null || options.isEmpty()) {
-      return defaultValue;
-    }
-
-    String name = null;
-    String[] split = options.split(" ");
-    for (int i = 0; i < split.length; i++) {
-      String option = split[i];
-      if (option.equals("-i")
-          || option.equals("--tunnel-name")) {
-        // next option is name
-        name = split[i + 1];
-      }
-    }
-    if (name != null) {
-      return name;
-    }
-
-    return defaultValue;
+    return SauceConnectOptions.parse(options).getTunnelName(defaultValue);
   }
 
   /**
@@ -91,26 +108,28 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    * @return String representing the logfile location
    */
   public static String getLogfile(String options) {
-    if (options == null || options.isEmpty()) {
-      return null;
-    }
-    String logFile = null;
-    String[] split = options.split(" ");
-    for (int i = 0; i < split.length; i++) {
-      String option = split[i];
-      if (option.equals("-l") || option.equals("--logfile")) {
-        // next option is logfile
-        logFile = split[i + 1];
-      }
-    }
-    return logFile;
+    return SauceConnectOptions.parse(options).getLogfile();
   }
 
+  /**
+   * @param sauceRest client used for all the tunnels, whatever their user and data center
+   */
   public void setSauceRest(SauceREST sauceRest) {
-    this.sauceRest = sauceRest;
     this.scEndpoint = sauceRest.getSauceConnectEndpoint();
   }
 
+  /**
+   * @param restClients clients used by user and data center, unless a client is set with {@link
+   *     #setSauceRest(SauceREST)}
+   */
+  public void setRestClientCache(SauceRestClientCache restClients) {
+    this.restClients = restClients;
+  }
+
+  public SauceRestClientCache getRestClientCache() {
+    return restClients;
+  }
+
   public void setSCMonitorFactory(SCMonitorFactory scMonitorFactory) {
     this.scMonitorFactory = scMonitorFactory;
   }
@@ -119,6 +138,96 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
     this.processOutputPrinter = processOutputPrinter;
   }
 
+  /**
+   * @return supervisor of the launched Sauce Connect processes, to listen to unexpected exits and
+   *     set a restart policy
+   */
+  public TunnelSupervisor getSupervisor() {
+    return supervisor;
+  }
+
+  /**
+   * Samples the health and metrics of the launched tunnels while they run.
+   *
+   * @param telemetry sampler to use, null to disable
+   */
+  public void setTelemetry(TunnelTelemetry telemetry) {
+    this.telemetry = telemetry;
+  }
+
+  /**
+   * @return sampler of the launched tunnels, null if none is set
+   */
+  public TunnelTelemetry getTelemetry() {
+    return telemetry;
+  }
+
+  /**
+   * Spreads the tunnels with many callers over several Sauce Connect processes. The processes of
+   * the tunnels launched while a policy is set run with {@code --tunnel-pool}; only those tunnels,
+   * and the ones launched with {@code --tunnel-pool} in their options, take more processes. A new
+   * process starts in the background, the callers share the running ones meanwhile.
+   *
+   * @param shardingPolicy policy to use, null to run one process per tunnel
+   */
+  public void setShardingPolicy(TunnelShardingPolicy shardingPolicy) {
+    this.shardingPolicy = shardingPolicy;
+  }
+
+  public TunnelShardingPolicy getShardingPolicy() {
+    return shardingPolicy;
+  }
+
+  /**
+   * @param dataCenterSelector selector of the data center for the callers which pass {@value
+   *     DataCenterSelector#AUTO}, null to probe all the data centers
+   */
+  public void setDataCenterSelector(DataCenterSelector dataCenterSelector) {
+    this.dataCenterSelector = dataCenterSelector;
+  }
+
+  /**
+   * @return the selector used for {@value DataCenterSelector#AUTO}, created on first use
+   */
+  public synchronized DataCenterSelector getDataCenterSelector() {
+    if (dataCenterSelector == null) {
+      dataCenterSelector = new DataCenterSelector();
+    }
+    return dataCenterSelector;
+  }
+
+  /**
+   * Records the launched Sauce Connect processes, so those left behind by a JVM which died are
+   * killed or adopted before the first launch of this manager.
+   *
+   * @param processReaper reaper to use, null to disable
+   */
+  public void setProcessReaper(SauceConnectProcessReaper processReaper) {
+    this.processReaper = processReaper;
+  }
+
+  /**
+   * @param printStreamLogLevel most detailed level logged to the print streams passed to the
+   *     manager, defaults to TRACE
+   */
+  public void setPrintStreamLogLevel(Level printStreamLogLevel) {
+    this.printStreamLogLevel = printStreamLogLevel;
+  }
+
+  /**
+   * @param printStreamLogCapacity number of messages queued for each print stream passed to the
+   *     manager, written by a background thread so tunnel management does not wait for the
+   *     stream; 0, the default, writes them directly
+   * @see LoggerUsingPrintStream#async(PrintStream, Level, int)
+   */
+  public void setPrintStreamLogCapacity(int printStreamLogCapacity) {
+    if (printStreamLogCapacity < 0) {
+      throw new IllegalArgumentException(
+          "Capacity must not be negative: " + printStreamLogCapacity);
+    }
+    this.printStreamLogCapacity = printStreamLogCapacity;
+  }
+
   /**
    * Closes the Sauce Connect process
    *
@@ -128,7 +237,12 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    */
   public void closeTunnelsForPlan(String userName, String options, PrintStream printStream) {
     Logger logger = createLogger(printStream);
-    closeTunnelsForPlan(userName, options, logger);
+    try {
+      closeTunnelsForPlan(userName, options, logger);
+    } finally {
+      // the build may close the stream once the tunnel is closed
+      flushLogger(logger);
+    }
   }
 
   /**
@@ -140,7 +254,8 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    */
   public void closeTunnelsForPlan(String userName, String options, Logger logger) {
     String tunnelName = getTunnelName(options, userName);
-    TunnelInformation tunnelInformation = getTunnelInformation(tunnelName);
+    TunnelInformation tunnelInformation =
+        tunnelName == null ? null : tunnelInformationMap.get(tunnelName);
     if (tunnelInformation == null) {
       return;
     }
@@ -150,29 +265,38 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
       if (count == 0) {
         // we can now close the process
         final Process sauceConnect = tunnelInformation.getProcess();
-        closeSauceConnectProcess(logger, sauceConnect);
-        String tunnelId = tunnelInformation.getTunnelId();
-        if (tunnelId != null && scEndpoint != null) {
-          logger.info("Stopping Sauce Connect tunnel: {}", tunnelId);
-          // forcibly delete tunnel
-          try {
-            scEndpoint.stopTunnel(tunnelId);
-            logger.info("Deleted tunnel");
-          } catch (java.io.IOException | SauceException.UnknownError e) {
-            logger.error("Error during tunnel removal", e);
-          } catch (SauceException.NotFound e) {
-            // Tunnel has already been cleaned up, no need to do anything
-          } catch (NullPointerException e) {
-            logger.error("Error connecting to REST API", e);
+        List<TunnelInformation.Shard> shards = new ArrayList<>(tunnelInformation.getShards());
+        for (TunnelInformation.Shard shard : shards) {
+          // signalled first, so the processes of the pool exit together
+          supervisor.release(shard.getProcess());
+          shard.getProcess().destroy();
+        }
+        if (sauceConnect != null) {
+          supervisor.release(sauceConnect);
+          closeSauceConnectProcess(logger, sauceConnect);
+          forgetProcess(sauceConnect, logger);
+        }
+        SauceConnectEndpoint endpoint = endpointOf(tunnelInformation);
+        stopTunnel(endpoint, tunnelInformation.getTunnelId(), logger);
+        List<Process> processes = openedProcesses.get(tunnelName);
+        for (TunnelInformation.Shard shard : shards) {
+          closeSauceConnectProcess(logger, shard.getProcess());
+          forgetProcess(shard.getProcess(), logger);
+          stopTelemetry(shard.getLabel());
+          stopTunnel(endpoint, shard.getTunnelId(), logger);
+          tunnelInformation.removeShard(shard.getProcess());
+          if (processes != null) {
+            processes.remove(shard.getProcess());
           }
         }
+        stopTelemetry(tunnelName);
         tunnelInformationMap.remove(tunnelName);
-        List<Process> processes = openedProcesses.get(tunnelName);
         if (processes != null) {
           processes.remove(sauceConnect);
         }
         logger.info("Sauce Connect stopped for: {}", tunnelName);
       } else {
+        tunnelInformation.release();
         logger.info("Jobs still running, not closing Sauce Connect");
       }
 
@@ -181,6 +305,248 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
     }
   }
 
+  private static void stopTunnel(SauceConnectEndpoint endpoint, String tunnelId, Logger logger) {
+    if (tunnelId != null && endpoint != null) {
+      logger.info("Stopping Sauce Connect tunnel: {}", tunnelId);
+      // forcibly delete tunnel
+      try {
+        endpoint.stopTunnel(tunnelId);
+        logger.info("Deleted tunnel");
+      } catch (java.io.IOException | SauceException.UnknownError e) {
+        logger.error("Error during tunnel removal", e);
+      } catch (SauceException.NotFound e) {
+        // Tunnel has already been cleaned up, no need to do anything
+      } catch (NullPointerException e) {
+        logger.error("Error connecting to REST API", e);
+      }
+    }
+  }
+
+  /**
+   * Closes every tunnel of the manager, whatever its process count, within a global deadline. All
+   * the Sauce Connect processes are signalled at once and the tunnels are stopped through the REST
+   * API concurrently; the processes still running at the deadline are killed forcibly. A tunnel in
+   * use by another thread until the deadline, eg one being launched, is left alone.
+   *
+   * @param timeout time given to the processes to exit and to the tunnels to stop
+   * @return outcome of each tunnel by tunnel name, or by label for the shards of a tunnel
+   */
+  public Map<String, TunnelShutdown> shutdownAll(Duration timeout) {
+    return shutdownAll(timeout, LoggerFactory.getLogger(AbstractSauceTunnelManager.class));
+  }
+
+  /**
+   * @param timeout time given to the processes to exit and to the tunnels to stop
+   * @param logger used for logging
+   * @return outcome of each tunnel by tunnel name, or by label for the shards of a tunnel
+   * @see #shutdownAll(Duration)
+   */
+  public Map<String, TunnelShutdown> shutdownAll(Duration timeout, Logger logger) {
+    long start = System.nanoTime();
+    long deadline = start + timeout.toNanos();
+    List<ClosingTunnel> closing = new ArrayList<>();
+    for (Map.Entry<String, TunnelInformation> entry : tunnelInformationMap.entrySet()) {
+      closing.add(new ClosingTunnel(entry.getKey(), entry.getValue(), null));
+      for (TunnelInformation.Shard shard : entry.getValue().getShards()) {
+        closing.add(new ClosingTunnel(shard.getLabel(), entry.getValue(), shard));
+      }
+    }
+    logger.info("Shutting down {} tunnels", closing.size());
+
+    ExecutorService restCalls =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "sauce-connect-shutdown");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      // signal the idle tunnels first, so a busy one does not delay the others
+      for (ClosingTunnel tunnel : closing) {
+        if (tunnel.information.getLock().tryLock()) {
+          signal(tunnel, restCalls);
+        }
+      }
+      for (ClosingTunnel tunnel : closing) {
+        if (!tunnel.locked && tryLock(tunnel.information, deadline)) {
+          signal(tunnel, restCalls);
+        }
+      }
+
+      List<CompletableFuture<?>> exits = new ArrayList<>();
+      for (ClosingTunnel tunnel : closing) {
+        if (tunnel.exit != null) {
+          exits.add(tunnel.exit);
+        }
+      }
+      await(exits, deadline);
+      for (ClosingTunnel tunnel : closing) {
+        if (tunnel.exit != null && !tunnel.exit.isDone()) {
+          logger.warn("Sauce Connect process of {} did not exit in time, killing it", tunnel.name);
+          tunnel.process.destroyForcibly();
+          tunnel.killed = true;
+          tunnel.processDone = System.nanoTime();
+        }
+      }
+
+      List<CompletableFuture<?>> stops = new ArrayList<>();
+      for (ClosingTunnel tunnel : closing) {
+        if (tunnel.stop != null) {
+          stops.add(tunnel.stop);
+        }
+      }
+      await(stops, deadline);
+    } finally {
+      restCalls.shutdownNow();
+    }
+
+    Map<String, TunnelShutdown> outcomes = new LinkedHashMap<>();
+    for (ClosingTunnel tunnel : closing) {
+      TunnelShutdown outcome = tunnel.toOutcome(start);
+      outcomes.put(tunnel.name, outcome);
+      if (tunnel.locked) {
+        forgetProcess(tunnel.process, logger);
+        stopTelemetry(tunnel.name);
+        if (tunnel.shard != null) {
+          tunnel.information.removeShard(tunnel.shard.getProcess());
+        } else {
+          tunnelInformationMap.remove(tunnel.name, tunnel.information);
+          openedProcesses.remove(tunnel.name);
+        }
+        tunnel.information.getLock().unlock();
+      }
+      logger.info("Shut down tunnel {}", outcome);
+    }
+    return outcomes;
+  }
+
+  /** State of a tunnel during {@link #shutdownAll(Duration, Logger)}. */
+  private static final class ClosingTunnel {
+    private final String name;
+    private final TunnelInformation information;
+    private final TunnelInformation.Shard shard;
+    private boolean locked;
+    private Process process;
+    private String tunnelId;
+    private CompletableFuture<Process> exit;
+    private CompletableFuture<TunnelShutdown.TunnelOutcome> stop;
+    private boolean killed;
+    private volatile long processDone;
+    private volatile long tunnelDone;
+    private volatile Throwable error;
+
+    ClosingTunnel(String name, TunnelInformation information, TunnelInformation.Shard shard) {
+      this.name = name;
+      this.information = information;
+      this.shard = shard;
+    }
+
+    TunnelShutdown toOutcome(long start) {
+      TunnelShutdown.ProcessOutcome processOutcome;
+      if (!locked) {
+        processOutcome = TunnelShutdown.ProcessOutcome.BUSY;
+      } else if (exit == null) {
+        processOutcome = TunnelShutdown.ProcessOutcome.NOT_RUNNING;
+      } else {
+        processOutcome =
+            killed ? TunnelShutdown.ProcessOutcome.KILLED : TunnelShutdown.ProcessOutcome.EXITED;
+      }
+
+      TunnelShutdown.TunnelOutcome tunnelOutcome;
+      if (stop == null) {
+        tunnelOutcome = TunnelShutdown.TunnelOutcome.SKIPPED;
+      } else if (stop.isDone()) {
+        tunnelOutcome = stop.join();
+      } else {
+        tunnelOutcome = TunnelShutdown.TunnelOutcome.TIMED_OUT;
+      }
+
+      long end = Math.max(processDone, tunnelDone);
+      if (processOutcome == TunnelShutdown.ProcessOutcome.BUSY
+          || tunnelOutcome == TunnelShutdown.TunnelOutcome.TIMED_OUT
+          || end == 0) {
+        end = System.nanoTime();
+      }
+      return new TunnelShutdown(
+          name,
+          tunnelId,
+          processOutcome,
+          tunnelOutcome,
+          Duration.ofNanos(Math.max(0, end - start)),
+          error);
+    }
+  }
+
+  /** Signals the process of a locked tunnel and starts stopping the tunnel. */
+  private void signal(ClosingTunnel tunnel, ExecutorService restCalls) {
+    tunnel.locked = true;
+    if (tunnel.shard != null) {
+      tunnel.process = tunnel.shard.getProcess();
+      tunnel.tunnelId = tunnel.shard.getTunnelId();
+    } else {
+      tunnel.process = tunnel.information.getProcess();
+      tunnel.tunnelId = tunnel.information.getTunnelId();
+    }
+    Process process = tunnel.process;
+    supervisor.release(process);
+    if (process != null && process.isAlive()) {
+      new Thread(() -> flushInputStream(process.getInputStream())).start();
+      new Thread(() -> flushInputStream(process.getErrorStream())).start();
+      process.destroy();
+      tunnel.exit =
+          process
+              .onExit()
+              .whenComplete((exited, e) -> tunnel.processDone = System.nanoTime());
+    }
+
+    SauceConnectEndpoint endpoint = endpointOf(tunnel.information);
+    String tunnelId = tunnel.tunnelId;
+    if (tunnelId != null && endpoint != null) {
+      tunnel.stop =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  endpoint.stopTunnel(tunnelId);
+                  return TunnelShutdown.TunnelOutcome.STOPPED;
+                } catch (SauceException.NotFound e) {
+                  return TunnelShutdown.TunnelOutcome.NOT_FOUND;
+                } catch (IOException | RuntimeException e) {
+                  tunnel.error = e;
+                  return TunnelShutdown.TunnelOutcome.FAILED;
+                } finally {
+                  tunnel.tunnelDone = System.nanoTime();
+                }
+              },
+              restCalls);
+    }
+  }
+
+  private static boolean tryLock(TunnelInformation information, long deadline) {
+    try {
+      return information
+          .getLock()
+          .tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /** Waits until the futures complete or the deadline passes. */
+  private static void await(List<CompletableFuture<?>> futures, long deadline) {
+    if (futures.isEmpty()) {
+      return;
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+          .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      // the outcome of each future is checked by the caller
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private void closeSauceConnectProcess(Logger logger, final Process sauceConnect) {
     logger.info("Flushing Sauce Connect Input Stream");
     new Thread(() -> flushInputStream(sauceConnect.getInputStream())).start();
@@ -233,9 +599,7 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    * @return a new array with the element added to the end
    */
   protected String[] addElement(String[] original, String added) {
-    // split added on space
-    String[] split = StringUtils.split(added, ' ');
-    return joinArgs(original, split);
+    return joinArgs(original, SauceConnectOptions.tokenize(added).toArray(new String[0]));
   }
 
   protected String[] joinArgs(String[] initial, String... toAdd) {
@@ -375,7 +739,8 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    * @param username the name of the Sauce OnDemand user
    * @param apiKey the API Key for the Sauce OnDemand user
    * @param dataCenter the Sauce Labs Data Center name (US_WEST, EU_CENTRAL, US_EAST,
-   *     APAC_SOUTHEAST)
+   *     APAC_SOUTHEAST), or {@value DataCenterSelector#AUTO} for the one with the lowest latency,
+   *     also passed to Sauce Connect as {@code --region} unless the options have one
    * @param port the port which Sauce Connect should be run on
    * @param sauceConnectJar the Jar file containing Sauce Connect. If null, then we attempt to find
    *     Sauce Connect from the classpath (only used by SauceConnectTwoManager)
@@ -403,6 +768,19 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
       Boolean verboseLogging,
       String sauceConnectPath)
       throws SauceConnectException {
+    if (DataCenterSelector.AUTO.equalsIgnoreCase(dataCenter)) {
+      DataCenter selected = getDataCenterSelector().select(options);
+      return openConnection(
+          username,
+          apiKey,
+          selected,
+          port,
+          sauceConnectJar,
+          DataCenterSelector.withRegion(options, selected),
+          printStream,
+          verboseLogging,
+          sauceConnectPath);
+    }
     return openConnection(
         username,
         apiKey,
@@ -596,14 +974,34 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
       throws SauceConnectException {
 
     if (logger == null) {
-      logger = createLogger(printStream);
+      Logger printStreamLogger = createLogger(printStream);
+      try {
+        return openConnection(
+            username,
+            apiKey,
+            dataCenter,
+            apiPort,
+            sauceConnectJar,
+            options,
+            printStreamLogger,
+            printStream,
+            verboseLogging,
+            sauceConnectPath,
+            legacy);
+      } finally {
+        // the build may close the stream once the tunnel is open
+        flushLogger(printStreamLogger);
+      }
     }
 
-    // ensure that only a single thread attempts to open a connection
-    if (sauceRest == null) {
-      setSauceRest(new SauceREST(username, apiKey, dataCenter));
+    SauceConnectEndpoint endpoint = getSauceConnectEndpoint(username, apiKey, dataCenter);
+    if (processReaper != null && reconciledUsers.add(username + '@' + dataCenter)) {
+      // the orphaned tunnels of the user can be stopped now that their client is known
+      reconcileOrphanedProcesses(logger);
     }
-    String name = getTunnelName(options, username);
+
+    SauceConnectOptions parsedOptions = SauceConnectOptions.parse(options);
+    String name = parsedOptions.getTunnelName(username);
     TunnelInformation tunnelInformation = getTunnelInformation(name);
     try {
 
@@ -616,16 +1014,41 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
       }
 
       // do we have an instance for the tunnel name?
-      String tunnelID = activeTunnelID(username, name, logger);
+      String tunnelID = activeTunnelID(endpoint, username, name, logger);
       if (tunnelInformation.getProcessCount() == 0) {
         // if the count is zero, check to see if there are any active tunnels
 
+        Process adopted = tunnelInformation.getProcess();
+        if (adopted instanceof AdoptedProcess
+            && adopted.isAlive()
+            && tunnelID != null
+            && tunnelID.equals(tunnelInformation.getTunnelId())) {
+          // the orphaned process of a JVM which is gone runs the tunnel
+          logger.info("Reusing adopted Sauce Connect process for: {}", name);
+          tunnelInformation.setEndpoint(endpoint);
+          incrementProcessCountForUser(tunnelInformation, logger);
+          return adopted;
+        }
+        if (adopted instanceof AdoptedProcess) {
+          // its tunnel is gone, a new process is launched instead
+          supervisor.release(adopted);
+          closeSauceConnectProcess(logger, adopted);
+          forgetProcess(adopted, logger);
+          List<Process> processes = openedProcesses.get(name);
+          if (processes != null) {
+            processes.remove(adopted);
+          }
+          tunnelInformation.setProcess(null);
+        }
         if (tunnelID != null) {
           // if we have an active tunnel, but the process count is zero, we have an orphaned SC
           // process
           // instead of deleting the tunnel, log a message
           logger.info("Detected active tunnel: {}", tunnelID);
         }
+      } else if (tunnelInformation.getProcess() == null) {
+        // the process exited and was not restarted, its callers still close the tunnel
+        logger.info("Sauce Connect is not running anymore for: {}, launching it again", name);
       } else {
 
         // check active tunnels via Sauce REST API
@@ -638,71 +1061,89 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
         } else {
           // if we have an active tunnel, increment counter and return
           logger.info("Sauce Connect already running for: {}", name);
+          TunnelShardingPolicy policy = shardingPolicy;
+          // only a tunnel launched with --tunnel-pool can take more processes
+          if (policy != null
+              && tunnelInformation.isPooled()
+              && !tunnelInformation.isShardLaunching()
+              && policy.shouldGrow(
+                  tunnelInformation.getProcessCount() + 1, tunnelInformation.getMemberCount())) {
+            startShard(
+                tunnelInformation,
+                name,
+                username,
+                apiKey,
+                dataCenter,
+                sauceConnectJar,
+                options,
+                parsedOptions,
+                logger,
+                printStream,
+                sauceConnectPath,
+                legacy);
+          }
+          Process handedOut =
+              tunnelInformation.handOut(policy == null ? null : policy.getStrategy());
           incrementProcessCountForUser(tunnelInformation, logger);
-          return tunnelInformation.getProcess();
+          return handedOut;
         }
       }
-      final Process process =
-        prepAndCreateProcess(username, apiKey, apiPort, sauceConnectJar, options, logger, sauceConnectPath, legacy);
-
-      // Print sauceconnect process stdout/stderr
-      if (!quietMode) {
-        new Thread(processOutputPrinter.getStdoutPrinter(process.getInputStream(), printStream)).start();
-        new Thread(processOutputPrinter.getStderrPrinter(process.getErrorStream(), printStream)).start();
-      }
-
-      List<Process> openedProcesses = this.openedProcesses.get(name);
-      SCMonitor scMonitor = scMonitorFactory.create(apiPort, logger);
-
-      try {
-        Semaphore semaphore = new Semaphore(1);
-        semaphore.acquire();
-        scMonitor.setSemaphore(semaphore);
-        new Thread(scMonitor).start();
-
-        boolean sauceConnectStarted = semaphore.tryAcquire(HEALTHCHECK_TIMEOUT.getSeconds(), TimeUnit.SECONDS);
-        if (sauceConnectStarted && !scMonitor.isFailed()) {
-          // everything okay, continue the build
-          String provisionedTunnelId = scMonitor.getTunnelId();
-          if (provisionedTunnelId != null) {
-            tunnelInformation.setTunnelId(provisionedTunnelId);
-            waitForReadiness(provisionedTunnelId, logger);
-          }
-          logger.info("Sauce Connect now launched version={} name={}", getCurrentVersion(), name);
-        } else {
-          // stop sc monitor
-          scMonitor.markAsFailed();
-
-          String message = scMonitor.isFailed()
-            ? "Error launching Sauce Connect"
-            : "Time out while waiting for Sauce Connect to start";
-
-          File sauceConnectLogFile = getSauceConnectLogFile(options);
-          if (sauceConnectLogFile == null) {
-            message += ", please check the Sauce Connect log";
-          } else {
-            message += ", please check the Sauce Connect log located in " + sauceConnectLogFile.getAbsoluteFile();
-          }
-
-          logger.error(message, scMonitor.getLastHealtcheckException());
-
-          // ensure that Sauce Connect process is closed
-          closeSauceConnectProcess(logger, process);
-          throw new SauceConnectDidNotStartException(message, scMonitor.getLastHealtcheckException());
-        }
-      } catch (InterruptedException e) {
-        // continue;
-        logger.warn("Exception occurred during invocation of Sauce Connect", e);
+      boolean pooled = shardingPolicy != null || parsedOptions.has("--tunnel-pool");
+      String launchOptions = pooled ? poolOptions(options, parsedOptions) : options;
+      tunnelInformation.setPooled(pooled);
+      tunnelInformation.setEndpoint(endpoint);
+      TunnelInformation.Shard launched =
+          launchProcess(
+              endpoint,
+              name,
+              name,
+              username,
+              apiKey,
+              dataCenter,
+              apiPort,
+              sauceConnectJar,
+              launchOptions,
+              parsedOptions,
+              logger,
+              printStream,
+              sauceConnectPath,
+              legacy);
+      final Process process = launched.getProcess();
+      if (launched.getTunnelId() != null) {
+        tunnelInformation.setTunnelId(launched.getTunnelId());
       }
 
       incrementProcessCountForUser(tunnelInformation, logger);
       tunnelInformation.setProcess(process);
-      List<Process> processes = openedProcesses;
+      List<Process> processes = openedProcesses.get(name);
       if (processes == null) {
         processes = new ArrayList<>();
         this.openedProcesses.put(name, processes);
       }
       processes.add(process);
+
+      Logger restartLogger = logger;
+      String restartOptions = options;
+      supervisor.supervise(
+          name,
+          process,
+          tunnelName ->
+              restartTunnel(
+                  tunnelInformation,
+                  username,
+                  apiKey,
+                  dataCenter,
+                  apiPort,
+                  sauceConnectJar,
+                  restartOptions,
+                  restartLogger,
+                  printStream,
+                  verboseLogging,
+                  sauceConnectPath,
+                  legacy));
+      if (telemetry != null) {
+        telemetry.start(name, apiPort);
+      }
       return process;
     } finally {
       // release the access lock
@@ -711,13 +1152,223 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
     }
   }
 
-  private void waitForReadiness(String tunnelId, Logger logger) {
+  /**
+   * Starts adding a process to the pool of a running tunnel, on a thread of its own so the callers
+   * of the tunnel do not wait for it while they hold its lock. Called with the lock held.
+   */
+  private void startShard(
+      TunnelInformation tunnelInformation,
+      String name,
+      String username,
+      String apiKey,
+      DataCenter dataCenter,
+      File sauceConnectJar,
+      String options,
+      SauceConnectOptions parsedOptions,
+      Logger logger,
+      PrintStream printStream,
+      String sauceConnectPath,
+      boolean legacy) {
+    String label = tunnelInformation.nextShardLabel();
+    tunnelInformation.setShardLaunching(true);
+    logger.info(
+        "Launching Sauce Connect shard {} for {} callers",
+        label,
+        tunnelInformation.getProcessCount() + 1);
+    Thread thread =
+        new Thread(
+            () ->
+                launchShard(
+                    tunnelInformation,
+                    label,
+                    name,
+                    username,
+                    apiKey,
+                    dataCenter,
+                    sauceConnectJar,
+                    options,
+                    parsedOptions,
+                    logger,
+                    printStream,
+                    sauceConnectPath,
+                    legacy),
+            "sauce-connect-shard");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Adds a process to the pool of a running tunnel, without holding its lock while the process
+   * starts. A failure is logged, the callers share the processes already running, and a shard
+   * which started after its tunnel was closed is closed too.
+   */
+  private void launchShard(
+      TunnelInformation tunnelInformation,
+      String label,
+      String name,
+      String username,
+      String apiKey,
+      DataCenter dataCenter,
+      File sauceConnectJar,
+      String options,
+      SauceConnectOptions parsedOptions,
+      Logger logger,
+      PrintStream printStream,
+      String sauceConnectPath,
+      boolean legacy) {
+    String shardOptions = poolOptions(options, parsedOptions);
+    String logfile = parsedOptions.getLogfile();
+    if (logfile != null) {
+      // each process needs its own log
+      String index = label.substring(label.lastIndexOf('#') + 1);
+      shardOptions += " --logfile " + SauceConnectOptions.quote(logfile + "." + index);
+    }
+    TunnelInformation.Shard shard = null;
+    try {
+      int apiPort = findFreePort();
+      shard =
+          launchProcess(
+              endpointOf(tunnelInformation),
+              label,
+              name,
+              username,
+              apiKey,
+              dataCenter,
+              apiPort,
+              sauceConnectJar,
+              shardOptions,
+              parsedOptions,
+              logger,
+              printStream,
+              sauceConnectPath,
+              legacy);
+    } catch (SauceConnectException e) {
+      logger.warn("Unable to launch Sauce Connect shard {}", label, e);
+    }
+
+    boolean closed;
+    tunnelInformation.getLock().lock();
+    try {
+      tunnelInformation.setShardLaunching(false);
+      closed = tunnelInformationMap.get(name) != tunnelInformation;
+      if (shard != null && !closed) {
+        tunnelInformation.addShard(shard);
+        openedProcesses.computeIfAbsent(name, key -> new ArrayList<>()).add(shard.getProcess());
+        supervisor.supervise(label, shard.getProcess(), null);
+        if (telemetry != null) {
+          telemetry.start(label, shard.getApiPort());
+        }
+      }
+    } finally {
+      tunnelInformation.getLock().unlock();
+    }
+    if (shard != null && closed) {
+      logger.info("Tunnel {} was closed while shard {} started, closing it", name, label);
+      closeSauceConnectProcess(logger, shard.getProcess());
+      forgetProcess(shard.getProcess(), logger);
+      stopTunnel(endpointOf(tunnelInformation), shard.getTunnelId(), logger);
+    }
+  }
+
+  /**
+   * @return the options with {@code --tunnel-pool}, so several processes can share the tunnel name
+   */
+  private static String poolOptions(String options, SauceConnectOptions parsedOptions) {
+    return parsedOptions.has("--tunnel-pool") ? options : options + " --tunnel-pool";
+  }
+
+  /**
+   * Launches a Sauce Connect process and waits until its tunnel is ready.
+   *
+   * @param endpoint endpoint of the user, to check the readiness of the tunnel
+   * @param label name of the process, the tunnel name or the label of a shard
+   * @param name the tunnel name
+   * @return the process and the id of its tunnel, null if not known
+   * @throws SauceConnectException thrown if Sauce Connect could not be launched
+   */
+  private TunnelInformation.Shard launchProcess(
+      SauceConnectEndpoint endpoint,
+      String label,
+      String name,
+      String username,
+      String apiKey,
+      DataCenter dataCenter,
+      int apiPort,
+      File sauceConnectJar,
+      String options,
+      SauceConnectOptions parsedOptions,
+      Logger logger,
+      PrintStream printStream,
+      String sauceConnectPath,
+      boolean legacy)
+      throws SauceConnectException {
+    final Process process =
+      prepAndCreateProcess(username, apiKey, apiPort, sauceConnectJar, options, logger, sauceConnectPath, legacy);
+    // recorded at once, so the process is found if this JVM dies while it starts
+    recordProcess(process, apiPort, name, username, dataCenter, logger);
+
+    // Print sauceconnect process stdout/stderr
+    if (!quietMode) {
+      SecretRedactor redactor =
+          SecretRedactor.forArgs(joinArgs(new String[] {"--access-key", apiKey}, parsedOptions.toArray()));
+      new Thread(processOutputPrinter.getStdoutPrinter(process.getInputStream(), printStream, redactor)).start();
+      new Thread(processOutputPrinter.getStderrPrinter(process.getErrorStream(), printStream, redactor)).start();
+    }
+
+    SCMonitor scMonitor = scMonitorFactory.create(apiPort, logger);
+
+    String provisionedTunnelId = null;
+    try {
+      Semaphore semaphore = new Semaphore(1);
+      semaphore.acquire();
+      scMonitor.setSemaphore(semaphore);
+      new Thread(scMonitor).start();
+
+      boolean sauceConnectStarted = semaphore.tryAcquire(HEALTHCHECK_TIMEOUT.getSeconds(), TimeUnit.SECONDS);
+      if (sauceConnectStarted && !scMonitor.isFailed()) {
+        // everything okay, continue the build
+        provisionedTunnelId = scMonitor.getTunnelId();
+        recordTunnelId(process, provisionedTunnelId, logger);
+        if (provisionedTunnelId != null) {
+          waitForReadiness(endpoint, provisionedTunnelId, logger);
+        }
+        logger.info("Sauce Connect now launched version={} name={}", getCurrentVersion(), label);
+      } else {
+        // stop sc monitor
+        scMonitor.markAsFailed();
+
+        String message = scMonitor.isFailed()
+          ? "Error launching Sauce Connect"
+          : "Time out while waiting for Sauce Connect to start";
+
+        File sauceConnectLogFile = getSauceConnectLogFile(options);
+        if (sauceConnectLogFile == null) {
+          message += ", please check the Sauce Connect log";
+        } else {
+          message += ", please check the Sauce Connect log located in " + sauceConnectLogFile.getAbsoluteFile();
+        }
+
+        logger.error(message, scMonitor.getLastHealtcheckException());
+
+        // ensure that Sauce Connect process is closed
+        closeSauceConnectProcess(logger, process);
+        forgetProcess(process, logger);
+        throw new SauceConnectDidNotStartException(message, scMonitor.getLastHealtcheckException());
+      }
+    } catch (InterruptedException e) {
+      // continue;
+      logger.warn("Exception occurred during invocation of Sauce Connect", e);
+    }
+    return new TunnelInformation.Shard(label, process, provisionedTunnelId, apiPort);
+  }
+
+  private void waitForReadiness(SauceConnectEndpoint endpoint, String tunnelId, Logger logger) {
     long pollingIntervalMillis = READINESS_CHECK_POLLING_INTERVAL.toMillis();
     long endTime = System.currentTimeMillis() + READINESS_CHECK_TIMEOUT.toMillis();
     try {
       do {
         long iterationStartTime = System.currentTimeMillis();
-        Boolean isReady = scEndpoint.getTunnelInformation(tunnelId).isReady;
+        Boolean isReady = endpoint.getTunnelInformation(tunnelId).isReady;
         if (Boolean.TRUE.equals(isReady)) {
             logger.info("Tunnel with ID {} is ready for use", tunnelId);
             return;
@@ -738,6 +1389,347 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
     }
   }
 
+  /**
+   * Launches the tunnel again after its process exited unexpectedly, keeping its process count.
+   *
+   * @return the new process, null if the tunnel has been closed in the meantime
+   */
+  private Process restartTunnel(
+      TunnelInformation tunnelInformation,
+      String username,
+      String apiKey,
+      DataCenter dataCenter,
+      int apiPort,
+      File sauceConnectJar,
+      String options,
+      Logger logger,
+      PrintStream printStream,
+      Boolean verboseLogging,
+      String sauceConnectPath,
+      boolean legacy)
+      throws SauceConnectException {
+    tunnelInformation.getLock().lock();
+    try {
+      int count = tunnelInformation.getProcessCount();
+      boolean closed =
+          tunnelInformationMap.get(tunnelInformation.toString()) != tunnelInformation;
+      // a shard may have taken over the tunnel, the exit may not have been applied yet
+      Process current = tunnelInformation.getProcess();
+      if (count <= 0 || closed || (current != null && current.isAlive())) {
+        return null;
+      }
+      logger.info("Restarting Sauce Connect for {}", tunnelInformation);
+      int port = reusablePort(apiPort, logger);
+      tunnelInformation.setProcessCount(0);
+      try {
+        return openConnection(
+            username,
+            apiKey,
+            dataCenter,
+            port,
+            sauceConnectJar,
+            options,
+            logger,
+            printStream,
+            verboseLogging,
+            sauceConnectPath,
+            legacy);
+      } finally {
+        tunnelInformation.setProcessCount(count);
+      }
+    } finally {
+      tunnelInformation.getLock().unlock();
+    }
+  }
+
+  /**
+   * @return the port of the exited process if it can be bound again, else a free one
+   */
+  private int reusablePort(int apiPort, Logger logger) throws SauceConnectException {
+    try (ServerSocket socket = new ServerSocket(apiPort)) {
+      return apiPort;
+    } catch (IOException e) {
+      int port = findFreePort();
+      logger.info("API port {} is not available anymore, using {}", apiPort, port);
+      return port;
+    }
+  }
+
+  /**
+   * Keeps the tunnels up to date with the exits seen by the supervisor. Runs on the thread of
+   * {@link #tunnelEvents}, so a restart may have replaced the exited process already.
+   */
+  private void tunnelEvent(TunnelSupervisor.Event event) {
+    Logger logger = LoggerFactory.getLogger(AbstractSauceTunnelManager.class);
+    TunnelInformation tunnelInformation = tunnelInformationMap.get(event.getTunnelName());
+    switch (event.getType()) {
+      case EXITED:
+        logger.warn(
+            "Sauce Connect process of {} exited unexpectedly with code {}",
+            event.getTunnelName(),
+            event.getExitCode());
+        forgetProcess(event.getProcess(), logger);
+        if (tunnelInformation == null) {
+          tunnelInformation = findShardOwner(event.getProcess());
+        }
+        if (tunnelInformation == null) {
+          stopTelemetry(event.getTunnelName());
+        } else {
+          tunnelInformation.getLock().lock();
+          try {
+            if (tunnelInformation.getProcess() == event.getProcess()) {
+              stopTelemetry(event.getTunnelName());
+              tunnelInformation.setProcess(null);
+              promoteShard(tunnelInformation, logger);
+            } else if (tunnelInformation.removeShard(event.getProcess()) != null) {
+              stopTelemetry(event.getTunnelName());
+            }
+            List<Process> processes = openedProcesses.get(tunnelInformation.toString());
+            if (processes != null) {
+              processes.remove(event.getProcess());
+            }
+          } finally {
+            tunnelInformation.getLock().unlock();
+          }
+        }
+        break;
+      case LOST:
+        if (tunnelInformation != null) {
+          tunnelInformation.getLock().lock();
+          try {
+            if (tunnelInformation.getProcess() == null) {
+              // kept for its callers, the last one to close it stops the tunnel
+              logger.warn("Sauce Connect is not running anymore for {}", event.getTunnelName());
+            }
+          } finally {
+            tunnelInformation.getLock().unlock();
+          }
+        }
+        break;
+      case RESTART_FAILED:
+        logger.warn(
+            "Unable to restart Sauce Connect for {}", event.getTunnelName(), event.getError());
+        break;
+      default:
+        logger.info("Sauce Connect {}", event);
+    }
+  }
+
+  /**
+   * @return the endpoint set with {@link #setSauceRest(SauceREST)}, or else the one of the user
+   *     for the data center
+   */
+  private SauceConnectEndpoint getSauceConnectEndpoint(
+      String username, String apiKey, DataCenter dataCenter) {
+    SauceConnectEndpoint endpoint = scEndpoint;
+    return endpoint != null
+        ? endpoint
+        : restClients.getSauceConnectEndpoint(username, apiKey, dataCenter);
+  }
+
+  /**
+   * @return the endpoint the tunnel was opened with, or else the one set with {@link
+   *     #setSauceRest(SauceREST)}
+   */
+  private SauceConnectEndpoint endpointOf(TunnelInformation tunnelInformation) {
+    SauceConnectEndpoint endpoint = tunnelInformation.getEndpoint();
+    return endpoint != null ? endpoint : scEndpoint;
+  }
+
+  private TunnelInformation findShardOwner(Process process) {
+    for (TunnelInformation tunnelInformation : tunnelInformationMap.values()) {
+      for (TunnelInformation.Shard shard : tunnelInformation.getShards()) {
+        if (shard.getProcess() == process) {
+          return tunnelInformation;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Lets a shard take over a tunnel whose main process exited, the tunnel keeps running. */
+  private void promoteShard(TunnelInformation tunnelInformation, Logger logger) {
+    TunnelInformation.Shard shard = tunnelInformation.promoteShard();
+    if (shard == null) {
+      return;
+    }
+    String name = tunnelInformation.toString();
+    logger.info("Sauce Connect shard {} now runs {}", shard.getLabel(), name);
+    supervisor.release(shard.getProcess());
+    supervisor.supervise(name, shard.getProcess(), null);
+    if (telemetry != null) {
+      telemetry.stop(shard.getLabel());
+      telemetry.start(name, shard.getApiPort());
+    }
+  }
+
+  /**
+   * Tunnels of the entries recorded without their user, which can't be stopped through the client
+   * of another user.
+   */
+  private static final SauceConnectProcessReaper.TunnelRegistry UNKNOWN_USER_TUNNELS =
+      new SauceConnectProcessReaper.TunnelRegistry() {
+        @Override
+        public Set<String> getRunningTunnelIds() {
+          return Collections.emptySet();
+        }
+
+        @Override
+        public void stopTunnel(String tunnelId) {
+          // never called, no tunnel is running
+        }
+      };
+
+  private void reconcileOrphanedProcesses(Logger logger) {
+    // one registry by endpoint, so the tunnels of a user are listed once
+    Map<SauceConnectEndpoint, SauceConnectProcessReaper.TunnelRegistry> registries =
+        new IdentityHashMap<>();
+    try {
+      SauceConnectProcessReaper.Result result =
+          processReaper.reconcile(
+              entry -> {
+                if (scEndpoint == null && entry.getUsername() == null) {
+                  return UNKNOWN_USER_TUNNELS;
+                }
+                SauceConnectEndpoint endpoint = orphanEndpoint(entry);
+                if (endpoint == null) {
+                  return null;
+                }
+                return registries.computeIfAbsent(
+                    endpoint, AbstractSauceTunnelManager::tunnelRegistry);
+              },
+              logger);
+      if (!result.getRemoved().isEmpty() || !result.getAdopted().isEmpty()) {
+        logger.info(
+            "Orphaned Sauce Connect processes killed={} adopted={} tunnelsStopped={}",
+            result.getKilled().size(),
+            result.getAdopted().size(),
+            result.getStoppedTunnelIds().size());
+      }
+      for (SauceConnectProcessReaper.Entry entry : result.getAdopted()) {
+        adoptProcess(entry, orphanEndpoint(entry), logger);
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to reconcile orphaned Sauce Connect processes", e);
+    }
+  }
+
+  /**
+   * @return the endpoint of the user and data center of a recorded process, null if the user has
+   *     not connected yet
+   */
+  private SauceConnectEndpoint orphanEndpoint(SauceConnectProcessReaper.Entry entry) {
+    SauceConnectEndpoint endpoint = scEndpoint;
+    if (endpoint != null || entry.getUsername() == null || entry.getDataCenter() == null) {
+      return endpoint;
+    }
+    try {
+      return restClients.getSauceConnectEndpoint(
+          entry.getUsername(), DataCenter.valueOf(entry.getDataCenter()));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static SauceConnectProcessReaper.TunnelRegistry tunnelRegistry(
+      SauceConnectEndpoint endpoint) {
+    return new SauceConnectProcessReaper.TunnelRegistry() {
+      @Override
+      public Set<String> getRunningTunnelIds() throws IOException {
+        Set<String> ids = new HashSet<>();
+        for (com.saucelabs.saucerest.model.sauceconnect.TunnelInformation tunnel :
+            endpoint.getTunnelsInformationForAUser()) {
+          if ("running".equalsIgnoreCase(tunnel.status)) {
+            ids.add(tunnel.id);
+          }
+        }
+        return ids;
+      }
+
+      @Override
+      public void stopTunnel(String tunnelId) throws IOException {
+        endpoint.stopTunnel(tunnelId);
+      }
+    };
+  }
+
+  /**
+   * Registers an adopted process as the process of its tunnel, so that it is supervised, handed
+   * out to the callers of its tunnel and closed with it.
+   */
+  private void adoptProcess(
+      SauceConnectProcessReaper.Entry entry, SauceConnectEndpoint endpoint, Logger logger) {
+    Optional<ProcessHandle> handle = processReaper.findProcess(entry);
+    if (!handle.isPresent() || entry.getTunnelName() == null) {
+      return;
+    }
+    String name = entry.getTunnelName();
+    TunnelInformation tunnelInformation = getTunnelInformation(name);
+    tunnelInformation.getLock().lock();
+    try {
+      if (tunnelInformation.getProcess() != null) {
+        logger.warn("Tunnel {} already has a process, not registering {}", name, entry);
+        return;
+      }
+      Process process = new AdoptedProcess(handle.get());
+      tunnelInformation.setProcess(process);
+      tunnelInformation.setTunnelId(entry.getTunnelId());
+      tunnelInformation.setEndpoint(endpoint);
+      openedProcesses.computeIfAbsent(name, key -> new ArrayList<>()).add(process);
+      supervisor.supervise(name, process, null);
+      if (telemetry != null) {
+        telemetry.start(name, entry.getApiPort());
+      }
+    } finally {
+      tunnelInformation.getLock().unlock();
+    }
+  }
+
+  private void recordProcess(
+      Process process,
+      int apiPort,
+      String name,
+      String username,
+      DataCenter dataCenter,
+      Logger logger) {
+    if (processReaper == null) {
+      return;
+    }
+    try {
+      processReaper.record(process.toHandle(), apiPort, name, username, dataCenter.name());
+    } catch (IOException | UnsupportedOperationException e) {
+      logger.warn("Unable to record Sauce Connect process", e);
+    }
+  }
+
+  private void recordTunnelId(Process process, String tunnelId, Logger logger) {
+    if (processReaper == null || tunnelId == null) {
+      return;
+    }
+    try {
+      processReaper.setTunnelId(process.pid(), tunnelId);
+    } catch (IOException | UnsupportedOperationException e) {
+      logger.warn("Unable to record Sauce Connect tunnel id", e);
+    }
+  }
+
+  private void stopTelemetry(String tunnelName) {
+    if (telemetry != null) {
+      telemetry.stop(tunnelName);
+    }
+  }
+
+  private void forgetProcess(Process process, Logger logger) {
+    if (processReaper == null || process == null) {
+      return;
+    }
+    try {
+      processReaper.remove(process.pid());
+    } catch (IOException | UnsupportedOperationException e) {
+      logger.warn("Unable to forget Sauce Connect process", e);
+    }
+  }
+
   private TunnelInformation getTunnelInformation(String name) {
     if (name == null) {
       return null;
@@ -752,10 +1744,11 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
    * @param tunnelName tunnel name, can be the same as the username
    * @return String the internal Sauce tunnel id
    */
-  private String activeTunnelID(String username, String tunnelName, Logger logger) {
+  private String activeTunnelID(
+      SauceConnectEndpoint endpoint, String username, String tunnelName, Logger logger) {
     try {
       List<com.saucelabs.saucerest.model.sauceconnect.TunnelInformation> tunnelsInformation =
-        scEndpoint.getTunnelsInformationForAUser();
+        endpoint.getTunnelsInformationForAUser();
 
       for (com.saucelabs.saucerest.model.sauceconnect.TunnelInformation tunnelInformation : tunnelsInformation) {
         String configName = tunnelInformation.tunnelIdentifier;
@@ -821,11 +1814,25 @@ public abstract class AbstractSauceTunnelManager implements SauceTunnelManager {
     }
   }
 
+  /** Waits for the messages queued by an asynchronous print stream logger to be written. */
+  private static void flushLogger(Logger logger) {
+    if (logger instanceof LoggerUsingPrintStream) {
+      try {
+        ((LoggerUsingPrintStream) logger).flush();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   private Logger createLogger(PrintStream printStream) {
     if (printStream == null) {
       return LoggerFactory.getLogger(AbstractSauceTunnelManager.class);
     }
 
-    return new LoggerUsingPrintStream(printStream);
+    if (printStreamLogCapacity > 0) {
+      return LoggerUsingPrintStream.async(printStream, printStreamLogLevel, printStreamLogCapacity);
+    }
+    return new LoggerUsingPrintStream(printStream, printStreamLogLevel);
   }
 }
@@ -0,0 +1,104 @@
+package com.saucelabs.ci.sauceconnect;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A Sauce Connect process launched by a JVM which is gone and adopted by the current one. Only its
+ * handle is known: its output is not available and its exit code is reported as 0.
+ *
+ * @author Sauce Labs
+ */
+final class AdoptedProcess extends Process {
+
+  private final ProcessHandle handle;
+
+  AdoptedProcess(ProcessHandle handle) {
+    this.handle = handle;
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return OutputStream.nullOutputStream();
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return InputStream.nullInputStream();
+  }
+
+  @Override
+  public InputStream getErrorStream() {
+    return InputStream.nullInputStream();
+  }
+
+  @Override
+  public int waitFor() throws InterruptedException {
+    try {
+      handle.onExit().get();
+    } catch (ExecutionException e) {
+      // the handle completes normally
+    }
+    return 0;
+  }
+
+  @Override
+  public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+    try {
+      handle.onExit().get(timeout, unit);
+      return true;
+    } catch (ExecutionException e) {
+      return !handle.isAlive();
+    } catch (TimeoutException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public int exitValue() {
+    if (handle.isAlive()) {
+      throw new IllegalThreadStateException("process " + handle.pid() + " has not exited");
+    }
+    return 0;
+  }
+
+  @Override
+  public void destroy() {
+    handle.destroy();
+  }
+
+  @Override
+  public Process destroyForcibly() {
+    handle.destroyForcibly();
+    return this;
+  }
+
+  @Override
+  public boolean supportsNormalTermination() {
+    return handle.supportsNormalTermination();
+  }
+
+  @Override
+  public boolean isAlive() {
+    return handle.isAlive();
+  }
+
+  @Override
+  public long pid() {
+    return handle.pid();
+  }
+
+  @Override
+  public ProcessHandle toHandle() {
+    return handle;
+  }
+
+  @Override
+  public CompletableFuture<Process> onExit() {
+    return handle.onExit().thenApply(exited -> this);
+  }
+}
@@ -0,0 +1,322 @@
+package com.saucelabs.ci.sauceconnect;
+
+import com.saucelabs.saucerest.DataCenter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the data center closest to this machine, for the callers which pass {@value #AUTO}
+ * instead of a data center name.
+ *
+ * <p>The candidates are probed in parallel with a lightweight request to the REST API of each
+ * data center. The latency of each one is an exponentially weighted moving average of its probes,
+ * so one slow answer does not move the choice, and a probe which fails or times out counts as
+ * taking the whole timeout. The estimates are refreshed by a new round of probes once they are
+ * older than the maximum age; concurrent callers share the round in flight.
+ *
+ * @author Sauce Labs
+ */
+public class DataCenterSelector {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DataCenterSelector.class);
+
+  /** Data center name which selects the fastest one. */
+  public static final String AUTO = "auto";
+
+  /** Public status resource of the REST API of each data center. */
+  static final Map<DataCenter, URI> STATUS_URIS;
+
+  /** Region names of Sauce Connect for each data center. */
+  private static final Map<DataCenter, String> REGIONS;
+
+  static {
+    Map<DataCenter, String> regions = new EnumMap<>(DataCenter.class);
+    regions.put(DataCenter.US_WEST, "us-west");
+    regions.put(DataCenter.US_EAST, "us-east");
+    regions.put(DataCenter.EU_CENTRAL, "eu-central");
+    regions.put(DataCenter.APAC_SOUTHEAST, "apac-southeast");
+    REGIONS = Collections.unmodifiableMap(regions);
+
+    Map<DataCenter, URI> uris = new EnumMap<>(DataCenter.class);
+    uris.put(DataCenter.US_WEST, statusUri("us-west-1"));
+    uris.put(DataCenter.US_EAST, statusUri("us-east-4"));
+    uris.put(DataCenter.EU_CENTRAL, statusUri("eu-central-1"));
+    uris.put(DataCenter.APAC_SOUTHEAST, statusUri("apac-southeast-1"));
+    STATUS_URIS = Collections.unmodifiableMap(uris);
+  }
+
+  private static URI statusUri(String host) {
+    return URI.create("https://api." + host + ".saucelabs.com/rest/v1/info/status");
+  }
+
+  /** Measures the round trip to a data center. */
+  @FunctionalInterface
+  public interface Prober {
+    /**
+     * @param dataCenter the data center to probe
+     * @return the time the data center took to answer, completed exceptionally if it did not
+     */
+    CompletableFuture<Duration> probe(DataCenter dataCenter);
+  }
+
+  private final List<DataCenter> candidates;
+  private final Prober prober;
+  private final Duration timeout;
+  private final double alpha;
+  private final long maxAgeNanos;
+  private final Map<DataCenter, Double> estimates = new EnumMap<>(DataCenter.class);
+  private long probedAt;
+  private CompletableFuture<Map<DataCenter, Duration>> inFlight;
+
+  /** Probes all the data centers through their REST API. */
+  public DataCenterSelector() {
+    this(
+        STATUS_URIS.keySet(),
+        httpProber(STATUS_URIS, Duration.ofSeconds(2)),
+        Duration.ofSeconds(2),
+        0.3,
+        Duration.ofMinutes(5));
+  }
+
+  /**
+   * @param candidates the data centers to choose from
+   * @param prober measures the round trip to a data center
+   * @param timeout longest wait for a probe, also the latency counted when it fails
+   * @param alpha weight of a new probe in the estimate, between 0 exclusive and 1 inclusive
+   * @param maxAge age of the estimates after which the data centers are probed again
+   */
+  public DataCenterSelector(
+      Collection<DataCenter> candidates,
+      Prober prober,
+      Duration timeout,
+      double alpha,
+      Duration maxAge) {
+    if (candidates.isEmpty()) {
+      throw new IllegalArgumentException("candidates are required");
+    }
+    if (!(alpha > 0 && alpha <= 1)) {
+      throw new IllegalArgumentException("alpha must be in (0, 1]: " + alpha);
+    }
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("timeout must be positive: " + timeout);
+    }
+    this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+    this.prober = prober;
+    this.timeout = timeout;
+    this.alpha = alpha;
+    this.maxAgeNanos = maxAge.toNanos();
+  }
+
+  /**
+   * @param uris resource to request for each data center
+   * @param timeout longest wait for an answer
+   * @return a prober timing a GET request until the response headers arrive, whatever its status
+   */
+  public static Prober httpProber(Map<DataCenter, URI> uris, Duration timeout) {
+    HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    Map<DataCenter, URI> targets = new EnumMap<>(uris);
+    return dataCenter -> {
+      URI uri = targets.get(dataCenter);
+      if (uri == null) {
+        CompletableFuture<Duration> unknown = new CompletableFuture<>();
+        unknown.completeExceptionally(
+            new IllegalArgumentException("No probe address for " + dataCenter));
+        return unknown;
+      }
+      HttpRequest request = HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+      long start = System.nanoTime();
+      return client
+          .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .thenApply(response -> Duration.ofNanos(System.nanoTime() - start));
+    };
+  }
+
+  /**
+   * @param name a data center name, or {@value #AUTO} for the fastest one
+   * @return the data center
+   */
+  public DataCenter resolve(String name) {
+    return AUTO.equalsIgnoreCase(name) ? select() : DataCenter.fromString(name);
+  }
+
+  /**
+   * Picks the data center of Sauce Connect options which already have a {@code --region}, so the
+   * REST client matches the region of the tunnel without probing.
+   *
+   * @param options the command line options of Sauce Connect
+   * @return the data center of their region, else the one with the lowest estimated latency
+   */
+  public DataCenter select(String options) {
+    String region = SauceConnectOptions.parse(options).getRegion();
+    DataCenter dataCenter = region == null ? null : dataCenterOf(region);
+    if (dataCenter != null) {
+      return dataCenter;
+    }
+    if (region != null) {
+      LOGGER.warn("Unknown region {}, selecting the fastest data center", region);
+    }
+    return select();
+  }
+
+  /**
+   * Probes the data centers first if the estimates are missing or too old.
+   *
+   * @return the data center with the lowest estimated latency
+   */
+  public DataCenter select() {
+    CompletableFuture<Map<DataCenter, Duration>> round;
+    synchronized (this) {
+      boolean stale = estimates.isEmpty() || System.nanoTime() - probedAt > maxAgeNanos;
+      round = stale ? probe() : null;
+    }
+    if (round != null) {
+      round.join();
+    }
+    DataCenter fastest = null;
+    synchronized (this) {
+      double lowest = Double.MAX_VALUE;
+      for (DataCenter dataCenter : candidates) {
+        Double estimate = estimates.get(dataCenter);
+        if (estimate != null && estimate < lowest) {
+          lowest = estimate;
+          fastest = dataCenter;
+        }
+      }
+    }
+    LOGGER.info("Selected data center {}, estimates {}", fastest, getEstimates());
+    return fastest;
+  }
+
+  /**
+   * Probes all the candidates in parallel and folds the results in the estimates, unless a round
+   * is already in flight, which is returned instead.
+   *
+   * @return the estimates once all the probes completed or timed out
+   */
+  public synchronized CompletableFuture<Map<DataCenter, Duration>> probe() {
+    if (inFlight != null) {
+      return inFlight;
+    }
+    List<CompletableFuture<Void>> probes = new ArrayList<>();
+    for (DataCenter dataCenter : candidates) {
+      CompletableFuture<Duration> probe;
+      try {
+        probe = prober.probe(dataCenter).toCompletableFuture();
+      } catch (RuntimeException e) {
+        probe = new CompletableFuture<>();
+        probe.completeExceptionally(e);
+      }
+      probes.add(
+          probe
+              .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+              .handle(
+                  (latency, failure) -> {
+                    if (failure != null) {
+                      LOGGER.debug("Probe of {} failed", dataCenter, failure);
+                    }
+                    record(dataCenter, failure == null ? latency : timeout);
+                    return null;
+                  }));
+    }
+    CompletableFuture<Map<DataCenter, Duration>> round =
+        CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[0]))
+            .thenApply(
+                ignored -> {
+                  synchronized (this) {
+                    probedAt = System.nanoTime();
+                    inFlight = null;
+                  }
+                  return getEstimates();
+                });
+    if (!round.isDone()) {
+      inFlight = round;
+    }
+    return round;
+  }
+
+  private synchronized void record(DataCenter dataCenter, Duration latency) {
+    double sample = latency.toNanos();
+    Double previous = estimates.get(dataCenter);
+    estimates.put(
+        dataCenter, previous == null ? sample : alpha * sample + (1 - alpha) * previous);
+  }
+
+  /**
+   * @param dataCenter a candidate
+   * @return its estimated latency, null if it was not probed yet
+   */
+  public synchronized Duration getEstimate(DataCenter dataCenter) {
+    Double estimate = estimates.get(dataCenter);
+    return estimate == null ? null : Duration.ofNanos(Math.round(estimate));
+  }
+
+  /**
+   * @return the estimated latencies, in candidate order
+   */
+  public synchronized Map<DataCenter, Duration> getEstimates() {
+    Map<DataCenter, Duration> result = new LinkedHashMap<>();
+    for (DataCenter dataCenter : candidates) {
+      Duration estimate = getEstimate(dataCenter);
+      if (estimate != null) {
+        result.put(dataCenter, estimate);
+      }
+    }
+    return result;
+  }
+
+  public List<DataCenter> getCandidates() {
+    return candidates;
+  }
+
+  /**
+   * @param dataCenter a data center
+   * @return the value of the {@code --region} option of Sauce Connect for it, null if not known
+   */
+  static String regionOf(DataCenter dataCenter) {
+    return REGIONS.get(dataCenter);
+  }
+
+  /**
+   * @param region the value of the {@code --region} option of Sauce Connect
+   * @return its data center, null if not known
+   */
+  static DataCenter dataCenterOf(String region) {
+    for (Map.Entry<DataCenter, String> entry : REGIONS.entrySet()) {
+      if (entry.getValue().equalsIgnoreCase(region)
+          || entry.getKey().name().equalsIgnoreCase(region)) {
+        return entry.getKey();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param options the command line options of Sauce Connect
+   * @param dataCenter the data center of the tunnel
+   * @return the options with the region of the data center, unless they have one already
+   */
+  static String withRegion(String options, DataCenter dataCenter) {
+    String region = regionOf(dataCenter);
+    if (region == null || SauceConnectOptions.parse(options).getRegion() != null) {
+      return options;
+    }
+    return options == null || options.isEmpty()
+        ? "--region " + region
+        : options + " --region " + region;
+  }
+}
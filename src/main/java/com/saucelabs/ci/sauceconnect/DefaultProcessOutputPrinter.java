@@ -6,32 +6,33 @@ import java.io.*;
 
 public class DefaultProcessOutputPrinter implements ProcessOutputPrinter {
     public Runnable getStdoutPrinter(InputStream stdout, PrintStream printStream) {
-        return () -> {
-            if (stdout == null || printStream == null) {
-                return;
-            }
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stdout))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    print(printStream, "[sauceconnect] [stdout] " + line);
-                }
-            } catch (IOException e) {
-                //
-            }
-        };
+        return getStdoutPrinter(stdout, printStream, SecretRedactor.NONE);
     }
 
     public Runnable getStderrPrinter(InputStream stderr, PrintStream printStream) {
+        return getStderrPrinter(stderr, printStream, SecretRedactor.NONE);
+    }
+
+    @Override
+    public Runnable getStdoutPrinter(InputStream stdout, PrintStream printStream, SecretRedactor redactor) {
+        return getPrinter(stdout, printStream, redactor, "[sauceconnect] [stdout] ");
+    }
+
+    @Override
+    public Runnable getStderrPrinter(InputStream stderr, PrintStream printStream, SecretRedactor redactor) {
+        return getPrinter(stderr, printStream, redactor, "[sauceconnect] [stderr] ");
+    }
+
+    private Runnable getPrinter(InputStream output, PrintStream printStream, SecretRedactor redactor, String prefix) {
         return () -> {
-            if (stderr == null || printStream == null) {
+            if (output == null || printStream == null) {
                 return;
             }
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stderr))) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(output))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    print(printStream, "[sauceconnect] [stderr] " + line);
+                    print(printStream, prefix + redactor.redact(line));
                 }
             } catch (IOException e) {
                 //
@@ -4,13 +4,98 @@ import org.slf4j.Marker;
 import org.slf4j.event.Level;
 import org.slf4j.helpers.MessageFormatter;
 
+import java.io.Closeable;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logger writing to a {@link PrintStream}, such as a build console. Messages below the threshold
+ * level are discarded before they are formatted. Messages are formatted into a buffer reused by
+ * each thread.
+ *
+ * <p>In asynchronous mode, see {@link #async(PrintStream, Level, int)}, messages are put in a
+ * bounded queue and written by a daemon thread, which writes all the queued messages at once, so
+ * logging threads don't wait for the lock of the stream. A logging thread only waits when the
+ * queue is full. The thread is started by the first message and stops once it has been idle for a
+ * few seconds, so a logger which is never closed does not keep it. Closing the logger writes the
+ * queued messages, later messages are written directly.
+ *
+ * @author Sauce Labs
+ */
+public class LoggerUsingPrintStream extends org.slf4j.helpers.AbstractLogger
+    implements Closeable {
+
+  private static final int MAX_BATCH = 256;
+  private static final int MAX_RETAINED_BUFFER = 8192;
+  private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private static final ThreadLocal<StringBuilder> BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(256));
 
-public class LoggerUsingPrintStream extends org.slf4j.helpers.AbstractLogger {
   PrintStream printStream;
 
+  /** Ordinal of the most detailed enabled level, levels are ordered from ERROR to TRACE. */
+  private final int threshold;
+
+  private final BlockingQueue<String> queue;
+  private final long idleNanos;
+  private volatile boolean closed;
+
+  /** Thread writing the queued messages, null while idle, guarded by this. */
+  private Thread writer;
+
+  /** Number of messages queued and written, guarded by this. */
+  private long queued;
+  private long written;
+
+  /**
+   * Logs all the levels, synchronously.
+   *
+   * @param printStream stream to write to
+   */
   public LoggerUsingPrintStream(PrintStream printStream) {
+    this(printStream, Level.TRACE);
+  }
+
+  /**
+   * Logs synchronously.
+   *
+   * @param printStream stream to write to
+   * @param threshold most detailed level to log, eg INFO logs INFO, WARN and ERROR messages
+   */
+  public LoggerUsingPrintStream(PrintStream printStream, Level threshold) {
+    this(printStream, threshold, 0, IDLE_NANOS);
+  }
+
+  /**
+   * @param capacity size of the queue, 0 to write synchronously
+   * @param idleNanos time after which the idle writer thread stops
+   */
+  LoggerUsingPrintStream(PrintStream printStream, Level threshold, int capacity, long idleNanos) {
     this.printStream = printStream;
+    this.threshold = threshold.ordinal();
+    this.queue = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : null;
+    this.idleNanos = idleNanos;
+  }
+
+  /**
+   * @param printStream stream to write to
+   * @param threshold most detailed level to log
+   * @param capacity number of messages which can be queued before logging threads wait
+   * @return asynchronous logger
+   */
+  public static LoggerUsingPrintStream async(
+      PrintStream printStream, Level threshold, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    }
+    return new LoggerUsingPrintStream(printStream, threshold, capacity, IDLE_NANOS);
   }
 
   @Override
@@ -19,61 +104,248 @@ public class LoggerUsingPrintStream extends org.slf4j.helpers.AbstractLogger {
   }
 
   @Override
-  protected void handleNormalizedLoggingCall(Level level, Marker marker, String s, Object[] objects, Throwable throwable) {
-    String msg = MessageFormatter.basicArrayFormat(s, objects);
-    printStream.println("[" + level + "] " + msg);
-    if (throwable != null) {
-      throwable.printStackTrace(printStream);
+  protected void handleNormalizedLoggingCall(
+      Level level, Marker marker, String s, Object[] objects, Throwable throwable) {
+    if (!isEnabled(level)) {
+      return;
+    }
+    // arguments and throwables are rendered before the shared buffer is used, as their toString()
+    // may log on this thread too
+    String message =
+        objects == null || objects.length == 0 ? s : MessageFormatter.basicArrayFormat(s, objects);
+    boolean direct = queue == null || closed;
+    String stackTrace = null;
+    if (!direct && throwable != null) {
+      StringWriter trace = new StringWriter();
+      throwable.printStackTrace(new PrintWriter(trace));
+      stackTrace = trace.toString();
+    }
+
+    StringBuilder buffer = BUFFER.get();
+    buffer.setLength(0);
+    buffer.append('[').append(level).append("] ").append(message);
+    if (direct) {
+      writeDirectly(buffer.toString(), throwable);
+    } else {
+      buffer.append(System.lineSeparator());
+      if (stackTrace != null) {
+        buffer.append(stackTrace);
+      }
+      enqueue(buffer.toString());
+    }
+    if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+      BUFFER.remove();
+    }
+  }
+
+  private void writeDirectly(CharSequence line, Throwable throwable) {
+    synchronized (printStream) {
+      printStream.println(line);
+      if (throwable != null) {
+        throwable.printStackTrace(printStream);
+      }
+    }
+  }
+
+  private void enqueue(String message) {
+    synchronized (this) {
+      queued++;
+      // a full queue is only emptied by the writer
+      startWriter();
+    }
+    try {
+      queue.put(message);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      printStream.print(message);
+      synchronized (this) {
+        // counted as written, as flush() may wait for it
+        written++;
+        notifyAll();
+      }
+      return;
+    }
+    synchronized (this) {
+      // the writer may have gone idle before the message was queued
+      startWriter();
+    }
+    if (closed) {
+      // the writer may have stopped before the message was queued
+      writeRemaining();
+    }
+  }
+
+  /** Starts the writer thread unless it is running or the logger is closed, guarded by this. */
+  private void startWriter() {
+    if (writer == null && !closed) {
+      writer = new Thread(this::writeQueued, "sauce-connect-log-writer");
+      writer.setDaemon(true);
+      writer.start();
+    }
+  }
+
+  private synchronized void writeRemaining() {
+    String message;
+    while ((message = queue.poll()) != null) {
+      printStream.print(message);
+      written++;
+    }
+    printStream.flush();
+    notifyAll();
+  }
+
+  /** Body of the writer thread. */
+  private void writeQueued() {
+    List<String> batch = new ArrayList<>(MAX_BATCH);
+    StringBuilder text = new StringBuilder();
+    long idleSince = System.nanoTime();
+    while (true) {
+      try {
+        String first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+        }
+      } catch (InterruptedException e) {
+        // only the poll timeout ends the wait
+      }
+      queue.drainTo(batch, MAX_BATCH - batch.size());
+      if (batch.isEmpty()) {
+        if (closed || System.nanoTime() - idleSince > idleNanos) {
+          synchronized (this) {
+            // checked under the lock, as logging threads start a writer after queuing
+            if (queue.isEmpty()) {
+              writer = null;
+              notifyAll();
+              return;
+            }
+          }
+        }
+        continue;
+      }
+      text.setLength(0);
+      for (String message : batch) {
+        text.append(message);
+      }
+      printStream.print(text);
+      printStream.flush();
+      synchronized (this) {
+        written += batch.size();
+        notifyAll();
+      }
+      batch.clear();
+      idleSince = System.nanoTime();
+    }
+  }
+
+  /**
+   * Waits until the messages logged before the call have been written.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void flush() throws InterruptedException {
+    if (queue == null) {
+      printStream.flush();
+      return;
+    }
+    synchronized (this) {
+      long target = queued;
+      // a message may be counted before it is queued, and then start a writer, so only the
+      // count ends the wait
+      while (written < target) {
+        wait(100);
+      }
+    }
+  }
+
+  /**
+   * Writes the queued messages and stops the writer thread, later messages are written directly.
+   */
+  @Override
+  public void close() {
+    if (queue == null || closed) {
+      return;
+    }
+    Thread running;
+    synchronized (this) {
+      closed = true;
+      running = writer;
+    }
+    if (running != null) {
+      // the writer must be done before the rest is drained here, or messages are reordered
+      boolean interrupted = false;
+      while (running.isAlive()) {
+        try {
+          running.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
     }
+    writeRemaining();
+  }
+
+  synchronized boolean isWriterRunning() {
+    return writer != null;
+  }
+
+  public Level getThreshold() {
+    return Level.values()[threshold];
+  }
+
+  private boolean isEnabled(Level level) {
+    return level.ordinal() <= threshold;
   }
 
   @Override
   public boolean isTraceEnabled() {
-    return true;
+    return isEnabled(Level.TRACE);
   }
 
   @Override
   public boolean isTraceEnabled(Marker marker) {
-    return true;
+    return isEnabled(Level.TRACE);
   }
 
   @Override
   public boolean isDebugEnabled() {
-    return true;
+    return isEnabled(Level.DEBUG);
   }
 
   @Override
   public boolean isDebugEnabled(Marker marker) {
-    return true;
+    return isEnabled(Level.DEBUG);
   }
 
   @Override
   public boolean isInfoEnabled() {
-    return true;
+    return isEnabled(Level.INFO);
   }
 
   @Override
   public boolean isInfoEnabled(Marker marker) {
-    return true;
+    return isEnabled(Level.INFO);
   }
 
   @Override
   public boolean isWarnEnabled() {
-    return true;
+    return isEnabled(Level.WARN);
   }
 
   @Override
   public boolean isWarnEnabled(Marker marker) {
-    return true;
+    return isEnabled(Level.WARN);
   }
 
   @Override
   public boolean isErrorEnabled() {
-    return true;
+    return isEnabled(Level.ERROR);
   }
 
   @Override
   public boolean isErrorEnabled(Marker marker) {
-    return true;
+    return isEnabled(Level.ERROR);
   }
 }
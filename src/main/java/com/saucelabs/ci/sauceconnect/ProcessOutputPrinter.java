@@ -6,4 +6,26 @@ import java.io.PrintStream;
 public interface ProcessOutputPrinter {
   Runnable getStdoutPrinter(InputStream stdout, PrintStream printStream);
   Runnable getStderrPrinter(InputStream stderr, PrintStream printStream);
+
+  /**
+   * @param stdout standard output of Sauce Connect
+   * @param printStream stream to print to
+   * @param redactor hides the secrets of the Sauce Connect command line, ignored by default
+   * @return task printing the output
+   */
+  default Runnable getStdoutPrinter(
+      InputStream stdout, PrintStream printStream, SecretRedactor redactor) {
+    return getStdoutPrinter(stdout, printStream);
+  }
+
+  /**
+   * @param stderr standard error of Sauce Connect
+   * @param printStream stream to print to
+   * @param redactor hides the secrets of the Sauce Connect command line, ignored by default
+   * @return task printing the output
+   */
+  default Runnable getStderrPrinter(
+      InputStream stderr, PrintStream printStream, SecretRedactor redactor) {
+    return getStderrPrinter(stderr, printStream);
+  }
 }
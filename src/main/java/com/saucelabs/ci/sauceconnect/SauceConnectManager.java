@@ -20,9 +20,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 
 /**
  * Handles launching Sauce Connect (binary executable).
@@ -245,40 +243,7 @@ public class SauceConnectManager extends AbstractSauceTunnelManager implements S
   }
 
   public String hideSauceConnectCommandlineSecrets(String[] args) {
-    var map = new HashMap<String, String>();
-    map.put("-k", "^().*");
-    map.put("--access-key", "^().*");
-    map.put("--api-key", "^().*"); // Legacy command
-    map.put("-a", "^().*");
-    map.put("--auth", "^().*");
-    map.put("--api-basic-auth", "^([^:]*:).*");
-    map.put("-x", "^(.*:).*(@.*)");
-    map.put("--proxy", "^(.*:).*(@.*)");
-    String regexpForNextElement = null;
-
-    var replaceMap = new HashMap<String, String>();
-    replaceMap.put("-k", "****");
-    replaceMap.put("--api-key", "****");
-    replaceMap.put("--access-key", "****");
-    replaceMap.put("-a", "****");
-    replaceMap.put("--auth", "****");
-    replaceMap.put("--api-basic-auth", "$1****");
-    replaceMap.put("-x", "$1****$2");
-    replaceMap.put("--proxy", "$1****$2");
-    String replaceForNextElement = null;
-    var hiddenArgs = new ArrayList<String>();
-
-    for (String arg : args) {
-      if (regexpForNextElement != null) {
-        hiddenArgs.add(arg.replaceAll(regexpForNextElement, replaceForNextElement));
-        regexpForNextElement = null;
-      } else {
-        hiddenArgs.add(arg);
-        regexpForNextElement = map.getOrDefault(arg, null);
-        replaceForNextElement = replaceMap.getOrDefault(arg, null);
-      }
-    }
-    return Arrays.toString(hiddenArgs.toArray());
+    return Arrays.toString(SecretRedactor.redactArgs(args));
   }
 
   public void setUseLatestSauceConnect(boolean useLatestSauceConnect) {
@@ -0,0 +1,362 @@
+package com.saucelabs.ci.sauceconnect;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sauce Connect command line options, parsed once from the option string entered by the user.
+ *
+ * <p>The string is split on runs of whitespace, except inside single or double quotes. A backslash
+ * is a plain char, so Windows paths such as {@code C:\logs\sc.log} need no quoting, except inside
+ * double quotes where it escapes a double quote or a backslash. A quote which is not closed is a
+ * plain char too, as in the option strings split on spaces by earlier versions. An option is a
+ * token starting with {@code -}; its value is either the next token, if that one is not an option,
+ * or what follows {@code =} in {@code --option=value}. When an option is repeated, the last value
+ * wins.
+ *
+ * <p>The canonical form uses the long name of the options, puts the options in name order, keeping
+ * the order of repeated ones, and is used by {@link #equals(Object)} and {@link
+ * #getCanonicalHash()}. Options which only differ by the order of the options, the spelling of
+ * their names or quoting are equal.
+ *
+ * <p>Instances are immutable.
+ *
+ * @author Sauce Labs
+ */
+public final class SauceConnectOptions {
+
+  /** Options without any argument. */
+  public static final SauceConnectOptions EMPTY = new SauceConnectOptions(Collections.emptyList());
+
+  private static final Map<String, String> LONG_NAMES = new HashMap<>();
+
+  static {
+    LONG_NAMES.put("-i", "--tunnel-name");
+    LONG_NAMES.put("-l", "--logfile");
+    LONG_NAMES.put("-x", "--proxy");
+    LONG_NAMES.put("-r", "--region");
+    LONG_NAMES.put("-k", "--access-key");
+    LONG_NAMES.put("-a", "--auth");
+    LONG_NAMES.put("-u", "--username");
+  }
+
+  /** An option, or a positional argument when the name is null, with its value. */
+  private static final class Option {
+    private final String name;
+    private final String value;
+
+    Option(String name, String value) {
+      this.name = name;
+      this.value = value;
+    }
+  }
+
+  private final List<String> args;
+  private final List<Option> options = new ArrayList<>();
+  private final String canonicalForm;
+  private String canonicalHash;
+
+  private SauceConnectOptions(List<String> args) {
+    this.args = Collections.unmodifiableList(args);
+    for (int i = 0; i < args.size(); i++) {
+      String arg = args.get(i);
+      if (!isOption(arg)) {
+        options.add(new Option(null, arg));
+        continue;
+      }
+      int equals = arg.startsWith("--") ? arg.indexOf('=') : -1;
+      if (equals > 0) {
+        options.add(new Option(longName(arg.substring(0, equals)), arg.substring(equals + 1)));
+      } else if (i + 1 < args.size() && !isOption(args.get(i + 1))) {
+        options.add(new Option(longName(arg), args.get(++i)));
+      } else {
+        options.add(new Option(longName(arg), null));
+      }
+    }
+
+    List<Option> sorted = new ArrayList<>(options);
+    // stable, so repeated options keep their order
+    sorted.sort(
+        (a, b) -> {
+          if (a.name == null || b.name == null) {
+            return a.name == null ? (b.name == null ? 0 : -1) : 1;
+          }
+          return a.name.compareTo(b.name);
+        });
+    StringBuilder builder = new StringBuilder();
+    for (Option option : sorted) {
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      if (option.name != null) {
+        builder.append(option.name);
+        if (option.value != null) {
+          builder.append('=');
+        }
+      }
+      if (option.value != null) {
+        appendQuoted(builder, option.value);
+      }
+    }
+    canonicalForm = builder.toString();
+  }
+
+  private static boolean isOption(String arg) {
+    return arg.length() > 1 && arg.charAt(0) == '-';
+  }
+
+  private static String longName(String name) {
+    return LONG_NAMES.getOrDefault(name, name);
+  }
+
+  /**
+   * @param value an argument
+   * @return the argument quoted, so {@link #tokenize(String)} returns it unchanged
+   */
+  static String quote(String value) {
+    StringBuilder builder = new StringBuilder(value.length() + 2);
+    appendQuoted(builder, value);
+    return builder.toString();
+  }
+
+  private static void appendQuoted(StringBuilder builder, String value) {
+    builder.append('\'');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\'') {
+        // close the single quotes, add a double quoted one and open them again
+        builder.append("'\"'\"'");
+      } else {
+        builder.append(c);
+      }
+    }
+    builder.append('\'');
+  }
+
+  /**
+   * @param options option string, can be null
+   * @return the parsed options
+   */
+  public static SauceConnectOptions parse(String options) {
+    if (options == null || options.isEmpty()) {
+      return EMPTY;
+    }
+    List<String> args = tokenize(options);
+    return args.isEmpty() ? EMPTY : new SauceConnectOptions(args);
+  }
+
+  /**
+   * Splits an option string on whitespace outside quotes, without expanding variables.
+   *
+   * @param options option string, can be null
+   * @return the arguments, without the quotes and the backslashes escaping chars in double quotes
+   */
+  public static List<String> tokenize(String options) {
+    List<String> args = new ArrayList<>();
+    if (options == null) {
+      return args;
+    }
+    BitSet plainQuotes = new BitSet();
+    int unclosed;
+    while ((unclosed = split(options, plainQuotes, args)) >= 0) {
+      plainQuotes.set(unclosed);
+      args.clear();
+    }
+    return args;
+  }
+
+  /**
+   * @param plainQuotes indexes of the quotes to take as plain chars
+   * @return index of the quote which is not closed, -1 if all are closed
+   */
+  private static int split(String options, BitSet plainQuotes, List<String> args) {
+    StringBuilder current = new StringBuilder();
+    boolean inToken = false;
+    char quote = 0;
+    int quoteIndex = -1;
+    int length = options.length();
+    for (int i = 0; i < length; i++) {
+      char c = options.charAt(i);
+      if (quote == '\'') {
+        if (c == '\'') {
+          quote = 0;
+        } else {
+          current.append(c);
+        }
+      } else if (quote == '"') {
+        char next = i + 1 < length ? options.charAt(i + 1) : 0;
+        if (c == '\\' && (next == '"' || next == '\\')) {
+          current.append(next);
+          i++;
+        } else if (c == '"') {
+          quote = 0;
+        } else {
+          current.append(c);
+        }
+      } else if ((c == '\'' || c == '"') && !plainQuotes.get(i)) {
+        quote = c;
+        quoteIndex = i;
+        inToken = true;
+      } else if (Character.isWhitespace(c)) {
+        if (inToken) {
+          args.add(current.toString());
+          current.setLength(0);
+          inToken = false;
+        }
+      } else {
+        current.append(c);
+        inToken = true;
+      }
+    }
+    if (quote != 0) {
+      return quoteIndex;
+    }
+    if (inToken) {
+      args.add(current.toString());
+    }
+    return -1;
+  }
+
+  /**
+   * @return unmodifiable list of the arguments, as passed to Sauce Connect
+   */
+  public List<String> getArgs() {
+    return args;
+  }
+
+  public String[] toArray() {
+    return args.toArray(new String[0]);
+  }
+
+  public boolean isEmpty() {
+    return args.isEmpty();
+  }
+
+  /**
+   * @param name name of the option, a short name such as {@code -i} is the same as its long name
+   * @return value of the last occurrence of the option, null if it is missing or has no value
+   */
+  public String get(String name) {
+    String longName = longName(name);
+    for (int i = options.size() - 1; i >= 0; i--) {
+      Option option = options.get(i);
+      if (longName.equals(option.name)) {
+        return option.value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param name name of the option
+   * @return whether the option is present, with or without a value
+   */
+  public boolean has(String name) {
+    String longName = longName(name);
+    for (Option option : options) {
+      if (longName.equals(option.name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return value of {@code -i} or {@code --tunnel-name}, null if missing
+   */
+  public String getTunnelName() {
+    return get("--tunnel-name");
+  }
+
+  /**
+   * @param defaultValue value returned when no tunnel name is specified
+   * @return value of {@code -i} or {@code --tunnel-name}
+   */
+  public String getTunnelName(String defaultValue) {
+    String name = getTunnelName();
+    return name != null ? name : defaultValue;
+  }
+
+  /**
+   * @return value of {@code -l} or {@code --logfile}, null if missing
+   */
+  public String getLogfile() {
+    return get("--logfile");
+  }
+
+  /**
+   * @return value of {@code -x} or {@code --proxy}, null if missing
+   */
+  public String getProxy() {
+    return get("--proxy");
+  }
+
+  /**
+   * @return value of {@code -r} or {@code --region}, null if missing
+   */
+  public String getRegion() {
+    return get("--region");
+  }
+
+  /**
+   * @return the options with long names, in name order
+   */
+  public String getCanonicalForm() {
+    return canonicalForm;
+  }
+
+  /**
+   * @return SHA-256 of the canonical form, as hex digits, usable as a key for caching tunnels
+   */
+  public String getCanonicalHash() {
+    String hash = canonicalHash;
+    if (hash == null) {
+      try {
+        byte[] digest =
+            MessageDigest.getInstance("SHA-256")
+                .digest(canonicalForm.getBytes(StandardCharsets.UTF_8));
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+          builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+          builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        hash = builder.toString();
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not available", e);
+      }
+      canonicalHash = hash;
+    }
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SauceConnectOptions)) {
+      return false;
+    }
+    return canonicalForm.equals(((SauceConnectOptions) o).canonicalForm);
+  }
+
+  @Override
+  public int hashCode() {
+    return canonicalForm.hashCode();
+  }
+
+  /**
+   * @return the arguments, with the values of secret options hidden
+   */
+  @Override
+  public String toString() {
+    return String.join(" ", SecretRedactor.redactArgs(toArray()));
+  }
+}
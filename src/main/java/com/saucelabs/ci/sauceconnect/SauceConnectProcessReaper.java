@@ -0,0 +1,590 @@
+package com.saucelabs.ci.sauceconnect;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Finds the Sauce Connect processes and tunnels left behind by a JVM which died without closing
+ * them, such as a crashed build agent.
+ *
+ * <p>Launched processes are recorded in a small state file, with the pid and start time of the JVM
+ * which launched them, their API port, tunnel name, tunnel id, user and data center. {@link
+ * #reconcile(Function, Logger)} goes through the entries of JVMs which are no longer running: a
+ * process which is still running is killed, or adopted by the current JVM, and a tunnel which is
+ * still running although its process is gone is stopped through the REST API of its own user and
+ * data center. Entries of running JVMs are left alone, so the file can be shared by the JVMs of an
+ * agent. A lock file next to the state file is locked while the state is read and written, but
+ * not while processes are killed or tunnels stopped. The state file is replaced atomically by a
+ * complete new one, so a crash while it is written never loses the recorded processes.
+ *
+ * <p>Pids are reused, so a process is only killed or adopted when its start time matches the
+ * recorded one, and a JVM is only considered gone when no process runs with its pid and start
+ * time.
+ *
+ * @author Sauce Labs
+ */
+public class SauceConnectProcessReaper {
+
+  private static final String HEADER = "# Sauce Connect processes v2";
+  /** Field value of an unknown tunnel id, user or data center. */
+  private static final String NONE = "-";
+
+  /** What to do with a Sauce Connect process whose JVM is gone. */
+  public enum Policy {
+    /** Kill the process and stop its tunnel. */
+    KILL,
+    /** Keep the process running and record the current JVM as its owner. */
+    ADOPT
+  }
+
+  /** Tunnels known by the REST API. */
+  public interface TunnelRegistry {
+    /**
+     * @return ids of the running tunnels of the user
+     * @throws IOException if the tunnels can't be listed
+     */
+    Set<String> getRunningTunnelIds() throws IOException;
+
+    /**
+     * @param tunnelId id of the tunnel to stop
+     * @throws IOException if the tunnel can't be stopped
+     */
+    void stopTunnel(String tunnelId) throws IOException;
+  }
+
+  /** A launched Sauce Connect process. */
+  public static final class Entry {
+    private final long ownerPid;
+    private final long ownerStartTime;
+    private final long pid;
+    private final long startTime;
+    private final int apiPort;
+    private final String tunnelName;
+    private final String tunnelId;
+    private final String username;
+    private final String dataCenter;
+
+    Entry(
+        long ownerPid,
+        long ownerStartTime,
+        long pid,
+        long startTime,
+        int apiPort,
+        String tunnelName,
+        String tunnelId,
+        String username,
+        String dataCenter) {
+      this.ownerPid = ownerPid;
+      this.ownerStartTime = ownerStartTime;
+      this.pid = pid;
+      this.startTime = startTime;
+      this.apiPort = apiPort;
+      this.tunnelName = tunnelName;
+      this.tunnelId = tunnelId;
+      this.username = username;
+      this.dataCenter = dataCenter;
+    }
+
+    /**
+     * @return pid of the JVM which launched or adopted the process
+     */
+    public long getOwnerPid() {
+      return ownerPid;
+    }
+
+    /**
+     * @return start time of the owner JVM in epoch millis, -1 if unknown
+     */
+    public long getOwnerStartTime() {
+      return ownerStartTime;
+    }
+
+    public long getPid() {
+      return pid;
+    }
+
+    /**
+     * @return start time of the process in epoch millis, -1 if unknown
+     */
+    public long getStartTime() {
+      return startTime;
+    }
+
+    public int getApiPort() {
+      return apiPort;
+    }
+
+    public String getTunnelName() {
+      return tunnelName;
+    }
+
+    /**
+     * @return id of the tunnel, null if not known yet
+     */
+    public String getTunnelId() {
+      return tunnelId;
+    }
+
+    /**
+     * @return name of the user who opened the tunnel, null if not known
+     */
+    public String getUsername() {
+      return username;
+    }
+
+    /**
+     * @return name of the data center of the tunnel, null if not known
+     */
+    public String getDataCenter() {
+      return dataCenter;
+    }
+
+    private Entry withOwner(long owner, long ownerStart) {
+      return new Entry(
+          owner, ownerStart, pid, startTime, apiPort, tunnelName, tunnelId, username, dataCenter);
+    }
+
+    private Entry withTunnelId(String id) {
+      return new Entry(
+          ownerPid, ownerStartTime, pid, startTime, apiPort, tunnelName, id, username, dataCenter);
+    }
+
+    @Override
+    public String toString() {
+      return "pid=" + pid + " port=" + apiPort + " name=" + tunnelName + " tunnelId=" + tunnelId;
+    }
+  }
+
+  /** Outcome of a reconciliation. */
+  public static final class Result {
+    private final List<Entry> killed = new ArrayList<>();
+    private final List<Entry> adopted = new ArrayList<>();
+    private final List<String> stoppedTunnelIds = new ArrayList<>();
+    private final List<Entry> removed = new ArrayList<>();
+
+    /**
+     * @return orphaned processes which have been killed
+     */
+    public List<Entry> getKilled() {
+      return Collections.unmodifiableList(killed);
+    }
+
+    /**
+     * @return orphaned processes now owned by the current JVM
+     */
+    public List<Entry> getAdopted() {
+      return Collections.unmodifiableList(adopted);
+    }
+
+    /**
+     * @return ids of the orphaned tunnels which have been stopped
+     */
+    public List<String> getStoppedTunnelIds() {
+      return Collections.unmodifiableList(stoppedTunnelIds);
+    }
+
+    /**
+     * @return entries removed from the state file, including the killed processes and those which
+     *     were left running because their start time could not be confirmed, but not those whose
+     *     tunnel could not be reached
+     */
+    public List<Entry> getRemoved() {
+      return Collections.unmodifiableList(removed);
+    }
+  }
+
+  private final Path stateFile;
+  private final Policy policy;
+  private final Duration gracePeriod;
+  private final long currentPid;
+  private final long currentStartTime;
+  private final LongFunction<Optional<ProcessHandle>> processLookup;
+
+  /**
+   * @param stateFile file recording the launched processes, created when needed
+   * @param policy what to do with orphaned processes
+   * @param gracePeriod time given to an orphaned process to exit before it is killed forcibly
+   */
+  public SauceConnectProcessReaper(Path stateFile, Policy policy, Duration gracePeriod) {
+    this(
+        stateFile,
+        policy,
+        gracePeriod,
+        ProcessHandle.current().pid(),
+        startTime(ProcessHandle.current()),
+        ProcessHandle::of);
+  }
+
+  SauceConnectProcessReaper(
+      Path stateFile,
+      Policy policy,
+      Duration gracePeriod,
+      long currentPid,
+      long currentStartTime,
+      LongFunction<Optional<ProcessHandle>> processLookup) {
+    this.stateFile = stateFile;
+    this.policy = policy;
+    this.gracePeriod = gracePeriod;
+    this.currentPid = currentPid;
+    this.currentStartTime = currentStartTime;
+    this.processLookup = processLookup;
+  }
+
+  public Path getStateFile() {
+    return stateFile;
+  }
+
+  /**
+   * @param process launched Sauce Connect process
+   * @param apiPort port of the Sauce Connect API
+   * @param tunnelName name of the tunnel
+   * @throws IOException if the state file can't be written
+   */
+  public void record(ProcessHandle process, int apiPort, String tunnelName) throws IOException {
+    record(process, apiPort, tunnelName, null, null);
+  }
+
+  /**
+   * @param process launched Sauce Connect process
+   * @param apiPort port of the Sauce Connect API
+   * @param tunnelName name of the tunnel
+   * @param username name of the user who opened the tunnel
+   * @param dataCenter name of the data center of the tunnel
+   * @throws IOException if the state file can't be written
+   */
+  public void record(
+      ProcessHandle process, int apiPort, String tunnelName, String username, String dataCenter)
+      throws IOException {
+    Entry entry =
+        new Entry(
+            currentPid,
+            currentStartTime,
+            process.pid(),
+            startTime(process),
+            apiPort,
+            tunnelName,
+            null,
+            username,
+            dataCenter);
+    update(
+        entries -> {
+          entries.removeIf(e -> e.pid == entry.pid);
+          entries.add(entry);
+          return entries;
+        });
+  }
+
+  /**
+   * @param pid pid of a recorded process
+   * @param tunnelId id of its tunnel
+   * @throws IOException if the state file can't be written
+   */
+  public void setTunnelId(long pid, String tunnelId) throws IOException {
+    update(
+        entries -> {
+          entries.replaceAll(e -> e.pid == pid ? e.withTunnelId(tunnelId) : e);
+          return entries;
+        });
+  }
+
+  /**
+   * @param pid pid of a process which has been closed
+   * @throws IOException if the state file can't be written
+   */
+  public void remove(long pid) throws IOException {
+    update(
+        entries -> {
+          entries.removeIf(e -> e.pid == pid);
+          return entries;
+        });
+  }
+
+  /**
+   * @return the recorded processes
+   * @throws IOException if the state file can't be read
+   */
+  public List<Entry> getEntries() throws IOException {
+    List<Entry> result = new ArrayList<>();
+    update(
+        entries -> {
+          result.addAll(entries);
+          return null;
+        });
+    return result;
+  }
+
+  /**
+   * Kills or adopts the processes of the JVMs which are gone, and stops their tunnels.
+   *
+   * <p>The orphaned entries are claimed while the state file is locked, so that another JVM does
+   * not reconcile them too, then the processes are killed and the tunnels stopped once the lock is
+   * released. An orphaned entry with a tunnel id whose registry is not available is kept, once its
+   * process is killed, so that a later reconciliation stops its tunnel.
+   *
+   * @param registries the tunnels known by the REST API of the user and data center of an entry,
+   *     null if they can't be reached now
+   * @param logger used for logging
+   * @return what has been done
+   * @throws IOException if the state file can't be read or written
+   */
+  public Result reconcile(Function<Entry, TunnelRegistry> registries, Logger logger)
+      throws IOException {
+    Result result = new Result();
+    List<Entry> orphans = new ArrayList<>();
+    Map<Entry, TunnelRegistry> orphanRegistries = new HashMap<>();
+    update(
+        entries -> {
+          List<Entry> kept = new ArrayList<>();
+          for (Entry entry : entries) {
+            if (entry.ownerPid == currentPid || isOwnerRunning(entry)) {
+              kept.add(entry);
+            } else if (policy == Policy.ADOPT && findProcess(entry).isPresent()) {
+              Entry adopted = entry.withOwner(currentPid, currentStartTime);
+              kept.add(adopted);
+              result.adopted.add(adopted);
+            } else {
+              TunnelRegistry registry = registries.apply(entry);
+              if (registry == null && entry.tunnelId != null) {
+                kept.add(entry);
+              } else {
+                orphanRegistries.put(entry, registry);
+              }
+              orphans.add(entry);
+            }
+          }
+          return orphans.isEmpty() && result.adopted.isEmpty() ? null : kept;
+        });
+    for (Entry adopted : result.adopted) {
+      logger.info("Adopted orphaned Sauce Connect process {}", adopted);
+    }
+
+    Map<TunnelRegistry, Set<String>> runningTunnels = new IdentityHashMap<>();
+    for (Entry entry : orphans) {
+      Optional<ProcessHandle> process = findProcess(entry);
+      if (process.isPresent()) {
+        logger.info("Killing orphaned Sauce Connect process {}", entry);
+        kill(process.get(), logger);
+        result.killed.add(entry);
+      } else if (processLookup.apply(entry.pid).filter(ProcessHandle::isAlive).isPresent()) {
+        logger.warn(
+            "Not killing process {}, its start time does not confirm it is the orphaned process {}",
+            entry.pid,
+            entry);
+      }
+      if (!orphanRegistries.containsKey(entry)) {
+        logger.info("Keeping orphaned tunnel {} until its user connects", entry.tunnelId);
+        continue;
+      }
+      TunnelRegistry registry = orphanRegistries.get(entry);
+      if (entry.tunnelId != null
+          && registry != null
+          && runningTunnels
+              .computeIfAbsent(registry, key -> listRunningTunnels(key, logger))
+              .contains(entry.tunnelId)) {
+        logger.info("Stopping orphaned tunnel {}", entry.tunnelId);
+        try {
+          registry.stopTunnel(entry.tunnelId);
+          result.stoppedTunnelIds.add(entry.tunnelId);
+        } catch (IOException e) {
+          logger.warn("Unable to stop orphaned tunnel {}", entry.tunnelId, e);
+        }
+      }
+      result.removed.add(entry);
+    }
+    return result;
+  }
+
+  private static Set<String> listRunningTunnels(TunnelRegistry registry, Logger logger) {
+    try {
+      return registry.getRunningTunnelIds();
+    } catch (IOException e) {
+      logger.warn("Unable to list the running tunnels, orphaned tunnels are not stopped", e);
+      return Collections.emptySet();
+    }
+  }
+
+  /**
+   * A JVM whose start time is not known on either side is considered running as long as a process
+   * has its pid, so that the processes of a running JVM are never killed.
+   */
+  private boolean isOwnerRunning(Entry entry) {
+    return processLookup
+        .apply(entry.ownerPid)
+        .filter(ProcessHandle::isAlive)
+        .filter(
+            handle -> {
+              long start = startTime(handle);
+              return entry.ownerStartTime < 0 || start < 0 || start == entry.ownerStartTime;
+            })
+        .isPresent();
+  }
+
+  /**
+   * Finds a recorded process which is still running. A process whose start time can't be compared
+   * with the recorded one is not returned, as its pid may have been reused.
+   */
+  Optional<ProcessHandle> findProcess(Entry entry) {
+    return processLookup
+        .apply(entry.pid)
+        .filter(ProcessHandle::isAlive)
+        .filter(handle -> entry.startTime >= 0 && startTime(handle) == entry.startTime);
+  }
+
+  private static long startTime(ProcessHandle process) {
+    return process.info().startInstant().map(Instant::toEpochMilli).orElse(-1L);
+  }
+
+  private void kill(ProcessHandle process, Logger logger) {
+    process.destroy();
+    try {
+      process.onExit().get(gracePeriod.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      logger.warn("Process {} has not exited during {}, killing it", process.pid(), gracePeriod);
+      process.destroyForcibly();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      process.destroyForcibly();
+    }
+  }
+
+  /**
+   * Reads the entries and writes back those returned by the operation, while holding the lock
+   * file. Nothing is written when the operation returns null.
+   */
+  private synchronized void update(UnaryOperator<List<Entry>> operation) throws IOException {
+    Path file = stateFile.toAbsolutePath();
+    Path parent = file.getParent();
+    Files.createDirectories(parent);
+    Path lockFile = parent.resolve(file.getFileName() + ".lock");
+    try (FileChannel lockChannel =
+            FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock ignored = lockChannel.lock()) {
+      String content;
+      try {
+        content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      } catch (NoSuchFileException e) {
+        content = "";
+      }
+      List<Entry> updated = operation.apply(parse(content));
+      if (updated == null) {
+        return;
+      }
+      Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+      try {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+          ByteBuffer buffer = ByteBuffer.wrap(format(updated).getBytes(StandardCharsets.UTF_8));
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+          channel.force(false);
+        }
+        Files.move(
+            temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  private static List<Entry> parse(String content) {
+    List<Entry> entries = new ArrayList<>();
+    for (String line : content.split("\n")) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\t", -1);
+      if (fields.length == 6) {
+        // written by v1, which did not record the owner start time, user and data center
+        fields =
+            new String[] {
+              fields[0], "-1", fields[1], fields[2], fields[3], fields[4], fields[5], NONE, NONE
+            };
+      } else if (fields.length != 9) {
+        // partly written line
+        continue;
+      }
+      try {
+        entries.add(
+            new Entry(
+                Long.parseLong(fields[0]),
+                Long.parseLong(fields[1]),
+                Long.parseLong(fields[2]),
+                Long.parseLong(fields[3]),
+                Integer.parseInt(fields[4]),
+                fields[5],
+                orNull(fields[6]),
+                orNull(fields[7]),
+                orNull(fields[8])));
+      } catch (NumberFormatException e) {
+        // partly written line
+      }
+    }
+    return entries;
+  }
+
+  private static String format(Collection<Entry> entries) {
+    StringBuilder builder = new StringBuilder(HEADER).append('\n');
+    for (Entry entry : entries) {
+      builder
+          .append(entry.ownerPid)
+          .append('\t')
+          .append(entry.ownerStartTime)
+          .append('\t')
+          .append(entry.pid)
+          .append('\t')
+          .append(entry.startTime)
+          .append('\t')
+          .append(entry.apiPort)
+          .append('\t')
+          .append(clean(entry.tunnelName))
+          .append('\t')
+          .append(orNone(entry.tunnelId))
+          .append('\t')
+          .append(orNone(entry.username))
+          .append('\t')
+          .append(orNone(entry.dataCenter))
+          .append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static String orNone(String value) {
+    return value == null ? NONE : clean(value);
+  }
+
+  private static String orNull(String field) {
+    return NONE.equals(field) ? null : field;
+  }
+
+  /** Keeps the line format intact. */
+  private static String clean(String value) {
+    return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+  }
+}
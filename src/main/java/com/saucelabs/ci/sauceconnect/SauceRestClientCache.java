@@ -0,0 +1,169 @@
+package com.saucelabs.ci.sauceconnect;
+
+import com.saucelabs.saucerest.DataCenter;
+import com.saucelabs.saucerest.SauceREST;
+import com.saucelabs.saucerest.api.SauceConnectEndpoint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * REST clients by user and data center, so the tunnels of several users or regions are managed
+ * through their own client, with their own HTTP connections, instead of the client of whoever
+ * opened the first tunnel.
+ *
+ * <p>The cache is bounded: once full, the client used least recently is evicted. A tunnel keeps
+ * the endpoint it was opened with, so an evicted client stays usable to close it. A client is
+ * replaced when the access key of its user changes.
+ *
+ * @author Sauce Labs
+ */
+public class SauceRestClientCache {
+
+  /** Creates the REST clients. */
+  @FunctionalInterface
+  interface Factory {
+    SauceREST create(String username, String apiKey, DataCenter dataCenter);
+  }
+
+  private static final class Key {
+    private final String username;
+    private final DataCenter dataCenter;
+
+    Key(String username, DataCenter dataCenter) {
+      this.username = username;
+      this.dataCenter = dataCenter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return username.equals(key.username) && dataCenter == key.dataCenter;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(username, dataCenter);
+    }
+  }
+
+  private static final class Client {
+    private final String apiKey;
+    private final SauceREST sauceRest;
+    private final SauceConnectEndpoint endpoint;
+
+    Client(String apiKey, SauceREST sauceRest) {
+      this.apiKey = apiKey;
+      this.sauceRest = sauceRest;
+      this.endpoint = sauceRest.getSauceConnectEndpoint();
+    }
+  }
+
+  private final int maxSize;
+  private final Factory factory;
+  private final Map<Key, Client> clients;
+  private long evictions;
+
+  /**
+   * @param maxSize most clients kept
+   */
+  public SauceRestClientCache(int maxSize) {
+    this(maxSize, SauceREST::new);
+  }
+
+  SauceRestClientCache(int maxSize, Factory factory) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.factory = factory;
+    this.clients =
+        new LinkedHashMap<Key, Client>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, Client> eldest) {
+            if (size() > SauceRestClientCache.this.maxSize) {
+              evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * @param username name of the user
+   * @param apiKey access key of the user
+   * @param dataCenter data center of the tunnels
+   * @return the REST client of the user for the data center
+   */
+  public SauceREST get(String username, String apiKey, DataCenter dataCenter) {
+    return client(username, apiKey, dataCenter).sauceRest;
+  }
+
+  /**
+   * @param username name of the user
+   * @param apiKey access key of the user
+   * @param dataCenter data center of the tunnels
+   * @return the Sauce Connect endpoint of the client of the user for the data center
+   */
+  public SauceConnectEndpoint getSauceConnectEndpoint(
+      String username, String apiKey, DataCenter dataCenter) {
+    return client(username, apiKey, dataCenter).endpoint;
+  }
+
+  /**
+   * @param username name of the user
+   * @param dataCenter data center of the tunnels
+   * @return the Sauce Connect endpoint of the client of the user for the data center, null if the
+   *     user has no client yet
+   */
+  public synchronized SauceConnectEndpoint getSauceConnectEndpoint(
+      String username, DataCenter dataCenter) {
+    Client client = clients.get(new Key(username, dataCenter));
+    return client == null ? null : client.endpoint;
+  }
+
+  private synchronized Client client(String username, String apiKey, DataCenter dataCenter) {
+    Key key = new Key(username, dataCenter);
+    Client client = clients.get(key);
+    if (client == null || !client.apiKey.equals(apiKey)) {
+      client = new Client(apiKey, factory.create(username, apiKey, dataCenter));
+      clients.put(key, client);
+    }
+    return client;
+  }
+
+  /**
+   * Drops the client of a user for a data center.
+   *
+   * @param username name of the user
+   * @param dataCenter data center of the tunnels
+   * @return whether there was a client
+   */
+  public synchronized boolean invalidate(String username, DataCenter dataCenter) {
+    return clients.remove(new Key(username, dataCenter)) != null;
+  }
+
+  public synchronized void clear() {
+    clients.clear();
+  }
+
+  public synchronized int size() {
+    return clients.size();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return number of clients evicted because the cache was full
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
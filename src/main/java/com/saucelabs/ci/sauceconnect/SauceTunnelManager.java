@@ -93,7 +93,7 @@ public interface SauceTunnelManager {
    * @param username the name of the Sauce OnDemand user
    * @param apiKey the API Key for the Sauce OnDemand user
    * @param dataCenter the Sauce Labs Data Center name (US_WEST, EU_CENTRAL, US_EAST,
-   *     APAC_SOUTHEAST)
+   *     APAC_SOUTHEAST), or {@code auto} for the one with the lowest latency
    * @param port the port which Sauce Connect should be run on
    * @param sauceConnectJar the Jar file containing Sauce Connect. If null, then we attempt to find
    *     Sauce Connect from the classpath (only used by SauceConnectTwoManager)
@@ -106,7 +106,9 @@ public interface SauceTunnelManager {
    * @return a {@link Process} instance which represents the Sauce Connect instance
    * @throws IOException thrown if an error occurs launching Sauce Connect
    * @deprecated Use {@link #openConnection(String, String, DataCenter, int, File, String,
-   *     PrintStream, Boolean, String)} instead
+   *     PrintStream, Boolean, String)} instead, or {@link #openConnection(String, String,
+   *     DataCenterSelector, int, File, String, PrintStream, Boolean, String)} for the data center
+   *     with the lowest latency
    */
   @Deprecated
   Process openConnection(
@@ -121,6 +123,50 @@ public interface SauceTunnelManager {
       String sauceConnectPath)
       throws IOException;
 
+  /**
+   * Creates a new process to run Sauce Connect in the data center chosen by a selector, which is
+   * also passed to Sauce Connect as {@code --region} unless the options have one.
+   *
+   * @param username the name of the Sauce OnDemand user
+   * @param apiKey the API Key for the Sauce OnDemand user
+   * @param selector chooses the data center, from the {@code --region} of the options if they
+   *     have one, else the one with the lowest latency
+   * @param port the port which Sauce Connect should be run on
+   * @param sauceConnectJar the Jar file containing Sauce Connect. If null, then we attempt to find
+   *     Sauce Connect from the classpath (only used by SauceConnectTwoManager)
+   * @param options the command line options to pass to Sauce Connect
+   * @param printStream A print stream in which to redirect the output from Sauce Connect to. Can be
+   *     null
+   * @param verboseLogging indicates whether verbose logging should be output
+   * @param sauceConnectPath if defined, Sauce Connect will be launched from the specified path and
+   *     won't be extracted from the jar file
+   * @return a {@link Process} instance which represents the Sauce Connect instance
+   * @throws IOException thrown if an error occurs launching Sauce Connect
+   */
+  default Process openConnection(
+      String username,
+      String apiKey,
+      DataCenterSelector selector,
+      int port,
+      File sauceConnectJar,
+      String options,
+      PrintStream printStream,
+      Boolean verboseLogging,
+      String sauceConnectPath)
+      throws IOException {
+    DataCenter dataCenter = selector.select(options);
+    return openConnection(
+        username,
+        apiKey,
+        dataCenter,
+        port,
+        sauceConnectJar,
+        DataCenterSelector.withRegion(options, dataCenter),
+        printStream,
+        verboseLogging,
+        sauceConnectPath);
+  }
+
   /**
    * Creates a new process to run Sauce Connect on a randomly allocated port.
    *
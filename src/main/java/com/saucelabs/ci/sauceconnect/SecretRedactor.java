@@ -0,0 +1,301 @@
+package com.saucelabs.ci.sauceconnect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hides secrets in Sauce Connect command lines and output.
+ *
+ * <p>The values of secret options, such as the access key or the password of a proxy, are hidden by
+ * {@link #redactArgs(String[])}, whether they are the next argument or follow {@code =} in {@code
+ * --option=value}. The hidden values are also the secrets of the redactor returned by
+ * {@link #forArgs(String...)}, which hides them wherever they occur in a line of Sauce Connect
+ * output. The secrets are compiled once into an Aho-Corasick automaton, so a line is checked in a
+ * single pass whatever the number of secrets, and lines without secrets are returned as they are.
+ *
+ * <p>Instances are immutable and thread safe.
+ *
+ * @author Sauce Labs
+ */
+public final class SecretRedactor {
+
+  /** Replaces hidden values. */
+  public static final String MASK = "****";
+
+  /**
+   * Shorter secrets are not hidden in output lines, as they would hide parts of unrelated words.
+   */
+  public static final int MIN_SECRET_LENGTH = 4;
+
+  /** Redactor without secrets. */
+  public static final SecretRedactor NONE = new SecretRedactor(Collections.emptySet());
+
+  /** Which part of the value of an option is secret. */
+  private enum Rule {
+    /** The whole value. */
+    VALUE,
+    /** What follows the first colon, eg the password of {@code user:password}. */
+    AFTER_COLON,
+    /** The password of {@code user:password@host:port}. */
+    PROXY_PASSWORD
+  }
+
+  private static final Map<String, Rule> OPTION_RULES = new HashMap<>();
+
+  static {
+    OPTION_RULES.put("-k", Rule.VALUE);
+    OPTION_RULES.put("--access-key", Rule.VALUE);
+    OPTION_RULES.put("--api-key", Rule.VALUE); // Legacy command
+    OPTION_RULES.put("-a", Rule.VALUE);
+    OPTION_RULES.put("--auth", Rule.VALUE);
+    OPTION_RULES.put("--api-basic-auth", Rule.AFTER_COLON);
+    OPTION_RULES.put("-x", Rule.PROXY_PASSWORD);
+    OPTION_RULES.put("--proxy", Rule.PROXY_PASSWORD);
+  }
+
+  private final Set<String> secrets;
+
+  /** Maps a char to its column in the transition table, 0 for chars which are in no secret. */
+  private final char[] charClasses;
+
+  private final int alphabetSize;
+
+  /** Next state for each state and char class, state 0 being the root. */
+  private final int[] transitions;
+
+  /** Length of the longest secret ending in each state, 0 if none. */
+  private final int[] matchLengths;
+
+  private SecretRedactor(Set<String> secrets) {
+    this.secrets = Collections.unmodifiableSet(secrets);
+
+    char maxChar = 0;
+    for (String secret : secrets) {
+      for (int i = 0; i < secret.length(); i++) {
+        maxChar = (char) Math.max(maxChar, secret.charAt(i));
+      }
+    }
+    charClasses = new char[secrets.isEmpty() ? 0 : maxChar + 1];
+    int classes = 1;
+    for (String secret : secrets) {
+      for (int i = 0; i < secret.length(); i++) {
+        char c = secret.charAt(i);
+        if (charClasses[c] == 0) {
+          charClasses[c] = (char) classes++;
+        }
+      }
+    }
+    alphabetSize = classes;
+
+    // trie of the secrets, -1 marks missing transitions
+    List<int[]> trie = new ArrayList<>();
+    List<Integer> lengths = new ArrayList<>();
+    trie.add(newRow());
+    lengths.add(0);
+    for (String secret : secrets) {
+      int state = 0;
+      for (int i = 0; i < secret.length(); i++) {
+        int column = charClasses[secret.charAt(i)];
+        if (trie.get(state)[column] < 0) {
+          trie.get(state)[column] = trie.size();
+          trie.add(newRow());
+          lengths.add(0);
+        }
+        state = trie.get(state)[column];
+      }
+      lengths.set(state, Math.max(lengths.get(state), secret.length()));
+    }
+
+    // breadth first, turn the trie into a complete automaton following the failure links
+    int states = trie.size();
+    transitions = new int[states * alphabetSize];
+    matchLengths = new int[states];
+    int[] failure = new int[states];
+    int[] queue = new int[states];
+    int head = 0;
+    int tail = 0;
+    for (int column = 0; column < alphabetSize; column++) {
+      int next = trie.get(0)[column];
+      transitions[column] = Math.max(next, 0);
+      if (next > 0) {
+        queue[tail++] = next;
+      }
+    }
+    matchLengths[0] = lengths.get(0);
+    while (head < tail) {
+      int state = queue[head++];
+      matchLengths[state] = Math.max(lengths.get(state), matchLengths[failure[state]]);
+      for (int column = 0; column < alphabetSize; column++) {
+        int next = trie.get(state)[column];
+        int fallback = transitions[failure[state] * alphabetSize + column];
+        if (next < 0) {
+          transitions[state * alphabetSize + column] = fallback;
+        } else {
+          transitions[state * alphabetSize + column] = next;
+          failure[next] = fallback;
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  private int[] newRow() {
+    int[] row = new int[alphabetSize];
+    Arrays.fill(row, -1);
+    return row;
+  }
+
+  /**
+   * @param secrets values to hide, those shorter than {@link #MIN_SECRET_LENGTH} are ignored
+   * @return redactor hiding the secrets
+   */
+  public static SecretRedactor of(Collection<String> secrets) {
+    Set<String> kept = new LinkedHashSet<>();
+    for (String secret : secrets) {
+      if (secret != null && secret.length() >= MIN_SECRET_LENGTH) {
+        kept.add(secret);
+      }
+    }
+    return kept.isEmpty() ? NONE : new SecretRedactor(kept);
+  }
+
+  /**
+   * @param args Sauce Connect command line arguments
+   * @return redactor hiding the values which {@link #redactArgs(String[])} hides in the arguments
+   */
+  public static SecretRedactor forArgs(String... args) {
+    List<String> secrets = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      int[] secret = findSecret(args, i);
+      if (secret != null) {
+        i = secret[0];
+        secrets.add(args[i].substring(secret[1], secret[2]));
+      }
+    }
+    return of(secrets);
+  }
+
+  /**
+   * @param args Sauce Connect command line arguments
+   * @return copy of the arguments where the values of secret options are hidden
+   */
+  public static String[] redactArgs(String[] args) {
+    String[] redacted = args.clone();
+    for (int i = 0; i < redacted.length; i++) {
+      int[] secret = findSecret(redacted, i);
+      if (secret != null) {
+        i = secret[0];
+        redacted[i] = redacted[i].substring(0, secret[1]) + MASK + redacted[i].substring(secret[2]);
+      }
+    }
+    return redacted;
+  }
+
+  /**
+   * @param args command line arguments
+   * @param i index of an argument
+   * @return for a secret option at the index, the index of the argument holding its value, and the
+   *     start and end of the secret in that argument; null for other arguments
+   */
+  private static int[] findSecret(String[] args, int i) {
+    String arg = args[i];
+    if (arg == null) {
+      return null;
+    }
+    int equals = arg.startsWith("--") ? arg.indexOf('=') : -1;
+    if (equals > 0) {
+      Rule rule = OPTION_RULES.get(arg.substring(0, equals));
+      int[] range = rule == null ? null : secretRange(rule, arg.substring(equals + 1));
+      return range == null ? null : new int[] {i, equals + 1 + range[0], equals + 1 + range[1]};
+    }
+    Rule rule = OPTION_RULES.get(arg);
+    if (rule == null || i + 1 >= args.length || args[i + 1] == null) {
+      return null;
+    }
+    int[] range = secretRange(rule, args[i + 1]);
+    return range == null ? null : new int[] {i + 1, range[0], range[1]};
+  }
+
+  /**
+   * @return start and end of the secret part of the value, null if there is none
+   */
+  private static int[] secretRange(Rule rule, String value) {
+    switch (rule) {
+      case VALUE:
+        return new int[] {0, value.length()};
+      case AFTER_COLON:
+        int colon = value.indexOf(':');
+        return colon < 0 ? null : new int[] {colon + 1, value.length()};
+      case PROXY_PASSWORD:
+        int at = value.lastIndexOf('@');
+        int passwordColon = at < 1 ? -1 : value.lastIndexOf(':', at - 1);
+        return passwordColon < 0 ? null : new int[] {passwordColon + 1, at};
+      default:
+        throw new IllegalStateException("Unknown rule " + rule);
+    }
+  }
+
+  /**
+   * @return unmodifiable set of the secrets hidden in output lines
+   */
+  public Set<String> getSecrets() {
+    return secrets;
+  }
+
+  public boolean isEmpty() {
+    return secrets.isEmpty();
+  }
+
+  /**
+   * @param line line of Sauce Connect output
+   * @return the line where each occurrence of a secret is replaced by {@link #MASK}, overlapping
+   *     or adjacent occurrences by a single one, or the line itself if it has no secret
+   */
+  public String redact(String line) {
+    if (secrets.isEmpty()) {
+      return line;
+    }
+    int length = line.length();
+    int state = 0;
+    // coverEnd[i] is the end of the furthest reaching secret starting at i
+    int[] coverEnd = null;
+    for (int i = 0; i < length; i++) {
+      char c = line.charAt(i);
+      int column = c < charClasses.length ? charClasses[c] : 0;
+      state = transitions[state * alphabetSize + column];
+      int match = matchLengths[state];
+      if (match > 0) {
+        if (coverEnd == null) {
+          coverEnd = new int[length];
+        }
+        int start = i + 1 - match;
+        coverEnd[start] = Math.max(coverEnd[start], i + 1);
+      }
+    }
+    if (coverEnd == null) {
+      return line;
+    }
+
+    StringBuilder builder = new StringBuilder(length);
+    int i = 0;
+    while (i < length) {
+      if (coverEnd[i] == 0) {
+        builder.append(line.charAt(i++));
+        continue;
+      }
+      int end = coverEnd[i];
+      while (i < length && (i < end || coverEnd[i] != 0)) {
+        end = Math.max(end, coverEnd[i++]);
+      }
+      builder.append(MASK);
+    }
+    return builder.toString();
+  }
+}
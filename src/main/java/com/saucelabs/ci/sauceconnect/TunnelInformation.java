@@ -1,5 +1,8 @@
 package com.saucelabs.ci.sauceconnect;
 
+import com.saucelabs.saucerest.api.SauceConnectEndpoint;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -10,6 +13,54 @@ class TunnelInformation {
   private int processCount;
   private final Lock lock = new ReentrantLock();
   private String tunnelId;
+  private SauceConnectEndpoint endpoint;
+  private final List<Shard> shards = new CopyOnWriteArrayList<>();
+  private int nextShardIndex = 1;
+  private int nextMember;
+  private boolean pooled;
+  private boolean shardLaunching;
+
+  /** A process of a sharded tunnel launched beside the first one. */
+  static final class Shard {
+    private final String label;
+    private final Process process;
+    private final String tunnelId;
+    private final int apiPort;
+    private int load;
+
+    Shard(String label, Process process, String tunnelId, int apiPort) {
+      this.label = label;
+      this.process = process;
+      this.tunnelId = tunnelId;
+      this.apiPort = apiPort;
+    }
+
+    /**
+     * @return name of the shard for the supervisor and the telemetry
+     */
+    public String getLabel() {
+      return label;
+    }
+
+    public Process getProcess() {
+      return process;
+    }
+
+    public String getTunnelId() {
+      return tunnelId;
+    }
+
+    public int getApiPort() {
+      return apiPort;
+    }
+
+    /**
+     * @return number of callers it was handed out to
+     */
+    public int getLoad() {
+      return load;
+    }
+  }
 
   public TunnelInformation(String name) {
     this.name = name;
@@ -43,6 +94,150 @@ class TunnelInformation {
     this.tunnelId = tunnelId;
   }
 
+  /**
+   * @return endpoint of the user which opened the tunnel, null if not known
+   */
+  public SauceConnectEndpoint getEndpoint() {
+    return endpoint;
+  }
+
+  public void setEndpoint(SauceConnectEndpoint endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  /**
+   * @return whether the tunnel runs with {@code --tunnel-pool}, so shards can join it
+   */
+  public boolean isPooled() {
+    return pooled;
+  }
+
+  public void setPooled(boolean pooled) {
+    this.pooled = pooled;
+  }
+
+  /**
+   * @return whether a shard is being launched, so no other one is launched meanwhile
+   */
+  public boolean isShardLaunching() {
+    return shardLaunching;
+  }
+
+  public void setShardLaunching(boolean shardLaunching) {
+    this.shardLaunching = shardLaunching;
+  }
+
+  /**
+   * @return the shards, safe to iterate without holding the lock
+   */
+  public List<Shard> getShards() {
+    return shards;
+  }
+
+  /**
+   * @return number of processes of the tunnel, the first one and its shards
+   */
+  public int getMemberCount() {
+    return 1 + shards.size();
+  }
+
+  /**
+   * @return label of the next shard
+   */
+  public String nextShardLabel() {
+    return name + "#" + nextShardIndex++;
+  }
+
+  public void addShard(Shard shard) {
+    shards.add(shard);
+  }
+
+  /**
+   * @param process process of a shard
+   * @return the removed shard, null if the process is not one of the shards
+   */
+  public Shard removeShard(Process process) {
+    for (Shard shard : shards) {
+      if (shard.process == process) {
+        shards.remove(shard);
+        return shard;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Makes the first shard the main process, after the main process exited.
+   *
+   * @return the promoted shard, null if there is none
+   */
+  public Shard promoteShard() {
+    if (shards.isEmpty()) {
+      return null;
+    }
+    Shard shard = shards.remove(0);
+    process = shard.process;
+    tunnelId = shard.tunnelId;
+    return shard;
+  }
+
+  /**
+   * Chooses the process for a new caller, before the process count is incremented. The load of
+   * the main process is the part of the process count not handed out to the shards, so a shard
+   * which exits gives its callers back to it.
+   *
+   * @param strategy how to choose, null to always use the main process
+   * @return the chosen process
+   */
+  public Process handOut(TunnelShardingPolicy.Strategy strategy) {
+    if (strategy == null || shards.isEmpty()) {
+      return process;
+    }
+    Shard chosen = null;
+    if (strategy == TunnelShardingPolicy.Strategy.ROUND_ROBIN) {
+      int member = nextMember++ % getMemberCount();
+      chosen = member == 0 ? null : shards.get(member - 1);
+    } else {
+      int lowest = mainLoad(processCount);
+      for (Shard shard : shards) {
+        if (shard.load < lowest) {
+          lowest = shard.load;
+          chosen = shard;
+        }
+      }
+    }
+    if (chosen == null) {
+      return process;
+    }
+    chosen.load++;
+    return chosen.process;
+  }
+
+  /**
+   * Takes a caller off the busiest process, after the process count is decremented.
+   */
+  public void release() {
+    Shard busiest = null;
+    int highest = mainLoad(processCount + 1);
+    for (Shard shard : shards) {
+      if (shard.load > highest) {
+        highest = shard.load;
+        busiest = shard;
+      }
+    }
+    if (busiest != null) {
+      busiest.load--;
+    }
+  }
+
+  private int mainLoad(int count) {
+    int load = count;
+    for (Shard shard : shards) {
+      load -= shard.load;
+    }
+    return load;
+  }
+
   @Override
   public String toString() {
     return name;
@@ -0,0 +1,70 @@
+package com.saucelabs.ci.sauceconnect;
+
+/**
+ * When to spread a tunnel over several Sauce Connect processes. All the processes of a sharded
+ * tunnel run with {@code --tunnel-pool} under the same tunnel name, so Sauce Labs balances the
+ * sessions between them; the manager hands out the processes to the callers of {@code
+ * openConnection} and closes them together once the last caller is done.
+ *
+ * @author Sauce Labs
+ */
+public final class TunnelShardingPolicy {
+
+  /** How a process of the pool is chosen for a caller. */
+  public enum Strategy {
+    /** Each process in turn. */
+    ROUND_ROBIN,
+    /** The process handed out to the fewest callers still using it. */
+    LEAST_LOADED
+  }
+
+  private final int threshold;
+  private final int maxProcesses;
+  private final Strategy strategy;
+
+  /**
+   * @param threshold number of callers per process above which another process is launched
+   * @param maxProcesses most processes in the pool of a tunnel
+   * @param strategy how a process is chosen for a caller
+   */
+  public TunnelShardingPolicy(int threshold, int maxProcesses, Strategy strategy) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("threshold must be at least 1: " + threshold);
+    }
+    if (maxProcesses < 1) {
+      throw new IllegalArgumentException("maxProcesses must be at least 1: " + maxProcesses);
+    }
+    if (strategy == null) {
+      throw new IllegalArgumentException("strategy is required");
+    }
+    this.threshold = threshold;
+    this.maxProcesses = maxProcesses;
+    this.strategy = strategy;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public int getMaxProcesses() {
+    return maxProcesses;
+  }
+
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @param callers number of callers of the tunnel, including the new one
+   * @param processes number of processes in the pool
+   * @return whether another process should be launched
+   */
+  boolean shouldGrow(int callers, int processes) {
+    return processes < maxProcesses && callers > (long) threshold * processes;
+  }
+
+  @Override
+  public String toString() {
+    return "threshold=" + threshold + " maxProcesses=" + maxProcesses + " strategy=" + strategy;
+  }
+}
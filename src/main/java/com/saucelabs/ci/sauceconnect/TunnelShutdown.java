@@ -0,0 +1,117 @@
+package com.saucelabs.ci.sauceconnect;
+
+import java.time.Duration;
+
+/**
+ * Outcome of closing one tunnel during {@link AbstractSauceTunnelManager#shutdownAll(Duration)}.
+ *
+ * @author Sauce Labs
+ */
+public final class TunnelShutdown {
+
+  /** What happened to the Sauce Connect process. */
+  public enum ProcessOutcome {
+    /** The process exited after it was signalled. */
+    EXITED,
+    /** The process was still running at the deadline and was killed forcibly. */
+    KILLED,
+    /** There was no running process. */
+    NOT_RUNNING,
+    /** The tunnel was in use until the deadline, so it was left alone. */
+    BUSY
+  }
+
+  /** What happened to the tunnel registered with Sauce Labs. */
+  public enum TunnelOutcome {
+    /** The tunnel was stopped through the REST API. */
+    STOPPED,
+    /** The REST API did not know the tunnel anymore. */
+    NOT_FOUND,
+    /** Stopping the tunnel failed, see {@link #getError()}. */
+    FAILED,
+    /** The REST call had not completed at the deadline. */
+    TIMED_OUT,
+    /** The tunnel id was not known, or no REST endpoint is configured. */
+    SKIPPED
+  }
+
+  private final String tunnelName;
+  private final String tunnelId;
+  private final ProcessOutcome processOutcome;
+  private final TunnelOutcome tunnelOutcome;
+  private final Duration duration;
+  private final Throwable error;
+
+  TunnelShutdown(
+      String tunnelName,
+      String tunnelId,
+      ProcessOutcome processOutcome,
+      TunnelOutcome tunnelOutcome,
+      Duration duration,
+      Throwable error) {
+    this.tunnelName = tunnelName;
+    this.tunnelId = tunnelId;
+    this.processOutcome = processOutcome;
+    this.tunnelOutcome = tunnelOutcome;
+    this.duration = duration;
+    this.error = error;
+  }
+
+  public String getTunnelName() {
+    return tunnelName;
+  }
+
+  /**
+   * @return id of the tunnel, null if not known
+   */
+  public String getTunnelId() {
+    return tunnelId;
+  }
+
+  public ProcessOutcome getProcessOutcome() {
+    return processOutcome;
+  }
+
+  public TunnelOutcome getTunnelOutcome() {
+    return tunnelOutcome;
+  }
+
+  /**
+   * @return time from the start of the shutdown until the process and the tunnel were closed
+   */
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return why stopping the tunnel failed, null if it did not
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  /**
+   * @return whether the process is gone and the tunnel is stopped or unknown to Sauce Labs
+   */
+  public boolean isClean() {
+    return processOutcome != ProcessOutcome.BUSY
+        && (tunnelOutcome == TunnelOutcome.STOPPED
+            || tunnelOutcome == TunnelOutcome.NOT_FOUND
+            || tunnelOutcome == TunnelOutcome.SKIPPED);
+  }
+
+  @Override
+  public String toString() {
+    return "name="
+        + tunnelName
+        + " tunnelId="
+        + tunnelId
+        + " process="
+        + processOutcome
+        + " tunnel="
+        + tunnelOutcome
+        + " duration="
+        + duration.toMillis()
+        + "ms";
+  }
+}
@@ -0,0 +1,279 @@
+package com.saucelabs.ci.sauceconnect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches Sauce Connect processes through {@link Process#onExit()}, so no thread waits or polls
+ * while they run. A process which exits while it is supervised, ie before {@link
+ * #release(Process)} is called to close it, has exited unexpectedly: the listeners are notified at
+ * once and, when a restart policy is set, the tunnel is restarted under the same name after an
+ * exponentially growing delay.
+ *
+ * <p>Listeners are called on the thread completing the exit future or running the restart, in the
+ * order they were added, and should return quickly.
+ *
+ * @author Sauce Labs
+ */
+public class TunnelSupervisor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TunnelSupervisor.class);
+
+  /** Kind of {@link Event}. */
+  public enum EventType {
+    /** The process exited while supervised. */
+    EXITED,
+    /** A restart is scheduled after the backoff delay. */
+    RESTARTING,
+    /** The tunnel has been restarted, the new process is supervised. */
+    RESTARTED,
+    /** A restart attempt failed, see {@link Event#getError()}. */
+    RESTART_FAILED,
+    /** The tunnel is gone, it is not restarted or all the restart attempts failed. */
+    LOST
+  }
+
+  /** Something which happened to a supervised tunnel. */
+  public static final class Event {
+    private final EventType type;
+    private final String tunnelName;
+    private final Process process;
+    private final int attempt;
+    private final boolean restartPending;
+    private final Throwable error;
+
+    Event(
+        EventType type,
+        String tunnelName,
+        Process process,
+        int attempt,
+        boolean restartPending,
+        Throwable error) {
+      this.type = type;
+      this.tunnelName = tunnelName;
+      this.process = process;
+      this.attempt = attempt;
+      this.restartPending = restartPending;
+      this.error = error;
+    }
+
+    public EventType getType() {
+      return type;
+    }
+
+    public String getTunnelName() {
+      return tunnelName;
+    }
+
+    /**
+     * @return the process which exited, or the restarted one for {@link EventType#RESTARTED}
+     */
+    public Process getProcess() {
+      return process;
+    }
+
+    /**
+     * @return exit code of the process, null if it has not exited
+     */
+    public Integer getExitCode() {
+      return process == null || process.isAlive() ? null : process.exitValue();
+    }
+
+    /**
+     * @return number of the restart attempt, 0 for {@link EventType#EXITED}
+     */
+    public int getAttempt() {
+      return attempt;
+    }
+
+    /**
+     * @return whether the tunnel will be restarted
+     */
+    public boolean isRestartPending() {
+      return restartPending;
+    }
+
+    /**
+     * @return why the restart failed, null for other events
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    @Override
+    public String toString() {
+      return type + " name=" + tunnelName + " attempt=" + attempt;
+    }
+  }
+
+  /** Receives the events of the supervised tunnels. */
+  @FunctionalInterface
+  public interface Listener {
+    void onEvent(Event event);
+  }
+
+  /** Restarts a tunnel which exited unexpectedly. */
+  @FunctionalInterface
+  public interface Restarter {
+    /**
+     * @param tunnelName name of the tunnel
+     * @return the new process, null if the tunnel is not needed anymore
+     * @throws IOException if the tunnel can't be restarted
+     */
+    Process restart(String tunnelName) throws IOException;
+  }
+
+  private final Map<Process, String> supervised = new ConcurrentHashMap<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private final Executor restartLauncher;
+
+  private volatile int maxRestarts;
+  private volatile Duration initialBackoff = Duration.ofSeconds(1);
+  private volatile Duration maxBackoff = Duration.ofMinutes(1);
+
+  /** Restarts run on a new daemon thread each. */
+  public TunnelSupervisor() {
+    this(
+        runnable -> {
+          Thread thread = new Thread(runnable, "sauce-connect-restart");
+          thread.setDaemon(true);
+          thread.start();
+        });
+  }
+
+  /**
+   * @param restartLauncher runs the restarts, which block until the tunnel is up
+   */
+  TunnelSupervisor(Executor restartLauncher) {
+    this.restartLauncher = restartLauncher;
+  }
+
+  /**
+   * @param maxRestarts restart attempts after an unexpected exit, 0 disables restarts
+   * @param initialBackoff delay before the first attempt, doubled for each next attempt
+   * @param maxBackoff longest delay between attempts
+   */
+  public void setRestartPolicy(int maxRestarts, Duration initialBackoff, Duration maxBackoff) {
+    if (maxRestarts < 0) {
+      throw new IllegalArgumentException("maxRestarts can't be negative: " + maxRestarts);
+    }
+    this.maxRestarts = maxRestarts;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+  }
+
+  public int getMaxRestarts() {
+    return maxRestarts;
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @param tunnelName name of the tunnel
+   * @param process its Sauce Connect process
+   * @param restarter restarts the tunnel after an unexpected exit, null to never restart it
+   */
+  public void supervise(String tunnelName, Process process, Restarter restarter) {
+    CompletableFuture<Process> exit = process.onExit();
+    if (exit == null) {
+      // a process implementation which can't report its exit
+      return;
+    }
+    supervised.put(process, tunnelName);
+    exit.thenRun(() -> exited(process, restarter));
+  }
+
+  /**
+   * Stops supervising a process, before it is closed on purpose.
+   *
+   * @param process supervised process
+   * @return whether the process was supervised
+   */
+  public boolean release(Process process) {
+    return process != null && supervised.remove(process) != null;
+  }
+
+  /**
+   * @return whether the process is supervised
+   */
+  public boolean isSupervised(Process process) {
+    return supervised.containsKey(process);
+  }
+
+  private void exited(Process process, Restarter restarter) {
+    String tunnelName = supervised.remove(process);
+    if (tunnelName == null) {
+      // released, the exit was expected
+      return;
+    }
+    boolean restart = restarter != null && maxRestarts > 0;
+    emit(new Event(EventType.EXITED, tunnelName, process, 0, restart, null));
+    if (restart) {
+      scheduleRestart(tunnelName, process, restarter, 1);
+    } else {
+      emit(new Event(EventType.LOST, tunnelName, process, 0, false, null));
+    }
+  }
+
+  private void scheduleRestart(
+      String tunnelName, Process exited, Restarter restarter, int attempt) {
+    long delay = backoff(attempt);
+    emit(new Event(EventType.RESTARTING, tunnelName, exited, attempt, true, null));
+    Executor delayed =
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, restartLauncher);
+    delayed.execute(
+        () -> {
+          try {
+            Process restarted = restarter.restart(tunnelName);
+            if (restarted != null) {
+              emit(new Event(EventType.RESTARTED, tunnelName, restarted, attempt, false, null));
+            }
+          } catch (IOException | RuntimeException e) {
+            boolean retry = attempt < maxRestarts;
+            emit(new Event(EventType.RESTART_FAILED, tunnelName, exited, attempt, retry, e));
+            if (retry) {
+              scheduleRestart(tunnelName, exited, restarter, attempt + 1);
+            } else {
+              emit(new Event(EventType.LOST, tunnelName, exited, attempt, false, e));
+            }
+          }
+        });
+  }
+
+  /**
+   * @return delay in millis before the restart attempt
+   */
+  long backoff(int attempt) {
+    long initial = initialBackoff.toMillis();
+    long max = maxBackoff.toMillis();
+    int shift = Math.min(attempt - 1, 30);
+    long delay = initial << shift;
+    return delay < initial || delay > max ? max : delay;
+  }
+
+  private void emit(Event event) {
+    for (Listener listener : listeners) {
+      try {
+        listener.onEvent(event);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Tunnel listener failed on {}", event, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,606 @@
+package com.saucelabs.ci.sauceconnect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Samples the local API of running Sauce Connect processes, the one listening on the {@code
+ * --api-address} port, to see how the tunnels behave while the tests run.
+ *
+ * <p>Each sample records whether {@code /readyz} answered 200, how long it took to answer, which
+ * grows when the tunnel is saturated, and the values of the tracked metrics read from {@code
+ * /metrics}, in the Prometheus text format. The values of a metric with several label sets are
+ * summed, so counters such as {@code *_total} or the {@code _sum} and {@code _count} of a
+ * histogram can be turned into rates with {@link Series#rate(String, Duration)}.
+ *
+ * <p>The tracked metrics default to {@link #DEFAULT_METRICS}, which only describe the Go process
+ * running Sauce Connect, its CPU, memory, file descriptors and goroutines, not the traffic of the
+ * tunnel. To follow requests and errors, pass the names of the counters exported by the version of
+ * Sauce Connect in use, as listed by its {@code /metrics}, to {@link #TunnelTelemetry(Duration,
+ * int, Collection, int)}.
+ *
+ * <p>The samples of each tunnel are kept in a ring buffer of a fixed capacity, so the oldest are
+ * overwritten. The series of stopped tunnels are kept for a later look, up to a maximum: beyond it
+ * the series stopped the longest ago is dropped, so tunnels and shards coming and going do not
+ * accumulate. All the tunnels share one scheduler thread which only sends asynchronous requests; a
+ * sample still in flight when the next one is due makes that one skipped.
+ *
+ * @author Sauce Labs
+ */
+public class TunnelTelemetry implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TunnelTelemetry.class);
+
+  /**
+   * Metrics of the Go runtime exported by any Go process, such as Sauce Connect 5. They show the
+   * load of the process, not the requests or errors of the tunnel.
+   */
+  public static final List<String> DEFAULT_METRICS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              "process_cpu_seconds_total",
+              "process_resident_memory_bytes",
+              "process_open_fds",
+              "go_goroutines"));
+
+  /** One sample of a tunnel. */
+  public static final class Sample {
+    private final long time;
+    private final boolean ready;
+    private final boolean reachable;
+    private final long latencyNanos;
+    private final Map<String, Integer> index;
+    private final double[] values;
+
+    Sample(
+        long time,
+        boolean ready,
+        boolean reachable,
+        long latencyNanos,
+        Map<String, Integer> index,
+        double[] values) {
+      this.time = time;
+      this.ready = ready;
+      this.reachable = reachable;
+      this.latencyNanos = latencyNanos;
+      this.index = index;
+      this.values = values;
+    }
+
+    public Instant getTime() {
+      return Instant.ofEpochMilli(time);
+    }
+
+    /**
+     * @return whether {@code /readyz} answered 200
+     */
+    public boolean isReady() {
+      return ready;
+    }
+
+    /**
+     * @return whether the API answered at all, false when the process is gone or stuck
+     */
+    public boolean isReachable() {
+      return reachable;
+    }
+
+    /**
+     * @return time taken by {@code /readyz} to answer, null if it did not
+     */
+    public Duration getLatency() {
+      return latencyNanos < 0 ? null : Duration.ofNanos(latencyNanos);
+    }
+
+    /**
+     * @param metric name of a tracked metric
+     * @return its value, NaN if it was not exported or could not be read
+     */
+    public double getValue(String metric) {
+      Integer i = index.get(metric);
+      return i == null ? Double.NaN : values[i];
+    }
+
+    @Override
+    public String toString() {
+      return getTime() + " ready=" + ready + " latency=" + getLatency();
+    }
+  }
+
+  /** The samples of one tunnel, oldest first. */
+  public static final class Series {
+    private final String tunnelName;
+    private final Map<String, Integer> index;
+    private final long[] times;
+    private final long[] latencies;
+    private final byte[] states;
+    private final double[] values;
+    private final int metrics;
+    private int next;
+    private int size;
+    private long failures;
+
+    Series(String tunnelName, Map<String, Integer> index, int capacity) {
+      this.tunnelName = tunnelName;
+      this.index = index;
+      this.metrics = index.size();
+      this.times = new long[capacity];
+      this.latencies = new long[capacity];
+      this.states = new byte[capacity];
+      this.values = new double[capacity * metrics];
+    }
+
+    synchronized void add(
+        long time, boolean ready, boolean reachable, long latencyNanos, double[] sampled) {
+      times[next] = time;
+      latencies[next] = latencyNanos;
+      states[next] = (byte) ((ready ? 1 : 0) | (reachable ? 2 : 0));
+      System.arraycopy(sampled, 0, values, next * metrics, metrics);
+      next = (next + 1) % times.length;
+      if (size < times.length) {
+        size++;
+      }
+      if (!ready) {
+        failures++;
+      }
+    }
+
+    public String getTunnelName() {
+      return tunnelName;
+    }
+
+    /**
+     * @return number of samples where the tunnel was not ready, including overwritten ones
+     */
+    public synchronized long getFailures() {
+      return failures;
+    }
+
+    public synchronized int size() {
+      return size;
+    }
+
+    /**
+     * @return the samples in the buffer, oldest first
+     */
+    public List<Sample> getSamples() {
+      return getSamples(Instant.EPOCH);
+    }
+
+    /**
+     * @param since oldest time of the returned samples
+     * @return the samples taken since the given time, oldest first
+     */
+    public synchronized List<Sample> getSamples(Instant since) {
+      long from = since.toEpochMilli();
+      List<Sample> samples = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        int slot = slot(i);
+        if (times[slot] >= from) {
+          samples.add(sample(slot));
+        }
+      }
+      return samples;
+    }
+
+    /**
+     * @return the most recent sample, null if there is none
+     */
+    public synchronized Sample getLatest() {
+      return size == 0 ? null : sample(slot(size - 1));
+    }
+
+    /**
+     * Per second increase of a counter over the most recent samples. A counter reset, when the
+     * process was restarted, counts from zero.
+     *
+     * @param metric name of a tracked counter
+     * @param window how far back to look
+     * @return the rate, NaN if there are not two samples with a value in the window
+     */
+    public synchronized double rate(String metric, Duration window) {
+      Integer column = index.get(metric);
+      if (column == null || size == 0) {
+        return Double.NaN;
+      }
+      long from = times[slot(size - 1)] - window.toMillis();
+      double increase = 0;
+      long first = -1;
+      long last = -1;
+      double previous = Double.NaN;
+      for (int i = 0; i < size; i++) {
+        int slot = slot(i);
+        double value = values[slot * metrics + column];
+        if (times[slot] < from || Double.isNaN(value)) {
+          continue;
+        }
+        if (first < 0) {
+          first = times[slot];
+        } else {
+          increase += value >= previous ? value - previous : value;
+        }
+        last = times[slot];
+        previous = value;
+      }
+      return last > first ? increase * 1000 / (last - first) : Double.NaN;
+    }
+
+    /**
+     * @param window how far back to look
+     * @return mean time taken by {@code /readyz} to answer, null if it never did in the window
+     */
+    public synchronized Duration meanLatency(Duration window) {
+      if (size == 0) {
+        return null;
+      }
+      long from = times[slot(size - 1)] - window.toMillis();
+      long total = 0;
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        int slot = slot(i);
+        if (times[slot] >= from && latencies[slot] >= 0) {
+          total += latencies[slot];
+          count++;
+        }
+      }
+      return count == 0 ? null : Duration.ofNanos(total / count);
+    }
+
+    private int slot(int i) {
+      return (next - size + i + times.length) % times.length;
+    }
+
+    private Sample sample(int slot) {
+      return new Sample(
+          times[slot],
+          (states[slot] & 1) != 0,
+          (states[slot] & 2) != 0,
+          latencies[slot],
+          index,
+          Arrays.copyOfRange(values, slot * metrics, (slot + 1) * metrics));
+    }
+  }
+
+  /** A tunnel being sampled. */
+  private final class Sampled {
+    private final Series series;
+    private final URI readyz;
+    private final URI metricsUri;
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private volatile ScheduledFuture<?> task;
+
+    Sampled(Series series, int apiPort) {
+      this.series = series;
+      this.readyz = URI.create(String.format("http://localhost:%d/readyz", apiPort));
+      this.metricsUri = URI.create(String.format("http://localhost:%d/metrics", apiPort));
+    }
+  }
+
+  private final Duration interval;
+  private final int capacity;
+  private final Map<String, Integer> index;
+  private final HttpClient client;
+  private final Map<String, Sampled> sampled = new ConcurrentHashMap<>();
+  private final Map<String, Series> series = new ConcurrentHashMap<>();
+  private final int maxStopped;
+  /** Names of the stopped tunnels whose series are kept, stopped the longest ago first. */
+  private final Set<String> stopped = new LinkedHashSet<>();
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Samples {@link #DEFAULT_METRICS} every 10 seconds, keeping an hour of samples and the series of
+   * the 16 tunnels stopped last.
+   */
+  public TunnelTelemetry() {
+    this(Duration.ofSeconds(10), 360, DEFAULT_METRICS);
+  }
+
+  /**
+   * Keeps the series of the 16 tunnels stopped last.
+   *
+   * @param interval time between two samples of a tunnel
+   * @param capacity number of samples kept per tunnel
+   * @param metrics names of the metrics to track
+   */
+  public TunnelTelemetry(Duration interval, int capacity, Collection<String> metrics) {
+    this(interval, capacity, metrics, 16);
+  }
+
+  /**
+   * @param interval time between two samples of a tunnel
+   * @param capacity number of samples kept per tunnel
+   * @param metrics names of the metrics to track
+   * @param maxStopped number of stopped tunnels whose series are kept
+   */
+  public TunnelTelemetry(
+      Duration interval, int capacity, Collection<String> metrics, int maxStopped) {
+    if (interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("Sampling interval must be positive: " + interval);
+    }
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+    }
+    if (maxStopped < 0) {
+      throw new IllegalArgumentException("maxStopped must not be negative: " + maxStopped);
+    }
+    this.interval = interval;
+    this.capacity = capacity;
+    this.maxStopped = maxStopped;
+    Map<String, Integer> index = new HashMap<>();
+    for (String metric : new LinkedHashSet<>(metrics)) {
+      index.put(metric, index.size());
+    }
+    this.index = Collections.unmodifiableMap(index);
+    this.client = HttpClient.newBuilder().connectTimeout(interval).build();
+  }
+
+  /**
+   * Starts sampling a tunnel. The samples of a previous tunnel with the same name, such as one
+   * which was restarted, are kept and the new ones follow them.
+   *
+   * @param tunnelName name of the tunnel
+   * @param apiPort port of the Sauce Connect API
+   */
+  public synchronized void start(String tunnelName, int apiPort) {
+    cancel(tunnelName);
+    stopped.remove(tunnelName);
+    if (scheduler == null) {
+      ScheduledThreadPoolExecutor executor =
+          new ScheduledThreadPoolExecutor(
+              1,
+              runnable -> {
+                Thread thread = new Thread(runnable, "sauce-connect-telemetry");
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.setRemoveOnCancelPolicy(true);
+      scheduler = executor;
+    }
+    Series tunnelSeries =
+        series.computeIfAbsent(tunnelName, name -> new Series(name, index, capacity));
+    Sampled tunnel = new Sampled(tunnelSeries, apiPort);
+    sampled.put(tunnelName, tunnel);
+    long millis = interval.toMillis();
+    tunnel.task =
+        scheduler.scheduleAtFixedRate(() -> sample(tunnel), millis, millis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops sampling a tunnel, its samples are kept until it is removed or until the series of more
+   * recently stopped tunnels push it out.
+   *
+   * @param tunnelName name of the tunnel
+   */
+  public synchronized void stop(String tunnelName) {
+    if (!cancel(tunnelName)) {
+      return;
+    }
+    stopped.add(tunnelName);
+    Iterator<String> oldest = stopped.iterator();
+    while (stopped.size() > maxStopped) {
+      series.remove(oldest.next());
+      oldest.remove();
+    }
+  }
+
+  /**
+   * Stops sampling a tunnel and drops its samples.
+   *
+   * @param tunnelName name of the tunnel
+   */
+  public synchronized void remove(String tunnelName) {
+    cancel(tunnelName);
+    stopped.remove(tunnelName);
+    series.remove(tunnelName);
+  }
+
+  /**
+   * @return whether the tunnel was being sampled
+   */
+  private boolean cancel(String tunnelName) {
+    Sampled tunnel = sampled.remove(tunnelName);
+    if (tunnel != null && tunnel.task != null) {
+      tunnel.task.cancel(false);
+    }
+    return tunnel != null;
+  }
+
+  /**
+   * @return names of the tunnels with samples
+   */
+  public Set<String> getTunnelNames() {
+    return Collections.unmodifiableSet(series.keySet());
+  }
+
+  /**
+   * @param tunnelName name of the tunnel
+   * @return its samples, null if the tunnel was never sampled
+   */
+  public Series getSeries(String tunnelName) {
+    return series.get(tunnelName);
+  }
+
+  /**
+   * @return whether the tunnel is being sampled
+   */
+  public boolean isSampling(String tunnelName) {
+    return sampled.containsKey(tunnelName);
+  }
+
+  /**
+   * Takes a sample of a tunnel now, outside of the schedule.
+   *
+   * @param tunnelName name of the tunnel
+   * @return completes once the sample is recorded, with false if the tunnel is not sampled or a
+   *     sample is already in flight
+   */
+  public CompletableFuture<Boolean> sampleNow(String tunnelName) {
+    Sampled tunnel = sampled.get(tunnelName);
+    return tunnel == null ? CompletableFuture.completedFuture(false) : sample(tunnel);
+  }
+
+  private CompletableFuture<Boolean> sample(Sampled tunnel) {
+    if (!tunnel.inFlight.compareAndSet(false, true)) {
+      return CompletableFuture.completedFuture(false);
+    }
+    long time = System.currentTimeMillis();
+    long start = System.nanoTime();
+    CompletableFuture<long[]> ready =
+        client
+            .sendAsync(request(tunnel.readyz), HttpResponse.BodyHandlers.discarding())
+            .handle(
+                (response, e) ->
+                    new long[] {
+                      response == null ? -1 : response.statusCode(),
+                      response == null ? -1 : System.nanoTime() - start
+                    });
+    CompletableFuture<double[]> values =
+        index.isEmpty()
+            ? CompletableFuture.completedFuture(new double[0])
+            : client
+                .sendAsync(request(tunnel.metricsUri), HttpResponse.BodyHandlers.ofString())
+                .handle(
+                    (response, e) ->
+                        response != null && response.statusCode() == 200
+                            ? parseMetrics(response.body(), index)
+                            : missing(index.size()));
+    return ready
+        .thenCombine(
+            values,
+            (status, sampledValues) -> {
+              tunnel.series.add(time, status[0] == 200, status[0] >= 0, status[1], sampledValues);
+              return true;
+            })
+        .whenComplete(
+            (recorded, e) -> {
+              tunnel.inFlight.set(false);
+              if (e != null) {
+                LOGGER.debug("Unable to sample {}", tunnel.series.getTunnelName(), e);
+              }
+            });
+  }
+
+  private HttpRequest request(URI uri) {
+    return HttpRequest.newBuilder().uri(uri).timeout(interval).GET().build();
+  }
+
+  private static double[] missing(int size) {
+    double[] values = new double[size];
+    Arrays.fill(values, Double.NaN);
+    return values;
+  }
+
+  /**
+   * Reads the tracked metrics from the Prometheus text format, summing the samples with different
+   * labels.
+   *
+   * @param body exported metrics
+   * @param index column of each tracked metric
+   * @return values of the metrics, NaN for the ones not exported
+   */
+  static double[] parseMetrics(String body, Map<String, Integer> index) {
+    double[] values = missing(index.size());
+    int length = body.length();
+    int lineStart = 0;
+    while (lineStart < length) {
+      int lineEnd = body.indexOf('\n', lineStart);
+      if (lineEnd < 0) {
+        lineEnd = length;
+      }
+      if (body.charAt(lineStart) != '#') {
+        int nameEnd = lineStart;
+        while (nameEnd < lineEnd && body.charAt(nameEnd) != '{' && body.charAt(nameEnd) != ' ') {
+          nameEnd++;
+        }
+        Integer column = nameEnd > lineStart ? index.get(body.substring(lineStart, nameEnd)) : null;
+        if (column != null) {
+          double value = parseValue(body, nameEnd, lineEnd);
+          if (!Double.isNaN(value)) {
+            values[column] = Double.isNaN(values[column]) ? value : values[column] + value;
+          }
+        }
+      }
+      lineStart = lineEnd + 1;
+    }
+    return values;
+  }
+
+  /** Parses the value following the labels, if any, ignoring the optional timestamp. */
+  private static double parseValue(String body, int from, int lineEnd) {
+    int i = from;
+    if (i < lineEnd && body.charAt(i) == '{') {
+      boolean quoted = false;
+      for (i++; i < lineEnd; i++) {
+        char c = body.charAt(i);
+        if (c == '\\' && quoted) {
+          i++;
+        } else if (c == '"') {
+          quoted = !quoted;
+        } else if (c == '}' && !quoted) {
+          i++;
+          break;
+        }
+      }
+    }
+    while (i < lineEnd && body.charAt(i) == ' ') {
+      i++;
+    }
+    int end = i;
+    while (end < lineEnd && body.charAt(end) != ' ' && body.charAt(end) != '\r') {
+      end++;
+    }
+    if (end == i) {
+      return Double.NaN;
+    }
+    String value = body.substring(i, end);
+    switch (value) {
+      case "+Inf":
+        return Double.POSITIVE_INFINITY;
+      case "-Inf":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        try {
+          return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+          return Double.NaN;
+        }
+    }
+  }
+
+  /** Stops sampling all the tunnels, their samples are kept as for {@link #stop(String)}. */
+  @Override
+  public synchronized void close() {
+    for (String tunnelName : new ArrayList<>(sampled.keySet())) {
+      stop(tunnelName);
+    }
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+}
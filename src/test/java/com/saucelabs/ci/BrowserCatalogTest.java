@@ -0,0 +1,149 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class BrowserCatalogTest {
+
+  private BrowserCatalog catalog;
+
+  private static Browser webDriver(String os, String browserName, String version) {
+    String key = (os + browserName + version).replace(' ', '_').replace('.', '_');
+    return new Browser(
+        key,
+        os,
+        browserName,
+        browserName,
+        version,
+        version,
+        os + " " + browserName + " " + version);
+  }
+
+  private static Browser device(String os, String device, String version, String orientation) {
+    Browser browser =
+        new Browser(
+            (device + orientation + version).replace(' ', '_').replace('.', '_'),
+            os,
+            "Safari",
+            device,
+            version,
+            version,
+            device + " " + version + " (" + orientation + ")");
+    browser.setDevice(device);
+    browser.setDeviceOrientation(orientation);
+    return browser;
+  }
+
+  @BeforeEach
+  void beforeEach() {
+    List<Browser> browsers = new ArrayList<>();
+    browsers.add(webDriver("Windows 11", "chrome", "latest"));
+    browsers.add(webDriver("Windows 11", "chrome", "117"));
+    browsers.add(webDriver("Windows 11", "chrome", "118"));
+    browsers.add(webDriver("Windows 11", "chrome", "120"));
+    browsers.add(webDriver("Windows 10", "chrome", "119"));
+    browsers.add(webDriver("Windows 11", "firefox", "121"));
+    browsers.add(device("iOS", "iPhone Simulator", "17.0", "portrait"));
+    browsers.add(device("iOS", "iPhone Simulator", "17.0", "landscape"));
+    browsers.add(device("iOS", "iPad Simulator", "16.4", "landscape"));
+    // duplicate key, replaces the earlier entry
+    browsers.add(webDriver("Windows 11", "chrome", "118"));
+    catalog = new BrowserCatalog(browsers);
+  }
+
+  @Test
+  void testSizeAndLookup() {
+    assertEquals(9, catalog.size());
+    assertEquals("Windows 11 chrome 118", catalog.get("Windows_11chrome118").getName());
+  }
+
+  @Test
+  void testQueryByOsBrowserAndMinimumVersion() {
+    List<Browser> browsers =
+        catalog.query(
+            new BrowserQuery().os("windows 11").browserName("Chrome").minMajorVersion(118));
+    assertEquals(2, browsers.size());
+    assertEquals("118", browsers.get(0).getVersion());
+    assertEquals("120", browsers.get(1).getVersion());
+  }
+
+  @Test
+  void testQueryVersionRange() {
+    List<Browser> browsers =
+        catalog.query(
+            new BrowserQuery().browserName("chrome").minMajorVersion(118).maxMajorVersion(119));
+    assertEquals(2, browsers.size());
+    assertEquals("Windows 10", browsers.get(0).getOs());
+    assertEquals("Windows 11", browsers.get(1).getOs());
+
+    assertTrue(
+        catalog.query(new BrowserQuery().minMajorVersion(130).maxMajorVersion(120)).isEmpty());
+  }
+
+  @Test
+  void testQueryByOrientation() {
+    List<Browser> browsers =
+        catalog.query(new BrowserQuery().os("iOS").deviceOrientation("landscape"));
+    assertEquals(2, browsers.size());
+    assertEquals("iPad Simulator", browsers.get(0).getDevice());
+    assertEquals("iPhone Simulator", browsers.get(1).getDevice());
+  }
+
+  @Test
+  void testQueryWithoutCriteriaReturnsEverything() {
+    assertEquals(9, catalog.query(new BrowserQuery()).size());
+  }
+
+  @Test
+  void testQueryUnknownValue() {
+    assertTrue(catalog.query(new BrowserQuery().browserName("opera")).isEmpty());
+    assertTrue(catalog.query(new BrowserQuery().os("iOS").browserName("chrome")).isEmpty());
+  }
+
+  @Test
+  void testLatestIsExcludedFromVersionQueries() {
+    List<Browser> browsers =
+        catalog.query(new BrowserQuery().os("Windows 11").browserName("chrome").minMajorVersion(0));
+    assertEquals(3, browsers.size());
+    for (Browser browser : browsers) {
+      assertTrue(!"latest".equals(browser.getVersion()));
+    }
+  }
+
+  @Test
+  void testMajorVersion() {
+    assertEquals(118, BrowserCatalog.majorVersion("118"));
+    assertEquals(4, BrowserCatalog.majorVersion("4.4."));
+    assertEquals(-1, BrowserCatalog.majorVersion("latest"));
+    assertEquals(-1, BrowserCatalog.majorVersion(""));
+    assertEquals(-1, BrowserCatalog.majorVersion(null));
+  }
+
+  @Test
+  void testBrowsersAreSortedAndShared() {
+    List<Browser> browsers = catalog.getBrowsers();
+    assertEquals(9, browsers.size());
+    for (int i = 1; i < browsers.size(); i++) {
+      assertTrue(
+          String.CASE_INSENSITIVE_ORDER.compare(
+                  browsers.get(i - 1).getName(), browsers.get(i).getName())
+              <= 0);
+    }
+    assertSame(browsers, catalog.getBrowsers());
+    assertThrows(UnsupportedOperationException.class, () -> browsers.add(browsers.get(0)));
+  }
+
+  @Test
+  void testEmptyCatalog() {
+    assertSame(null, BrowserCatalog.EMPTY.get("anything"));
+    assertTrue(BrowserCatalog.EMPTY.query(new BrowserQuery().os("Linux")).isEmpty());
+  }
+}
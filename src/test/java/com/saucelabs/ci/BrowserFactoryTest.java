@@ -8,12 +8,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -175,6 +177,12 @@ class BrowserFactoryTest {
     assertNull(browser4.getDeviceOrientation());
   }
 
+  @Test
+  void testBrowserListsAreSharedBetweenCalls() throws IOException {
+    assertSame(browserFactory.getWebDriverBrowsers(), browserFactory.getWebDriverBrowsers());
+    assertSame(browserFactory.getAppiumBrowsers(), browserFactory.getAppiumBrowsers());
+  }
+
   @Test
   void testDuplicateMobileDevice() {
     String obj =
@@ -211,6 +219,79 @@ class BrowserFactoryTest {
     assertEquals("portrait", browser2.getDeviceOrientation());
   }
 
+  @Test
+  void testRepeatedStringsAreShared() {
+    String firefox4 =
+        "{\"short_version\": \"4\", \"long_name\": \"Firefox\", \"api_name\": \"firefox\", \"long_version\": \"4.0.1.\", \"os\": \"Linux\"}";
+    String firefox5 =
+        "{\"short_version\": \"5\", \"long_name\": \"Firefox\", \"api_name\": \"firefox\", \"long_version\": \"5.0.1.\", \"os\": \"Linux\"}";
+    List<Browser> browsers =
+        this.browserFactory.getBrowserListFromJson("[" + firefox4 + "," + firefox5 + "]");
+    Collections.sort(browsers);
+
+    assertEquals(3, browsers.size());
+    Browser browser1 = browsers.get(0);
+    Browser browser2 = browsers.get(1);
+    assertEquals("Linux Firefox 4", browser1.getName());
+    assertEquals("Linux Firefox 5", browser2.getName());
+    assertSame(browser1.getOs(), browser2.getOs());
+    assertSame(browser1.getBrowserName(), browser2.getBrowserName());
+    assertSame(browser1.getLongName(), browser2.getLongName());
+  }
+
+  @Test
+  void testBrowserCatalogFromLargeJsonStream() {
+    int entries = 50_000;
+    String[] oses = {"Windows 10", "Windows 11", "Linux", "Mac 13"};
+    String[] browsers = {"chrome", "firefox", "MicrosoftEdge", "safari"};
+    // generate the listing while it is read, so the test itself doesn't hold the whole response
+    Reader listing =
+        new Reader() {
+          private int entry = 0;
+          private String pending = "[";
+
+          @Override
+          public int read(char[] buffer, int offset, int length) {
+            if (pending.isEmpty()) {
+              if (entry > entries) {
+                return -1;
+              }
+              if (entry == entries) {
+                pending = "]";
+              } else {
+                pending =
+                    (entry == 0 ? "" : ",")
+                        + "{\"short_version\": \""
+                        + entry
+                        + "\", \"long_name\": \"Browser\", \"api_name\": \""
+                        + browsers[entry % browsers.length]
+                        + "\", \"long_version\": \""
+                        + entry
+                        + ".0.\", \"os\": \""
+                        + oses[(entry / browsers.length) % oses.length]
+                        + "\"}";
+              }
+              entry++;
+            }
+            int count = Math.min(length, pending.length());
+            pending.getChars(0, count, buffer, offset);
+            pending = pending.substring(count);
+            return count;
+          }
+
+          @Override
+          public void close() {}
+        };
+
+    BrowserCatalog catalog = this.browserFactory.getBrowserCatalogFromJson(listing);
+
+    // one browser per version, plus one "latest" browser per os/browser combination
+    assertEquals(entries + oses.length * browsers.length, catalog.size());
+    assertEquals("Windows 10 Browser 18", catalog.get("Windows_10MicrosoftEdge18").getName());
+    assertEquals(
+        "Windows 10 Browser latest", catalog.get("Windows_10MicrosoftEdgelatest").getName());
+  }
+
   @Test
   void testDuplicateWebDevice() {
     String obj =
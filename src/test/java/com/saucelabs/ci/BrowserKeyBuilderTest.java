@@ -0,0 +1,41 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class BrowserKeyBuilderTest {
+
+  @Test
+  void testKey() {
+    assertEquals(
+        "Windows_2003internet_explorer7",
+        BrowserKeyBuilder.key("Windows 2003", "internet explorer", "7"));
+    assertEquals(
+        "Amazon_Kindle_Fire_HD_8_9_Emulatorlandscapeandroid4_0_4_",
+        BrowserKeyBuilder.key(
+            "Amazon Kindle Fire HD 8.9 Emulator", "landscape", "android", "4.0.4."));
+  }
+
+  @Test
+  void testNullPartsAreWrittenAsNull() {
+    assertEquals("Linuxnulllatest", BrowserKeyBuilder.key("Linux", null, "latest"));
+    assertEquals(
+        "Linux_null_Firefox_4", BrowserKeyBuilder.joinedKey("Linux", null, "Firefox", "4"));
+  }
+
+  @Test
+  void testCopiedBrowserKeyIsCached() {
+    Browser original =
+        new Browser(
+            "Linuxfirefox4", "Linux", "firefox", "Firefox", "4", "4.0.1.", "Linux Firefox 4");
+    Browser copy = new Browser(original, false);
+    String key = copy.getKey();
+    assertEquals("Linux_null_null_Linux_Firefox_4_4_0_1_", key);
+    assertSame(key, copy.getKey());
+
+    copy.setDeviceOrientation("portrait");
+    assertEquals("Linux_null_portrait_Linux_Firefox_4_4_0_1_", copy.getKey());
+  }
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.Map;
 
 /** Created by gavinmogan on 2016-02-10. */
@@ -154,4 +155,21 @@ class BuildInformationTest {
   }
 
   /* TODO - figure out how to test equals */
+
+  @Test
+  void testReadsEarlierSerializedForm() throws Exception {
+    BuildInformation legacy =
+        SerializedForms.read("/legacy_build_info.ser", BuildInformation.class);
+
+    assertEquals("build-1", legacy.getBuildId());
+    assertEquals("nightly", legacy.getName());
+    assertEquals(41, legacy.getJobsPassed());
+    assertEquals(
+        EnumSet.of(BuildInformation.Field.JOBS_PASSED, BuildInformation.Field.STATUS),
+        legacy.getChangedFields());
+
+    BuildInformation read = SerializedForms.roundTrip(legacy);
+    assertEquals(legacy, read);
+    assertEquals(legacy.getChanges(), read.getChanges());
+  }
 }
@@ -10,7 +10,9 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 class BuildJobInformationTest {
   private BuildJobInformation job;
@@ -136,4 +138,129 @@ class BuildJobInformationTest {
     assertTrue(job.hasChanges());
     assertEquals(Map.of("creationTime", (long) 1), job.getChanges());
   }
+
+  @Test
+  void testChangedFields() {
+    job.setModificationTime(2);
+    job.setStatusFlag(BuildJobInformation.JobStatusFlag.PUBLIC);
+
+    assertEquals(
+        EnumSet.of(BuildJobInformation.Field.MODIFICATION_TIME, BuildJobInformation.Field.STATUS),
+        job.getChangedFields());
+    assertTrue(job.hasChange(BuildJobInformation.Field.STATUS));
+    assertFalse(job.hasChange("unknown"));
+
+    // the status change is captured by value
+    Map<String, Object> changes = job.getChanges();
+    job.clearStatusFlag(BuildJobInformation.JobStatusFlag.PUBLIC);
+    assertTrue(
+        ((EnumSet<?>) changes.get("status")).contains(BuildJobInformation.JobStatusFlag.PUBLIC));
+
+    job.clearChanges();
+    assertTrue(job.getChangedFields().isEmpty());
+  }
+
+  @Test
+  void testStatusMask() {
+    BuildJobInformation running = new BuildJobInformation("running");
+    running.setStatusFlag(BuildJobInformation.JobStatusFlag.RUNNING);
+    BuildJobInformation queued = new BuildJobInformation("queued");
+    queued.setStatusFlag(BuildJobInformation.JobStatusFlag.QUEUED);
+    BuildJobInformation finished = new BuildJobInformation("finished");
+    finished.setStatusFlag(BuildJobInformation.JobStatusFlag.FINISHED);
+
+    int active =
+        BuildJobInformation.mask(
+            BuildJobInformation.JobStatusFlag.RUNNING, BuildJobInformation.JobStatusFlag.QUEUED);
+    assertEquals(
+        List.of(running, queued),
+        BuildJobInformation.withAnyStatus(List.of(running, finished, queued), active));
+    assertTrue(running.hasStatusFlag(BuildJobInformation.JobStatusFlag.RUNNING));
+    assertEquals(
+        EnumSet.of(BuildJobInformation.JobStatusFlag.RUNNING),
+        BuildJobInformation.toFlags(running.getStatusMask()));
+  }
+
+  @Test
+  void testStatusSnapshots() {
+    BuildJobInformation other = new BuildJobInformation(job.getJobId());
+    other.populateFromJson(
+        new JSONObject(
+            "{\"creation_time\": 1641976754, \"modification_time\": 1643620921, \"state\":"
+                + " {\"completed\": false, \"errored\": false, \"failed\": false,"
+                + " \"finished\": true, \"new\": false, \"passed\": true, \"public\":"
+                + " false, \"queued\": false, \"running\": false}}"));
+    assertEquals(job, other);
+
+    int snapshot = job.getStatusMask();
+    EnumSet<BuildJobInformation.JobStatusFlag> status = job.getStatus();
+    job.setStatus(EnumSet.of(BuildJobInformation.JobStatusFlag.ERRORED));
+
+    assertEquals(BuildJobInformation.toFlags(snapshot), status);
+    assertEquals(EnumSet.of(BuildJobInformation.JobStatusFlag.ERRORED), job.getStatus());
+    assertEquals(EnumSet.of(BuildJobInformation.Field.STATUS), job.getChangedFields());
+  }
+
+  @Test
+  void testReadsEarlierSerializedForm() throws Exception {
+    BuildJobInformation legacy =
+        SerializedForms.read("/legacy_build_job.ser", BuildJobInformation.class);
+
+    assertEquals("job-2", legacy.getJobId());
+    assertEquals(1700000000L, legacy.getCreationTime());
+    assertEquals(
+        EnumSet.of(
+            BuildJobInformation.JobStatusFlag.COMPLETED, BuildJobInformation.JobStatusFlag.PASSED),
+        legacy.getStatus());
+    assertEquals(
+        EnumSet.of(BuildJobInformation.Field.MODIFICATION_TIME, BuildJobInformation.Field.STATUS),
+        legacy.getChangedFields());
+
+    legacy.setStatusRunning(true);
+    BuildJobInformation read = SerializedForms.roundTrip(legacy);
+    assertEquals(legacy, read);
+    assertEquals(legacy.getStatusMask(), read.getStatusMask());
+  }
+
+  @Test
+  void testConcurrentChanges() throws Exception {
+    BuildJobInformation shared = new BuildJobInformation("shared");
+    BuildJobInformation.JobStatusFlag[] flags = BuildJobInformation.JobStatusFlag.values();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[flags.length + 1];
+    for (int i = 0; i < flags.length; i++) {
+      BuildJobInformation.JobStatusFlag flag = flags[i];
+      threads[i] = new Thread(() -> awaitThen(start, () -> shared.setStatusFlag(flag)));
+    }
+    threads[flags.length] =
+        new Thread(
+            () ->
+                awaitThen(
+                    start,
+                    () -> {
+                      shared.setCreationTime(1);
+                      shared.setModificationTime(2);
+                      shared.setDeletionTime(3);
+                    }));
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(EnumSet.allOf(BuildJobInformation.JobStatusFlag.class), shared.getStatus());
+    assertEquals(EnumSet.allOf(BuildJobInformation.Field.class), shared.getChangedFields());
+  }
+
+  private static void awaitThen(CountDownLatch start, Runnable action) {
+    try {
+      start.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    action.run();
+  }
 }
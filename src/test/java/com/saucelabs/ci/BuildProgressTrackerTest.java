@@ -0,0 +1,171 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+class BuildProgressTrackerTest {
+
+  private final List<Long> requestedWatermarks = new ArrayList<>();
+  private final List<String> notifications = new ArrayList<>();
+  private List<BuildJobInformation> nextJobs = new ArrayList<>();
+  private IOException nextFailure;
+
+  private BuildInformation build;
+  private BuildProgressTracker tracker;
+
+  private static BuildJobInformation job(
+      String id, long modificationTime, BuildJobInformation.JobStatusFlag... flags) {
+    BuildJobInformation job = new BuildJobInformation(id);
+    job.setModificationTime(modificationTime);
+    for (BuildJobInformation.JobStatusFlag flag : flags) {
+      job.setStatusFlag(flag);
+    }
+    job.clearChanges();
+    return job;
+  }
+
+  @BeforeEach
+  void beforeEach() {
+    build = new BuildInformation("build");
+    tracker =
+        new BuildProgressTracker(
+            build,
+            (buildId, modifiedSince) -> {
+              assertEquals("build", buildId);
+              requestedWatermarks.add(modifiedSince);
+              if (nextFailure != null) {
+                throw nextFailure;
+              }
+              List<BuildJobInformation> jobs = nextJobs;
+              nextJobs = new ArrayList<>();
+              return jobs;
+            });
+    tracker.addListener(
+        (job, previous) -> notifications.add(job.getJobId() + ":" + previous.size()));
+  }
+
+  @Test
+  void testFirstPollCountsAllJobs() throws Exception {
+    nextJobs.add(job("a", 10, BuildJobInformation.JobStatusFlag.RUNNING));
+    nextJobs.add(
+        job(
+            "b",
+            12,
+            BuildJobInformation.JobStatusFlag.FINISHED,
+            BuildJobInformation.JobStatusFlag.PASSED));
+    nextJobs.add(
+        job(
+            "c",
+            11,
+            BuildJobInformation.JobStatusFlag.FINISHED,
+            BuildJobInformation.JobStatusFlag.FAILED));
+
+    assertEquals(3, tracker.poll().size());
+    assertEquals(Long.MIN_VALUE, (long) requestedWatermarks.get(0));
+    assertEquals(12, tracker.getWatermark());
+    assertEquals(1, build.getJobsPassed());
+    assertEquals(2, build.getJobsFinished());
+    assertEquals(1, build.getJobsFailed());
+    assertEquals(0, build.getJobsErrored());
+    assertEquals(List.of("a:0", "b:0", "c:0"), notifications);
+  }
+
+  @Test
+  void testDeltasAreAppliedToKnownJobs() throws Exception {
+    nextJobs.add(job("a", 10, BuildJobInformation.JobStatusFlag.RUNNING));
+    nextJobs.add(job("b", 10, BuildJobInformation.JobStatusFlag.RUNNING));
+    tracker.poll();
+    BuildJobInformation a = tracker.getJobs().get("a");
+    notifications.clear();
+
+    // b is returned again without a status change
+    nextJobs.add(
+        job(
+            "a",
+            20,
+            BuildJobInformation.JobStatusFlag.FINISHED,
+            BuildJobInformation.JobStatusFlag.ERRORED));
+    nextJobs.add(job("b", 20, BuildJobInformation.JobStatusFlag.RUNNING));
+    List<BuildJobInformation> changed = tracker.poll();
+
+    assertEquals(10, (long) requestedWatermarks.get(1));
+    assertEquals(1, changed.size());
+    assertSame(a, changed.get(0));
+    assertEquals(List.of("a:1"), notifications);
+    assertEquals(
+        EnumSet.of(
+            BuildJobInformation.JobStatusFlag.FINISHED, BuildJobInformation.JobStatusFlag.ERRORED),
+        a.getStatus());
+    assertTrue(a.hasChange(BuildJobInformation.Field.STATUS));
+    assertTrue(tracker.getJobs().get("b").hasChange(BuildJobInformation.Field.MODIFICATION_TIME));
+    assertFalse(tracker.getJobs().get("b").hasChange(BuildJobInformation.Field.STATUS));
+    assertEquals(1, build.getJobsFinished());
+    assertEquals(1, build.getJobsErrored());
+  }
+
+  @Test
+  void testCountersMoveBetweenStates() throws Exception {
+    nextJobs.add(
+        job(
+            "a",
+            10,
+            BuildJobInformation.JobStatusFlag.FINISHED,
+            BuildJobInformation.JobStatusFlag.FAILED));
+    tracker.poll();
+    build.clearChanges();
+
+    nextJobs.add(
+        job(
+            "a",
+            11,
+            BuildJobInformation.JobStatusFlag.FINISHED,
+            BuildJobInformation.JobStatusFlag.PASSED));
+    tracker.poll();
+
+    assertEquals(1, build.getJobsFinished());
+    assertEquals(1, build.getJobsPassed());
+    assertEquals(0, build.getJobsFailed());
+    assertFalse(build.hasChange(BuildInformation.Field.JOBS_FINISHED));
+    assertTrue(build.hasChange(BuildInformation.Field.JOBS_PASSED));
+  }
+
+  @Test
+  void testFailedPollKeepsSnapshot() throws Exception {
+    nextJobs.add(job("a", 10, BuildJobInformation.JobStatusFlag.RUNNING));
+    tracker.poll();
+
+    nextFailure = new IOException("HTTP 500");
+    assertThrows(IOException.class, tracker::poll);
+    assertEquals(10, tracker.getWatermark());
+    assertEquals(1, tracker.getJobs().size());
+
+    nextFailure = null;
+    tracker.poll();
+    assertEquals(10, (long) requestedWatermarks.get(2));
+  }
+
+  @Test
+  void testRemovedListenerIsNotNotified() throws Exception {
+    List<Set<BuildJobInformation.JobStatusFlag>> seen = new ArrayList<>();
+    BuildProgressTracker.Listener listener = (job, previous) -> seen.add(previous);
+    tracker.addListener(listener);
+    tracker.removeListener(listener);
+
+    nextJobs.add(job("a", 10, BuildJobInformation.JobStatusFlag.QUEUED));
+    tracker.poll();
+    assertTrue(seen.isEmpty());
+    assertEquals(1, notifications.size());
+  }
+}
@@ -0,0 +1,39 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+
+  @Test
+  void testSameHashCodeDoesNotCollide() {
+    // "Aa" and "BB" share their String hash code
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertNotEquals(CountMinSketch.hash("Aa"), CountMinSketch.hash("BB"));
+
+    CountMinSketch sketch = new CountMinSketch(4, 1024);
+    for (int i = 0; i < 100; i++) {
+      sketch.add("Aa");
+    }
+    assertEquals(100, sketch.estimate("Aa"));
+    assertEquals(0, sketch.estimate("BB"));
+    assertEquals(100, sketch.size());
+  }
+
+  @Test
+  void testMerge() {
+    CountMinSketch first = new CountMinSketch(3, 64);
+    CountMinSketch second = new CountMinSketch(3, 64);
+    first.add("timeout");
+    second.add("timeout");
+    second.add("element not found");
+    first.merge(second);
+
+    assertEquals(2, first.estimate("timeout"));
+    assertEquals(3, first.size());
+    assertThrows(IllegalArgumentException.class, () -> first.merge(new CountMinSketch(2, 64)));
+  }
+}
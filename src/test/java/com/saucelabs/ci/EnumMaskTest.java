@@ -0,0 +1,41 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+
+class EnumMaskTest {
+
+  @Test
+  void testKeys() {
+    EnumMask<BuildInformation.Field> fields = BuildInformation.FIELDS;
+    for (BuildInformation.Field field : BuildInformation.Field.values()) {
+      assertEquals(field, fields.forKey(field.getKey()));
+    }
+    assertNull(fields.forKey("unknown"));
+
+    int mask = fields.fromKeys(Arrays.asList("name", "unknown", "status"));
+    assertEquals(
+        EnumSet.of(BuildInformation.Field.NAME, BuildInformation.Field.STATUS),
+        fields.toSet(mask));
+    assertTrue(EnumMask.contains(mask, BuildInformation.Field.NAME));
+    assertEquals(0, fields.fromKeys(Collections.emptyList()));
+  }
+
+  @Test
+  void testMap() {
+    EnumMask<JobInformation.Field> fields = JobInformation.FIELDS;
+    int mask = EnumMask.bit(JobInformation.Field.OS) | EnumMask.bit(JobInformation.Field.END_TIME);
+    Map<String, Object> map = fields.toMap(mask, JobInformation.Field::name);
+    assertEquals(2, map.size());
+    assertEquals("OS", map.get("os"));
+    assertEquals("END_TIME", map.get("endTime"));
+  }
+}
@@ -0,0 +1,38 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class FailureFingerprintTest {
+
+  @Test
+  void testNormalize() {
+    assertEquals(
+        "Timed out after # seconds waiting for session # on port #",
+        FailureFingerprint.normalize(
+            "Timed out after 30 seconds waiting for session 5f2b8c9e1a on port 4444"));
+    assertEquals(
+        "Build info: #-#-#-#-# at #-#-#T#:#:#.#Z",
+        FailureFingerprint.normalize(
+            "Build info: 123e4567-e89b-12d3-a456-426614174000 at 2024-01-31T10:00:00.123Z"));
+    assertEquals(
+        "element #main-v# not found",
+        FailureFingerprint.normalize("  element #main-v2\n\tnot   found \n"));
+    // words without digits are kept, even when made of hex letters
+    assertEquals("dead beef cafe", FailureFingerprint.normalize("dead beef cafe"));
+    assertEquals("x# line #", FailureFingerprint.normalize("x86 line 42"));
+  }
+
+  @Test
+  void testFingerprint() {
+    String first =
+        FailureFingerprint.of("java.lang.AssertionError: expected 200 but was 503 (job 8f3a91c2)");
+    String second =
+        FailureFingerprint.of("java.lang.AssertionError: expected 200 but was 500 (job 77b0e4d1)");
+    assertEquals(first, second);
+    assertEquals(16, first.length());
+    assertNotEquals(first, FailureFingerprint.of("java.lang.NullPointerException"));
+  }
+}
@@ -0,0 +1,60 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class FailureIndexTest {
+
+  private static JobInformation job(String id, String failureMessage) {
+    JobInformation job = new JobInformation(id, "hmac");
+    job.setFailureMessage(failureMessage);
+    return job;
+  }
+
+  @Test
+  void testGroups() {
+    List<JobInformation> jobs = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      String message;
+      if (i % 100 == 0) {
+        message = "NoSuchElementException: #login-button";
+      } else {
+        message = "TimeoutException: page load took " + (30 + i) + "s (session " + (1000 + i) + ")";
+      }
+      jobs.add(job("job" + i, message));
+    }
+    jobs.add(job("passed", null));
+
+    FailureIndex index = new FailureIndex();
+    index.addAll(jobs);
+
+    assertEquals(2, index.size());
+    List<FailureIndex.Group> groups = index.getGroups();
+    FailureIndex.Group timeouts = groups.get(0);
+    assertEquals(495, timeouts.size());
+    assertEquals("job1", timeouts.getJobIds().get(0));
+    assertEquals(
+        "TimeoutException: page load took 31s (session 1001)", timeouts.getSampleMessage());
+    assertEquals(
+        "TimeoutException: page load took #s (session #)", timeouts.getNormalizedMessage());
+    assertEquals(5, groups.get(1).size());
+    assertSame(timeouts, index.getGroup(timeouts.getFingerprint()));
+    assertSame(groups.get(1), index.getGroupOfJob("job200"));
+    assertNull(index.getGroupOfJob("passed"));
+  }
+
+  @Test
+  void testJobIsAddedOnce() {
+    FailureIndex index = new FailureIndex();
+    String fingerprint = index.add("job", "Error 1");
+    assertEquals(fingerprint, index.add("job", "Another error"));
+    assertEquals(1, index.getGroup(fingerprint).size());
+    assertNull(index.add(job("other", "")));
+  }
+}
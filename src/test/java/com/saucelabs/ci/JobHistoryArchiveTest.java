@@ -0,0 +1,200 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class JobHistoryArchiveTest {
+
+  @TempDir Path directory;
+
+  private static JobInformation job(
+      String id, String build, String browser, long startTime, long duration) {
+    JobInformation job = new JobInformation(id, "hmac");
+    job.setBuild(build);
+    job.setOs("Windows 11");
+    job.setBrowser(browser);
+    job.setVersion("latest");
+    job.setStatus(duration < 100);
+    job.setStartTime(startTime);
+    job.setEndTime(startTime + duration);
+    return job;
+  }
+
+  @Test
+  void testScanInStartTimeOrder() throws Exception {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      archive.append(job("a", "build-1", "chrome", 100, 10));
+      archive.append(job("c", "build-1", "chrome", 300, 10));
+      // archived late, but started between a and c
+      archive.append(job("b", "build-1", "firefox", 200, 200));
+
+      List<String> ids = new ArrayList<>();
+      archive.scan(100, 300, record -> ids.add(record.getJobId()));
+      assertEquals(List.of("a", "b"), ids);
+
+      List<String> statuses = new ArrayList<>();
+      archive.scan(Long.MIN_VALUE, Long.MAX_VALUE, record -> statuses.add(record.getStatus()));
+      assertEquals(List.of("Passed", "Failed", "Passed"), statuses);
+    }
+  }
+
+  @Test
+  void testReopen() throws Exception {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      archive.append(job("a", "build-1", "chrome", 100, 10));
+      JobInformation noBuild = new JobInformation("b", "hmac");
+      noBuild.setStartTime(50);
+      archive.append(noBuild);
+    }
+
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      assertEquals(2, archive.size());
+      List<String> seen = new ArrayList<>();
+      archive.scan(
+          0,
+          200,
+          record -> {
+            if (record.getJobId().equals("b")) {
+              assertNull(record.getBuild());
+              assertNull(record.getStatus());
+            } else {
+              assertEquals("build-1", record.getBuild());
+              assertEquals("Windows 11", record.getOs());
+              assertEquals("chrome", record.getBrowser());
+              assertEquals("latest", record.getVersion());
+              assertEquals(110, record.getEndTime());
+            }
+            seen.add(record.getJobId());
+          });
+      assertEquals(2, seen.size());
+
+      archive.append(job("c", "build-2", "chrome", 300, 10));
+      assertEquals(3, archive.size());
+    }
+  }
+
+  @Test
+  void testDurationTrend() throws Exception {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      // more jobs than the initial mapping holds
+      for (int build = 0; build < 600; build++) {
+        for (int job = 0; job < 4; job++) {
+          archive.append(
+              job(
+                  build + "-" + job,
+                  "build-" + build,
+                  job % 2 == 0 ? "chrome" : "firefox",
+                  build * 1000L + job,
+                  build + job));
+        }
+      }
+
+      Map<String, Double> trend = archive.getDurationTrend("Windows 11", "chrome", 500);
+      assertEquals(500, trend.size());
+      assertEquals("build-100", trend.keySet().iterator().next());
+      // chrome jobs 0 and 2 of the build take build and build + 2 seconds
+      assertEquals(600.0, trend.get("build-599"));
+      assertEquals(101.0, trend.get("build-100"));
+
+      assertEquals(600, archive.getDurationTrend(null, null, 1000).size());
+      assertTrue(archive.getDurationTrend("Linux", "chrome", 10).isEmpty());
+    }
+  }
+
+  @Test
+  void testDurationTrendOfInterleavedBuilds() throws Exception {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      archive.append(job("a", "build-1", "chrome", 100, 10));
+      archive.append(job("b", "build-2", "chrome", 200, 20));
+      // a retried job of build-1 started after build-2
+      archive.append(job("c", "build-1", "chrome", 300, 30));
+      archive.append(job("d", "build-3", "chrome", 400, 40));
+      archive.append(job("e", "build-2", "chrome", 500, 60));
+
+      Map<String, Double> trend = archive.getDurationTrend(null, "chrome", 2);
+      assertEquals(List.of("build-3", "build-2"), new ArrayList<>(trend.keySet()));
+      assertEquals(40.0, trend.get("build-2"));
+
+      trend = archive.getDurationTrend(null, "chrome", 3);
+      assertEquals(List.of("build-1", "build-3", "build-2"), new ArrayList<>(trend.keySet()));
+      assertEquals(20.0, trend.get("build-1"));
+    }
+  }
+
+  @Test
+  void testLocked() throws IOException {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      assertThrows(IOException.class, () -> new JobHistoryArchive(directory));
+      assertEquals(0, archive.size());
+    }
+    new JobHistoryArchive(directory).close();
+  }
+
+  @Test
+  void testIdsAreNotInTheDictionary() throws Exception {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      for (int i = 0; i < 100; i++) {
+        archive.append(job("job-" + i, "build-1", "chrome", i, 10));
+      }
+    }
+    // build-1, Windows 11, chrome and latest
+    assertTrue(Files.size(directory.resolve("strings.dat")) < 100);
+
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      List<String> ids = new ArrayList<>();
+      archive.scan(95, 100, record -> ids.add(record.getJobId()));
+      assertEquals(List.of("job-95", "job-96", "job-97", "job-98", "job-99"), ids);
+    }
+  }
+
+  @Test
+  void testRecordsWithoutTheirDataAreDropped() throws Exception {
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      archive.append(job("a", "build-1", "chrome", 100, 10));
+      archive.append(job("b", "build-1", "chrome", 200, 10));
+      archive.append(job("c", "build-2", "chrome", 300, 10));
+    }
+    // as if the process crashed before the id of the last job was written
+    try (FileChannel ids =
+        FileChannel.open(directory.resolve("ids.dat"), StandardOpenOption.WRITE)) {
+      ids.truncate(2);
+    }
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      assertEquals(2, archive.size());
+      archive.append(job("d", "build-2", "chrome", 400, 10));
+    }
+    try (JobHistoryArchive archive = new JobHistoryArchive(directory)) {
+      List<String> ids = new ArrayList<>();
+      archive.scan(0, 1000, record -> ids.add(record.getJobId()));
+      assertEquals(List.of("a", "b", "d"), ids);
+    }
+  }
+
+  @Test
+  void testNotAnArchive() throws IOException {
+    Files.write(directory.resolve("jobs.dat"), new byte[32]);
+    assertThrows(StreamCorruptedException.class, () -> new JobHistoryArchive(directory));
+  }
+
+  @Test
+  void testClosedArchive() throws IOException {
+    JobHistoryArchive archive = new JobHistoryArchive(directory);
+    archive.close();
+    assertThrows(IllegalStateException.class, () -> archive.scan(0, 1, record -> {}));
+  }
+}
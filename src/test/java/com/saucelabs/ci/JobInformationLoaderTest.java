@@ -0,0 +1,83 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.saucelabs.saucerest.model.jobs.Job;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+class JobInformationLoaderTest {
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+  private final JobInformationLoader loader = new JobInformationLoader(pool);
+
+  @AfterEach
+  void afterEach() {
+    pool.shutdownNow();
+  }
+
+  private static Job job(String id, boolean passed) {
+    Job job = new Job();
+    job.id = id;
+    job.passed = passed;
+    job.name = "test " + id;
+    job.os = "Windows 11";
+    job.browser = "chrome";
+    job.startTime = 10L;
+    job.endTime = 20L;
+    return job;
+  }
+
+  @Test
+  void testLoad() {
+    List<Job> jobs = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      jobs.add(job("job" + i, i % 2 == 0));
+    }
+
+    Map<String, JobInformation> loaded = loader.load(jobs, id -> "hmac-" + id);
+
+    assertEquals(1000, loaded.size());
+    Iterator<String> ids = loaded.keySet().iterator();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("job" + i, ids.next());
+    }
+    JobInformation information = loaded.get("job2");
+    assertEquals("hmac-job2", information.getHmac());
+    assertEquals("Passed", information.getStatus());
+    assertEquals("test job2", information.getName());
+    assertEquals(20L, information.getEndTime());
+    assertFalse(information.hasChanges());
+    assertEquals("Failed", loaded.get("job3").getStatus());
+  }
+
+  @Test
+  void testLoadStreamWithDuplicateIds() {
+    Map<String, JobInformation> loaded =
+        loader.load(
+            IntStream.range(0, 100).mapToObj(i -> job("job" + (i % 10), i >= 90)), id -> "hmac");
+
+    assertEquals(10, loaded.size());
+    for (JobInformation information : loaded.values()) {
+      assertEquals("Passed", information.getStatus());
+    }
+  }
+
+  @Test
+  void testChangesAreRecordedAfterLoading() {
+    JobInformation information = loader.load(List.of(job("1234", true)), id -> "hmac").get("1234");
+    assertFalse(information.hasChanges());
+
+    information.setName("renamed");
+    assertTrue(information.hasChange(JobInformation.Field.NAME));
+  }
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.Map;
 
 /** Created by gavinmogan on 2016-02-10. */
@@ -274,4 +275,36 @@ public class JobInformationTest {
   }
 
   /* TODO - figure out how to test equals */
+
+  @Test
+  void testReadsEarlierSerializedForm() throws Exception {
+    JobInformation legacy = SerializedForms.read("/legacy_job_info.ser", JobInformation.class);
+
+    assertEquals("job-1", legacy.getJobId());
+    assertEquals("LoginTest.testValid", legacy.getName());
+    assertEquals("Failed", legacy.getStatus());
+    assertEquals("Windows 7", legacy.getOs());
+    assertEquals(1700000000L, legacy.getStartTime());
+    assertEquals(
+        EnumSet.of(JobInformation.Field.NAME, JobInformation.Field.STATUS),
+        legacy.getChangedFields());
+
+    legacy.setBrowser("chrome");
+    JobInformation read = SerializedForms.roundTrip(legacy);
+    assertEquals(legacy, read);
+    assertTrue(read.hasChange(JobInformation.Field.BROWSER));
+  }
+
+  @Test
+  void testSerializationKeepsChanges() throws Exception {
+    job.setName("renamed");
+    job.setEndTime(42);
+
+    JobInformation read = SerializedForms.roundTrip(job);
+
+    assertEquals(job, read);
+    assertEquals(job.getChangedFields(), read.getChangedFields());
+    assertEquals(job.getChanges(), read.getChanges());
+    assertFalse(SerializedForms.roundTrip(new JobInformation("1", null)).hasChanges());
+  }
 }
@@ -0,0 +1,170 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.saucelabs.saucerest.model.jobs.Job;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class JobResultStoreTest {
+
+  private JobResultStore store;
+
+  private static JobInformation job(
+      String id, String browser, Boolean passed, long duration, String failureMessage) {
+    JobInformation job = new JobInformation(id, "hmac");
+    job.setOs("Windows 11");
+    job.setBrowser(browser);
+    job.setVersion("latest");
+    if (passed != null) {
+      job.setStatus(passed);
+    }
+    job.setStartTime(1000);
+    if (duration >= 0) {
+      job.setEndTime(1000 + duration);
+    }
+    job.setFailureMessage(failureMessage);
+    return job;
+  }
+
+  @BeforeEach
+  void beforeEach() {
+    // starts small so the columns have to grow
+    store = new JobResultStore(2);
+    store.add(job("1", "chrome", true, 10, null));
+    store.add(job("2", "chrome", false, 20, "timeout"));
+    store.add(job("3", "firefox", false, 30, "timeout"));
+    store.add(job("4", "firefox", true, 40, null));
+    store.add(job("5", "chrome", true, 50, null));
+    store.add(job("6", "safari", null, -1, null));
+    store.add(job("7", "chrome", false, 60, "element not found"));
+  }
+
+  @Test
+  void testCounts() {
+    assertEquals(7, store.size());
+    JobResultStore.Counts counts = store.getCounts();
+    assertEquals(3, counts.getPassed());
+    assertEquals(3, counts.getFailed());
+    assertEquals(1, counts.getUnknown());
+    assertEquals(0.5, counts.getPassRate());
+  }
+
+  @Test
+  void testCountsByBrowser() {
+    Map<String, JobResultStore.Counts> counts =
+        store.getCountsBy(JobResultStore.Dimension.BROWSER);
+    assertEquals(List.of("chrome", "firefox", "safari"), List.copyOf(counts.keySet()));
+    assertEquals(2, counts.get("chrome").getPassed());
+    assertEquals(2, counts.get("chrome").getFailed());
+    assertEquals(0.5, counts.get("firefox").getPassRate());
+    assertEquals(1, counts.get("safari").getUnknown());
+    assertEquals(0.0, counts.get("safari").getPassRate());
+    assertEquals(7, store.getCountsBy(JobResultStore.Dimension.OS).get("Windows 11").getTotal());
+  }
+
+  @Test
+  void testDurationPercentiles() {
+    assertEquals(10, store.getDurationPercentile(0));
+    assertEquals(30, store.getDurationPercentile(50));
+    assertEquals(60, store.getDurationPercentile(95));
+    assertEquals(60, store.getDurationPercentile(100));
+    assertEquals(-1, store.getDuration(5));
+    assertEquals(-1, new JobResultStore().getDurationPercentile(50));
+    assertThrows(IllegalArgumentException.class, () -> store.getDurationPercentile(101));
+  }
+
+  @Test
+  void testFailureCounts() {
+    Map<String, Integer> failures = store.getFailureCounts();
+    assertEquals(List.of("timeout", "element not found"), List.copyOf(failures.keySet()));
+    assertEquals(2, (int) failures.get("timeout"));
+  }
+
+  @Test
+  void testFailedJobIds() {
+    assertEquals(
+        List.of("2", "7"), store.getFailedJobIds(JobResultStore.Dimension.BROWSER, "chrome"));
+    assertTrue(store.getFailedJobIds(JobResultStore.Dimension.BROWSER, "opera").isEmpty());
+  }
+
+  @Test
+  void testAddSauceJob() {
+    Job job = new Job();
+    job.id = "8";
+    job.passed = true;
+    job.browser = "edge";
+    job.browserShortVersion = "120";
+    job.startTime = 100L;
+    job.endTime = 105L;
+    store.add(job);
+
+    assertEquals("8", store.getJobId(7));
+    assertEquals(5, store.getDuration(7));
+    assertEquals(1, store.getCountsBy(JobResultStore.Dimension.VERSION).get("120").getPassed());
+    assertThrows(IndexOutOfBoundsException.class, () -> store.getJobId(8));
+  }
+
+  @Test
+  void testOsIsNormalizedForBothKindsOfJobs() {
+    JobResultStore byOs = new JobResultStore();
+    JobInformation information = job("1", "chrome", true, 10, null);
+    information.setOs("Windows 2008");
+    byOs.add(information);
+    Job job = new Job();
+    job.id = "2";
+    job.passed = false;
+    job.os = "Windows 2008";
+    byOs.add(job);
+
+    Map<String, JobResultStore.Counts> counts = byOs.getCountsBy(JobResultStore.Dimension.OS);
+    assertEquals(List.of("Windows 7"), List.copyOf(counts.keySet()));
+    assertEquals(1, counts.get("Windows 7").getPassed());
+    assertEquals(1, counts.get("Windows 7").getFailed());
+  }
+
+  @Test
+  void testEmptyFailureMessagesAreIgnoredForBothKindsOfJobs() {
+    JobResultStore store = new JobResultStore();
+    JobInformation information = job("1", "chrome", false, 10, null);
+    information.setFailureMessage("null");
+    store.add(information);
+    Job empty = new Job();
+    empty.id = "2";
+    empty.passed = false;
+    empty.customData = Map.of("FAILURE_MESSAGE", "");
+    store.add(empty);
+    Job failed = new Job();
+    failed.id = "3";
+    failed.passed = false;
+    failed.customData = Map.of("FAILURE_MESSAGE", "timeout");
+    store.add(failed);
+
+    assertEquals(Map.of("timeout", 1), store.getFailureCounts());
+  }
+
+  @Test
+  void testLargeBuild() {
+    JobResultStore large = new JobResultStore();
+    String[] browsers = {"chrome", "firefox", "safari", "MicrosoftEdge"};
+    for (int i = 0; i < 100_000; i++) {
+      JobInformation job = new JobInformation(Integer.toString(i), "hmac");
+      job.setBrowser(browsers[i % browsers.length]);
+      job.setStatus(i % 10 != 0);
+      job.setStartTime(i + 1);
+      job.setEndTime(i + 1 + i % 100);
+      large.add(job);
+    }
+
+    assertEquals(100_000, large.size());
+    assertEquals(0.9, large.getCounts().getPassRate(), 0.0001);
+    assertEquals(
+        25_000, large.getCountsBy(JobResultStore.Dimension.BROWSER).get("safari").getTotal());
+    assertEquals(49, large.getDurationPercentile(50));
+  }
+}
@@ -0,0 +1,98 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+class JobStatisticsTest {
+
+  private static JobInformation job(int i) {
+    JobInformation job = new JobInformation("job" + i, "hmac");
+    job.setStatus(i % 4 != 0);
+    job.setStartTime(1000);
+    job.setEndTime(1000 + i % 100);
+    if (i % 4 == 0) {
+      job.setFailureMessage(i % 12 == 0 ? "timeout" : "element not found " + i);
+    }
+    return job;
+  }
+
+  @Test
+  void testSingleStream() {
+    JobStatistics statistics = new JobStatistics(3);
+    for (int i = 0; i < 10_000; i++) {
+      statistics.add(job(i));
+    }
+
+    assertEquals(10_000, statistics.getJobCount());
+    assertEquals(7_500, statistics.getPassedCount());
+    assertEquals(2_500, statistics.getFailedCount());
+    assertEquals(0.75, statistics.getPassRate(), 0.0001);
+    assertEquals(10_000, statistics.getDurationCount());
+    assertEquals(50, statistics.getMedianDuration(), 2);
+    assertEquals(95, statistics.getDurationPercentile(95), 2);
+    assertEquals(0, statistics.getMinDuration(), 0);
+    assertEquals(99, statistics.getMaxDuration(), 0);
+
+    Map<String, Long> top = statistics.getTopFailures();
+    assertEquals(3, top.size());
+    assertEquals("timeout", top.keySet().iterator().next());
+    assertTrue(statistics.getFailureCount("timeout") >= 834);
+  }
+
+  @Test
+  void testParallelCollector() {
+    JobStatistics sequential = new JobStatistics();
+    IntStream.range(0, 50_000).mapToObj(JobStatisticsTest::job).forEach(sequential::add);
+
+    JobStatistics parallel =
+        IntStream.range(0, 50_000)
+            .parallel()
+            .mapToObj(JobStatisticsTest::job)
+            .collect(JobStatistics.collector());
+
+    assertEquals(sequential.getJobCount(), parallel.getJobCount());
+    assertEquals(sequential.getFailedCount(), parallel.getFailedCount());
+    assertEquals(sequential.getMedianDuration(), parallel.getMedianDuration(), 2);
+    assertEquals(sequential.getFailureCount("timeout"), parallel.getFailureCount("timeout"));
+    assertEquals("timeout", parallel.getTopFailures().keySet().iterator().next());
+  }
+
+  @Test
+  void testBuildJobs() {
+    BuildJobInformation finished = new BuildJobInformation("a");
+    finished.setCreationTime(100);
+    finished.setModificationTime(160);
+    finished.setStatusFlag(BuildJobInformation.JobStatusFlag.FINISHED);
+    finished.setStatusFlag(BuildJobInformation.JobStatusFlag.ERRORED);
+    BuildJobInformation running = new BuildJobInformation("b");
+    running.setCreationTime(100);
+    running.setModificationTime(120);
+    running.setStatusFlag(BuildJobInformation.JobStatusFlag.RUNNING);
+
+    JobStatistics statistics = new JobStatistics();
+    for (BuildJobInformation job : List.of(finished, running)) {
+      statistics.add(job);
+    }
+
+    assertEquals(2, statistics.getJobCount());
+    assertEquals(1, statistics.getErroredCount());
+    assertEquals(1, statistics.getDurationCount());
+    assertEquals(60, statistics.getMedianDuration(), 0);
+  }
+
+  @Test
+  void testEmpty() {
+    JobStatistics statistics = new JobStatistics();
+    assertTrue(Double.isNaN(statistics.getMedianDuration()));
+    assertEquals(0, statistics.getPassRate(), 0);
+    assertTrue(statistics.getTopFailures().isEmpty());
+    assertEquals(
+        0, List.<JobInformation>of().stream().collect(JobStatistics.collector()).getJobCount());
+  }
+}
@@ -0,0 +1,186 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class JobUpdatePipelineTest {
+
+  /** Stub of the jobs endpoint which records the updates and fails on demand. */
+  private static class StubEndpoint implements JobUpdatePipeline.Updater {
+    private final Map<String, Map<String, Object>> updates = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final Map<String, Integer> failuresBeforeSuccess = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Override
+    public void updateJob(String jobId, Map<String, Object> changes) throws IOException {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      try {
+        Thread.sleep(5);
+        int call = calls.computeIfAbsent(jobId, k -> new AtomicInteger()).incrementAndGet();
+        if (call <= failuresBeforeSuccess.getOrDefault(jobId, 0)) {
+          throw new IOException("HTTP 503");
+        }
+        updates.put(jobId, changes);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+
+  private final StubEndpoint endpoint = new StubEndpoint();
+
+  private JobUpdatePipeline pipeline(int maxConcurrency, int maxAttempts) {
+    return new JobUpdatePipeline(endpoint, maxConcurrency, maxAttempts, Duration.ofMillis(1));
+  }
+
+  @Test
+  void testRepeatedChangesAreCoalesced() throws Exception {
+    JobUpdatePipeline pipeline = pipeline(4, 1);
+    JobInformation job = new JobInformation("1234", "hmac");
+    job.setName("first");
+    job.setStatus(true);
+    assertTrue(pipeline.add(job));
+    assertFalse(job.hasChanges());
+
+    JobInformation sameJob = new JobInformation("1234", "hmac");
+    sameJob.setName("second");
+    assertTrue(pipeline.add(sameJob));
+    assertFalse(pipeline.add(new JobInformation("5678", "hmac")));
+    assertEquals(1, pipeline.getPendingCount());
+
+    List<JobUpdatePipeline.Result> results = pipeline.flush();
+    assertEquals(1, results.size());
+    assertTrue(results.get(0).isSuccessful());
+    assertEquals(1, endpoint.calls.get("1234").get());
+    assertEquals("second", endpoint.updates.get("1234").get("name"));
+    assertEquals("Passed", endpoint.updates.get("1234").get("status"));
+    assertEquals(0, pipeline.getPendingCount());
+  }
+
+  @Test
+  void testConcurrencyIsBounded() throws Exception {
+    JobUpdatePipeline pipeline = pipeline(3, 1);
+    List<JobInformation> jobs = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      JobInformation job = new JobInformation("job" + i, "hmac");
+      job.setBuild("build");
+      jobs.add(job);
+    }
+    assertEquals(30, pipeline.addAll(jobs));
+
+    List<JobUpdatePipeline.Result> results = pipeline.flush();
+    assertEquals(30, results.size());
+    assertEquals("job0", results.get(0).getJobId());
+    assertEquals("job29", results.get(29).getJobId());
+    assertEquals(30, endpoint.updates.size());
+    assertTrue(endpoint.maxInFlight.get() <= 3, "at most 3 updates in flight");
+  }
+
+  @Test
+  void testFailedUpdatesAreRetried() throws Exception {
+    JobUpdatePipeline pipeline = pipeline(2, 3);
+    endpoint.failuresBeforeSuccess.put("flaky", 2);
+    endpoint.failuresBeforeSuccess.put("broken", 5);
+
+    JobInformation flaky = new JobInformation("flaky", "hmac");
+    flaky.setStatus(false);
+    JobInformation broken = new JobInformation("broken", "hmac");
+    broken.setStatus(false);
+    pipeline.add(flaky);
+    pipeline.add(broken);
+
+    List<JobUpdatePipeline.Result> results = pipeline.flush();
+    JobUpdatePipeline.Result flakyResult = results.get(0);
+    assertTrue(flakyResult.isSuccessful());
+    assertEquals(3, flakyResult.getAttempts());
+
+    JobUpdatePipeline.Result brokenResult = results.get(1);
+    assertFalse(brokenResult.isSuccessful());
+    assertEquals(3, brokenResult.getAttempts());
+    assertTrue(brokenResult.getFailure() instanceof IOException);
+    assertEquals("Failed", brokenResult.getChanges().get("status"));
+
+    // the failed changes are queued again, under the changes queued since
+    assertEquals(1, pipeline.getPendingCount());
+    broken.setName("renamed");
+    broken.setStatus(true);
+    pipeline.add(broken);
+    endpoint.failuresBeforeSuccess.remove("broken");
+    results = pipeline.flush();
+    assertEquals(1, results.size());
+    assertTrue(results.get(0).isSuccessful());
+    assertEquals("Passed", endpoint.updates.get("broken").get("status"));
+    assertEquals("renamed", endpoint.updates.get("broken").get("name"));
+    assertEquals(0, pipeline.getPendingCount());
+  }
+
+  @Test
+  void testInterruptedFlushQueuesTheChangesAgain() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    JobUpdatePipeline pipeline =
+        new JobUpdatePipeline(
+            (jobId, changes) -> {
+              started.countDown();
+              try {
+                Thread.sleep(10_000);
+              } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+              }
+            },
+            1,
+            1,
+            Duration.ofMillis(1));
+    JobInformation job = new JobInformation("1234", "hmac");
+    job.setName("first");
+    pipeline.add(job);
+
+    AtomicBoolean interrupted = new AtomicBoolean();
+    Thread flusher =
+        new Thread(
+            () -> {
+              try {
+                pipeline.flush();
+              } catch (InterruptedException e) {
+                interrupted.set(true);
+              }
+            });
+    flusher.start();
+    started.await();
+    flusher.interrupt();
+    flusher.join();
+
+    assertTrue(interrupted.get());
+    assertEquals(1, pipeline.getPendingCount());
+  }
+
+  @Test
+  void testFlushWithoutChanges() throws Exception {
+    assertTrue(pipeline(1, 1).flush().isEmpty());
+  }
+
+  @Test
+  void testInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> pipeline(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> pipeline(1, 0));
+  }
+}
@@ -0,0 +1,184 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+class ModelCodecTest {
+
+  private static JobInformation job(int i) {
+    JobInformation job = new JobInformation("0123456789abcdef0123456789abcde" + (i % 10), "hmac");
+    job.setStatus(i % 3 != 0);
+    job.setName("com.example.LoginTest.test" + i);
+    job.setBuild("build-1234");
+    job.setOs(i % 2 == 0 ? "Windows 11" : "macOS 13");
+    job.setBrowser("chrome");
+    job.setVersion("120");
+    job.setStartTime(1700000000L + i);
+    job.setEndTime(1700000060L + i);
+    job.setVideoUrl("https://assets.saucelabs.com/jobs/" + i + "/video.mp4");
+    job.setLogUrl("https://assets.saucelabs.com/jobs/" + i + "/selenium-server.log");
+    job.clearChanges();
+    return job;
+  }
+
+  @Test
+  void testJobsRoundTrip() throws Exception {
+    List<JobInformation> jobs = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      jobs.add(job(i));
+    }
+    jobs.get(3).setFailureMessage("expected <true> but was <false>");
+    JobInformation empty = new JobInformation("empty", null);
+    jobs.add(empty);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ModelCodec.writeJobs(out, jobs);
+    List<JobInformation> read = ModelCodec.readJobs(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(jobs, read);
+    assertTrue(read.get(3).hasChange(JobInformation.Field.FAILURE_MESSAGE));
+    assertFalse(read.get(4).hasChanges());
+    assertNull(read.get(10).getHmac());
+    assertNull(read.get(10).getStatus());
+  }
+
+  @Test
+  void testJobOsIsWrittenBeforeNormalization() throws Exception {
+    JobInformation windows = job(0);
+    windows.setOs("Windows 2008");
+    JobInformation mac = job(1);
+    mac.setOs("Mac 10.11");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ModelCodec.writeJobs(out, List.of(windows, mac));
+    List<JobInformation> read = ModelCodec.readJobs(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(List.of(windows, mac), read);
+    assertEquals("Windows 2008", read.get(0).getRawOs());
+    assertEquals("Mac 10.11", read.get(1).getRawOs());
+    assertEquals(windows.getOs(), read.get(0).getOs());
+  }
+
+  @Test
+  void testBuildsRoundTrip() throws Exception {
+    BuildInformation build = new BuildInformation("build");
+    build.setName("nightly");
+    build.setStatus("success");
+    build.setStartTime(1700000000L);
+    build.setEndTime(1700000600L);
+    build.setJobsPassed(40);
+    build.setJobsFinished(42);
+    build.setJobsFailed(1);
+    build.setJobsErrored(1);
+    build.clearChanges();
+    build.setJobsPassed(41);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ModelCodec.writeBuilds(out, List.of(build, new BuildInformation("other")));
+    List<BuildInformation> read =
+        ModelCodec.readBuilds(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(List.of(build, new BuildInformation("other")), read);
+    assertEquals(EnumSet.of(BuildInformation.Field.JOBS_PASSED), read.get(0).getChangedFields());
+  }
+
+  @Test
+  void testBuildJobsRoundTrip() throws Exception {
+    BuildJobInformation job = new BuildJobInformation("job");
+    job.setCreationTime(1641976754L);
+    job.setModificationTime(1643620921L);
+    job.setStatusFlag(BuildJobInformation.JobStatusFlag.FINISHED);
+    job.setStatusFlag(BuildJobInformation.JobStatusFlag.PASSED);
+    job.clearChanges();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ModelCodec.writeBuildJobs(out, List.of(job));
+    BuildJobInformation read =
+        ModelCodec.readBuildJobs(new ByteArrayInputStream(out.toByteArray())).get(0);
+
+    assertEquals("job", read.getJobId());
+    assertEquals(1641976754L, read.getCreationTime());
+    assertEquals(1643620921L, read.getModificationTime());
+    assertEquals(0, read.getDeletionTime());
+    assertEquals(job.getStatus(), read.getStatus());
+    assertFalse(read.hasChanges());
+  }
+
+  @Test
+  void testSmallerThanJavaSerialization() throws Exception {
+    List<JobInformation> jobs = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      jobs.add(job(i));
+    }
+
+    ByteArrayOutputStream compact = new ByteArrayOutputStream();
+    ModelCodec.writeJobs(compact, jobs);
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    try (ObjectOutputStream objects = new ObjectOutputStream(serialized)) {
+      objects.writeObject(jobs);
+    }
+
+    assertTrue(
+        compact.size() < serialized.size(),
+        compact.size() + " bytes compared to " + serialized.size() + " bytes");
+    assertEquals(jobs, ModelCodec.readJobs(new ByteArrayInputStream(compact.toByteArray())));
+  }
+
+  @Test
+  void testUnknownFieldsAreSkipped() throws Exception {
+    byte[] stream = {
+      (byte) 0xC5, 1, 1, 1,
+      // field 1 (job id), new string "a"
+      3, 0, 1, 'a',
+      // unknown number field 20
+      40, 2,
+      // unknown string field 40, new string "x", then a reference to it from the name field
+      81, 0, 1, 'x', 9, 2,
+      0
+    };
+
+    JobInformation job = ModelCodec.readJobs(new ByteArrayInputStream(stream)).get(0);
+    assertEquals("a", job.getJobId());
+    assertEquals("x", job.getName());
+    assertEquals(0, job.getStartTime());
+  }
+
+  @Test
+  void testInvalidStreams() {
+    assertThrows(
+        StreamCorruptedException.class,
+        () -> ModelCodec.readJobs(new ByteArrayInputStream(new byte[] {(byte) 0xC5, 2, 1, 0})));
+    assertThrows(
+        StreamCorruptedException.class,
+        () -> ModelCodec.readBuilds(new ByteArrayInputStream(new byte[] {(byte) 0xC5, 1, 1, 0})));
+    assertThrows(
+        StreamCorruptedException.class,
+        () -> ModelCodec.readJobs(new ByteArrayInputStream(new byte[] {'{', '}'})));
+    assertThrows(
+        EOFException.class,
+        () -> ModelCodec.readJobs(new ByteArrayInputStream(new byte[] {(byte) 0xC5, 1, 1, 1, 3})));
+  }
+
+  @Test
+  void testEmptyList() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ModelCodec.writeBuildJobs(out, List.of());
+    assertEquals(4, out.size());
+    assertTrue(ModelCodec.readBuildJobs(new ByteArrayInputStream(out.toByteArray())).isEmpty());
+  }
+}
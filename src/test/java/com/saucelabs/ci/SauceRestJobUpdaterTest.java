@@ -0,0 +1,78 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.saucelabs.saucerest.api.JobsEndpoint;
+import com.saucelabs.saucerest.model.jobs.UpdateJobParameter;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+class SauceRestJobUpdaterTest {
+
+  @Test
+  void testModelFieldsAreMapped() {
+    JobInformation job = new JobInformation("1234", "hmac");
+    job.setStatus(true);
+    job.setName("login");
+    job.setBuild("build-7");
+    job.setFailureMessage("timeout");
+    job.setBrowser("chrome");
+    job.setStartTime(100);
+
+    Map<String, Object> fields = SauceRestJobUpdater.toRestFields(job.getChanges());
+    assertEquals(Boolean.TRUE, fields.get("passed"));
+    assertEquals("login", fields.get("name"));
+    assertEquals("build-7", fields.get("build"));
+    assertEquals(
+        Collections.singletonMap(SauceRestJobUpdater.FAILURE_MESSAGE, "timeout"),
+        fields.get("custom-data"));
+    // set by Sauce Labs
+    assertEquals(4, fields.size());
+
+    job.setStatus("Failed");
+    assertEquals(Boolean.FALSE, SauceRestJobUpdater.toRestFields(job.getChanges()).get("passed"));
+    job.setStatus((String) null);
+    assertNull(SauceRestJobUpdater.toRestFields(job.getChanges()).get("passed"));
+  }
+
+  @Test
+  void testPipelineUpdatesTheJob() throws Exception {
+    JobsEndpoint jobs = mock(JobsEndpoint.class);
+    JobUpdatePipeline pipeline =
+        new JobUpdatePipeline(new SauceRestJobUpdater(jobs), 2, 1, Duration.ofMillis(1));
+    JobInformation job = new JobInformation("1234", "hmac");
+    job.setStatus(false);
+    job.setName("checkout");
+    pipeline.add(job);
+
+    List<JobUpdatePipeline.Result> results = pipeline.flush();
+    assertTrue(results.get(0).isSuccessful());
+    ArgumentCaptor<UpdateJobParameter> parameter =
+        ArgumentCaptor.forClass(UpdateJobParameter.class);
+    verify(jobs).updateJob(eq("1234"), parameter.capture());
+    assertEquals(Boolean.FALSE, parameter.getValue().passed);
+    assertEquals("checkout", parameter.getValue().name);
+  }
+
+  @Test
+  void testReadOnlyChangesAreNotSent() throws Exception {
+    JobsEndpoint jobs = mock(JobsEndpoint.class);
+    JobInformation job = new JobInformation("1234", "hmac");
+    job.setOs("Windows 11");
+    job.setEndTime(200);
+
+    new SauceRestJobUpdater(jobs).updateJob("1234", job.getChanges());
+    verifyNoInteractions(jobs);
+  }
+}
@@ -0,0 +1,40 @@
+package com.saucelabs.ci;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/** Java serialization of the models, to check records of earlier versions can still be read. */
+final class SerializedForms {
+
+  private SerializedForms() {}
+
+  /**
+   * @param resource test resource written by the Java serialization of an earlier version
+   * @return the object read
+   */
+  static <T> T read(String resource, Class<T> type) throws IOException, ClassNotFoundException {
+    try (InputStream in = SerializedForms.class.getResourceAsStream(resource);
+        ObjectInputStream objects = new ObjectInputStream(in)) {
+      return type.cast(objects.readObject());
+    }
+  }
+
+  /**
+   * @return a copy of the object, written and read back
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T roundTrip(T object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (T) in.readObject();
+    }
+  }
+}
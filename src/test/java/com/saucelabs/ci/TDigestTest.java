@@ -0,0 +1,63 @@
+package com.saucelabs.ci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class TDigestTest {
+
+  @Test
+  void testUniformQuantiles() {
+    TDigest digest = new TDigest(100);
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      digest.add(random.nextDouble() * 1000);
+    }
+
+    assertEquals(100_000, digest.size());
+    assertEquals(500, digest.quantile(0.5), 10);
+    assertEquals(990, digest.quantile(0.99), 2);
+    assertEquals(10, digest.quantile(0.01), 2);
+    assertTrue(digest.quantile(0) >= digest.getMin());
+    assertTrue(digest.quantile(1) <= digest.getMax());
+  }
+
+  @Test
+  void testMergedDigestsMatchSingleDigest() {
+    TDigest single = new TDigest(100);
+    TDigest merged = new TDigest(100);
+    Random random = new Random(7);
+    for (int part = 0; part < 8; part++) {
+      TDigest partial = new TDigest(100);
+      for (int i = 0; i < 10_000; i++) {
+        // skewed, like job durations
+        double value = Math.exp(random.nextGaussian()) * 60;
+        partial.add(value);
+        single.add(value);
+      }
+      merged.merge(partial);
+    }
+
+    assertEquals(80_000, merged.size());
+    for (double q : new double[] {0.1, 0.5, 0.9, 0.99}) {
+      double expected = single.quantile(q);
+      assertEquals(expected, merged.quantile(q), expected * 0.03, "quantile " + q);
+    }
+  }
+
+  @Test
+  void testSmallDigests() {
+    TDigest digest = new TDigest(100);
+    assertTrue(Double.isNaN(digest.quantile(0.5)));
+    digest.add(5);
+    assertEquals(5, digest.quantile(0.5), 0);
+    digest.add(7);
+    assertEquals(6, digest.quantile(0.5), 0.0001);
+    assertEquals(5, digest.getMin(), 0);
+    assertThrows(IllegalArgumentException.class, () -> digest.quantile(1.5));
+  }
+}
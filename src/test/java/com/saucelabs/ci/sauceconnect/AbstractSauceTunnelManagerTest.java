@@ -1,15 +1,53 @@
 package com.saucelabs.ci.sauceconnect;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import com.saucelabs.saucerest.DataCenter;
+import com.saucelabs.saucerest.SauceREST;
+import com.saucelabs.saucerest.api.SauceConnectEndpoint;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Created by gavinmogan on 2016-07-13. */
 class AbstractSauceTunnelManagerTest {
 
+  private static final long CRASHED_JVM = 100;
+  private static final long CURRENT_JVM = 300;
+
+  @TempDir Path directory;
+
+  private final Map<Long, FakeProcessHandle> handles = new HashMap<>();
+
   @Test
   void testGetTunnelName() {
     assertEquals(
@@ -40,4 +78,536 @@ class AbstractSauceTunnelManagerTest {
         AbstractSauceTunnelManager.getLogfile("-l first --logfile second -c -l third"),
         "mix of -l and --logfile still returns the last one");
   }
+
+  /** Registers a tunnel used by two callers, as if it had been opened by the manager. */
+  private static TunnelInformation tunnel(
+      SauceConnectManager manager, String name, Process process, String tunnelId) {
+    TunnelInformation tunnel = new TunnelInformation(name);
+    tunnel.setProcess(process);
+    tunnel.setProcessCount(2);
+    tunnel.setTunnelId(tunnelId);
+    manager.tunnelInformationMap.put(name, tunnel);
+    return tunnel;
+  }
+
+  @Test
+  void testShutdownAllStopsTunnelsConcurrently() throws Exception {
+    SauceREST sauceRest = mock(SauceREST.class);
+    SauceConnectEndpoint endpoint = mock(SauceConnectEndpoint.class);
+    when(sauceRest.getSauceConnectEndpoint()).thenReturn(endpoint);
+    // each call waits for the other, so they must run at the same time
+    CountDownLatch bothCalled = new CountDownLatch(2);
+    doAnswer(
+            invocation -> {
+              bothCalled.countDown();
+              if (!bothCalled.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("Calls are sequential");
+              }
+              return null;
+            })
+        .when(endpoint)
+        .stopTunnel(anyString());
+
+    SauceConnectManager manager = new SauceConnectManager();
+    manager.setSauceRest(sauceRest);
+    FakeProcess first = new FakeProcess();
+    FakeProcess second = new FakeProcess();
+    tunnel(manager, "first", first, "id-1");
+    tunnel(manager, "second", second, "id-2");
+
+    Map<String, TunnelShutdown> outcomes = manager.shutdownAll(Duration.ofSeconds(10));
+
+    assertEquals(2, outcomes.size());
+    for (TunnelShutdown outcome : outcomes.values()) {
+      assertEquals(TunnelShutdown.ProcessOutcome.EXITED, outcome.getProcessOutcome());
+      assertEquals(TunnelShutdown.TunnelOutcome.STOPPED, outcome.getTunnelOutcome());
+      assertTrue(outcome.isClean());
+    }
+    assertFalse(first.isAlive());
+    assertFalse(second.isAlive());
+    assertTrue(manager.tunnelInformationMap.isEmpty());
+  }
+
+  @Test
+  void testShutdownAllDeadline() throws Exception {
+    SauceConnectManager manager = new SauceConnectManager();
+    FakeProcess polite = new FakeProcess();
+    FakeProcess stubborn = new FakeProcess(true);
+    tunnel(manager, "polite", polite, null);
+    tunnel(manager, "stubborn", stubborn, "id-2");
+    tunnel(manager, "idle", null, null);
+    TunnelInformation busy = tunnel(manager, "busy", new FakeProcess(), null);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread launcher =
+        new Thread(
+            () -> {
+              busy.getLock().lock();
+              locked.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              } finally {
+                busy.getLock().unlock();
+              }
+            });
+    launcher.start();
+    locked.await();
+
+    long start = System.nanoTime();
+    Map<String, TunnelShutdown> outcomes = manager.shutdownAll(Duration.ofMillis(300));
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    release.countDown();
+    launcher.join();
+
+    assertTrue(elapsed < 5000, "took " + elapsed + "ms");
+    assertEquals(
+        TunnelShutdown.ProcessOutcome.EXITED, outcomes.get("polite").getProcessOutcome());
+    assertEquals(
+        TunnelShutdown.ProcessOutcome.KILLED, outcomes.get("stubborn").getProcessOutcome());
+    assertTrue(stubborn.isDestroyedForcibly());
+    assertEquals(
+        TunnelShutdown.TunnelOutcome.SKIPPED, outcomes.get("stubborn").getTunnelOutcome());
+    assertEquals(
+        TunnelShutdown.ProcessOutcome.NOT_RUNNING, outcomes.get("idle").getProcessOutcome());
+    assertEquals(TunnelShutdown.ProcessOutcome.BUSY, outcomes.get("busy").getProcessOutcome());
+    assertFalse(outcomes.get("busy").isClean());
+    assertEquals(1, manager.tunnelInformationMap.size());
+    assertTrue(manager.tunnelInformationMap.containsKey("busy"));
+  }
+
+  @Test
+  void testCloseShardedTunnel() {
+    SauceConnectManager manager = new SauceConnectManager();
+    FakeProcess main = new FakeProcess();
+    FakeProcess shard = new FakeProcess();
+    TunnelInformation tunnel = tunnel(manager, "pooled", main, null);
+    tunnel.addShard(new TunnelInformation.Shard(tunnel.nextShardLabel(), shard, null, 0));
+    tunnel.handOut(TunnelShardingPolicy.Strategy.LEAST_LOADED);
+    tunnel.setProcessCount(3);
+    Logger logger = LoggerFactory.getLogger(AbstractSauceTunnelManagerTest.class);
+
+    manager.closeTunnelsForPlan("user", "-i pooled", logger);
+    manager.closeTunnelsForPlan("user", "-i pooled", logger);
+    assertTrue(main.isAlive());
+    assertTrue(shard.isAlive());
+    assertEquals(1, tunnel.getProcessCount());
+
+    // the pool is closed as a unit with its last caller
+    manager.closeTunnelsForPlan("user", "-i pooled", logger);
+    assertFalse(main.isAlive());
+    assertFalse(shard.isAlive());
+    assertTrue(tunnel.getShards().isEmpty());
+    assertTrue(manager.tunnelInformationMap.isEmpty());
+  }
+
+  @Test
+  void testShutdownAllClosesShards() {
+    SauceConnectManager manager = new SauceConnectManager();
+    FakeProcess main = new FakeProcess();
+    FakeProcess shard = new FakeProcess(true);
+    TunnelInformation tunnel = tunnel(manager, "pooled", main, null);
+    tunnel.addShard(new TunnelInformation.Shard(tunnel.nextShardLabel(), shard, null, 0));
+
+    Map<String, TunnelShutdown> outcomes = manager.shutdownAll(Duration.ofMillis(200));
+
+    assertEquals(2, outcomes.size());
+    assertEquals(
+        TunnelShutdown.ProcessOutcome.EXITED, outcomes.get("pooled").getProcessOutcome());
+    assertEquals(
+        TunnelShutdown.ProcessOutcome.KILLED, outcomes.get("pooled#1").getProcessOutcome());
+    assertFalse(shard.isAlive());
+    assertTrue(tunnel.getShards().isEmpty());
+    assertTrue(manager.tunnelInformationMap.isEmpty());
+  }
+
+  private static SauceREST sauceRest(SauceConnectEndpoint endpoint) {
+    SauceREST sauceRest = mock(SauceREST.class);
+    when(sauceRest.getSauceConnectEndpoint()).thenReturn(endpoint);
+    return sauceRest;
+  }
+
+  /** Selector which finds EU_CENTRAL faster than US_WEST, counting its probes. */
+  private static DataCenterSelector selector(AtomicInteger probes) {
+    return new DataCenterSelector(
+        Arrays.asList(DataCenter.US_WEST, DataCenter.EU_CENTRAL),
+        dataCenter -> {
+          probes.incrementAndGet();
+          return CompletableFuture.completedFuture(
+              Duration.ofMillis(dataCenter == DataCenter.EU_CENTRAL ? 20 : 200));
+        },
+        Duration.ofSeconds(1),
+        1,
+        Duration.ofDays(1));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  void testOpenConnectionInAutoDataCenter() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    SauceREST sauceRest = sauceRest(manager.endpoint("user"));
+    List<DataCenter> clients = new CopyOnWriteArrayList<>();
+    manager.setRestClientCache(
+        new SauceRestClientCache(
+            16,
+            (username, apiKey, dataCenter) -> {
+              clients.add(dataCenter);
+              return sauceRest;
+            }));
+    AtomicInteger probes = new AtomicInteger();
+    manager.setDataCenterSelector(selector(probes));
+
+    Process process =
+        manager.openConnection(
+            "user", "key", "auto", 4445, null, "-i fastest", null, false, null);
+
+    assertSame(manager.process(0), process);
+    assertEquals(2, probes.get());
+    assertEquals(Arrays.asList(DataCenter.EU_CENTRAL), clients);
+    assertEquals("-i fastest --region eu-central", manager.launches.get(0).options);
+  }
+
+  @Test
+  void testOpenConnectionKeepsTheRegionOfTheOptions() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    SauceREST sauceRest = sauceRest(manager.endpoint("user"));
+    List<DataCenter> clients = new CopyOnWriteArrayList<>();
+    manager.setRestClientCache(
+        new SauceRestClientCache(
+            16,
+            (username, apiKey, dataCenter) -> {
+              clients.add(dataCenter);
+              return sauceRest;
+            }));
+    AtomicInteger probes = new AtomicInteger();
+    // through the interface, which selects the data center for every implementation
+    SauceTunnelManager tunnels = manager;
+
+    tunnels.openConnection(
+        "user", "key", selector(probes), 4445, null, "-i west --region us-west", null, false, null);
+
+    assertEquals(0, probes.get());
+    assertEquals(Arrays.asList(DataCenter.US_WEST), clients);
+    assertEquals("-i west --region us-west", manager.launches.get(0).options);
+  }
+
+  /** Opens a tunnel of the user in the US_WEST data center. */
+  private static Process open(FakeTunnelManager manager, String tunnelName) throws IOException {
+    return manager.openConnection(
+        "user", "key", DataCenter.US_WEST, null, "-i " + tunnelName, null, false, null);
+  }
+
+  /** Waits until the events of the supervisor have been applied. */
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "timed out");
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void testExitedTunnelIsRestarted() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setSauceRest(sauceRest(manager.endpoint("user")));
+    manager.getSupervisor().setRestartPolicy(1, Duration.ofMillis(10), Duration.ofMillis(10));
+    CountDownLatch restarted = new CountDownLatch(1);
+    manager
+        .getSupervisor()
+        .addListener(
+            event -> {
+              if (event.getType() == TunnelSupervisor.EventType.RESTARTED) {
+                restarted.countDown();
+              }
+            });
+    open(manager, "restarted");
+    open(manager, "restarted");
+
+    manager.process(0).exit(1);
+
+    assertTrue(restarted.await(10, TimeUnit.SECONDS));
+    TunnelInformation tunnel = manager.tunnelInformationMap.get("restarted");
+    assertSame(manager.process(1), tunnel.getProcess());
+    assertEquals("tunnel-2", tunnel.getTunnelId());
+    // the callers of the exited process keep using the tunnel
+    assertEquals(2, tunnel.getProcessCount());
+  }
+
+  @Test
+  void testLostTunnelIsStoppedByItsLastCaller() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    SauceConnectEndpoint endpoint = manager.endpoint("user");
+    manager.setSauceRest(sauceRest(endpoint));
+    open(manager, "lost");
+    open(manager, "lost");
+    TunnelInformation tunnel = manager.tunnelInformationMap.get("lost");
+
+    // restarts are disabled by default
+    manager.process(0).exit(1);
+    await(() -> tunnel.getProcess() == null);
+
+    assertSame(tunnel, manager.tunnelInformationMap.get("lost"));
+    assertEquals(2, tunnel.getProcessCount());
+    Logger logger = LoggerFactory.getLogger(AbstractSauceTunnelManagerTest.class);
+    manager.closeTunnelsForPlan("user", "-i lost", logger);
+    assertSame(tunnel, manager.tunnelInformationMap.get("lost"));
+    manager.closeTunnelsForPlan("user", "-i lost", logger);
+    assertNull(manager.tunnelInformationMap.get("lost"));
+    verify(endpoint).stopTunnel("tunnel-1");
+
+    // closing a tunnel which is not open does not register it
+    manager.closeTunnelsForPlan("user", "-i lost", logger);
+    assertTrue(manager.tunnelInformationMap.isEmpty());
+  }
+
+  @Test
+  void testLostTunnelIsLaunchedAgainForItsCallers() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setSauceRest(sauceRest(manager.endpoint("user")));
+    open(manager, "lost");
+    TunnelInformation tunnel = manager.tunnelInformationMap.get("lost");
+    manager.process(0).exit(1);
+    await(() -> tunnel.getProcess() == null);
+
+    Process process = open(manager, "lost");
+
+    assertSame(manager.process(1), process);
+    assertSame(process, tunnel.getProcess());
+    assertEquals(2, tunnel.getProcessCount());
+  }
+
+  @Test
+  void testShardTakesOverTheExitedTunnel() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setSauceRest(sauceRest(manager.endpoint("user")));
+    manager.setShardingPolicy(
+        new TunnelShardingPolicy(1, 2, TunnelShardingPolicy.Strategy.LEAST_LOADED));
+    open(manager, "pooled");
+    open(manager, "pooled");
+    TunnelInformation tunnel = manager.tunnelInformationMap.get("pooled");
+    await(() -> tunnel.getShards().size() == 1);
+
+    manager.process(0).exit(1);
+    await(() -> tunnel.getProcess() == manager.process(1));
+
+    assertTrue(tunnel.getShards().isEmpty());
+    assertEquals("tunnel-2", tunnel.getTunnelId());
+    assertEquals(2, tunnel.getProcessCount());
+    assertEquals(2, manager.launches.size());
+  }
+
+  /** Grows the tunnels to two processes, once they have two callers. */
+  private static final TunnelShardingPolicy TWO_PROCESSES =
+      new TunnelShardingPolicy(1, 2, TunnelShardingPolicy.Strategy.LEAST_LOADED);
+
+  @Test
+  void testShardStartsInTheBackground() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setSauceRest(sauceRest(manager.endpoint("user")));
+    manager.setShardingPolicy(TWO_PROCESSES);
+    Process main = open(manager, "pooled");
+    assertSame(manager.process(0), main);
+    assertEquals("-i pooled --tunnel-pool", manager.launches.get(0).options);
+    TunnelInformation tunnel = manager.tunnelInformationMap.get("pooled");
+
+    CountDownLatch launch = new CountDownLatch(1);
+    manager.launchGate = launch;
+    // the second caller shares the running process while the shard starts
+    assertSame(main, open(manager, "pooled"));
+    assertTrue(tunnel.isShardLaunching());
+    assertEquals(1, manager.launches.size());
+
+    launch.countDown();
+    await(() -> tunnel.getShards().size() == 1);
+    assertFalse(tunnel.isShardLaunching());
+    assertSame(manager.process(1), tunnel.getShards().get(0).getProcess());
+    // the least loaded process is handed out
+    Process shard = open(manager, "pooled");
+    assertSame(manager.process(1), shard);
+    assertEquals(2, manager.launches.size());
+  }
+
+  @Test
+  void testShardOfAClosedTunnelIsClosed() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    SauceConnectEndpoint endpoint = manager.endpoint("user");
+    manager.setSauceRest(sauceRest(endpoint));
+    manager.setShardingPolicy(TWO_PROCESSES);
+    open(manager, "pooled");
+    CountDownLatch launch = new CountDownLatch(1);
+    manager.launchGate = launch;
+    open(manager, "pooled");
+
+    Logger logger = LoggerFactory.getLogger(AbstractSauceTunnelManagerTest.class);
+    manager.closeTunnelsForPlan("user", "-i pooled", logger);
+    manager.closeTunnelsForPlan("user", "-i pooled", logger);
+    assertTrue(manager.tunnelInformationMap.isEmpty());
+    assertFalse(manager.process(0).isAlive());
+    verify(endpoint).stopTunnel("tunnel-1");
+
+    launch.countDown();
+    await(() -> manager.launches.size() == 2 && !manager.process(1).isAlive());
+    verify(endpoint).stopTunnel("tunnel-2");
+    assertTrue(manager.tunnelInformationMap.isEmpty());
+  }
+
+  @Test
+  void testShardsLogToTheirOwnFile() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setSauceRest(sauceRest(manager.endpoint("user")));
+    manager.setShardingPolicy(TWO_PROCESSES);
+    String options = "-i logged --logfile sc.log";
+    manager.openConnection("user", "key", DataCenter.US_WEST, null, options, null, false, null);
+    manager.openConnection("user", "key", DataCenter.US_WEST, null, options, null, false, null);
+    await(() -> manager.launches.size() == 2);
+
+    SauceConnectOptions main = SauceConnectOptions.parse(manager.launches.get(0).options);
+    SauceConnectOptions shard = SauceConnectOptions.parse(manager.launches.get(1).options);
+    assertEquals("sc.log", main.getLogfile());
+    assertEquals("sc.log.1", shard.getLogfile());
+    assertEquals("logged", shard.getTunnelName("user"));
+  }
+
+  /** Client cache handing out the endpoint of each user and data center. */
+  private static SauceRestClientCache clients(
+      Map<String, SauceConnectEndpoint> endpoints, List<String> created) {
+    return new SauceRestClientCache(
+        16,
+        (username, apiKey, dataCenter) -> {
+          created.add(username + "@" + dataCenter);
+          return sauceRest(endpoints.get(username + "@" + dataCenter));
+        });
+  }
+
+  /** Endpoint of a user running a tunnel left behind by a crashed JVM. */
+  private static SauceConnectEndpoint runningTunnel(String tunnelName, String tunnelId)
+      throws IOException {
+    SauceConnectEndpoint endpoint = mock(SauceConnectEndpoint.class);
+    com.saucelabs.saucerest.model.sauceconnect.TunnelInformation tunnel =
+        new com.saucelabs.saucerest.model.sauceconnect.TunnelInformation();
+    tunnel.id = tunnelId;
+    tunnel.tunnelIdentifier = tunnelName;
+    tunnel.status = "running";
+    when(endpoint.getTunnelsInformationForAUser()).thenReturn(Collections.singletonList(tunnel));
+    com.saucelabs.saucerest.model.sauceconnect.TunnelInformation ready =
+        new com.saucelabs.saucerest.model.sauceconnect.TunnelInformation();
+    ready.isReady = true;
+    when(endpoint.getTunnelInformation(anyString())).thenReturn(ready);
+    return endpoint;
+  }
+
+  private SauceConnectProcessReaper reaper(long jvm, SauceConnectProcessReaper.Policy policy) {
+    return new SauceConnectProcessReaper(
+        directory.resolve("sc-processes"),
+        policy,
+        Duration.ofMillis(50),
+        jvm,
+        1_000_000 + jvm,
+        pid -> Optional.ofNullable(handles.get(pid)));
+  }
+
+  /** Records a process of the user as launched by a JVM which crashed since. */
+  private FakeProcessHandle orphan(
+      long pid, String username, DataCenter dataCenter, String tunnelId) throws IOException {
+    FakeProcessHandle handle =
+        new FakeProcessHandle(pid, Instant.ofEpochMilli(1_000_000 + pid), false);
+    handles.put(pid, handle);
+    SauceConnectProcessReaper crashed =
+        reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    crashed.record(handle, 9000 + (int) pid, username, username, dataCenter.name());
+    crashed.setTunnelId(pid, tunnelId);
+    return handle;
+  }
+
+  @Test
+  void testEndpointOfEachUser() throws Exception {
+    FakeTunnelManager manager = new FakeTunnelManager();
+    SauceConnectEndpoint alice = manager.endpoint("alice");
+    SauceConnectEndpoint bob = manager.endpoint("bob");
+    Map<String, SauceConnectEndpoint> endpoints = new HashMap<>();
+    endpoints.put("alice@US_WEST", alice);
+    endpoints.put("bob@EU_CENTRAL", bob);
+    List<String> created = new CopyOnWriteArrayList<>();
+    manager.setRestClientCache(clients(endpoints, created));
+
+    manager.openConnection("alice", "key-a", DataCenter.US_WEST, null, "", null, false, null);
+    manager.openConnection("bob", "key-b", DataCenter.EU_CENTRAL, null, "", null, false, null);
+
+    assertEquals(Arrays.asList("alice@US_WEST", "bob@EU_CENTRAL"), created);
+    assertSame(alice, manager.tunnelInformationMap.get("alice").getEndpoint());
+    assertSame(bob, manager.tunnelInformationMap.get("bob").getEndpoint());
+    Logger logger = LoggerFactory.getLogger(AbstractSauceTunnelManagerTest.class);
+    manager.closeTunnelsForPlan("alice", "", logger);
+    manager.closeTunnelsForPlan("bob", "", logger);
+    verify(alice).stopTunnel("tunnel-1");
+    verify(bob).stopTunnel("tunnel-2");
+    verify(alice, never()).stopTunnel("tunnel-2");
+    verify(bob, never()).stopTunnel("tunnel-1");
+  }
+
+  @Test
+  void testOrphansAreStoppedWithTheEndpointOfTheirUser() throws Exception {
+    FakeProcessHandle aliceOrphan = orphan(1, "alice", DataCenter.US_WEST, "id-1");
+    FakeProcessHandle bobOrphan = orphan(2, "bob", DataCenter.EU_CENTRAL, "id-2");
+    SauceConnectEndpoint alice = runningTunnel("alice", "id-1");
+    SauceConnectEndpoint bob = runningTunnel("bob", "id-2");
+    Map<String, SauceConnectEndpoint> endpoints = new HashMap<>();
+    endpoints.put("alice@US_WEST", alice);
+    endpoints.put("bob@EU_CENTRAL", bob);
+    List<String> created = new CopyOnWriteArrayList<>();
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setRestClientCache(clients(endpoints, created));
+    SauceConnectProcessReaper reaper = reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL);
+    manager.setProcessReaper(reaper);
+
+    manager.openConnection("alice", "key-a", DataCenter.US_WEST, null, "", null, false, null);
+
+    assertTrue(aliceOrphan.isDestroyed());
+    verify(alice).stopTunnel("id-1");
+    // the tunnel of bob is stopped once his client is known
+    assertTrue(bobOrphan.isDestroyed());
+    assertEquals(Arrays.asList("alice@US_WEST"), created);
+    assertEquals(1, reaper.getEntries().size());
+
+    manager.openConnection("bob", "key-b", DataCenter.EU_CENTRAL, null, "", null, false, null);
+
+    verify(bob).stopTunnel("id-2");
+    verify(alice, never()).stopTunnel("id-2");
+    assertTrue(reaper.getEntries().isEmpty());
+  }
+
+  @Test
+  void testOrphansAreAdoptedForTheirUser() throws Exception {
+    FakeProcessHandle aliceOrphan = orphan(1, "alice", DataCenter.US_WEST, "id-1");
+    FakeProcessHandle bobOrphan = orphan(2, "bob", DataCenter.EU_CENTRAL, "id-2");
+    SauceConnectEndpoint alice = runningTunnel("alice", "id-1");
+    SauceConnectEndpoint bob = runningTunnel("bob", "id-2");
+    Map<String, SauceConnectEndpoint> endpoints = new HashMap<>();
+    endpoints.put("alice@US_WEST", alice);
+    endpoints.put("bob@EU_CENTRAL", bob);
+    FakeTunnelManager manager = new FakeTunnelManager();
+    manager.setRestClientCache(clients(endpoints, new CopyOnWriteArrayList<>()));
+    manager.setProcessReaper(reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.ADOPT));
+
+    Process aliceProcess =
+        manager.openConnection("alice", "key-a", DataCenter.US_WEST, null, "", null, false, null);
+    Process bobProcess =
+        manager.openConnection("bob", "key-b", DataCenter.EU_CENTRAL, null, "", null, false, null);
+
+    assertTrue(aliceProcess instanceof AdoptedProcess);
+    assertEquals(1, aliceProcess.pid());
+    assertTrue(bobProcess instanceof AdoptedProcess);
+    assertEquals(2, bobProcess.pid());
+    assertTrue(manager.launches.isEmpty());
+    assertSame(bob, manager.tunnelInformationMap.get("bob").getEndpoint());
+
+    manager.closeTunnelsForPlan(
+        "bob", "", LoggerFactory.getLogger(AbstractSauceTunnelManagerTest.class));
+    assertTrue(bobOrphan.isDestroyed());
+    assertFalse(aliceOrphan.isDestroyed());
+    verify(bob).stopTunnel("id-2");
+    verify(alice, never()).stopTunnel("id-2");
+  }
 }
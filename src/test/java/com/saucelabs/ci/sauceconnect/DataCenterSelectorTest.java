@@ -0,0 +1,200 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.saucelabs.saucerest.DataCenter;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class DataCenterSelectorTest {
+
+  private static final List<DataCenter> CANDIDATES =
+      Arrays.asList(DataCenter.US_WEST, DataCenter.EU_CENTRAL, DataCenter.APAC_SOUTHEAST);
+
+  /** Answers each data center after a delay which can be changed between the rounds. */
+  private static final class FakeProber implements DataCenterSelector.Prober {
+    private final Map<DataCenter, Duration> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger probes = new AtomicInteger();
+
+    @Override
+    public CompletableFuture<Duration> probe(DataCenter dataCenter) {
+      probes.incrementAndGet();
+      Duration latency = latencies.get(dataCenter);
+      if (latency == null) {
+        // never answers
+        return new CompletableFuture<>();
+      }
+      if (latency.isNegative()) {
+        CompletableFuture<Duration> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("connection refused"));
+        return failed;
+      }
+      return CompletableFuture.completedFuture(latency);
+    }
+  }
+
+  private static DataCenterSelector selector(DataCenterSelector.Prober prober, Duration maxAge) {
+    return new DataCenterSelector(CANDIDATES, prober, Duration.ofMillis(500), 0.5, maxAge);
+  }
+
+  @Test
+  void testMovingAverage() {
+    FakeProber prober = new FakeProber();
+    prober.latencies.put(DataCenter.US_WEST, Duration.ofMillis(100));
+    prober.latencies.put(DataCenter.EU_CENTRAL, Duration.ofMillis(50));
+    prober.latencies.put(DataCenter.APAC_SOUTHEAST, Duration.ofMillis(300));
+    DataCenterSelector selector = selector(prober, Duration.ofDays(1));
+    assertNull(selector.getEstimate(DataCenter.US_WEST));
+
+    assertEquals(DataCenter.EU_CENTRAL, selector.select());
+    assertEquals(3, prober.probes.get());
+    // fresh estimates are not probed again
+    assertEquals(DataCenter.EU_CENTRAL, selector.resolve("AUTO"));
+    assertEquals(3, prober.probes.get());
+
+    // one slow answer is averaged with the previous ones
+    prober.latencies.put(DataCenter.EU_CENTRAL, Duration.ofMillis(130));
+    selector.probe().join();
+    assertEquals(Duration.ofMillis(90), selector.getEstimate(DataCenter.EU_CENTRAL));
+    assertEquals(DataCenter.EU_CENTRAL, selector.select());
+    selector.probe().join();
+    assertEquals(Duration.ofMillis(110), selector.getEstimate(DataCenter.EU_CENTRAL));
+    assertEquals(DataCenter.US_WEST, selector.select());
+
+    // a failed probe counts as the timeout
+    prober.latencies.put(DataCenter.US_WEST, Duration.ofMillis(-1));
+    selector.probe().join();
+    assertEquals(Duration.ofMillis(300), selector.getEstimate(DataCenter.US_WEST));
+    assertEquals(DataCenter.EU_CENTRAL, selector.select());
+
+    assertEquals(DataCenter.APAC_SOUTHEAST, selector.resolve("APAC_SOUTHEAST"));
+    assertEquals("eu-central", DataCenterSelector.regionOf(DataCenter.EU_CENTRAL));
+  }
+
+  @Test
+  void testRegionOfTheOptions() {
+    FakeProber prober = new FakeProber();
+    prober.latencies.put(DataCenter.US_WEST, Duration.ofMillis(10));
+    DataCenterSelector selector = selector(prober, Duration.ofDays(1));
+
+    // a region in the options is kept, the data center follows it without probing
+    assertEquals(DataCenter.EU_CENTRAL, selector.select("-u user --region eu-central"));
+    assertEquals(DataCenter.APAC_SOUTHEAST, selector.select("--region APAC_SOUTHEAST"));
+    assertEquals(0, prober.probes.get());
+    assertEquals(
+        "-u user --region eu-central",
+        DataCenterSelector.withRegion("-u user --region eu-central", DataCenter.EU_CENTRAL));
+
+    // without a region, or with an unknown one, the fastest data center is selected
+    assertEquals(DataCenter.US_WEST, selector.select("-u user"));
+    assertEquals(3, prober.probes.get());
+    assertEquals(DataCenter.US_WEST, selector.select("--region mars"));
+    assertEquals("--region us-west", DataCenterSelector.withRegion(null, DataCenter.US_WEST));
+    assertEquals(
+        "-u user --region us-west", DataCenterSelector.withRegion("-u user", DataCenter.US_WEST));
+    assertNull(DataCenterSelector.dataCenterOf("mars"));
+  }
+
+  @Test
+  void testProbeTimeoutAndSharedRound() {
+    FakeProber prober = new FakeProber();
+    prober.latencies.put(DataCenter.US_WEST, Duration.ofMillis(700));
+    prober.latencies.put(DataCenter.EU_CENTRAL, Duration.ofMillis(800));
+    DataCenterSelector selector = selector(prober, Duration.ZERO);
+
+    CompletableFuture<Map<DataCenter, Duration>> round = selector.probe();
+    assertSame(round, selector.probe());
+    assertFalse(round.isDone());
+    assertEquals(3, prober.probes.get());
+
+    // APAC_SOUTHEAST never answers and counts as the timeout, less than the slow answers
+    Map<DataCenter, Duration> estimates = round.join();
+    assertEquals(Duration.ofMillis(500), estimates.get(DataCenter.APAC_SOUTHEAST));
+    assertEquals(DataCenter.APAC_SOUTHEAST, selector.select());
+    // stale estimates are probed again
+    assertEquals(6, prober.probes.get());
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DataCenterSelector(CANDIDATES, prober, Duration.ofSeconds(1), 0, Duration.ZERO));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new DataCenterSelector(
+                Collections.emptyList(), prober, Duration.ofSeconds(1), 1, Duration.ZERO));
+  }
+
+  @Test
+  void testHttpProberAgainstDelayedEndpoints() throws Exception {
+    Map<String, Long> delays = new ConcurrentHashMap<>();
+    delays.put("/us-west", 400L);
+    delays.put("/eu-central", 10L);
+    delays.put("/apac-southeast", 400L);
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext(
+        "/",
+        exchange -> {
+          try {
+            String path = exchange.getRequestURI().getPath();
+            TimeUnit.MILLISECONDS.sleep(delays.getOrDefault(path, 0L));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(204, -1);
+          exchange.close();
+        });
+    server.start();
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort();
+      Map<DataCenter, URI> uris = new EnumMap<>(DataCenter.class);
+      uris.put(DataCenter.US_WEST, URI.create(base + "/us-west"));
+      uris.put(DataCenter.EU_CENTRAL, URI.create(base + "/eu-central"));
+      uris.put(DataCenter.APAC_SOUTHEAST, URI.create(base + "/apac-southeast"));
+      Duration timeout = Duration.ofSeconds(5);
+      DataCenterSelector selector =
+          new DataCenterSelector(
+              CANDIDATES,
+              DataCenterSelector.httpProber(uris, timeout),
+              timeout,
+              0.5,
+              Duration.ofDays(1));
+
+      long start = System.nanoTime();
+      assertEquals(DataCenter.EU_CENTRAL, selector.select());
+      // the data centers are probed in parallel
+      assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+      assertTrue(
+          selector.getEstimate(DataCenter.US_WEST).compareTo(Duration.ofMillis(400)) >= 0);
+
+      // a data center without an address fails at once
+      DataCenterSelector.Prober prober = DataCenterSelector.httpProber(uris, timeout);
+      assertTrue(prober.probe(DataCenter.US_EAST).isCompletedExceptionally());
+    } finally {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.saucelabs.ci.sauceconnect;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+/** Sauce Connect process which runs until it is destroyed or told to exit. */
+final class FakeProcess extends Process {
+  private final boolean ignoresDestroy;
+  private final CompletableFuture<Process> exit = new CompletableFuture<>();
+  private volatile int exitCode;
+  private volatile boolean destroyedForcibly;
+
+  FakeProcess() {
+    this(false);
+  }
+
+  /**
+   * @param ignoresDestroy whether the process keeps running until it is destroyed forcibly
+   */
+  FakeProcess(boolean ignoresDestroy) {
+    this.ignoresDestroy = ignoresDestroy;
+  }
+
+  /** Exits the process with the code, unless it exited already. */
+  void exit(int code) {
+    if (!exit.isDone()) {
+      exitCode = code;
+      exit.complete(this);
+    }
+  }
+
+  boolean isDestroyedForcibly() {
+    return destroyedForcibly;
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return new ByteArrayOutputStream();
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(new byte[0]);
+  }
+
+  @Override
+  public InputStream getErrorStream() {
+    return new ByteArrayInputStream(new byte[0]);
+  }
+
+  @Override
+  public int waitFor() {
+    exit.join();
+    return exitCode;
+  }
+
+  @Override
+  public int exitValue() {
+    if (!exit.isDone()) {
+      throw new IllegalThreadStateException();
+    }
+    return exitCode;
+  }
+
+  @Override
+  public void destroy() {
+    if (!ignoresDestroy) {
+      exit(0);
+    }
+  }
+
+  @Override
+  public Process destroyForcibly() {
+    destroyedForcibly = true;
+    exit(0);
+    return this;
+  }
+
+  @Override
+  public boolean isAlive() {
+    return !exit.isDone();
+  }
+
+  @Override
+  public CompletableFuture<Process> onExit() {
+    return exit;
+  }
+}
@@ -0,0 +1,127 @@
+package com.saucelabs.ci.sauceconnect;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/** Handle of a Sauce Connect process which runs until it is destroyed. */
+final class FakeProcessHandle implements ProcessHandle {
+  private final long pid;
+  private final Instant start;
+  private final boolean ignoresDestroy;
+  private final CompletableFuture<ProcessHandle> exit = new CompletableFuture<>();
+  private volatile boolean destroyed;
+  private volatile boolean destroyedForcibly;
+
+  /**
+   * @param pid pid of the process
+   * @param start start time of the process, null if not known
+   * @param ignoresDestroy whether the process keeps running until it is destroyed forcibly
+   */
+  FakeProcessHandle(long pid, Instant start, boolean ignoresDestroy) {
+    this.pid = pid;
+    this.start = start;
+    this.ignoresDestroy = ignoresDestroy;
+  }
+
+  boolean isDestroyed() {
+    return destroyed;
+  }
+
+  boolean isDestroyedForcibly() {
+    return destroyedForcibly;
+  }
+
+  @Override
+  public long pid() {
+    return pid;
+  }
+
+  @Override
+  public Optional<ProcessHandle> parent() {
+    return Optional.empty();
+  }
+
+  @Override
+  public Stream<ProcessHandle> children() {
+    return Stream.empty();
+  }
+
+  @Override
+  public Stream<ProcessHandle> descendants() {
+    return Stream.empty();
+  }
+
+  @Override
+  public Info info() {
+    return new Info() {
+      @Override
+      public Optional<String> command() {
+        return Optional.of("sc");
+      }
+
+      @Override
+      public Optional<String> commandLine() {
+        return Optional.of("sc run");
+      }
+
+      @Override
+      public Optional<String[]> arguments() {
+        return Optional.of(new String[] {"run"});
+      }
+
+      @Override
+      public Optional<Instant> startInstant() {
+        return Optional.ofNullable(start);
+      }
+
+      @Override
+      public Optional<Duration> totalCpuDuration() {
+        return Optional.empty();
+      }
+
+      @Override
+      public Optional<String> user() {
+        return Optional.empty();
+      }
+    };
+  }
+
+  @Override
+  public CompletableFuture<ProcessHandle> onExit() {
+    return exit;
+  }
+
+  @Override
+  public boolean supportsNormalTermination() {
+    return true;
+  }
+
+  @Override
+  public boolean destroy() {
+    destroyed = true;
+    if (!ignoresDestroy) {
+      exit.complete(this);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean destroyForcibly() {
+    destroyedForcibly = true;
+    exit.complete(this);
+    return true;
+  }
+
+  @Override
+  public boolean isAlive() {
+    return !exit.isDone();
+  }
+
+  @Override
+  public int compareTo(ProcessHandle other) {
+    return Long.compare(pid, other.pid());
+  }
+}
@@ -0,0 +1,155 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.saucelabs.saucerest.api.SauceConnectEndpoint;
+import com.saucelabs.saucerest.model.sauceconnect.TunnelInformation;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+
+/**
+ * Sauce Connect manager launching {@link FakeProcess}es instead of Sauce Connect. Each process
+ * reports its tunnel as started at once, with an id of its own, and the endpoints of {@link
+ * #endpoint(String)} list the tunnels whose process is alive.
+ */
+class FakeTunnelManager extends SauceConnectManager {
+
+  /** A process launched by the manager. */
+  static final class Launch {
+    final String username;
+    final String options;
+    final String tunnelName;
+    final String tunnelId;
+    final FakeProcess process = new FakeProcess();
+
+    Launch(String username, String options, String tunnelId) {
+      this.username = username;
+      this.options = options;
+      this.tunnelName = SauceConnectOptions.parse(options).getTunnelName(username);
+      this.tunnelId = tunnelId;
+    }
+  }
+
+  /** The launched processes, in launch order. */
+  final List<Launch> launches = new CopyOnWriteArrayList<>();
+
+  /** Launches wait for it while it is set, so a test can act while a process starts. */
+  volatile CountDownLatch launchGate;
+
+  private final AtomicInteger tunnelIds = new AtomicInteger();
+  private final ThreadLocal<Launch> starting = new ThreadLocal<>();
+
+  FakeTunnelManager() {
+    super(true);
+    setSCMonitorFactory((port, logger) -> new StartedMonitor(starting.get().tunnelId));
+  }
+
+  @Override
+  protected Process prepAndCreateProcess(
+      String username,
+      String apiKey,
+      int port,
+      File sauceConnectJar,
+      String options,
+      Logger logger,
+      String sauceConnectPath,
+      boolean legacy)
+      throws SauceConnectException {
+    CountDownLatch gate = launchGate;
+    if (gate != null) {
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SauceConnectException(e);
+      }
+    }
+    Launch launch = new Launch(username, options, "tunnel-" + tunnelIds.incrementAndGet());
+    launches.add(launch);
+    starting.set(launch);
+    return launch.process;
+  }
+
+  /**
+   * @param index launch order of the process
+   * @return the process
+   */
+  FakeProcess process(int index) {
+    return launches.get(index).process;
+  }
+
+  /**
+   * @param username user whose tunnels are listed
+   * @return an endpoint listing the running tunnels of the user, each ready for use
+   */
+  SauceConnectEndpoint endpoint(String username) throws IOException {
+    SauceConnectEndpoint endpoint = mock(SauceConnectEndpoint.class);
+    when(endpoint.getTunnelsInformationForAUser())
+        .thenAnswer(invocation -> runningTunnels(username));
+    TunnelInformation ready = new TunnelInformation();
+    ready.isReady = true;
+    when(endpoint.getTunnelInformation(anyString())).thenReturn(ready);
+    return endpoint;
+  }
+
+  private List<TunnelInformation> runningTunnels(String username) {
+    List<TunnelInformation> tunnels = new ArrayList<>();
+    for (Launch launch : launches) {
+      if (launch.username.equals(username) && launch.process.isAlive()) {
+        TunnelInformation tunnel = new TunnelInformation();
+        tunnel.id = launch.tunnelId;
+        tunnel.tunnelIdentifier = launch.tunnelName;
+        tunnel.status = "running";
+        tunnels.add(tunnel);
+      }
+    }
+    return tunnels;
+  }
+
+  /** Monitor of a process whose tunnel started. */
+  private static final class StartedMonitor implements SCMonitor {
+    private final String tunnelId;
+    private Semaphore semaphore;
+
+    StartedMonitor(String tunnelId) {
+      this.tunnelId = tunnelId;
+    }
+
+    @Override
+    public void setSemaphore(Semaphore semaphore) {
+      this.semaphore = semaphore;
+    }
+
+    @Override
+    public void run() {
+      semaphore.release();
+    }
+
+    @Override
+    public String getTunnelId() {
+      return tunnelId;
+    }
+
+    @Override
+    public Exception getLastHealtcheckException() {
+      return null;
+    }
+
+    @Override
+    public void markAsFailed() {}
+
+    @Override
+    public boolean isFailed() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class LoggerUsingPrintStreamTest {
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final PrintStream printStream = new PrintStream(output, true);
+
+  private String[] lines() {
+    return new String(output.toByteArray(), StandardCharsets.UTF_8)
+        .split(System.lineSeparator());
+  }
+
+  @Test
+  void testAllLevelsByDefault() {
+    LoggerUsingPrintStream logger = new LoggerUsingPrintStream(printStream);
+    assertTrue(logger.isTraceEnabled());
+    logger.trace("polling");
+    logger.info("started");
+
+    String[] lines = lines();
+    assertEquals(2, lines.length);
+    assertEquals("[TRACE] polling", lines[0]);
+    assertEquals("[INFO] started", lines[1]);
+  }
+
+  @Test
+  void testThreshold() {
+    LoggerUsingPrintStream logger = new LoggerUsingPrintStream(printStream, Level.INFO);
+    assertFalse(logger.isTraceEnabled());
+    assertFalse(logger.isDebugEnabled());
+    assertTrue(logger.isInfoEnabled());
+    assertTrue(logger.isErrorEnabled());
+
+    logger.trace("polling");
+    logger.debug("details");
+    logger.warn("slow");
+    logger.error("failed");
+
+    String[] lines = lines();
+    assertEquals(2, lines.length);
+    assertEquals("[WARN] slow", lines[0]);
+    assertEquals("[ERROR] failed", lines[1]);
+  }
+
+  @Test
+  void testThrowable() {
+    LoggerUsingPrintStream logger = new LoggerUsingPrintStream(printStream);
+    logger.error("failed", new IllegalStateException("boom"));
+
+    String[] lines = lines();
+    assertEquals("[ERROR] failed", lines[0]);
+    assertEquals("java.lang.IllegalStateException: boom", lines[1]);
+  }
+
+  @Test
+  void testAsync() throws Exception {
+    LoggerUsingPrintStream logger = LoggerUsingPrintStream.async(printStream, Level.DEBUG, 16);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 250; i++) {
+                  logger.info("message");
+                  logger.trace("ignored");
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    logger.flush();
+    assertEquals(1000, lines().length);
+
+    logger.error("failed", new IllegalStateException("boom"));
+    logger.close();
+    String[] lines = lines();
+    assertEquals("[INFO] message", lines[999]);
+    assertEquals("[ERROR] failed", lines[1000]);
+    assertEquals("java.lang.IllegalStateException: boom", lines[1001]);
+
+    logger.info("after close");
+    lines = lines();
+    assertEquals("[INFO] after close", lines[lines.length - 1]);
+  }
+
+  @Test
+  void testIdleWriterStops() throws Exception {
+    LoggerUsingPrintStream logger =
+        new LoggerUsingPrintStream(
+            printStream, Level.INFO, 4, TimeUnit.MILLISECONDS.toNanos(50));
+    assertFalse(logger.isWriterRunning());
+    logger.info("first");
+    assertTrue(logger.isWriterRunning());
+    logger.flush();
+    assertEquals("[INFO] first", lines()[0]);
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (logger.isWriterRunning() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(logger.isWriterRunning());
+
+    // a new writer is started by the next message
+    logger.info("second");
+    logger.flush();
+    assertEquals("[INFO] second", lines()[1]);
+    logger.close();
+    assertFalse(logger.isWriterRunning());
+  }
+
+  @Test
+  void testCloseWaitsForTheWriterWhenInterrupted() {
+    LoggerUsingPrintStream logger = LoggerUsingPrintStream.async(printStream, Level.INFO, 64);
+    for (int i = 0; i < 50; i++) {
+      logger.info("message " + i);
+    }
+    Thread.currentThread().interrupt();
+    logger.close();
+    assertTrue(Thread.interrupted());
+
+    String[] lines = lines();
+    assertEquals(50, lines.length);
+    for (int i = 0; i < 50; i++) {
+      assertEquals("[INFO] message " + i, lines[i]);
+    }
+  }
+
+  @Test
+  void testNestedLogging() {
+    LoggerUsingPrintStream logger = new LoggerUsingPrintStream(printStream);
+    Object argument =
+        new Object() {
+          @Override
+          public String toString() {
+            logger.debug("rendering");
+            return "argument";
+          }
+        };
+    logger.info("outer {}", argument);
+
+    String[] lines = lines();
+    assertEquals("[DEBUG] rendering", lines[0]);
+    assertEquals("[INFO] outer argument", lines[1]);
+  }
+
+  @Test
+  void testFlushWaitsForEveryMessage() throws Exception {
+    LoggerUsingPrintStream logger =
+        new LoggerUsingPrintStream(printStream, Level.INFO, 4, TimeUnit.MILLISECONDS.toNanos(1));
+    for (int i = 0; i < 200; i++) {
+      logger.info("message " + i);
+      logger.flush();
+      assertEquals(i + 1, lines().length);
+      if (i % 20 == 0) {
+        // lets the writer go idle between the messages
+        Thread.sleep(5);
+      }
+    }
+    logger.close();
+  }
+}
@@ -0,0 +1,105 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class SauceConnectOptionsTest {
+
+  @Test
+  void testTokenize() {
+    assertEquals(
+        Arrays.asList("-i", "my tunnel", "--logfile", "/tmp/sc.log"),
+        SauceConnectOptions.tokenize("  -i   \"my tunnel\"\t--logfile /tmp/sc.log "));
+    assertEquals(
+        Arrays.asList("a b", "it's", "c\\d", "say \"hi\"", ""),
+        SauceConnectOptions.tokenize("'a b' 'it'\"'\"'s' \"c\\d\" \"say \\\"hi\\\"\" ''"));
+    assertTrue(SauceConnectOptions.tokenize("   ").isEmpty());
+    assertEquals(
+        Arrays.asList("--logfile", "/tmp/it's a log"),
+        SauceConnectOptions.tokenize("--logfile " + SauceConnectOptions.quote("/tmp/it's a log")));
+  }
+
+  @Test
+  void testWindowsPaths() {
+    assertEquals(
+        Arrays.asList("--logfile", "C:\\logs\\sc.log", "--tunnel-name", "name\\"),
+        SauceConnectOptions.tokenize("--logfile C:\\logs\\sc.log --tunnel-name name\\"));
+    assertEquals(
+        Arrays.asList("--logfile", "C:\\Program Files\\sc.log"),
+        SauceConnectOptions.tokenize("--logfile \"C:\\Program Files\\sc.log\""));
+    assertEquals(
+        Arrays.asList("--logfile", "C:\\Program Files\\sc.log"),
+        SauceConnectOptions.tokenize("--logfile 'C:\\Program Files\\sc.log'"));
+    assertEquals(
+        "C:\\logs\\sc.log", SauceConnectOptions.parse("-l C:\\logs\\sc.log -i x").getLogfile());
+    assertEquals(
+        "C:\\logs\\it's.log",
+        SauceConnectOptions.parse("-l " + SauceConnectOptions.quote("C:\\logs\\it's.log"))
+            .getLogfile());
+  }
+
+  @Test
+  void testUnclosedQuotes() {
+    // a quote which is not closed is a plain char, as when options were split on spaces
+    assertEquals(
+        Arrays.asList("-i", "O'Brien", "--logfile", "sc.log"),
+        SauceConnectOptions.tokenize("-i O'Brien --logfile sc.log"));
+    assertEquals(
+        Arrays.asList("-i", "a b", "--auth", "user:pa\"ss"),
+        SauceConnectOptions.tokenize("-i 'a b' --auth user:pa\"ss"));
+    assertEquals("O'Brien", SauceConnectOptions.parse("-i O'Brien").getTunnelName());
+  }
+
+  @Test
+  void testTypedAccess() {
+    SauceConnectOptions options =
+        SauceConnectOptions.parse(
+            "-i first --tunnel-name 'second tunnel' -l sc.log -x user:pwd@proxy:8080"
+                + " --region=eu-central --verbose");
+
+    assertEquals("second tunnel", options.getTunnelName());
+    assertEquals("sc.log", options.getLogfile());
+    assertEquals("user:pwd@proxy:8080", options.getProxy());
+    assertEquals("eu-central", options.getRegion());
+    assertTrue(options.has("--verbose"));
+    assertNull(options.get("--verbose"));
+    assertFalse(options.has("--shared-tunnel"));
+    assertEquals(
+        "-i first --tunnel-name second tunnel -l sc.log -x user:****@proxy:8080"
+            + " --region=eu-central --verbose",
+        options.toString());
+  }
+
+  @Test
+  void testMissingValues() {
+    assertSame(SauceConnectOptions.EMPTY, SauceConnectOptions.parse(null));
+    assertSame(SauceConnectOptions.EMPTY, SauceConnectOptions.parse(" "));
+    assertEquals("default", SauceConnectOptions.parse("-c -i").getTunnelName("default"));
+    assertNull(SauceConnectOptions.parse("--logfile --verbose").getLogfile());
+  }
+
+  @Test
+  void testCanonicalForm() {
+    SauceConnectOptions options = SauceConnectOptions.parse("--region eu -i 'tunnel' -a x -a y");
+    SauceConnectOptions same =
+        SauceConnectOptions.parse("--auth x  --tunnel-name=tunnel --auth \"y\" -r eu");
+    SauceConnectOptions reordered = SauceConnectOptions.parse("-a y -a x -i tunnel --region eu");
+
+    assertEquals(
+        "--auth='x' --auth='y' --region='eu' --tunnel-name='tunnel'", options.getCanonicalForm());
+    assertEquals(options, same);
+    assertEquals(options.hashCode(), same.hashCode());
+    assertEquals(options.getCanonicalHash(), same.getCanonicalHash());
+    assertEquals(64, options.getCanonicalHash().length());
+    assertNotEquals(options, reordered);
+    assertNotEquals(options.getCanonicalHash(), reordered.getCanonicalHash());
+  }
+}
@@ -0,0 +1,335 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class SauceConnectProcessReaperTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SauceConnectProcessReaperTest.class);
+
+  private static final long CRASHED_JVM = 100;
+  private static final long LIVE_JVM = 200;
+  private static final long CURRENT_JVM = 300;
+
+  @TempDir Path directory;
+
+  private final Map<Long, FakeProcessHandle> processes = new HashMap<>();
+
+  private static class FakeRegistry implements SauceConnectProcessReaper.TunnelRegistry {
+    private final Set<String> running = new HashSet<>();
+    private final List<String> stopped = new ArrayList<>();
+
+    @Override
+    public Set<String> getRunningTunnelIds() {
+      return running;
+    }
+
+    @Override
+    public void stopTunnel(String tunnelId) {
+      stopped.add(tunnelId);
+      running.remove(tunnelId);
+    }
+  }
+
+  private FakeProcessHandle start(long pid, boolean ignoresDestroy) {
+    FakeProcessHandle process =
+        new FakeProcessHandle(pid, Instant.ofEpochMilli(1_000_000 + pid), ignoresDestroy);
+    processes.put(pid, process);
+    return process;
+  }
+
+  private SauceConnectProcessReaper reaper(long jvm, SauceConnectProcessReaper.Policy policy) {
+    return new SauceConnectProcessReaper(
+        directory.resolve("state").resolve("sc-processes"),
+        policy,
+        Duration.ofMillis(50),
+        jvm,
+        1_000_000 + jvm,
+        pid -> Optional.ofNullable(processes.get(pid)));
+  }
+
+  @Test
+  void testRecordAndRemove() throws IOException {
+    start(LIVE_JVM, false);
+    SauceConnectProcessReaper reaper = reaper(LIVE_JVM, SauceConnectProcessReaper.Policy.KILL);
+    reaper.record(start(1, false), 9000, "tunnel one", "alice", "EU_CENTRAL");
+    reaper.record(start(2, false), 9001, "tunnel\ttwo");
+    reaper.setTunnelId(1, "tunnel-id-1");
+
+    List<SauceConnectProcessReaper.Entry> entries = reaper.getEntries();
+    assertEquals(2, entries.size());
+    assertEquals(LIVE_JVM, entries.get(0).getOwnerPid());
+    assertEquals(1_000_000 + LIVE_JVM, entries.get(0).getOwnerStartTime());
+    assertEquals(1, entries.get(0).getPid());
+    assertEquals(1_000_001, entries.get(0).getStartTime());
+    assertEquals(9000, entries.get(0).getApiPort());
+    assertEquals("tunnel one", entries.get(0).getTunnelName());
+    assertEquals("tunnel-id-1", entries.get(0).getTunnelId());
+    assertEquals("alice", entries.get(0).getUsername());
+    assertEquals("EU_CENTRAL", entries.get(0).getDataCenter());
+    assertEquals("tunnel two", entries.get(1).getTunnelName());
+    assertNull(entries.get(1).getTunnelId());
+    assertNull(entries.get(1).getUsername());
+    assertNull(entries.get(1).getDataCenter());
+
+    reaper.remove(1);
+    entries = reaper.getEntries();
+    assertEquals(1, entries.size());
+    assertEquals(2, entries.get(0).getPid());
+  }
+
+  @Test
+  void testKillOrphans() throws IOException {
+    start(LIVE_JVM, false);
+    SauceConnectProcessReaper crashed = reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    FakeProcessHandle orphan = start(1, false);
+    FakeProcessHandle stubborn = start(2, true);
+    crashed.record(orphan, 9000, "one");
+    crashed.setTunnelId(1, "id-1");
+    crashed.record(stubborn, 9001, "two");
+    crashed.record(start(3, false), 9002, "three");
+    crashed.setTunnelId(3, "id-3");
+    processes.get(3L).destroy();
+    crashed.record(start(4, false), 9003, "four");
+    crashed.setTunnelId(4, "id-4");
+    processes.get(4L).destroy();
+    FakeProcessHandle other = start(5, false);
+    reaper(LIVE_JVM, SauceConnectProcessReaper.Policy.KILL).record(other, 9004, "five");
+
+    FakeRegistry registry = new FakeRegistry();
+    registry.running.addAll(Arrays.asList("id-1", "id-3"));
+    SauceConnectProcessReaper.Result result =
+        reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL)
+            .reconcile(entry -> registry, LOGGER);
+
+    assertTrue(orphan.isDestroyed());
+    assertFalse(orphan.isDestroyedForcibly());
+    assertTrue(stubborn.isDestroyedForcibly());
+    assertFalse(other.isDestroyed());
+    assertEquals(2, result.getKilled().size());
+    assertEquals(4, result.getRemoved().size());
+    assertTrue(result.getAdopted().isEmpty());
+    assertEquals(Arrays.asList("id-1", "id-3"), result.getStoppedTunnelIds());
+    assertEquals(Arrays.asList("id-1", "id-3"), registry.stopped);
+
+    List<SauceConnectProcessReaper.Entry> entries =
+        reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL).getEntries();
+    assertEquals(1, entries.size());
+    assertEquals(5, entries.get(0).getPid());
+  }
+
+  @Test
+  void testAdoptOrphans() throws IOException {
+    SauceConnectProcessReaper crashed = reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    FakeProcessHandle orphan = start(1, false);
+    crashed.record(orphan, 9000, "one");
+    crashed.setTunnelId(1, "id-1");
+
+    FakeRegistry registry = new FakeRegistry();
+    registry.running.add("id-1");
+    SauceConnectProcessReaper current = reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.ADOPT);
+    SauceConnectProcessReaper.Result result = current.reconcile(entry -> registry, LOGGER);
+
+    assertFalse(orphan.isDestroyed());
+    assertEquals(1, result.getAdopted().size());
+    assertEquals(CURRENT_JVM, result.getAdopted().get(0).getOwnerPid());
+    assertEquals(1_000_000 + CURRENT_JVM, result.getAdopted().get(0).getOwnerStartTime());
+    assertTrue(result.getRemoved().isEmpty());
+    assertTrue(registry.stopped.isEmpty());
+    assertEquals(CURRENT_JVM, current.getEntries().get(0).getOwnerPid());
+  }
+
+  @Test
+  void testRegistryOfEachUser() throws IOException {
+    SauceConnectProcessReaper crashed = reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    FakeProcessHandle alice = start(1, false);
+    crashed.record(alice, 9000, "one", "alice", "US_WEST");
+    crashed.setTunnelId(1, "id-1");
+    FakeProcessHandle bob = start(2, false);
+    crashed.record(bob, 9001, "two", "bob", "EU_CENTRAL");
+    crashed.setTunnelId(2, "id-2");
+
+    Map<String, FakeRegistry> registries = new HashMap<>();
+    registries.put("alice@US_WEST", new FakeRegistry());
+    registries.get("alice@US_WEST").running.add("id-1");
+    SauceConnectProcessReaper current = reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL);
+    SauceConnectProcessReaper.Result result =
+        current.reconcile(
+            entry -> registries.get(entry.getUsername() + "@" + entry.getDataCenter()), LOGGER);
+
+    // the tunnel of bob can't be reached yet, his process is killed and his entry kept
+    assertTrue(alice.isDestroyed());
+    assertTrue(bob.isDestroyed());
+    assertEquals(Collections.singletonList("id-1"), registries.get("alice@US_WEST").stopped);
+    assertEquals(1, result.getRemoved().size());
+    assertEquals(2, current.getEntries().get(0).getPid());
+
+    registries.put("bob@EU_CENTRAL", new FakeRegistry());
+    registries.get("bob@EU_CENTRAL").running.add("id-2");
+    result =
+        current.reconcile(
+            entry -> registries.get(entry.getUsername() + "@" + entry.getDataCenter()), LOGGER);
+    assertEquals(Collections.singletonList("id-2"), result.getStoppedTunnelIds());
+    assertTrue(result.getKilled().isEmpty());
+    assertTrue(current.getEntries().isEmpty());
+  }
+
+  @Test
+  void testReusedPid() throws IOException {
+    SauceConnectProcessReaper crashed = reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    crashed.record(start(1, false), 9000, "one");
+    // pid taken by an unrelated process started later
+    FakeProcessHandle unrelated =
+        new FakeProcessHandle(1, Instant.ofEpochMilli(5_000_000), false);
+    processes.put(1L, unrelated);
+
+    SauceConnectProcessReaper.Result result =
+        reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL)
+            .reconcile(entry -> null, LOGGER);
+
+    assertFalse(unrelated.isDestroyed());
+    assertTrue(result.getKilled().isEmpty());
+    assertEquals(1, result.getRemoved().size());
+  }
+
+  @Test
+  void testRestartedJvm() throws IOException {
+    start(LIVE_JVM, false);
+    FakeProcessHandle orphan = start(1, false);
+    reaper(LIVE_JVM, SauceConnectProcessReaper.Policy.KILL).record(orphan, 9000, "one");
+    // the JVM died and its pid was taken by another JVM
+    processes.put(
+        LIVE_JVM, new FakeProcessHandle(LIVE_JVM, Instant.ofEpochMilli(5_000_000), false));
+
+    SauceConnectProcessReaper.Result result =
+        reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL)
+            .reconcile(entry -> null, LOGGER);
+
+    assertTrue(orphan.isDestroyed());
+    assertEquals(1, result.getKilled().size());
+  }
+
+  @Test
+  void testUnknownStartTime() throws IOException {
+    SauceConnectProcessReaper crashed = reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    crashed.record(start(1, false), 9000, "one");
+    crashed.setTunnelId(1, "id-1");
+    // the start time of the process can't be read anymore
+    FakeProcessHandle unconfirmed = new FakeProcessHandle(1, null, false);
+    processes.put(1L, unconfirmed);
+
+    FakeRegistry registry = new FakeRegistry();
+    registry.running.add("id-1");
+    SauceConnectProcessReaper.Result result =
+        reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.ADOPT)
+            .reconcile(entry -> registry, LOGGER);
+
+    assertFalse(unconfirmed.isDestroyed());
+    assertTrue(result.getKilled().isEmpty());
+    assertTrue(result.getAdopted().isEmpty());
+    assertEquals(1, result.getRemoved().size());
+    assertEquals(Collections.singletonList("id-1"), registry.stopped);
+  }
+
+  @Test
+  void testFileNotLockedWhileReaping() throws IOException {
+    SauceConnectProcessReaper crashed = reaper(CRASHED_JVM, SauceConnectProcessReaper.Policy.KILL);
+    crashed.record(start(1, true), 9000, "one");
+    crashed.setTunnelId(1, "id-1");
+
+    List<Integer> entriesSeen = new ArrayList<>();
+    FakeRegistry registry =
+        new FakeRegistry() {
+          @Override
+          public void stopTunnel(String tunnelId) {
+            try {
+              // throws OverlappingFileLockException if the lock is still held
+              entriesSeen.add(crashed.getEntries().size());
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            }
+            super.stopTunnel(tunnelId);
+          }
+        };
+    registry.running.add("id-1");
+    reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL).reconcile(entry -> registry, LOGGER);
+
+    // the orphan was claimed before its process was killed
+    assertEquals(Collections.singletonList(0), entriesSeen);
+    assertEquals(Collections.singletonList("id-1"), registry.stopped);
+  }
+
+  @Test
+  void testPartlyWrittenFile() throws IOException {
+    Path stateFile = directory.resolve("state").resolve("sc-processes");
+    Files.createDirectories(stateFile.getParent());
+    Files.write(
+        stateFile,
+        Collections.singletonList(
+            "# Sauce Connect processes v2\n"
+                + "100\t5\t1\t-1\t9000\tone\t-\talice\tUS_WEST\n"
+                + "100\t5\t2\t-1\t9001\ttwo\t-\tal"),
+        StandardCharsets.UTF_8);
+
+    List<SauceConnectProcessReaper.Entry> entries =
+        reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL).getEntries();
+    assertEquals(1, entries.size());
+    assertEquals(5, entries.get(0).getOwnerStartTime());
+    assertEquals(-1, entries.get(0).getStartTime());
+    assertEquals("alice", entries.get(0).getUsername());
+    assertEquals("US_WEST", entries.get(0).getDataCenter());
+
+    // lines written by v1 have no start time of the owner
+    Files.write(
+        stateFile,
+        Collections.singletonList("# Sauce Connect processes v1\n100\t1\t-1\t9000\tone\tid"),
+        StandardCharsets.UTF_8);
+    entries = reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL).getEntries();
+    assertEquals(1, entries.size());
+    assertEquals(-1, entries.get(0).getOwnerStartTime());
+    assertEquals(1, entries.get(0).getPid());
+    assertEquals("id", entries.get(0).getTunnelId());
+    assertNull(entries.get(0).getUsername());
+  }
+
+  @Test
+  void testStateFileIsReplaced() throws IOException {
+    SauceConnectProcessReaper reaper = reaper(CURRENT_JVM, SauceConnectProcessReaper.Policy.KILL);
+    reaper.record(start(1, false), 9000, "one");
+    reaper.record(start(2, false), 9001, "two");
+    Path stateFile = reaper.getStateFile();
+
+    assertEquals(2, reaper.getEntries().size());
+    // only the state and its lock file are left, no temporary file
+    try (Stream<Path> files = Files.list(stateFile.getParent())) {
+      assertEquals(
+          Set.of("sc-processes", "sc-processes.lock"),
+          files.map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+    }
+  }
+}
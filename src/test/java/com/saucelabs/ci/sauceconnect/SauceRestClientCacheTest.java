@@ -0,0 +1,114 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.saucelabs.saucerest.DataCenter;
+import com.saucelabs.saucerest.SauceREST;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SauceRestClientCacheTest {
+
+  private final AtomicInteger created = new AtomicInteger();
+
+  private SauceRestClientCache cache(int maxSize) {
+    return new SauceRestClientCache(
+        maxSize,
+        (username, apiKey, dataCenter) -> {
+          created.incrementAndGet();
+          return new SauceREST(username, apiKey, dataCenter);
+        });
+  }
+
+  @Test
+  void testClientByUserAndDataCenter() {
+    SauceRestClientCache cache = cache(10);
+    SauceREST alice = cache.get("alice", "key", DataCenter.US_WEST);
+
+    assertSame(alice, cache.get("alice", "key", DataCenter.US_WEST));
+    assertNotSame(alice, cache.get("alice", "key", DataCenter.EU_CENTRAL));
+    assertNotSame(alice, cache.get("bob", "key", DataCenter.US_WEST));
+    assertEquals(3, cache.size());
+    assertEquals(3, created.get());
+
+    // a new access key replaces the client
+    SauceREST rotated = cache.get("alice", "new key", DataCenter.US_WEST);
+    assertNotSame(alice, rotated);
+    assertSame(rotated, cache.get("alice", "new key", DataCenter.US_WEST));
+    assertEquals(3, cache.size());
+    assertSame(
+        rotated.getSauceConnectEndpoint(),
+        cache.getSauceConnectEndpoint("alice", DataCenter.US_WEST));
+    // no client is created without the access key
+    assertNull(cache.getSauceConnectEndpoint("carol", DataCenter.US_WEST));
+    assertEquals(4, created.get());
+
+    assertTrue(cache.invalidate("alice", DataCenter.US_WEST));
+    assertFalse(cache.invalidate("alice", DataCenter.US_WEST));
+    assertEquals(2, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertThrows(IllegalArgumentException.class, () -> new SauceRestClientCache(0));
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsed() {
+    SauceRestClientCache cache = cache(2);
+    SauceREST usWest = cache.get("user", "key", DataCenter.US_WEST);
+    cache.get("user", "key", DataCenter.EU_CENTRAL);
+    // US_WEST is now the most recently used
+    assertSame(usWest, cache.get("user", "key", DataCenter.US_WEST));
+
+    cache.get("user", "key", DataCenter.APAC_SOUTHEAST);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertSame(usWest, cache.get("user", "key", DataCenter.US_WEST));
+    assertEquals(3, created.get());
+    cache.get("user", "key", DataCenter.EU_CENTRAL);
+    assertEquals(4, created.get());
+  }
+
+  @Test
+  void testConcurrentAccess() throws Exception {
+    SauceRestClientCache cache = cache(16);
+    DataCenter[] dataCenters = DataCenter.values();
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<SauceREST>> results = new ArrayList<>();
+      for (int i = 0; i < threads * 50; i++) {
+        DataCenter dataCenter = dataCenters[i % dataCenters.length];
+        results.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return cache.get("user", "key", dataCenter);
+                }));
+      }
+      start.countDown();
+      for (int i = 0; i < results.size(); i++) {
+        SauceREST expected = cache.get("user", "key", dataCenters[i % dataCenters.length]);
+        assertSame(expected, results.get(i).get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(dataCenters.length, created.get());
+  }
+}
@@ -0,0 +1,112 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+class SecretRedactorTest {
+
+  private static final String[] ARGS = {
+    "sc", "run", "--access-key", "0123-abcd", "--proxy", "user:s3cret@proxy:8080",
+    "--api-basic-auth", "admin:letmein", "--auth", "foo:bar@host:443", "--tunnel-name", "tunnel"
+  };
+
+  @Test
+  void testRedactArgs() {
+    String[] redacted = SecretRedactor.redactArgs(ARGS);
+
+    assertArrayEquals(
+        new String[] {
+          "sc", "run", "--access-key", "****", "--proxy", "user:****@proxy:8080",
+          "--api-basic-auth", "admin:****", "--auth", "****", "--tunnel-name", "tunnel"
+        },
+        redacted);
+    assertEquals("0123-abcd", ARGS[3]);
+  }
+
+  @Test
+  void testRedactOptionsWithEquals() {
+    String[] args = {
+      "sc", "run", "--access-key=0123-abcd", "--proxy=user:s3cret@proxy:8080",
+      "--api-basic-auth=admin:letmein", "--tunnel-name=tunnel", "-k=notanoption"
+    };
+
+    assertArrayEquals(
+        new String[] {
+          "sc", "run", "--access-key=****", "--proxy=user:****@proxy:8080",
+          "--api-basic-auth=admin:****", "--tunnel-name=tunnel", "-k=notanoption"
+        },
+        SecretRedactor.redactArgs(args));
+    assertEquals(
+        Set.of("0123-abcd", "s3cret", "letmein"), SecretRedactor.forArgs(args).getSecrets());
+    assertEquals(
+        "--access-key=**** --tunnel-name=tunnel",
+        SauceConnectOptions.parse("--access-key=0123-abcd --tunnel-name=tunnel").toString());
+  }
+
+  @Test
+  void testSecretsOfArgs() {
+    SecretRedactor redactor = SecretRedactor.forArgs(ARGS);
+
+    assertEquals(
+        Set.of("0123-abcd", "s3cret", "letmein", "foo:bar@host:443"), redactor.getSecrets());
+    assertSame(SecretRedactor.NONE, SecretRedactor.forArgs("sc", "run", "-a", "abc", "-k"));
+  }
+
+  @Test
+  void testRedactLine() {
+    SecretRedactor redactor = SecretRedactor.forArgs(ARGS);
+
+    String line = "connecting with key 0123-abcd through user:s3cret@proxy:8080";
+    assertEquals("connecting with key **** through user:****@proxy:8080", redactor.redact(line));
+    assertEquals("****", redactor.redact("0123-abcd0123-abcd"));
+    assertEquals("x****x", redactor.redact("xletmeins3cretx"));
+
+    String clean = "tunnel is up";
+    assertSame(clean, redactor.redact(clean));
+    assertSame(clean, SecretRedactor.NONE.redact(clean));
+  }
+
+  @Test
+  void testOverlappingSecrets() {
+    SecretRedactor redactor = SecretRedactor.of(Arrays.asList("bcde", "abcdefgh", "ghij", "xyz"));
+
+    assertEquals("-****-", redactor.redact("-abcdefghij-"));
+    assertEquals("a****f", redactor.redact("abcdef"));
+    assertEquals("xyz", redactor.redact("xyz"));
+    assertEquals("é****é", redactor.redact("ébcdeé"));
+  }
+
+  @Test
+  void testManyLines() {
+    SecretRedactor redactor = SecretRedactor.forArgs(ARGS);
+    StringBuilder output = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      output.append(i % 10 == 0 ? "key=0123-abcd" : "2024-01-01 12:00:00 [INFO] line " + i);
+      output.append('\n');
+    }
+
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    new DefaultProcessOutputPrinter()
+        .getStdoutPrinter(
+            new ByteArrayInputStream(output.toString().getBytes(StandardCharsets.UTF_8)),
+            new PrintStream(printed, true),
+            redactor)
+        .run();
+
+    String result = new String(printed.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(!result.contains("0123-abcd"));
+    assertTrue(result.startsWith("[sauceconnect] [stdout] key=****"));
+    assertEquals(100_000, result.split(System.lineSeparator()).length);
+  }
+}
@@ -0,0 +1,127 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TunnelShardingPolicyTest {
+
+  /** Hands out like the manager does: choose, then count the caller. */
+  private static Process handOut(TunnelInformation tunnel, TunnelShardingPolicy.Strategy strategy) {
+    Process process = tunnel.handOut(strategy);
+    tunnel.setProcessCount(tunnel.getProcessCount() + 1);
+    return process;
+  }
+
+  private static void release(TunnelInformation tunnel) {
+    tunnel.setProcessCount(tunnel.getProcessCount() - 1);
+    tunnel.release();
+  }
+
+  private static TunnelInformation.Shard shard(String label, String tunnelId) {
+    return new TunnelInformation.Shard(label, new FakeProcess(), tunnelId, 0);
+  }
+
+  private static TunnelInformation pool(
+      int callers, Process main, TunnelInformation.Shard... shards) {
+    TunnelInformation tunnel = new TunnelInformation("pool");
+    tunnel.setProcess(main);
+    tunnel.setProcessCount(callers);
+    for (TunnelInformation.Shard shard : shards) {
+      tunnel.addShard(shard);
+    }
+    return tunnel;
+  }
+
+  @Test
+  void testShouldGrow() {
+    TunnelShardingPolicy policy =
+        new TunnelShardingPolicy(10, 3, TunnelShardingPolicy.Strategy.LEAST_LOADED);
+    assertFalse(policy.shouldGrow(10, 1));
+    assertTrue(policy.shouldGrow(11, 1));
+    assertFalse(policy.shouldGrow(20, 2));
+    assertTrue(policy.shouldGrow(21, 2));
+    assertFalse(policy.shouldGrow(100, 3));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new TunnelShardingPolicy(0, 3, TunnelShardingPolicy.Strategy.ROUND_ROBIN));
+    assertThrows(IllegalArgumentException.class, () -> new TunnelShardingPolicy(1, 1, null));
+  }
+
+  @Test
+  void testLeastLoaded() {
+    Process main = new FakeProcess();
+    TunnelInformation.Shard first = shard("pool#1", "a");
+    TunnelInformation.Shard second = shard("pool#2", "b");
+    // the main process already serves two callers
+    TunnelInformation tunnel = pool(2, main, first, second);
+
+    List<Process> handedOut = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      handedOut.add(handOut(tunnel, TunnelShardingPolicy.Strategy.LEAST_LOADED));
+    }
+    assertSame(first.getProcess(), handedOut.get(0));
+    assertSame(second.getProcess(), handedOut.get(1));
+    assertSame(first.getProcess(), handedOut.get(2));
+    assertSame(second.getProcess(), handedOut.get(3));
+    assertEquals(6, tunnel.getProcessCount());
+    assertEquals(2, first.getLoad());
+    assertEquals(2, second.getLoad());
+
+    // callers are taken off the busiest processes, the main one first on a tie
+    release(tunnel);
+    release(tunnel);
+    assertEquals(1, first.getLoad());
+    assertEquals(2, second.getLoad());
+    release(tunnel);
+    assertEquals(1, first.getLoad());
+    assertEquals(1, second.getLoad());
+    assertSame(main, handOut(tunnel, TunnelShardingPolicy.Strategy.LEAST_LOADED));
+  }
+
+  @Test
+  void testRoundRobin() {
+    Process main = new FakeProcess();
+    TunnelInformation.Shard shard = shard("pool#1", "a");
+    TunnelInformation tunnel = pool(5, main, shard);
+
+    assertSame(main, handOut(tunnel, TunnelShardingPolicy.Strategy.ROUND_ROBIN));
+    assertSame(shard.getProcess(), handOut(tunnel, TunnelShardingPolicy.Strategy.ROUND_ROBIN));
+    assertSame(main, handOut(tunnel, TunnelShardingPolicy.Strategy.ROUND_ROBIN));
+    assertEquals(1, shard.getLoad());
+    assertSame(main, tunnel.handOut(null));
+  }
+
+  @Test
+  void testShardExitAndPromotion() {
+    Process main = new FakeProcess();
+    TunnelInformation.Shard first = shard("pool#1", "a");
+    TunnelInformation.Shard second = shard("pool#2", "b");
+    TunnelInformation tunnel = pool(1, main, first, second);
+    handOut(tunnel, TunnelShardingPolicy.Strategy.LEAST_LOADED);
+    handOut(tunnel, TunnelShardingPolicy.Strategy.LEAST_LOADED);
+    assertEquals(3, tunnel.getMemberCount());
+
+    // the callers of a shard which exited are counted on the main process, now the busiest
+    assertSame(second, tunnel.removeShard(second.getProcess()));
+    assertNull(tunnel.removeShard(second.getProcess()));
+    assertEquals(2, tunnel.getMemberCount());
+    assertSame(first.getProcess(), handOut(tunnel, TunnelShardingPolicy.Strategy.LEAST_LOADED));
+
+    tunnel.setProcess(null);
+    assertSame(first, tunnel.promoteShard());
+    assertSame(first.getProcess(), tunnel.getProcess());
+    assertEquals("a", tunnel.getTunnelId());
+    assertTrue(tunnel.getShards().isEmpty());
+    assertNull(tunnel.promoteShard());
+    assertEquals("pool#1", tunnel.nextShardLabel());
+  }
+}
@@ -0,0 +1,159 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TunnelSupervisorTest {
+
+  private final List<TunnelSupervisor.Event> events = new CopyOnWriteArrayList<>();
+
+  private TunnelSupervisor supervisor() {
+    TunnelSupervisor supervisor = new TunnelSupervisor(Runnable::run);
+    supervisor.addListener(events::add);
+    return supervisor;
+  }
+
+  private List<TunnelSupervisor.EventType> types() {
+    TunnelSupervisor.EventType[] types = new TunnelSupervisor.EventType[events.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = events.get(i).getType();
+    }
+    return Arrays.asList(types);
+  }
+
+  @Test
+  void testUnexpectedExitWithoutRestart() {
+    TunnelSupervisor supervisor = supervisor();
+    FakeProcess process = new FakeProcess();
+    supervisor.supervise("tunnel", process, name -> new FakeProcess());
+    assertTrue(supervisor.isSupervised(process));
+
+    process.exit(1);
+
+    assertFalse(supervisor.isSupervised(process));
+    assertEquals(
+        Arrays.asList(TunnelSupervisor.EventType.EXITED, TunnelSupervisor.EventType.LOST),
+        types());
+    assertEquals("tunnel", events.get(0).getTunnelName());
+    assertSame(process, events.get(0).getProcess());
+    assertEquals(Integer.valueOf(1), events.get(0).getExitCode());
+    assertFalse(events.get(0).isRestartPending());
+  }
+
+  @Test
+  void testReleasedProcess() {
+    TunnelSupervisor supervisor = supervisor();
+    FakeProcess process = new FakeProcess();
+    supervisor.supervise("tunnel", process, null);
+
+    assertTrue(supervisor.release(process));
+    process.exit(1);
+
+    assertFalse(supervisor.release(process));
+    assertTrue(events.isEmpty());
+  }
+
+  @Test
+  void testRestart() throws InterruptedException {
+    TunnelSupervisor supervisor = supervisor();
+    supervisor.setRestartPolicy(3, Duration.ofMillis(10), Duration.ofMillis(50));
+    CountDownLatch restarted = new CountDownLatch(1);
+    supervisor.addListener(
+        event -> {
+          if (event.getType() == TunnelSupervisor.EventType.RESTARTED) {
+            restarted.countDown();
+          }
+        });
+    FakeProcess process = new FakeProcess();
+    FakeProcess replacement = new FakeProcess();
+    supervisor.supervise(
+        "tunnel",
+        process,
+        name -> {
+          supervisor.supervise(name, replacement, null);
+          return replacement;
+        });
+
+    process.exit(1);
+
+    assertTrue(restarted.await(5, TimeUnit.SECONDS));
+    assertEquals(
+        Arrays.asList(
+            TunnelSupervisor.EventType.EXITED,
+            TunnelSupervisor.EventType.RESTARTING,
+            TunnelSupervisor.EventType.RESTARTED),
+        types());
+    assertTrue(events.get(0).isRestartPending());
+    assertEquals(1, events.get(2).getAttempt());
+    assertSame(replacement, events.get(2).getProcess());
+    assertTrue(supervisor.isSupervised(replacement));
+  }
+
+  @Test
+  void testRestartFailures() throws InterruptedException {
+    TunnelSupervisor supervisor = supervisor();
+    supervisor.setRestartPolicy(2, Duration.ofMillis(1), Duration.ofMillis(5));
+    CountDownLatch lost = new CountDownLatch(1);
+    supervisor.addListener(
+        event -> {
+          if (event.getType() == TunnelSupervisor.EventType.LOST) {
+            lost.countDown();
+          }
+        });
+    AtomicInteger attempts = new AtomicInteger();
+    FakeProcess process = new FakeProcess();
+    supervisor.supervise(
+        "tunnel",
+        process,
+        name -> {
+          attempts.incrementAndGet();
+          throw new IOException("no tunnel");
+        });
+
+    process.exit(1);
+
+    assertTrue(lost.await(5, TimeUnit.SECONDS));
+    assertEquals(2, attempts.get());
+    assertEquals(
+        Arrays.asList(
+            TunnelSupervisor.EventType.EXITED,
+            TunnelSupervisor.EventType.RESTARTING,
+            TunnelSupervisor.EventType.RESTART_FAILED,
+            TunnelSupervisor.EventType.RESTARTING,
+            TunnelSupervisor.EventType.RESTART_FAILED,
+            TunnelSupervisor.EventType.LOST),
+        types());
+    assertTrue(events.get(2).isRestartPending());
+    assertFalse(events.get(4).isRestartPending());
+    assertEquals("no tunnel", events.get(5).getError().getMessage());
+  }
+
+  @Test
+  void testBackoff() {
+    TunnelSupervisor supervisor = supervisor();
+    supervisor.setRestartPolicy(40, Duration.ofMillis(100), Duration.ofSeconds(1));
+    assertEquals(100, supervisor.backoff(1));
+    assertEquals(200, supervisor.backoff(2));
+    assertEquals(800, supervisor.backoff(4));
+    assertEquals(1000, supervisor.backoff(5));
+    assertEquals(1000, supervisor.backoff(40));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> supervisor.setRestartPolicy(-1, Duration.ZERO, Duration.ZERO));
+  }
+}
@@ -0,0 +1,187 @@
+package com.saucelabs.ci.sauceconnect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TunnelTelemetryTest {
+
+  private static final List<String> METRICS =
+      Arrays.asList("requests_total", "request_duration_seconds_sum", "go_goroutines");
+
+  private static Map<String, Integer> index() {
+    Map<String, Integer> index = new HashMap<>();
+    for (String metric : METRICS) {
+      index.put(metric, index.size());
+    }
+    return index;
+  }
+
+  @Test
+  void testParseMetrics() {
+    String body =
+        "# HELP requests_total Requests.\n"
+            + "# TYPE requests_total counter\n"
+            + "requests_total{code=\"200\",path=\"a}b\"} 40\n"
+            + "requests_total{code=\"502\",msg=\"say \\\"hi\\\"\"} 2 1700000000000\n"
+            + "requests_total_other 1000\n"
+            + "request_duration_seconds_sum 1.5e1\r\n"
+            + "unparsable_line\n"
+            + "\n";
+
+    double[] values = TunnelTelemetry.parseMetrics(body, index());
+
+    assertEquals(42, values[0]);
+    assertEquals(15, values[1]);
+    assertTrue(Double.isNaN(values[2]));
+  }
+
+  @Test
+  void testRingBuffer() {
+    TunnelTelemetry.Series series = new TunnelTelemetry.Series("tunnel", index(), 4);
+    for (int i = 0; i < 6; i++) {
+      // the counter is reset by a restart after the fourth sample
+      double requests = i < 4 ? 100 + i * 10 : (i - 3) * 10;
+      series.add(i * 1000L, i != 1, true, i * 1_000_000L, new double[] {requests, 0, 5});
+    }
+
+    List<TunnelTelemetry.Sample> samples = series.getSamples();
+    assertEquals(4, series.size());
+    assertEquals(4, samples.size());
+    assertEquals(Instant.ofEpochMilli(2000), samples.get(0).getTime());
+    assertEquals(20, series.getLatest().getValue("requests_total"));
+    assertEquals(Double.NaN, series.getLatest().getValue("unknown"));
+    assertEquals(1, series.getFailures());
+    assertEquals(2, series.getSamples(Instant.ofEpochMilli(4000)).size());
+    // 120, 130, then 10 and 20 after the reset: 10 + 10 + 10 over 3 seconds
+    assertEquals(10, series.rate("requests_total", Duration.ofMinutes(1)), 0.001);
+    assertEquals(10, series.rate("requests_total", Duration.ofSeconds(1)), 0.001);
+    assertTrue(Double.isNaN(series.rate("requests_total", Duration.ZERO)));
+    assertEquals(Duration.ofNanos(4_500_000), series.meanLatency(Duration.ofSeconds(1)));
+  }
+
+  @Test
+  void testSampling() throws Exception {
+    AtomicInteger probes = new AtomicInteger();
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/readyz", exchange -> respond(exchange, probes.incrementAndGet() < 2 ? 200 : 503, "ok"));
+    server.createContext(
+        "/metrics",
+        exchange ->
+            respond(
+                exchange,
+                200,
+                "requests_total{code=\"200\"} "
+                    + requests.addAndGet(1) * 10
+                    + "\ngo_goroutines 7\n"));
+    server.start();
+    try (TunnelTelemetry telemetry = new TunnelTelemetry(Duration.ofMinutes(1), 10, METRICS)) {
+      telemetry.start("tunnel", server.getAddress().getPort());
+      assertTrue(telemetry.isSampling("tunnel"));
+      assertTrue(telemetry.sampleNow("tunnel").get(10, TimeUnit.SECONDS));
+      Thread.sleep(20);
+      assertTrue(telemetry.sampleNow("tunnel").get(10, TimeUnit.SECONDS));
+
+      TunnelTelemetry.Series series = telemetry.getSeries("tunnel");
+      List<TunnelTelemetry.Sample> samples = series.getSamples();
+      assertEquals(2, samples.size());
+      assertTrue(samples.get(0).isReady());
+      assertTrue(samples.get(0).isReachable());
+      assertNotNull(samples.get(0).getLatency());
+      assertEquals(10, samples.get(0).getValue("requests_total"));
+      assertEquals(7, samples.get(0).getValue("go_goroutines"));
+      assertTrue(Double.isNaN(samples.get(0).getValue("request_duration_seconds_sum")));
+      assertFalse(samples.get(1).isReady());
+      assertTrue(series.rate("requests_total", Duration.ofMinutes(1)) > 0);
+
+      telemetry.stop("tunnel");
+      assertFalse(telemetry.isSampling("tunnel"));
+      assertFalse(telemetry.sampleNow("tunnel").get());
+      assertEquals(2, telemetry.getSeries("tunnel").size());
+      telemetry.remove("tunnel");
+      assertNull(telemetry.getSeries("tunnel"));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void testStoppedSeriesAreBounded() {
+    try (TunnelTelemetry telemetry = new TunnelTelemetry(Duration.ofMinutes(1), 10, METRICS, 2)) {
+      for (int i = 0; i < 4; i++) {
+        telemetry.start("tunnel#" + i, 9000 + i);
+      }
+      telemetry.stop("tunnel#0");
+      telemetry.stop("tunnel#1");
+      // restarted, so no longer among the stopped ones
+      telemetry.start("tunnel#0", 9000);
+      telemetry.stop("tunnel#2");
+      assertEquals(
+          new HashSet<>(Arrays.asList("tunnel#0", "tunnel#1", "tunnel#2", "tunnel#3")),
+          telemetry.getTunnelNames());
+
+      // the series stopped the longest ago is dropped
+      telemetry.stop("tunnel#3");
+      assertNull(telemetry.getSeries("tunnel#1"));
+      assertEquals(
+          new HashSet<>(Arrays.asList("tunnel#0", "tunnel#2", "tunnel#3")),
+          telemetry.getTunnelNames());
+      telemetry.stop("tunnel#3");
+      assertNotNull(telemetry.getSeries("tunnel#2"));
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new TunnelTelemetry(Duration.ofMinutes(1), 10, METRICS, -1));
+  }
+
+  @Test
+  void testUnreachable() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    try (TunnelTelemetry telemetry = new TunnelTelemetry(Duration.ofSeconds(5), 10, METRICS)) {
+      telemetry.start("tunnel", port);
+      assertTrue(telemetry.sampleNow("tunnel").get(10, TimeUnit.SECONDS));
+
+      TunnelTelemetry.Sample sample = telemetry.getSeries("tunnel").getLatest();
+      assertFalse(sample.isReady());
+      assertFalse(sample.isReachable());
+      assertNull(sample.getLatency());
+      assertTrue(Double.isNaN(sample.getValue("requests_total")));
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int code, String body)
+      throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(code, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}